@@ -51,12 +51,18 @@ import cn.nukkit.lang.TranslationContainer;
 import cn.nukkit.level.*;
 import cn.nukkit.level.format.FullChunk;
 import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.level.map.MapData;
+import cn.nukkit.level.map.MapRenderer;
 import cn.nukkit.level.particle.PunchBlockParticle;
 import cn.nukkit.level.sound.ExperienceOrbSound;
+import cn.nukkit.level.util.ChunkSendQueue;
 import cn.nukkit.math.*;
 import cn.nukkit.metadata.MetadataValue;
 import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.*;
+import cn.nukkit.network.PacketHandler;
+import cn.nukkit.network.PacketHandlerRegistry;
+import cn.nukkit.network.PacketRateLimiter;
 import cn.nukkit.network.SourceInterface;
 import cn.nukkit.network.protocol.*;
 import cn.nukkit.network.protocol.types.ContainerIds;
@@ -70,6 +76,7 @@ import cn.nukkit.potion.Effect;
 import cn.nukkit.potion.Potion;
 import cn.nukkit.resourcepacks.ResourcePack;
 import cn.nukkit.scheduler.AsyncTask;
+import cn.nukkit.scheduler.LevelTickPool;
 import cn.nukkit.utils.*;
 import co.aikar.timings.Timing;
 import co.aikar.timings.Timings;
@@ -79,15 +86,11 @@ import com.google.common.collect.HashBiMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongIterator;
-import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import lombok.extern.log4j.Log4j2;
 import org.apache.commons.math3.util.FastMath;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
@@ -192,8 +195,17 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
     public final Map<Long, Boolean> usedChunks = new Long2ObjectOpenHashMap<>();
 
     protected int spawnChunkLoadCount = 0;
-    protected final Long2ObjectLinkedOpenHashMap<Boolean> loadQueue = new Long2ObjectLinkedOpenHashMap<>();
+    protected final ChunkSendQueue loadQueue = new ChunkSendQueue();
     protected int nextChunkOrderRun = 1;
+    // Chunks within the view distance when the chunks were last ordered, a radius of -1 means none
+    private int viewCenterX;
+    private int viewCenterZ;
+    private int viewRadius = -1;
+    private int nextFullChunkOrder;
+    // Keeps the chunks around the player loaded and ticking
+    private ChunkTicket viewTicket;
+    private double lastChunkOrderX;
+    private double lastChunkOrderZ;
 
     protected final Map<UUID, Player> hiddenPlayers = new HashMap<>();
 
@@ -231,6 +243,9 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
     private Entity killer = null;
 
+    private final PacketHandlerRegistry packetHandlers;
+    private final PacketRateLimiter packetRateLimiter;
+
     private final AtomicReference<Locale> locale = new AtomicReference<>(null);
 
     private int hash;
@@ -633,6 +648,8 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         this.viewDistance = this.server.getViewDistance();
         this.chunkRadius = viewDistance;
         this.boundingBox = new AxisAlignedBB(0, 0, 0, 0, 0, 0);
+        this.packetHandlers = this.server.getNetwork().getPacketHandlers();
+        this.packetRateLimiter = new PacketRateLimiter(this.packetHandlers);
     }
 
     @Override
@@ -810,14 +827,13 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
         if (!loadQueue.isEmpty()) {
             int count = 0;
-            ObjectIterator<Long2ObjectMap.Entry<Boolean>> iter = loadQueue.long2ObjectEntrySet().fastIterator();
+            LongIterator iter = loadQueue.iterator();
             while (iter.hasNext()) {
                 if (count >= server.chunksPerTick) {
                     break;
                 }
 
-                Long2ObjectMap.Entry<Boolean> entry = iter.next();
-                long index = entry.getLongKey();
+                long index = iter.nextLong();
                 int chunkX = Level.getHashX(index);
                 int chunkZ = Level.getHashZ(index);
 
@@ -834,7 +850,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                     }
                 }
 
-                iter.remove();
+                this.loadQueue.remove(index);
 
                 PlayerChunkRequestEvent ev = new PlayerChunkRequestEvent(this, chunkX, chunkZ);
                 this.server.getPluginManager().callEvent(ev);
@@ -934,72 +950,78 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
         this.nextChunkOrderRun = 200;
 
-        loadQueue.clear();
-        Long2ObjectOpenHashMap<Boolean> lastChunk = new Long2ObjectOpenHashMap<>(this.usedChunks);
-
         int centerX = (int) this.x >> 4;
         int centerZ = (int) this.z >> 4;
 
         int radius = spawned ? this.chunkRadius : server.c_s_spawnThreshold;
-        int radiusSqr = radius * radius;
-
-        long index;
-        for (int x = 0; x <= radius; x++) {
-            int xx = x * x;
-            for (int z = 0; z <= x; z++) {
-                int distanceSqr = xx + z * z;
-                if (distanceSqr > radiusSqr) continue;
-
-                /* Top right quadrant */
-                if (this.usedChunks.get(index = Level.chunkHash(centerX + x, centerZ + z)) != Boolean.TRUE) {
-                    this.loadQueue.put(index, Boolean.TRUE);
-                }
-                lastChunk.remove(index);
-                /* Top left quadrant */
-                if (this.usedChunks.get(index = Level.chunkHash(centerX - x - 1, centerZ + z)) != Boolean.TRUE) {
-                    this.loadQueue.put(index, Boolean.TRUE);
-                }
-                lastChunk.remove(index);
-                /* Bottom right quadrant */
-                if (this.usedChunks.get(index = Level.chunkHash(centerX + x, centerZ - z - 1)) != Boolean.TRUE) {
-                    this.loadQueue.put(index, Boolean.TRUE);
-                }
-                lastChunk.remove(index);
-                /* Bottom left quadrant */
-                if (this.usedChunks.get(index = Level.chunkHash(centerX - x - 1, centerZ - z - 1)) != Boolean.TRUE) {
-                    this.loadQueue.put(index, Boolean.TRUE);
-                }
-                lastChunk.remove(index);
-                if (x != z) {
-                    /* Top right quadrant mirror */
-                    if (this.usedChunks.get(index = Level.chunkHash(centerX + z, centerZ + x)) != Boolean.TRUE) {
-                        this.loadQueue.put(index, Boolean.TRUE);
-                    }
-                    lastChunk.remove(index);
-                    /* Top left quadrant mirror */
-                    if (this.usedChunks.get(index = Level.chunkHash(centerX - z - 1, centerZ + x)) != Boolean.TRUE) {
-                        this.loadQueue.put(index, Boolean.TRUE);
+
+        int tick = this.server.getTick();
+        if (this.viewRadius < 0 || tick >= this.nextFullChunkOrder) {
+            // Check the whole view every now and then in case chunks were unloaded or changed
+            this.nextFullChunkOrder = tick + 200;
+
+            loadQueue.clear();
+            Long2ObjectOpenHashMap<Boolean> lastChunk = new Long2ObjectOpenHashMap<>(this.usedChunks);
+
+            for (int z = centerZ - radius - 1; z <= centerZ + radius; z++) {
+                int halfWidth = viewHalfWidth(radius, z - centerZ);
+                for (int x = centerX - halfWidth - 1; x <= centerX + halfWidth; x++) {
+                    long index = Level.chunkHash(x, z);
+                    if (this.usedChunks.get(index) != Boolean.TRUE) {
+                        this.loadQueue.add(index, 0);
                     }
                     lastChunk.remove(index);
-                    /* Bottom right quadrant mirror */
-                    if (this.usedChunks.get(index = Level.chunkHash(centerX + z, centerZ - x - 1)) != Boolean.TRUE) {
-                        this.loadQueue.put(index, Boolean.TRUE);
+                }
+            }
+
+            LongIterator keys = lastChunk.keySet().iterator();
+            while (keys.hasNext()) {
+                long index = keys.nextLong();
+                this.unloadChunk(Level.getHashX(index), Level.getHashZ(index));
+            }
+        } else if (centerX != this.viewCenterX || centerZ != this.viewCenterZ || radius != this.viewRadius) {
+            // Only go through the rows of chunks that entered or left the view
+            int minZ = Math.min(centerZ - radius, this.viewCenterZ - this.viewRadius) - 1;
+            int maxZ = Math.max(centerZ + radius, this.viewCenterZ + this.viewRadius);
+            for (int z = minZ; z <= maxZ; z++) {
+                int halfWidth = viewHalfWidth(radius, z - centerZ);
+                int oldHalfWidth = viewHalfWidth(this.viewRadius, z - this.viewCenterZ);
+                int minX = centerX - halfWidth - 1;
+                int maxX = centerX + halfWidth;
+                int oldMinX = this.viewCenterX - oldHalfWidth - 1;
+                int oldMaxX = this.viewCenterX + oldHalfWidth;
+
+                for (int x = minX; x <= maxX; x++) {
+                    if (x < oldMinX || x > oldMaxX) {
+                        long index = Level.chunkHash(x, z);
+                        if (this.usedChunks.get(index) != Boolean.TRUE) {
+                            this.loadQueue.add(index, 0);
+                        }
                     }
-                    lastChunk.remove(index);
-                    /* Bottom left quadrant mirror */
-                    if (this.usedChunks.get(index = Level.chunkHash(centerX - z - 1, centerZ - x - 1)) != Boolean.TRUE) {
-                        this.loadQueue.put(index, Boolean.TRUE);
+                }
+                for (int x = oldMinX; x <= oldMaxX; x++) {
+                    if (x < minX || x > maxX) {
+                        long index = Level.chunkHash(x, z);
+                        if (this.usedChunks.containsKey(index)) {
+                            this.unloadChunk(x, z);
+                        } else {
+                            this.loadQueue.remove(index);
+                        }
                     }
-                    lastChunk.remove(index);
                 }
             }
         }
 
-        LongIterator keys = lastChunk.keySet().iterator();
-        while (keys.hasNext()) {
-            index = keys.nextLong();
-            this.unloadChunk(Level.getHashX(index), Level.getHashZ(index));
+        this.viewCenterX = centerX;
+        this.viewCenterZ = centerZ;
+        this.viewRadius = radius;
+        this.updateViewTicket(centerX, centerZ, radius);
+
+        if (!loadQueue.isEmpty()) {
+            this.loadQueue.updatePriorities(this::getChunkSendPriority);
         }
+        this.lastChunkOrderX = this.x;
+        this.lastChunkOrderZ = this.z;
 
         if (this.protocol >= 313) {
             if (!loadQueue.isEmpty()) {
@@ -1014,6 +1036,83 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
         return true;
     }
 
+    /**
+     * Move the player ticket along with the view. It covers the chunks picked for random ticks around the player.
+     */
+    private void updateViewTicket(int centerX, int centerZ, int viewRadius) {
+        int radius = Math.min(this.level.getChunkTickRadius(), viewRadius);
+        ChunkTicket old = this.viewTicket;
+        if (old != null && old.getLevel() == this.level && old.getChunkX() == centerX && old.getChunkZ() == centerZ && old.getRadius() == radius) {
+            return;
+        }
+        // Add the new ticket first, so the chunks both tickets cover are not queued for unloading
+        this.viewTicket = radius >= 0 ? this.level.addChunkTicket(ChunkTicketType.PLAYER, centerX, centerZ, radius) : null;
+        if (old != null) {
+            old.getLevel().removeChunkTicket(old);
+        }
+    }
+
+    private void removeViewTicket() {
+        if (this.viewTicket != null) {
+            this.viewTicket.getLevel().removeChunkTicket(this.viewTicket);
+            this.viewTicket = null;
+        }
+    }
+
+    /**
+     * Get how far the view reaches along a row of chunks. The view is a circle centered at the corner of the chunk the
+     * player is in, so rows and columns reach one chunk further in the negative direction.
+     *
+     * @param radius view radius in chunks, -1 for no view
+     * @param offset row offset from the chunk the player is in
+     * @return number of chunks the view reaches in the positive direction, or -1 if the row is outside of the view
+     */
+    private static int viewHalfWidth(int radius, int offset) {
+        int distance = offset >= 0 ? offset : -offset - 1;
+        if (radius < 0 || distance > radius) {
+            return -1;
+        }
+        int remaining = radius * radius - distance * distance;
+        int halfWidth = (int) Math.sqrt(remaining);
+        while ((halfWidth + 1) * (halfWidth + 1) <= remaining) {
+            halfWidth++;
+        }
+        while (halfWidth * halfWidth > remaining) {
+            halfWidth--;
+        }
+        return halfWidth;
+    }
+
+    /**
+     * Get the order a chunk should be sent in. Chunks are sent by distance, but chunks in front of the player and in
+     * the direction the player is moving in are sent before chunks behind the player.
+     *
+     * @param index chunk hash
+     * @return priority, lower is sent earlier
+     */
+    protected double getChunkSendPriority(long index) {
+        double dx = (Level.getHashX(index) << 4) + 8 - this.x;
+        double dz = (Level.getHashZ(index) << 4) + 8 - this.z;
+        double distance = Math.sqrt(dx * dx + dz * dz);
+        if (distance < 32) {
+            // Always send the chunks around the player first
+            return distance;
+        }
+
+        double yaw = Math.toRadians(this.yaw);
+        double facing = (-Math.sin(yaw) * dx + Math.cos(yaw) * dz) / distance;
+
+        double moving = 0;
+        double motionX = this.x - this.lastChunkOrderX;
+        double motionZ = this.z - this.lastChunkOrderZ;
+        double speed = Math.sqrt(motionX * motionX + motionZ * motionZ);
+        if (speed > 1) {
+            moving = (motionX * dx + motionZ * dz) / (speed * distance);
+        }
+
+        return distance * (1 - 0.4 * facing - 0.2 * moving);
+    }
+
     public boolean batchDataPacket(DataPacket packet) {
         if (packet instanceof BatchPacket) {
             return this.directDataPacket(packet); // We don't want to batch a batched packet
@@ -2322,6 +2421,16 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             return;
         }
 
+        if (packet.pid() != ProtocolInfo.BATCH_PACKET) {
+            if (!this.packetRateLimiter.tryAcquire(packet)) {
+                if (this.packetRateLimiter.isAbusive()) {
+                    this.server.getLogger().warning(username + " sent too many packets");
+                    this.close("", "Too many packets");
+                }
+                return;
+            }
+        }
+
         packet.protocol = this.protocol;
 
         try (Timing ignore = Timings.getReceiveDataPacketTiming(packet)) {
@@ -2340,1512 +2449,1577 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 log.trace("Inbound {}: {}", this.getName(), packet);
             }
 
-            packetswitch:
-            switch (packet.pid()) {
-                case ProtocolInfo.LOGIN_PACKET:
-                    if (this.loggedIn) {
-                        break;
-                    }
+            PacketHandler handler = this.packetHandlers.getHandler(packet.pid(), this.protocol);
+            if (handler != null) {
+                handler.handle(this, packet);
+            }
+        }
+    }
 
-                    LoginPacket loginPacket = (LoginPacket) packet;
+    /**
+     * Register the handlers for the packets sent by players
+     *
+     * @param registry packet handler registry
+     */
+    static void registerPacketHandlers(PacketHandlerRegistry registry) {
+        registry.register(ProtocolInfo.LOGIN_PACKET, (player, packet) -> player.handleLogin(packet));
+        registry.register(ProtocolInfo.RESOURCE_PACK_CLIENT_RESPONSE_PACKET, (player, packet) -> player.handleResourcePackClientResponse(packet));
+        registry.register(ProtocolInfo.RESOURCE_PACK_CHUNK_REQUEST_PACKET, (player, packet) -> player.handleResourcePackChunkRequest(packet));
+        registry.register(ProtocolInfo.PLAYER_SKIN_PACKET, (player, packet) -> player.handlePlayerSkin(packet));
+        registry.register(ProtocolInfo.PLAYER_INPUT_PACKET, (player, packet) -> player.handlePlayerInput(packet));
+        registry.register(ProtocolInfo.MOVE_PLAYER_PACKET, (player, packet) -> player.handleMovePlayer(packet));
+        registry.register(ProtocolInfo.ADVENTURE_SETTINGS_PACKET, (player, packet) -> player.handleAdventureSettings(packet));
+        registry.register(ProtocolInfo.MOB_EQUIPMENT_PACKET, (player, packet) -> player.handleMobEquipment(packet));
+        registry.register(ProtocolInfo.PLAYER_ACTION_PACKET, (player, packet) -> player.handlePlayerAction(packet));
+        registry.register(ProtocolInfo.MODAL_FORM_RESPONSE_PACKET, (player, packet) -> player.handleModalFormResponse(packet));
+        registry.register(ProtocolInfo.INTERACT_PACKET, (player, packet) -> player.handleInteract(packet));
+        registry.register(ProtocolInfo.BLOCK_PICK_REQUEST_PACKET, (player, packet) -> player.handleBlockPickRequest(packet));
+        registry.register(ProtocolInfo.ANIMATE_PACKET, (player, packet) -> player.handleAnimate(packet));
+        registry.register(ProtocolInfo.ENTITY_EVENT_PACKET, (player, packet) -> player.handleEntityEvent(packet));
+        registry.register(ProtocolInfo.COMMAND_REQUEST_PACKET, (player, packet) -> player.handleCommandRequest(packet));
+        registry.register(ProtocolInfo.TEXT_PACKET, (player, packet) -> player.handleText(packet));
+        registry.register(ProtocolInfo.CONTAINER_CLOSE_PACKET, (player, packet) -> player.handleContainerClose(packet));
+        registry.register(ProtocolInfo.BLOCK_ENTITY_DATA_PACKET, (player, packet) -> player.handleBlockEntityData(packet));
+        registry.register(ProtocolInfo.REQUEST_CHUNK_RADIUS_PACKET, (player, packet) -> player.handleRequestChunkRadius(packet));
+        registry.register(ProtocolInfo.SET_PLAYER_GAME_TYPE_PACKET, (player, packet) -> player.handleSetPlayerGameType(packet));
+        registry.register(ProtocolInfo.ITEM_FRAME_DROP_ITEM_PACKET, (player, packet) -> player.handleItemFrameDropItem(packet));
+        registry.register(ProtocolInfo.MAP_INFO_REQUEST_PACKET, (player, packet) -> player.handleMapInfoRequest(packet));
+        registry.register(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET, (player, packet) -> player.handleLevelSoundEvent(packet));
+        registry.register(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V1, (player, packet) -> player.handleLevelSoundEvent(packet));
+        registry.register(ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V2, (player, packet) -> player.handleLevelSoundEvent(packet));
+        registry.register(ProtocolInfo.INVENTORY_TRANSACTION_PACKET, (player, packet) -> player.handleInventoryTransaction(packet));
+        registry.register(ProtocolInfo.PLAYER_HOTBAR_PACKET, (player, packet) -> player.handlePlayerHotbar(packet));
+        registry.register(ProtocolInfo.SERVER_SETTINGS_REQUEST_PACKET, (player, packet) -> player.handleServerSettingsRequest(packet));
+        registry.register(ProtocolInfo.SET_LOCAL_PLAYER_AS_INITIALIZED_PACKET, (player, packet) -> player.handleSetLocalPlayerAsInitialized(packet));
+        registry.register(ProtocolInfo.RESPAWN_PACKET, (player, packet) -> player.handleRespawn(packet));
+        registry.register(ProtocolInfo.BOOK_EDIT_PACKET, (player, packet) -> player.handleBookEdit(packet));
+        registry.register(ProtocolInfo.FILTER_TEXT_PACKET, (player, packet) -> player.handleFilterText(packet));
+        registry.register(ProtocolInfo.PACKET_VIOLATION_WARNING_PACKET, (player, packet) -> player.handlePacketViolationWarning(packet));
+        registry.register(ProtocolInfo.EMOTE_PACKET, (player, packet) -> player.handleEmote(packet));
+    }
+
+    private void handleLogin(DataPacket packet) {
+        if (this.loggedIn) {
+            return;
+        }
 
-                    this.protocol = loginPacket.getProtocol();
+        LoginPacket loginPacket = (LoginPacket) packet;
 
-                    if (!ProtocolInfo.SUPPORTED_PROTOCOLS.contains(this.protocol)) {
-                        this.close("", "You are running unsupported Minecraft version");
-                        this.server.getLogger().debug(this.username + " disconnected with protocol " + this.protocol);
-                        break;
-                    }
+        this.protocol = loginPacket.getProtocol();
 
-                    if (this.protocol < getServer().getPropertyInt("multiversion-min-protocol")) {
-                        this.close("", "Multiversion support for this Minecraft version is disabled");
-                        this.server.getLogger().debug(this.username + " disconnected with protocol " + this.protocol);
-                        break;
-                    }
+        if (!ProtocolInfo.SUPPORTED_PROTOCOLS.contains(this.protocol)) {
+            this.close("", "You are running unsupported Minecraft version");
+            this.server.getLogger().debug(this.username + " disconnected with protocol " + this.protocol);
+            return;
+        }
 
-                    this.username = TextFormat.clean(loginPacket.username);
-                    this.displayName = this.username;
-                    this.iusername = this.username.toLowerCase();
-                    this.setDataProperty(new StringEntityData(DATA_NAMETAG, this.username), false);
+        if (this.protocol < getServer().getPropertyInt("multiversion-min-protocol")) {
+            this.close("", "Multiversion support for this Minecraft version is disabled");
+            this.server.getLogger().debug(this.username + " disconnected with protocol " + this.protocol);
+            return;
+        }
 
-                    this.loginChainData = ClientChainData.read(loginPacket);
+        this.username = TextFormat.clean(loginPacket.username);
+        this.displayName = this.username;
+        this.iusername = this.username.toLowerCase();
+        this.setDataProperty(new StringEntityData(DATA_NAMETAG, this.username), false);
 
-                    if (!loginChainData.isXboxAuthed() && server.xboxAuth) {
-                        this.close("", "disconnectionScreen.notAuthenticated");
-                        if (server.banAuthFailed) {
-                            this.server.getNetwork().blockAddress(this.socketAddress.getAddress(), 5);
-                            this.server.getLogger().notice("Blocked " + getAddress() + " for 5 seconds due to failed Xbox auth");
-                        }
-                        break;
-                    }
+        this.loginChainData = ClientChainData.read(loginPacket);
 
-                    if (this.server.getOnlinePlayersCount() >= this.server.getMaxPlayers() && this.kick(PlayerKickEvent.Reason.SERVER_FULL, "disconnectionScreen.serverFull", false)) {
-                        break;
-                    }
+        if (!loginChainData.isXboxAuthed() && server.xboxAuth) {
+            this.close("", "disconnectionScreen.notAuthenticated");
+            if (server.banAuthFailed) {
+                this.server.getNetwork().blockAddress(this.socketAddress.getAddress(), 5);
+                this.server.getLogger().notice("Blocked " + getAddress() + " for 5 seconds due to failed Xbox auth");
+            }
+            return;
+        }
 
-                    this.version = loginChainData.getGameVersion();
+        if (this.server.getOnlinePlayersCount() >= this.server.getMaxPlayers() && this.kick(PlayerKickEvent.Reason.SERVER_FULL, "disconnectionScreen.serverFull", false)) {
+            return;
+        }
 
-                    getServer().getLogger().debug("Name: " + this.username + " Protocol: " + this.protocol + " Version: " + this.version);
+        this.version = loginChainData.getGameVersion();
 
-                    this.randomClientId = loginPacket.clientId;
+        getServer().getLogger().debug("Name: " + this.username + " Protocol: " + this.protocol + " Version: " + this.version);
 
-                    this.uuid = loginPacket.clientUUID;
-                    this.rawUUID = Binary.writeUUID(this.uuid);
+        this.randomClientId = loginPacket.clientId;
 
-                    boolean valid = true;
-                    int len = loginPacket.username.length();
-                    if (len > 16 || len < 3) {
-                        valid = false;
-                    }
+        this.uuid = loginPacket.clientUUID;
+        this.rawUUID = Binary.writeUUID(this.uuid);
 
-                    if (valid) {
-                        for (int i = 0; i < len; i++) {
-                            char c = loginPacket.username.charAt(i);
-                            if ((c >= 'a' && c <= 'z') ||
-                                    (c >= 'A' && c <= 'Z') ||
-                                    (c >= '0' && c <= '9') ||
-                                    c == '_' || c == ' '
-                            ) {
-                                continue;
-                            }
+        boolean valid = true;
+        int len = loginPacket.username.length();
+        if (len > 16 || len < 3) {
+            valid = false;
+        }
 
-                            valid = false;
-                            break;
-                        }
-                    }
+        if (valid) {
+            for (int i = 0; i < len; i++) {
+                char c = loginPacket.username.charAt(i);
+                if ((c >= 'a' && c <= 'z') ||
+                        (c >= 'A' && c <= 'Z') ||
+                        (c >= '0' && c <= '9') ||
+                        c == '_' || c == ' '
+                ) {
+                    continue;
+                }
 
-                    if (!valid || Objects.equals(this.iusername, "rcon") || Objects.equals(this.iusername, "console")) {
-                        this.close("", "disconnectionScreen.invalidName");
-                        break;
-                    }
+                valid = false;
+                break;
+            }
+        }
 
-                    if (!loginPacket.skin.isValid()) {
-                        this.close("", "disconnectionScreen.invalidSkin");
-                        break;
-                    }
-                    Skin skin = loginPacket.skin;
-                    this.setSkin(skin.isPersona() && !this.getServer().personaSkins? Skin.NO_PERSONA_SKIN : skin);
+        if (!valid || Objects.equals(this.iusername, "rcon") || Objects.equals(this.iusername, "console")) {
+            this.close("", "disconnectionScreen.invalidName");
+            return;
+        }
 
-                    PlayerPreLoginEvent playerPreLoginEvent;
-                    this.server.getPluginManager().callEvent(playerPreLoginEvent = new PlayerPreLoginEvent(this, "Plugin reason"));
-                    if (playerPreLoginEvent.isCancelled()) {
-                        this.close("", playerPreLoginEvent.getKickMessage());
-                        break;
-                    }
+        if (!loginPacket.skin.isValid()) {
+            this.close("", "disconnectionScreen.invalidSkin");
+            return;
+        }
+        Skin skin = loginPacket.skin;
+        this.setSkin(skin.isPersona() && !this.getServer().personaSkins? Skin.NO_PERSONA_SKIN : skin);
 
-                    Player playerInstance = this;
-                    this.preLoginEventTask = new AsyncTask() {
-                        private PlayerAsyncPreLoginEvent event;
+        PlayerPreLoginEvent playerPreLoginEvent;
+        this.server.getPluginManager().callEvent(playerPreLoginEvent = new PlayerPreLoginEvent(this, "Plugin reason"));
+        if (playerPreLoginEvent.isCancelled()) {
+            this.close("", playerPreLoginEvent.getKickMessage());
+            return;
+        }
 
-                        @Override
-                        public void onRun() {
-                            this.event = new PlayerAsyncPreLoginEvent(username, uuid, loginChainData, skin, playerInstance.getAddress(), playerInstance.getPort());
-                            server.getPluginManager().callEvent(this.event);
-                        }
+        Player playerInstance = this;
+        this.preLoginEventTask = new AsyncTask() {
+            private PlayerAsyncPreLoginEvent event;
 
-                        @Override
-                        public void onCompletion(Server server) {
-                            if (playerInstance.closed) {
-                                return;
-                            }
+            @Override
+            public void onRun() {
+                this.event = new PlayerAsyncPreLoginEvent(username, uuid, loginChainData, skin, playerInstance.getAddress(), playerInstance.getPort());
+                server.getPluginManager().callEvent(this.event);
+            }
 
-                            if (this.event.getLoginResult() == LoginResult.KICK) {
-                                playerInstance.close(this.event.getKickMessage(), this.event.getKickMessage());
-                            } else if (playerInstance.shouldLogin) {
-                                playerInstance.setSkin(this.event.getSkin());
-                                playerInstance.completeLoginSequence();
-                                for (Consumer<Server> action : this.event.getScheduledActions()) {
-                                    action.accept(server);
-                                }
-                            }
-                        }
-                    };
+            @Override
+            public void onCompletion(Server server) {
+                if (playerInstance.closed) {
+                    return;
+                }
 
-                    this.server.getScheduler().scheduleAsyncTask(this.preLoginEventTask);
-                    this.processLogin();
-                    break;
-                case ProtocolInfo.RESOURCE_PACK_CLIENT_RESPONSE_PACKET:
-                    ResourcePackClientResponsePacket responsePacket = (ResourcePackClientResponsePacket) packet;
-                    switch (responsePacket.responseStatus) {
-                        case ResourcePackClientResponsePacket.STATUS_REFUSED:
-                            this.close("", "disconnectionScreen.noReason");
-                            break;
-                        case ResourcePackClientResponsePacket.STATUS_SEND_PACKS:
-                            for (ResourcePackClientResponsePacket.Entry entry : responsePacket.packEntries) {
-                                ResourcePack resourcePack = this.server.getResourcePackManager().getPackById(entry.uuid);
-                                if (resourcePack == null) {
-                                    this.close("", "disconnectionScreen.resourcePack");
-                                    break;
-                                }
+                if (this.event.getLoginResult() == LoginResult.KICK) {
+                    playerInstance.close(this.event.getKickMessage(), this.event.getKickMessage());
+                } else if (playerInstance.shouldLogin) {
+                    playerInstance.setSkin(this.event.getSkin());
+                    playerInstance.completeLoginSequence();
+                    for (Consumer<Server> action : this.event.getScheduledActions()) {
+                        action.accept(server);
+                    }
+                }
+            }
+        };
 
-                                ResourcePackDataInfoPacket dataInfoPacket = new ResourcePackDataInfoPacket();
-                                dataInfoPacket.packId = resourcePack.getPackId();
-                                dataInfoPacket.maxChunkSize = 1048576; //megabyte
-                                dataInfoPacket.chunkCount = resourcePack.getPackSize() / dataInfoPacket.maxChunkSize;
-                                dataInfoPacket.compressedPackSize = resourcePack.getPackSize();
-                                dataInfoPacket.sha256 = resourcePack.getSha256();
-                                this.dataPacket(dataInfoPacket);
-                            }
-                            break;
-                        case ResourcePackClientResponsePacket.STATUS_HAVE_ALL_PACKS:
-                            ResourcePackStackPacket stackPacket = new ResourcePackStackPacket();
-                            stackPacket.mustAccept = this.server.getForceResources();
-                            stackPacket.resourcePackStack = this.server.getResourcePackManager().getResourceStack();
-                            this.dataPacket(stackPacket);
-                            break;
-                        case ResourcePackClientResponsePacket.STATUS_COMPLETED:
-                            this.shouldLogin = true;
+        this.server.getScheduler().scheduleAsyncTask(this.preLoginEventTask);
+        this.processLogin();
+    }
 
-                            if (this.preLoginEventTask.isFinished()) {
-                                this.preLoginEventTask.onCompletion(server);
-                            }
-                            break;
-                    }
-                    break;
-                case ProtocolInfo.RESOURCE_PACK_CHUNK_REQUEST_PACKET:
-                    ResourcePackChunkRequestPacket requestPacket = (ResourcePackChunkRequestPacket) packet;
-                    ResourcePack resourcePack = this.server.getResourcePackManager().getPackById(requestPacket.packId);
+    private void handleResourcePackClientResponse(DataPacket packet) {
+        ResourcePackClientResponsePacket responsePacket = (ResourcePackClientResponsePacket) packet;
+        switch (responsePacket.responseStatus) {
+            case ResourcePackClientResponsePacket.STATUS_REFUSED:
+                this.close("", "disconnectionScreen.noReason");
+                break;
+            case ResourcePackClientResponsePacket.STATUS_SEND_PACKS:
+                for (ResourcePackClientResponsePacket.Entry entry : responsePacket.packEntries) {
+                    ResourcePack resourcePack = this.server.getResourcePackManager().getPackById(entry.uuid);
                     if (resourcePack == null) {
                         this.close("", "disconnectionScreen.resourcePack");
                         break;
                     }
 
-                    ResourcePackChunkDataPacket dataPacket = new ResourcePackChunkDataPacket();
-                    dataPacket.packId = resourcePack.getPackId();
-                    dataPacket.chunkIndex = requestPacket.chunkIndex;
-                    dataPacket.data = resourcePack.getPackChunk(1048576 * requestPacket.chunkIndex, 1048576);
-                    dataPacket.progress = 1048576L * requestPacket.chunkIndex;
-                    this.dataPacket(dataPacket);
-                    break;
-                case ProtocolInfo.PLAYER_SKIN_PACKET:
-                    PlayerSkinPacket skinPacket = (PlayerSkinPacket) packet;
-                    skin = skinPacket.skin;
+                    ResourcePackDataInfoPacket dataInfoPacket = new ResourcePackDataInfoPacket();
+                    dataInfoPacket.packId = resourcePack.getPackId();
+                    dataInfoPacket.maxChunkSize = 1048576; //megabyte
+                    dataInfoPacket.chunkCount = resourcePack.getPackSize() / dataInfoPacket.maxChunkSize;
+                    dataInfoPacket.compressedPackSize = resourcePack.getPackSize();
+                    dataInfoPacket.sha256 = resourcePack.getSha256();
+                    this.dataPacket(dataInfoPacket);
+                }
+                break;
+            case ResourcePackClientResponsePacket.STATUS_HAVE_ALL_PACKS:
+                ResourcePackStackPacket stackPacket = new ResourcePackStackPacket();
+                stackPacket.mustAccept = this.server.getForceResources();
+                stackPacket.resourcePackStack = this.server.getResourcePackManager().getResourceStack();
+                this.dataPacket(stackPacket);
+                break;
+            case ResourcePackClientResponsePacket.STATUS_COMPLETED:
+                this.shouldLogin = true;
+
+                if (this.preLoginEventTask.isFinished()) {
+                    this.preLoginEventTask.onCompletion(server);
+                }
+                break;
+        }
+    }
 
-                    if (!skin.isValid()) {
-                        break;
-                    }
+    private void handleResourcePackChunkRequest(DataPacket packet) {
+        ResourcePackChunkRequestPacket requestPacket = (ResourcePackChunkRequestPacket) packet;
+        ResourcePack resourcePack = this.server.getResourcePackManager().getPackById(requestPacket.packId);
+        if (resourcePack == null) {
+            this.close("", "disconnectionScreen.resourcePack");
+            return;
+        }
 
-                    PlayerChangeSkinEvent playerChangeSkinEvent = new PlayerChangeSkinEvent(this, skin);
-                    playerChangeSkinEvent.setCancelled(TimeUnit.SECONDS.toMillis(this.server.getPlayerSkinChangeCooldown()) > System.currentTimeMillis() - this.lastSkinChange);
-                    this.server.getPluginManager().callEvent(playerChangeSkinEvent);
-                    if (!playerChangeSkinEvent.isCancelled()) {
-                        this.lastSkinChange = System.currentTimeMillis();
-                        this.setSkin(skin.isPersona() && !this.getServer().personaSkins? Skin.NO_PERSONA_SKIN : skin);
-                    }
-                    break;
-                case ProtocolInfo.PLAYER_INPUT_PACKET:
-                    if (!this.isAlive() || !this.spawned) {
-                        break;
-                    }
-                    if (riding instanceof EntityControllable) {
-                        PlayerInputPacket ipk = (PlayerInputPacket) packet;
-                        ((EntityControllable) riding).onPlayerInput(this, ipk.motionX, ipk.motionY);
-                    }
-                    break;
-                case ProtocolInfo.MOVE_PLAYER_PACKET:
-                    if (this.teleportPosition != null || !this.locallyInitialized) {
-                        break;
-                    }
+        ResourcePackChunkDataPacket dataPacket = new ResourcePackChunkDataPacket();
+        dataPacket.packId = resourcePack.getPackId();
+        dataPacket.chunkIndex = requestPacket.chunkIndex;
+        dataPacket.data = resourcePack.getPackChunk(1048576 * requestPacket.chunkIndex, 1048576);
+        dataPacket.progress = 1048576L * requestPacket.chunkIndex;
+        this.dataPacket(dataPacket);
+    }
 
-                    MovePlayerPacket movePlayerPacket = (MovePlayerPacket) packet;
-                    Vector3 newPos = new Vector3(movePlayerPacket.x, movePlayerPacket.y - this.getEyeHeight(), movePlayerPacket.z);
-                    double dis = newPos.distanceSquared(this);
+    private void handlePlayerSkin(DataPacket packet) {
+        PlayerSkinPacket skinPacket = (PlayerSkinPacket) packet;
+        skin = skinPacket.skin;
 
-                    if (dis < 0.01 && movePlayerPacket.yaw % 360 == this.yaw && movePlayerPacket.pitch % 360 == this.pitch) {
-                        break;
-                    }
+        if (!skin.isValid()) {
+            return;
+        }
 
-                    if (dis > 100) {
-                        this.sendPosition(this, movePlayerPacket.yaw, movePlayerPacket.pitch, MovePlayerPacket.MODE_RESET);
-                        break;
-                    }
+        PlayerChangeSkinEvent playerChangeSkinEvent = new PlayerChangeSkinEvent(this, skin);
+        playerChangeSkinEvent.setCancelled(TimeUnit.SECONDS.toMillis(this.server.getPlayerSkinChangeCooldown()) > System.currentTimeMillis() - this.lastSkinChange);
+        this.server.getPluginManager().callEvent(playerChangeSkinEvent);
+        if (!playerChangeSkinEvent.isCancelled()) {
+            this.lastSkinChange = System.currentTimeMillis();
+            this.setSkin(skin.isPersona() && !this.getServer().personaSkins? Skin.NO_PERSONA_SKIN : skin);
+        }
+    }
 
-                    boolean revert = false;
-                    if (!this.isAlive() || !this.spawned) {
-                        revert = true;
-                        this.forceMovement = this;
-                    }
+    private void handlePlayerInput(DataPacket packet) {
+        if (!this.isAlive() || !this.spawned) {
+            return;
+        }
+        if (riding instanceof EntityControllable) {
+            PlayerInputPacket ipk = (PlayerInputPacket) packet;
+            ((EntityControllable) riding).onPlayerInput(this, ipk.motionX, ipk.motionY);
+        }
+    }
 
-                    if (this.forceMovement != null && (newPos.distanceSquared(this.forceMovement) > 0.1 || revert)) {
-                        this.sendPosition(this.forceMovement, movePlayerPacket.yaw, movePlayerPacket.pitch, MovePlayerPacket.MODE_RESET);
-                    } else {
+    private void handleMovePlayer(DataPacket packet) {
+        if (this.teleportPosition != null || !this.locallyInitialized) {
+            return;
+        }
 
-                        movePlayerPacket.yaw %= 360;
-                        movePlayerPacket.pitch %= 360;
+        MovePlayerPacket movePlayerPacket = (MovePlayerPacket) packet;
+        Vector3 newPos = new Vector3(movePlayerPacket.x, movePlayerPacket.y - this.getEyeHeight(), movePlayerPacket.z);
+        double dis = newPos.distanceSquared(this);
 
-                        if (movePlayerPacket.yaw < 0) {
-                            movePlayerPacket.yaw += 360;
-                        }
+        if (dis < 0.01 && movePlayerPacket.yaw % 360 == this.yaw && movePlayerPacket.pitch % 360 == this.pitch) {
+            return;
+        }
 
-                        this.setRotation(movePlayerPacket.yaw, movePlayerPacket.pitch);
-                        this.newPosition = newPos;
-                        this.forceMovement = null;
-                    }
+        if (dis > 100) {
+            this.sendPosition(this, movePlayerPacket.yaw, movePlayerPacket.pitch, MovePlayerPacket.MODE_RESET);
+            return;
+        }
 
-                    if (riding != null) {
-                        if (riding instanceof EntityBoat) {
-                            riding.setPositionAndRotation(this.temporalVector.setComponents(movePlayerPacket.x, movePlayerPacket.y - 1, movePlayerPacket.z), (movePlayerPacket.headYaw + 90) % 360, 0);
-                        }
-                    }
+        boolean revert = false;
+        if (!this.isAlive() || !this.spawned) {
+            revert = true;
+            this.forceMovement = this;
+        }
 
-                    break;
-                case ProtocolInfo.ADVENTURE_SETTINGS_PACKET:
-                    AdventureSettingsPacket adventureSettingsPacket = (AdventureSettingsPacket) packet;
-                    if (!server.getAllowFlight() && (adventureSettingsPacket.getFlag(AdventureSettingsPacket.ALLOW_FLIGHT) || adventureSettingsPacket.getFlag(AdventureSettingsPacket.FLYING)) && !this.adventureSettings.get(Type.ALLOW_FLIGHT)) {
-                        this.kick(PlayerKickEvent.Reason.FLYING_DISABLED, "Flying is not enabled on this server");
-                        break;
-                    }
-                    PlayerToggleFlightEvent playerToggleFlightEvent = new PlayerToggleFlightEvent(this, adventureSettingsPacket.getFlag(AdventureSettingsPacket.FLYING));
-                    this.server.getPluginManager().callEvent(playerToggleFlightEvent);
-                    if (playerToggleFlightEvent.isCancelled()) {
-                        this.adventureSettings.update();
-                    } else {
-                        this.adventureSettings.set(Type.FLYING, playerToggleFlightEvent.isFlying());
-                    }
-                    break;
-                case ProtocolInfo.MOB_EQUIPMENT_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
+        if (this.forceMovement != null && (newPos.distanceSquared(this.forceMovement) > 0.1 || revert)) {
+            this.sendPosition(this.forceMovement, movePlayerPacket.yaw, movePlayerPacket.pitch, MovePlayerPacket.MODE_RESET);
+        } else {
 
-                    MobEquipmentPacket mobEquipmentPacket = (MobEquipmentPacket) packet;
+            movePlayerPacket.yaw %= 360;
+            movePlayerPacket.pitch %= 360;
 
-                    Inventory inv = this.getWindowById(mobEquipmentPacket.windowId);
+            if (movePlayerPacket.yaw < 0) {
+                movePlayerPacket.yaw += 360;
+            }
 
-                    if (inv == null) {
-                        this.server.getLogger().debug("Player " + this.getName() + " has no open container with window ID " + mobEquipmentPacket.windowId);
-                        return;
-                    }
+            this.setRotation(movePlayerPacket.yaw, movePlayerPacket.pitch);
+            this.newPosition = newPos;
+            this.forceMovement = null;
+        }
 
-                    Item item = inv.getItem(mobEquipmentPacket.hotbarSlot);
+        if (riding != null) {
+            if (riding instanceof EntityBoat) {
+                riding.setPositionAndRotation(this.temporalVector.setComponents(movePlayerPacket.x, movePlayerPacket.y - 1, movePlayerPacket.z), (movePlayerPacket.headYaw + 90) % 360, 0);
+            }
+        }
 
-                    if (!item.equals(mobEquipmentPacket.item)) {
-                        this.server.getLogger().debug("Tried to equip " + mobEquipmentPacket.item + " but have " + item + " in target slot");
-                        inv.sendContents(this);
-                        return;
-                    }
+    }
 
-                    if (inv instanceof PlayerInventory) {
-                        ((PlayerInventory) inv).equipItem(mobEquipmentPacket.hotbarSlot);
-                    }
+    private void handleAdventureSettings(DataPacket packet) {
+        AdventureSettingsPacket adventureSettingsPacket = (AdventureSettingsPacket) packet;
+        if (!server.getAllowFlight() && (adventureSettingsPacket.getFlag(AdventureSettingsPacket.ALLOW_FLIGHT) || adventureSettingsPacket.getFlag(AdventureSettingsPacket.FLYING)) && !this.adventureSettings.get(Type.ALLOW_FLIGHT)) {
+            this.kick(PlayerKickEvent.Reason.FLYING_DISABLED, "Flying is not enabled on this server");
+            return;
+        }
+        PlayerToggleFlightEvent playerToggleFlightEvent = new PlayerToggleFlightEvent(this, adventureSettingsPacket.getFlag(AdventureSettingsPacket.FLYING));
+        this.server.getPluginManager().callEvent(playerToggleFlightEvent);
+        if (playerToggleFlightEvent.isCancelled()) {
+            this.adventureSettings.update();
+        } else {
+            this.adventureSettings.set(Type.FLYING, playerToggleFlightEvent.isFlying());
+        }
+    }
 
-                    this.setDataFlag(Player.DATA_FLAGS, Player.DATA_FLAG_ACTION, false);
+    private void handleMobEquipment(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
 
-                    break;
-                case ProtocolInfo.PLAYER_ACTION_PACKET:
-                    PlayerActionPacket playerActionPacket = (PlayerActionPacket) packet;
-                    if (!this.spawned || (!this.isAlive() && playerActionPacket.action != PlayerActionPacket.ACTION_RESPAWN && playerActionPacket.action != PlayerActionPacket.ACTION_DIMENSION_CHANGE_REQUEST)) {
-                        break;
-                    }
+        MobEquipmentPacket mobEquipmentPacket = (MobEquipmentPacket) packet;
 
-                    playerActionPacket.entityId = this.id;
-                    Vector3 pos = new Vector3(playerActionPacket.x, playerActionPacket.y, playerActionPacket.z);
-                    BlockFace face = BlockFace.fromIndex(playerActionPacket.face);
-
-                    actionswitch:
-                    switch (playerActionPacket.action) {
-                        case PlayerActionPacket.ACTION_START_BREAK:
-                            long currentBreak = System.currentTimeMillis();
-                            BlockVector3 currentBreakPosition = new BlockVector3(playerActionPacket.x, playerActionPacket.y, playerActionPacket.z);
-                            // HACK: Client spams multiple left clicks so we need to skip them.
-                            if ((lastBreakPosition.equals(currentBreakPosition) && (currentBreak - this.lastBreak) < 10) || pos.distanceSquared(this) > 100) {
-                                break;
-                            }
-                            Block target = this.level.getBlock(pos);
-                            PlayerInteractEvent playerInteractEvent = new PlayerInteractEvent(this, this.inventory.getItemInHand(), target, face, target.getId() == 0 ? Action.LEFT_CLICK_AIR : Action.LEFT_CLICK_BLOCK);
-                            this.getServer().getPluginManager().callEvent(playerInteractEvent);
-                            if (playerInteractEvent.isCancelled()) {
-                                this.inventory.sendHeldItem(this);
-                                break;
-                            }
-                            switch (target.getId()) {
-                                case Block.NOTEBLOCK:
-                                    ((BlockNoteblock) target).emitSound();
-                                    break actionswitch;
-                                case Block.DRAGON_EGG:
-                                    ((BlockDragonEgg) target).teleport();
-                                    break actionswitch;
-                            }
-                            Block block = target.getSide(face);
-                            if (block.getId() == Block.FIRE) {
-                                this.level.setBlock(block, Block.get(BlockID.AIR), true);
-                                this.level.addLevelSoundEvent(block, LevelSoundEventPacket.SOUND_EXTINGUISH_FIRE);
-                                break;
-                            }
-                            if (!this.isCreative()) {
-                                double breakTime = Math.ceil(target.getBreakTime(this.inventory.getItemInHand(), this) * 20);
-                                if (breakTime > 0) {
-                                    LevelEventPacket pk = new LevelEventPacket();
-                                    pk.evid = LevelEventPacket.EVENT_BLOCK_START_BREAK;
-                                    pk.x = (float) pos.x;
-                                    pk.y = (float) pos.y;
-                                    pk.z = (float) pos.z;
-                                    pk.data = (int) (65535 / breakTime);
-                                    this.getLevel().addChunkPacket(pos.getFloorX() >> 4, pos.getFloorZ() >> 4, pk);
-                                }
-                            }
+        Inventory inv = this.getWindowById(mobEquipmentPacket.windowId);
 
-                            this.breakingBlock = target;
-                            this.lastBreak = currentBreak;
-                            this.lastBreakPosition = currentBreakPosition;
-                            break;
+        if (inv == null) {
+            this.server.getLogger().debug("Player " + this.getName() + " has no open container with window ID " + mobEquipmentPacket.windowId);
+            return;
+        }
 
-                        case PlayerActionPacket.ACTION_ABORT_BREAK:
-                        case PlayerActionPacket.ACTION_STOP_BREAK:
-                            LevelEventPacket pk = new LevelEventPacket();
-                            pk.evid = LevelEventPacket.EVENT_BLOCK_STOP_BREAK;
-                            pk.x = (float) pos.x;
-                            pk.y = (float) pos.y;
-                            pk.z = (float) pos.z;
-                            pk.data = 0;
-                            this.getLevel().addChunkPacket(pos.getFloorX() >> 4, pos.getFloorZ() >> 4, pk);
-                            this.breakingBlock = null;
-                            break;
-                        case PlayerActionPacket.ACTION_GET_UPDATED_BLOCK:
-                        case PlayerActionPacket.ACTION_DROP_ITEM:
-                            break;
-                        case PlayerActionPacket.ACTION_STOP_SLEEPING:
-                            this.stopSleep();
-                            break;
-                        case PlayerActionPacket.ACTION_RESPAWN:
-                            if (!this.spawned || this.isAlive() || !this.isOnline()) {
-                                break;
-                            }
+        Item item = inv.getItem(mobEquipmentPacket.hotbarSlot);
 
-                            if (this.server.isHardcore()) {
-                                this.setBanned(true);
-                                break;
-                            }
+        if (!item.equals(mobEquipmentPacket.item)) {
+            this.server.getLogger().debug("Tried to equip " + mobEquipmentPacket.item + " but have " + item + " in target slot");
+            inv.sendContents(this);
+            return;
+        }
 
-                            this.craftingType = CRAFTING_SMALL;
-                            this.resetCraftingGridType();
+        if (inv instanceof PlayerInventory) {
+            ((PlayerInventory) inv).equipItem(mobEquipmentPacket.hotbarSlot);
+        }
 
-                            PlayerRespawnEvent playerRespawnEvent = new PlayerRespawnEvent(this, this.getSpawn());
-                            this.server.getPluginManager().callEvent(playerRespawnEvent);
+        this.setDataFlag(Player.DATA_FLAGS, Player.DATA_FLAG_ACTION, false);
 
-                            Position respawnPos = playerRespawnEvent.getRespawnPosition();
+    }
 
-                            this.teleport(respawnPos, null);
+    private void handlePlayerAction(DataPacket packet) {
+        PlayerActionPacket playerActionPacket = (PlayerActionPacket) packet;
+        if (!this.spawned || (!this.isAlive() && playerActionPacket.action != PlayerActionPacket.ACTION_RESPAWN && playerActionPacket.action != PlayerActionPacket.ACTION_DIMENSION_CHANGE_REQUEST)) {
+            return;
+        }
 
-                            if (this.protocol < 388) {
-                                RespawnPacket respawnPacket = new RespawnPacket();
-                                respawnPacket.x = (float) respawnPos.x;
-                                respawnPacket.y = (float) respawnPos.y;
-                                respawnPacket.z = (float) respawnPos.z;
-                                this.dataPacket(respawnPacket);
-                            }
+        playerActionPacket.entityId = this.id;
+        Vector3 pos = new Vector3(playerActionPacket.x, playerActionPacket.y, playerActionPacket.z);
+        BlockFace face = BlockFace.fromIndex(playerActionPacket.face);
 
-                            this.sendExperience();
-                            this.sendExperienceLevel();
+        actionswitch:
+        switch (playerActionPacket.action) {
+            case PlayerActionPacket.ACTION_START_BREAK:
+                long currentBreak = System.currentTimeMillis();
+                BlockVector3 currentBreakPosition = new BlockVector3(playerActionPacket.x, playerActionPacket.y, playerActionPacket.z);
+                // HACK: Client spams multiple left clicks so we need to skip them.
+                if ((lastBreakPosition.equals(currentBreakPosition) && (currentBreak - this.lastBreak) < 10) || pos.distanceSquared(this) > 100) {
+                    break;
+                }
+                Block target = this.level.getBlock(pos);
+                PlayerInteractEvent playerInteractEvent = new PlayerInteractEvent(this, this.inventory.getItemInHand(), target, face, target.getId() == 0 ? Action.LEFT_CLICK_AIR : Action.LEFT_CLICK_BLOCK);
+                this.getServer().getPluginManager().callEvent(playerInteractEvent);
+                if (playerInteractEvent.isCancelled()) {
+                    this.inventory.sendHeldItem(this);
+                    break;
+                }
+                switch (target.getId()) {
+                    case Block.NOTEBLOCK:
+                        ((BlockNoteblock) target).emitSound();
+                        break actionswitch;
+                    case Block.DRAGON_EGG:
+                        ((BlockDragonEgg) target).teleport();
+                        break actionswitch;
+                }
+                Block block = target.getSide(face);
+                if (block.getId() == Block.FIRE) {
+                    this.level.setBlock(block, Block.get(BlockID.AIR), true);
+                    this.level.addLevelSoundEvent(block, LevelSoundEventPacket.SOUND_EXTINGUISH_FIRE);
+                    break;
+                }
+                if (!this.isCreative()) {
+                    double breakTime = Math.ceil(target.getBreakTime(this.inventory.getItemInHand(), this) * 20);
+                    if (breakTime > 0) {
+                        LevelEventPacket pk = new LevelEventPacket();
+                        pk.evid = LevelEventPacket.EVENT_BLOCK_START_BREAK;
+                        pk.x = (float) pos.x;
+                        pk.y = (float) pos.y;
+                        pk.z = (float) pos.z;
+                        pk.data = (int) (65535 / breakTime);
+                        this.getLevel().addChunkPacket(pos.getFloorX() >> 4, pos.getFloorZ() >> 4, pk);
+                    }
+                }
 
-                            this.setSprinting(false);
-                            this.setSneaking(false);
+                this.breakingBlock = target;
+                this.lastBreak = currentBreak;
+                this.lastBreakPosition = currentBreakPosition;
+                break;
+
+            case PlayerActionPacket.ACTION_ABORT_BREAK:
+            case PlayerActionPacket.ACTION_STOP_BREAK:
+                LevelEventPacket pk = new LevelEventPacket();
+                pk.evid = LevelEventPacket.EVENT_BLOCK_STOP_BREAK;
+                pk.x = (float) pos.x;
+                pk.y = (float) pos.y;
+                pk.z = (float) pos.z;
+                pk.data = 0;
+                this.getLevel().addChunkPacket(pos.getFloorX() >> 4, pos.getFloorZ() >> 4, pk);
+                this.breakingBlock = null;
+                break;
+            case PlayerActionPacket.ACTION_GET_UPDATED_BLOCK:
+            case PlayerActionPacket.ACTION_DROP_ITEM:
+                break;
+            case PlayerActionPacket.ACTION_STOP_SLEEPING:
+                this.stopSleep();
+                break;
+            case PlayerActionPacket.ACTION_RESPAWN:
+                if (!this.spawned || this.isAlive() || !this.isOnline()) {
+                    break;
+                }
 
-                            this.extinguish();
-                            this.setDataProperty(new ShortEntityData(Player.DATA_AIR, 400), false);
-                            this.deadTicks = 0;
-                            this.noDamageTicks = 60;
+                if (this.server.isHardcore()) {
+                    this.setBanned(true);
+                    break;
+                }
 
-                            this.removeAllEffects();
-                            this.setHealth(this.getMaxHealth());
-                            this.foodData.setLevel(20, 20);
+                this.craftingType = CRAFTING_SMALL;
+                this.resetCraftingGridType();
 
-                            this.sendData(this);
+                PlayerRespawnEvent playerRespawnEvent = new PlayerRespawnEvent(this, this.getSpawn());
+                this.server.getPluginManager().callEvent(playerRespawnEvent);
 
-                            this.setMovementSpeed(DEFAULT_SPEED);
+                Position respawnPos = playerRespawnEvent.getRespawnPosition();
 
-                            this.adventureSettings.update();
-                            this.inventory.sendContents(this);
-                            this.inventory.sendArmorContents(this);
-                            this.offhandInventory.sendContents(this);
+                this.teleport(respawnPos, null);
 
-                            this.spawnToAll();
-                            this.scheduleUpdate();
-                            break;
-                        case PlayerActionPacket.ACTION_JUMP:
-                            if (this.inAirTicks > 30 && this.checkMovement && !server.getAllowFlight() && !this.isSwimming() && !this.isGliding()) {
-                                this.kick(PlayerKickEvent.Reason.FLYING_DISABLED, "Flying is not enabled on this server");
-                                break;
-                            }
-                            this.server.getPluginManager().callEvent(new PlayerJumpEvent(this));
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_START_SPRINT:
-                            PlayerToggleSprintEvent playerToggleSprintEvent = new PlayerToggleSprintEvent(this, true);
-                            this.server.getPluginManager().callEvent(playerToggleSprintEvent);
-                            if (playerToggleSprintEvent.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setSprinting(true);
-                            }
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_STOP_SPRINT:
-                            playerToggleSprintEvent = new PlayerToggleSprintEvent(this, false);
-                            this.server.getPluginManager().callEvent(playerToggleSprintEvent);
-                            if (playerToggleSprintEvent.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setSprinting(false);
-                            }
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_START_SNEAK:
-                            PlayerToggleSneakEvent playerToggleSneakEvent = new PlayerToggleSneakEvent(this, true);
-                            this.server.getPluginManager().callEvent(playerToggleSneakEvent);
-                            if (playerToggleSneakEvent.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setSneaking(true);
-                            }
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_STOP_SNEAK:
-                            playerToggleSneakEvent = new PlayerToggleSneakEvent(this, false);
-                            this.server.getPluginManager().callEvent(playerToggleSneakEvent);
-                            if (playerToggleSneakEvent.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setSneaking(false);
-                            }
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_DIMENSION_CHANGE_ACK:
-                            this.sendPosition(this, this.yaw, this.pitch, MovePlayerPacket.MODE_RESET);
-                            break;
-                        case PlayerActionPacket.ACTION_START_GLIDE:
-                            if (!server.getAllowFlight() && this.checkMovement) {
-                                Item chestplate = this.getInventory().getChestplateFast();
-                                if ((chestplate == null || chestplate.getId() != ItemID.ELYTRA) && !server.getAllowFlight()) {
-                                    this.kick(PlayerKickEvent.Reason.FLYING_DISABLED, "Flying is not enabled on this server");
-                                    break;
-                                }
-                            }
-                            PlayerToggleGlideEvent playerToggleGlideEvent = new PlayerToggleGlideEvent(this, true);
-                            this.server.getPluginManager().callEvent(playerToggleGlideEvent);
-                            if (playerToggleGlideEvent.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setGliding(true);
-                            }
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_STOP_GLIDE:
-                            playerToggleGlideEvent = new PlayerToggleGlideEvent(this, false);
-                            this.server.getPluginManager().callEvent(playerToggleGlideEvent);
-                            if (playerToggleGlideEvent.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setGliding(false);
-                            }
-                            break packetswitch;
-                        case PlayerActionPacket.ACTION_CONTINUE_BREAK:
-                            if (this.isBreakingBlock()) {
-                                block = this.level.getBlock(pos);
-                                this.level.addParticle(new PunchBlockParticle(pos, block, face));
-                            }
-                            break;
-                        case PlayerActionPacket.ACTION_START_SWIMMING:
-                            PlayerToggleSwimEvent ptse = new PlayerToggleSwimEvent(this, true);
-                            if (!this.isInsideOfWater()) {
-                                ptse.setCancelled(true);
-                            }
-                            this.server.getPluginManager().callEvent(ptse);
-                            if (ptse.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setSwimming(true);
-                            }
-                            break;
-                        case PlayerActionPacket.ACTION_STOP_SWIMMING:
-                            ptse = new PlayerToggleSwimEvent(this, false);
-                            this.server.getPluginManager().callEvent(ptse);
-                            if (ptse.isCancelled()) {
-                                this.sendData(this);
-                            } else {
-                                this.setSwimming(false);
-                            }
-                            break;
-                    }
+                if (this.protocol < 388) {
+                    RespawnPacket respawnPacket = new RespawnPacket();
+                    respawnPacket.x = (float) respawnPos.x;
+                    respawnPacket.y = (float) respawnPos.y;
+                    respawnPacket.z = (float) respawnPos.z;
+                    this.dataPacket(respawnPacket);
+                }
 
-                    this.setUsingItem(false);
-                    break;
-                case ProtocolInfo.MODAL_FORM_RESPONSE_PACKET:
-                    this.formOpen = false;
+                this.sendExperience();
+                this.sendExperienceLevel();
+
+                this.setSprinting(false);
+                this.setSneaking(false);
+
+                this.extinguish();
+                this.setDataProperty(new ShortEntityData(Player.DATA_AIR, 400), false);
+                this.deadTicks = 0;
+                this.noDamageTicks = 60;
+
+                this.removeAllEffects();
+                this.setHealth(this.getMaxHealth());
+                this.foodData.setLevel(20, 20);
+
+                this.sendData(this);
 
-                    if (!this.spawned || !this.isAlive()) {
+                this.setMovementSpeed(DEFAULT_SPEED);
+
+                this.adventureSettings.update();
+                this.inventory.sendContents(this);
+                this.inventory.sendArmorContents(this);
+                this.offhandInventory.sendContents(this);
+
+                this.spawnToAll();
+                this.scheduleUpdate();
+                break;
+            case PlayerActionPacket.ACTION_JUMP:
+                if (this.inAirTicks > 30 && this.checkMovement && !server.getAllowFlight() && !this.isSwimming() && !this.isGliding()) {
+                    this.kick(PlayerKickEvent.Reason.FLYING_DISABLED, "Flying is not enabled on this server");
+                    break;
+                }
+                this.server.getPluginManager().callEvent(new PlayerJumpEvent(this));
+                return;
+            case PlayerActionPacket.ACTION_START_SPRINT:
+                PlayerToggleSprintEvent playerToggleSprintEvent = new PlayerToggleSprintEvent(this, true);
+                this.server.getPluginManager().callEvent(playerToggleSprintEvent);
+                if (playerToggleSprintEvent.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setSprinting(true);
+                }
+                return;
+            case PlayerActionPacket.ACTION_STOP_SPRINT:
+                playerToggleSprintEvent = new PlayerToggleSprintEvent(this, false);
+                this.server.getPluginManager().callEvent(playerToggleSprintEvent);
+                if (playerToggleSprintEvent.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setSprinting(false);
+                }
+                return;
+            case PlayerActionPacket.ACTION_START_SNEAK:
+                PlayerToggleSneakEvent playerToggleSneakEvent = new PlayerToggleSneakEvent(this, true);
+                this.server.getPluginManager().callEvent(playerToggleSneakEvent);
+                if (playerToggleSneakEvent.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setSneaking(true);
+                }
+                return;
+            case PlayerActionPacket.ACTION_STOP_SNEAK:
+                playerToggleSneakEvent = new PlayerToggleSneakEvent(this, false);
+                this.server.getPluginManager().callEvent(playerToggleSneakEvent);
+                if (playerToggleSneakEvent.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setSneaking(false);
+                }
+                return;
+            case PlayerActionPacket.ACTION_DIMENSION_CHANGE_ACK:
+                this.sendPosition(this, this.yaw, this.pitch, MovePlayerPacket.MODE_RESET);
+                break;
+            case PlayerActionPacket.ACTION_START_GLIDE:
+                if (!server.getAllowFlight() && this.checkMovement) {
+                    Item chestplate = this.getInventory().getChestplateFast();
+                    if ((chestplate == null || chestplate.getId() != ItemID.ELYTRA) && !server.getAllowFlight()) {
+                        this.kick(PlayerKickEvent.Reason.FLYING_DISABLED, "Flying is not enabled on this server");
                         break;
                     }
+                }
+                PlayerToggleGlideEvent playerToggleGlideEvent = new PlayerToggleGlideEvent(this, true);
+                this.server.getPluginManager().callEvent(playerToggleGlideEvent);
+                if (playerToggleGlideEvent.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setGliding(true);
+                }
+                return;
+            case PlayerActionPacket.ACTION_STOP_GLIDE:
+                playerToggleGlideEvent = new PlayerToggleGlideEvent(this, false);
+                this.server.getPluginManager().callEvent(playerToggleGlideEvent);
+                if (playerToggleGlideEvent.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setGliding(false);
+                }
+                return;
+            case PlayerActionPacket.ACTION_CONTINUE_BREAK:
+                if (this.isBreakingBlock()) {
+                    block = this.level.getBlock(pos);
+                    this.level.addParticle(new PunchBlockParticle(pos, block, face));
+                }
+                break;
+            case PlayerActionPacket.ACTION_START_SWIMMING:
+                PlayerToggleSwimEvent ptse = new PlayerToggleSwimEvent(this, true);
+                if (!this.isInsideOfWater()) {
+                    ptse.setCancelled(true);
+                }
+                this.server.getPluginManager().callEvent(ptse);
+                if (ptse.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setSwimming(true);
+                }
+                break;
+            case PlayerActionPacket.ACTION_STOP_SWIMMING:
+                ptse = new PlayerToggleSwimEvent(this, false);
+                this.server.getPluginManager().callEvent(ptse);
+                if (ptse.isCancelled()) {
+                    this.sendData(this);
+                } else {
+                    this.setSwimming(false);
+                }
+                break;
+        }
 
-                    ModalFormResponsePacket modalFormPacket = (ModalFormResponsePacket) packet;
+        this.setUsingItem(false);
+    }
 
-                    if (formWindows.containsKey(modalFormPacket.formId)) {
-                        FormWindow window = formWindows.remove(modalFormPacket.formId);
-                        window.setResponse(modalFormPacket.data.trim());
+    private void handleModalFormResponse(DataPacket packet) {
+        this.formOpen = false;
 
-                        PlayerFormRespondedEvent event = new PlayerFormRespondedEvent(this, modalFormPacket.formId, window);
-                        getServer().getPluginManager().callEvent(event);
-                    } else if (serverSettings.containsKey(modalFormPacket.formId)) {
-                        FormWindow window = serverSettings.get(modalFormPacket.formId);
-                        window.setResponse(modalFormPacket.data.trim());
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
 
-                        PlayerSettingsRespondedEvent event = new PlayerSettingsRespondedEvent(this, modalFormPacket.formId, window);
-                        getServer().getPluginManager().callEvent(event);
+        ModalFormResponsePacket modalFormPacket = (ModalFormResponsePacket) packet;
 
-                        if (!event.isCancelled() && window instanceof FormWindowCustom)
-                            ((FormWindowCustom) window).setElementsFromResponse();
-                    }
+        if (formWindows.containsKey(modalFormPacket.formId)) {
+            FormWindow window = formWindows.remove(modalFormPacket.formId);
+            window.setResponse(modalFormPacket.data.trim());
 
-                    break;
+            PlayerFormRespondedEvent event = new PlayerFormRespondedEvent(this, modalFormPacket.formId, window);
+            getServer().getPluginManager().callEvent(event);
+        } else if (serverSettings.containsKey(modalFormPacket.formId)) {
+            FormWindow window = serverSettings.get(modalFormPacket.formId);
+            window.setResponse(modalFormPacket.data.trim());
 
-                case ProtocolInfo.INTERACT_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
+            PlayerSettingsRespondedEvent event = new PlayerSettingsRespondedEvent(this, modalFormPacket.formId, window);
+            getServer().getPluginManager().callEvent(event);
 
-                    this.craftingType = CRAFTING_SMALL;
+            if (!event.isCancelled() && window instanceof FormWindowCustom)
+                ((FormWindowCustom) window).setElementsFromResponse();
+        }
 
-                    InteractPacket interactPacket = (InteractPacket) packet;
+    }
 
-                    Entity targetEntity = this.level.getEntity(interactPacket.target);
+    private void handleInteract(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
 
-                    if (interactPacket.action != InteractPacket.ACTION_OPEN_INVENTORY && (targetEntity == null || !this.isAlive() || !targetEntity.isAlive())) {
-                        break;
-                    }
+        this.craftingType = CRAFTING_SMALL;
 
-                    if (interactPacket.action != InteractPacket.ACTION_OPEN_INVENTORY && (targetEntity instanceof EntityItem || targetEntity instanceof EntityArrow || targetEntity instanceof EntityXPOrb)) {
-                        //this.kick(PlayerKickEvent.Reason.INVALID_PVE, "Attempting to interact with an invalid entity");
-                        this.server.getLogger().warning(this.getServer().getLanguage().translateString("nukkit.player.invalidEntity", this.username));
-                        break;
-                    }
+        InteractPacket interactPacket = (InteractPacket) packet;
 
-                    switch (interactPacket.action) {
-                        case InteractPacket.ACTION_OPEN_INVENTORY:
-                            if (this.protocol >= 407) {
-                                if (!this.inventoryOpen) {
-                                    this.inventoryOpen = this.inventory.open(this);
-                                }
-                            }
-                            break;
-                        case InteractPacket.ACTION_MOUSEOVER:
-                            if (interactPacket.target == 0 && this.protocol >= 313) {
-                                break packetswitch;
-                            }
-                            this.getServer().getPluginManager().callEvent(new PlayerMouseOverEntityEvent(this, targetEntity));
-                            break;
-                        case InteractPacket.ACTION_VEHICLE_EXIT:
-                            if (!(targetEntity instanceof EntityRideable) || this.riding == null) {
-                                break;
-                            }
+        Entity targetEntity = this.level.getEntity(interactPacket.target);
 
-                            ((EntityRideable) riding).mountEntity(this);
-                            break;
+        if (interactPacket.action != InteractPacket.ACTION_OPEN_INVENTORY && (targetEntity == null || !this.isAlive() || !targetEntity.isAlive())) {
+            return;
+        }
+
+        if (interactPacket.action != InteractPacket.ACTION_OPEN_INVENTORY && (targetEntity instanceof EntityItem || targetEntity instanceof EntityArrow || targetEntity instanceof EntityXPOrb)) {
+            //this.kick(PlayerKickEvent.Reason.INVALID_PVE, "Attempting to interact with an invalid entity");
+            this.server.getLogger().warning(this.getServer().getLanguage().translateString("nukkit.player.invalidEntity", this.username));
+            return;
+        }
+
+        switch (interactPacket.action) {
+            case InteractPacket.ACTION_OPEN_INVENTORY:
+                if (this.protocol >= 407) {
+                    if (!this.inventoryOpen) {
+                        this.inventoryOpen = this.inventory.open(this);
                     }
+                }
+                break;
+            case InteractPacket.ACTION_MOUSEOVER:
+                if (interactPacket.target == 0 && this.protocol >= 313) {
+                    return;
+                }
+                this.getServer().getPluginManager().callEvent(new PlayerMouseOverEntityEvent(this, targetEntity));
+                break;
+            case InteractPacket.ACTION_VEHICLE_EXIT:
+                if (!(targetEntity instanceof EntityRideable) || this.riding == null) {
                     break;
-                case ProtocolInfo.BLOCK_PICK_REQUEST_PACKET:
-                    BlockPickRequestPacket pickRequestPacket = (BlockPickRequestPacket) packet;
-                    Block block = this.level.getBlock(this.temporalVector.setComponents(pickRequestPacket.x, pickRequestPacket.y, pickRequestPacket.z), false);
-                    item = block.toItem();
-                    if (pickRequestPacket.addUserData) {
-                        BlockEntity blockEntity = this.getLevel().getBlockEntity(new Vector3(pickRequestPacket.x, pickRequestPacket.y, pickRequestPacket.z));
-                        if (blockEntity != null) {
-                            CompoundTag nbt = blockEntity.getCleanedNBT();
-                            if (nbt != null) {
-                                item.setCustomBlockData(nbt);
-                                item.setLore("+(DATA)");
-                            }
-                        }
-                    }
+                }
 
-                    PlayerBlockPickEvent pickEvent = new PlayerBlockPickEvent(this, block, item);
-                    if (this.isSpectator()) {
-                        pickEvent.setCancelled();
-                    }
+                ((EntityRideable) riding).mountEntity(this);
+                break;
+        }
+    }
 
-                    this.server.getPluginManager().callEvent(pickEvent);
+    private void handleBlockPickRequest(DataPacket packet) {
+        BlockPickRequestPacket pickRequestPacket = (BlockPickRequestPacket) packet;
+        Block block = this.level.getBlock(this.temporalVector.setComponents(pickRequestPacket.x, pickRequestPacket.y, pickRequestPacket.z), false);
+        Item item = block.toItem();
+        if (pickRequestPacket.addUserData) {
+            BlockEntity blockEntity = this.getLevel().getBlockEntity(new Vector3(pickRequestPacket.x, pickRequestPacket.y, pickRequestPacket.z));
+            if (blockEntity != null) {
+                CompoundTag nbt = blockEntity.getCleanedNBT();
+                if (nbt != null) {
+                    item.setCustomBlockData(nbt);
+                    item.setLore("+(DATA)");
+                }
+            }
+        }
 
-                    if (!pickEvent.isCancelled()) {
-                        boolean itemExists = false;
-                        int itemSlot = -1;
-                        for (int slot = 0; slot < this.inventory.getSize(); slot++) {
-                            if (this.inventory.getItem(slot).equals(pickEvent.getItem())) {
-                                if (slot < this.inventory.getHotbarSize()) {
-                                    this.inventory.setHeldItemSlot(slot);
-                                } else {
-                                    itemSlot = slot;
-                                }
-                                itemExists = true;
-                                break;
-                            }
-                        }
+        PlayerBlockPickEvent pickEvent = new PlayerBlockPickEvent(this, block, item);
+        if (this.isSpectator()) {
+            pickEvent.setCancelled();
+        }
 
-                        for (int slot = 0; slot < this.inventory.getHotbarSize(); slot++) {
-                            if (this.inventory.getItem(slot).isNull()) {
-                                if (!itemExists && this.isCreative()) {
-                                    this.inventory.setHeldItemSlot(slot);
-                                    this.inventory.setItemInHand(pickEvent.getItem());
-                                    break packetswitch;
-                                } else if (itemSlot > -1) {
-                                    this.inventory.setHeldItemSlot(slot);
-                                    this.inventory.setItemInHand(this.inventory.getItem(itemSlot));
-                                    this.inventory.clear(itemSlot, true);
-                                    break packetswitch;
-                                }
-                            }
-                        }
+        this.server.getPluginManager().callEvent(pickEvent);
 
-                        if (!itemExists && this.isCreative()) {
-                            Item itemInHand = this.inventory.getItemInHand();
-                            this.inventory.setItemInHand(pickEvent.getItem());
-                            if (!this.inventory.isFull()) {
-                                for (int slot = 0; slot < this.inventory.getSize(); slot++) {
-                                    if (this.inventory.getItem(slot).isNull()) {
-                                        this.inventory.setItem(slot, itemInHand);
-                                        break;
-                                    }
-                                }
-                            }
-                        } else if (itemSlot > -1) {
-                            Item itemInHand = this.inventory.getItemInHand();
-                            this.inventory.setItemInHand(this.inventory.getItem(itemSlot));
-                            this.inventory.setItem(itemSlot, itemInHand);
-                        }
+        if (!pickEvent.isCancelled()) {
+            boolean itemExists = false;
+            int itemSlot = -1;
+            for (int slot = 0; slot < this.inventory.getSize(); slot++) {
+                if (this.inventory.getItem(slot).equals(pickEvent.getItem())) {
+                    if (slot < this.inventory.getHotbarSize()) {
+                        this.inventory.setHeldItemSlot(slot);
+                    } else {
+                        itemSlot = slot;
                     }
+                    itemExists = true;
                     break;
-                case ProtocolInfo.ANIMATE_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
+                }
+            }
 
-                    PlayerAnimationEvent animationEvent = new PlayerAnimationEvent(this, ((AnimatePacket) packet).action);
-                    this.server.getPluginManager().callEvent(animationEvent);
-                    if (animationEvent.isCancelled()) {
-                        break;
+            for (int slot = 0; slot < this.inventory.getHotbarSize(); slot++) {
+                if (this.inventory.getItem(slot).isNull()) {
+                    if (!itemExists && this.isCreative()) {
+                        this.inventory.setHeldItemSlot(slot);
+                        this.inventory.setItemInHand(pickEvent.getItem());
+                        return;
+                    } else if (itemSlot > -1) {
+                        this.inventory.setHeldItemSlot(slot);
+                        this.inventory.setItemInHand(this.inventory.getItem(itemSlot));
+                        this.inventory.clear(itemSlot, true);
+                        return;
                     }
+                }
+            }
 
-                    AnimatePacket.Action animation = animationEvent.getAnimationType();
-
-                    switch (animation) {
-                        case ROW_RIGHT:
-                        case ROW_LEFT:
-                            if (this.riding instanceof EntityBoat) {
-                                ((EntityBoat) this.riding).onPaddle(animation, ((AnimatePacket) packet).rowingTime);
-                            }
+            if (!itemExists && this.isCreative()) {
+                Item itemInHand = this.inventory.getItemInHand();
+                this.inventory.setItemInHand(pickEvent.getItem());
+                if (!this.inventory.isFull()) {
+                    for (int slot = 0; slot < this.inventory.getSize(); slot++) {
+                        if (this.inventory.getItem(slot).isNull()) {
+                            this.inventory.setItem(slot, itemInHand);
                             break;
+                        }
                     }
+                }
+            } else if (itemSlot > -1) {
+                Item itemInHand = this.inventory.getItemInHand();
+                this.inventory.setItemInHand(this.inventory.getItem(itemSlot));
+                this.inventory.setItem(itemSlot, itemInHand);
+            }
+        }
+    }
 
-                    AnimatePacket animatePacket = new AnimatePacket();
-                    animatePacket.eid = this.getId();
-                    animatePacket.action = animationEvent.getAnimationType();
-                    Server.broadcastPacket(this.getViewers().values(), animatePacket);
-                    break;
-                case ProtocolInfo.ENTITY_EVENT_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
+    private void handleAnimate(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
 
-                    EntityEventPacket entityEventPacket = (EntityEventPacket) packet;
+        PlayerAnimationEvent animationEvent = new PlayerAnimationEvent(this, ((AnimatePacket) packet).action);
+        this.server.getPluginManager().callEvent(animationEvent);
+        if (animationEvent.isCancelled()) {
+            return;
+        }
 
-                    if (entityEventPacket.event != EntityEventPacket.ENCHANT) {
-                        this.craftingType = CRAFTING_SMALL;
-                    }
+        AnimatePacket.Action animation = animationEvent.getAnimationType();
 
-                    switch (entityEventPacket.event) {
-                        case EntityEventPacket.EATING_ITEM:
-                            if (entityEventPacket.data == 0 || entityEventPacket.eid != this.id) {
-                                break;
-                            }
+        switch (animation) {
+            case ROW_RIGHT:
+            case ROW_LEFT:
+                if (this.riding instanceof EntityBoat) {
+                    ((EntityBoat) this.riding).onPaddle(animation, ((AnimatePacket) packet).rowingTime);
+                }
+                break;
+        }
 
-                            entityEventPacket.eid = this.id;
-                            entityEventPacket.isEncoded = false;
-                            this.dataPacket(entityEventPacket);
-                            Server.broadcastPacket(this.getViewers().values(), entityEventPacket);
-                            break;
-                        case EntityEventPacket.ENCHANT:
-                            if (entityEventPacket.eid != this.id) {
-                                break;
-                            }
+        AnimatePacket animatePacket = new AnimatePacket();
+        animatePacket.eid = this.getId();
+        animatePacket.action = animationEvent.getAnimationType();
+        Server.broadcastPacket(this.getViewers().values(), animatePacket);
+    }
 
-                            if (this.protocol >= ProtocolInfo.v1_16_0) {
-                                Inventory inventory = this.getWindowById(ANVIL_WINDOW_ID);
-                                if (inventory instanceof AnvilInventory) {
-                                    ((AnvilInventory) inventory).setCost(-entityEventPacket.data);
-                                }
-                                break;
-                            }
+    private void handleEntityEvent(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
 
-                            int levels = entityEventPacket.data; // Sent as negative number of levels lost
-                            if (levels < 0) {
-                                this.setExperience(this.exp, this.expLevel + levels);
-                            }
-                            break;
-                    }
-                    break;
-                case ProtocolInfo.COMMAND_REQUEST_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
-                    this.craftingType = CRAFTING_SMALL;
-                    CommandRequestPacket commandRequestPacket = (CommandRequestPacket) packet;
-                    PlayerCommandPreprocessEvent playerCommandPreprocessEvent = new PlayerCommandPreprocessEvent(this, commandRequestPacket.command);
-                    this.server.getPluginManager().callEvent(playerCommandPreprocessEvent);
-                    if (playerCommandPreprocessEvent.isCancelled()) {
-                        break;
-                    }
+        EntityEventPacket entityEventPacket = (EntityEventPacket) packet;
 
-                    if (Timings.playerCommandTimer != null) Timings.playerCommandTimer.startTiming();
-                    this.server.dispatchCommand(playerCommandPreprocessEvent.getPlayer(), playerCommandPreprocessEvent.getMessage().substring(1));
-                    if (Timings.playerCommandTimer != null) Timings.playerCommandTimer.stopTiming();
-                    break;
-                case ProtocolInfo.TEXT_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
+        if (entityEventPacket.event != EntityEventPacket.ENCHANT) {
+            this.craftingType = CRAFTING_SMALL;
+        }
 
-                    TextPacket textPacket = (TextPacket) packet;
+        switch (entityEventPacket.event) {
+            case EntityEventPacket.EATING_ITEM:
+                if (entityEventPacket.data == 0 || entityEventPacket.eid != this.id) {
+                    break;
+                }
 
-                    if (textPacket.type == TextPacket.TYPE_CHAT) {
-                        String chatMessage = textPacket.message;
-                        int breakLine = chatMessage.indexOf('\n');
-                        // Chat messages shouldn't contain break lines so ignore text afterwards
-                        if (breakLine != -1) {
-                            chatMessage = chatMessage.substring(0, breakLine);
-                        }
-                        this.chat(chatMessage);
-                    }
+                entityEventPacket.eid = this.id;
+                entityEventPacket.isEncoded = false;
+                this.dataPacket(entityEventPacket);
+                Server.broadcastPacket(this.getViewers().values(), entityEventPacket);
+                break;
+            case EntityEventPacket.ENCHANT:
+                if (entityEventPacket.eid != this.id) {
                     break;
-                case ProtocolInfo.CONTAINER_CLOSE_PACKET:
-                    ContainerClosePacket containerClosePacket = (ContainerClosePacket) packet;
-                    if (!this.spawned || (containerClosePacket.windowId == ContainerIds.INVENTORY && !inventoryOpen && this.protocol >= 407)) {
-                        break;
-                    }
+                }
 
-                    if (this.windowIndex.containsKey(containerClosePacket.windowId)) {
-                        this.server.getPluginManager().callEvent(new InventoryCloseEvent(this.windowIndex.get(containerClosePacket.windowId), this));
-                        if (containerClosePacket.windowId == ContainerIds.INVENTORY) this.inventoryOpen = false;
-                        this.closingWindowId = containerClosePacket.windowId;
-                        this.removeWindow(this.windowIndex.get(containerClosePacket.windowId), true);
-                        this.closingWindowId = Integer.MIN_VALUE;
-                    }
-                    if (containerClosePacket.windowId == -1) {
-                        this.craftingType = CRAFTING_SMALL;
-                        this.resetCraftingGridType();
-                        this.addWindow(this.craftingGrid, ContainerIds.NONE);
-                        if (this.protocol >= 407) {
-                            ContainerClosePacket pk = new ContainerClosePacket();
-                            pk.windowId = -1;
-                            pk.wasServerInitiated = false;
-                            this.dataPacket(pk);
-                        }
+                if (this.protocol >= ProtocolInfo.v1_16_0) {
+                    Inventory inventory = this.getWindowById(ANVIL_WINDOW_ID);
+                    if (inventory instanceof AnvilInventory) {
+                        ((AnvilInventory) inventory).setCost(-entityEventPacket.data);
                     }
                     break;
-                case ProtocolInfo.BLOCK_ENTITY_DATA_PACKET:
-                    if (!this.spawned || !this.isAlive()) {
-                        break;
-                    }
-                    BlockEntityDataPacket blockEntityDataPacket = (BlockEntityDataPacket) packet;
-                    this.craftingType = CRAFTING_SMALL;
-                    this.resetCraftingGridType();
+                }
+
+                int levels = entityEventPacket.data; // Sent as negative number of levels lost
+                if (levels < 0) {
+                    this.setExperience(this.exp, this.expLevel + levels);
+                }
+                break;
+        }
+    }
+
+    private void handleCommandRequest(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
+        this.craftingType = CRAFTING_SMALL;
+        CommandRequestPacket commandRequestPacket = (CommandRequestPacket) packet;
+        PlayerCommandPreprocessEvent playerCommandPreprocessEvent = new PlayerCommandPreprocessEvent(this, commandRequestPacket.command);
+        this.server.getPluginManager().callEvent(playerCommandPreprocessEvent);
+        if (playerCommandPreprocessEvent.isCancelled()) {
+            return;
+        }
+
+        if (Timings.playerCommandTimer != null) Timings.playerCommandTimer.startTiming();
+        this.server.dispatchCommand(playerCommandPreprocessEvent.getPlayer(), playerCommandPreprocessEvent.getMessage().substring(1));
+        if (Timings.playerCommandTimer != null) Timings.playerCommandTimer.stopTiming();
+    }
+
+    private void handleText(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
+
+        TextPacket textPacket = (TextPacket) packet;
+
+        if (textPacket.type == TextPacket.TYPE_CHAT) {
+            String chatMessage = textPacket.message;
+            int breakLine = chatMessage.indexOf('\n');
+            // Chat messages shouldn't contain break lines so ignore text afterwards
+            if (breakLine != -1) {
+                chatMessage = chatMessage.substring(0, breakLine);
+            }
+            this.chat(chatMessage);
+        }
+    }
+
+    private void handleContainerClose(DataPacket packet) {
+        ContainerClosePacket containerClosePacket = (ContainerClosePacket) packet;
+        if (!this.spawned || (containerClosePacket.windowId == ContainerIds.INVENTORY && !inventoryOpen && this.protocol >= 407)) {
+            return;
+        }
+
+        if (this.windowIndex.containsKey(containerClosePacket.windowId)) {
+            this.server.getPluginManager().callEvent(new InventoryCloseEvent(this.windowIndex.get(containerClosePacket.windowId), this));
+            if (containerClosePacket.windowId == ContainerIds.INVENTORY) this.inventoryOpen = false;
+            this.closingWindowId = containerClosePacket.windowId;
+            this.removeWindow(this.windowIndex.get(containerClosePacket.windowId), true);
+            this.closingWindowId = Integer.MIN_VALUE;
+        }
+        if (containerClosePacket.windowId == -1) {
+            this.craftingType = CRAFTING_SMALL;
+            this.resetCraftingGridType();
+            this.addWindow(this.craftingGrid, ContainerIds.NONE);
+            if (this.protocol >= 407) {
+                ContainerClosePacket pk = new ContainerClosePacket();
+                pk.windowId = -1;
+                pk.wasServerInitiated = false;
+                this.dataPacket(pk);
+            }
+        }
+    }
+
+    private void handleBlockEntityData(DataPacket packet) {
+        if (!this.spawned || !this.isAlive()) {
+            return;
+        }
+        BlockEntityDataPacket blockEntityDataPacket = (BlockEntityDataPacket) packet;
+        this.craftingType = CRAFTING_SMALL;
+        this.resetCraftingGridType();
+
+        Vector3 pos = new Vector3(blockEntityDataPacket.x, blockEntityDataPacket.y, blockEntityDataPacket.z);
+        if (pos.distanceSquared(this) > 10000) {
+            return;
+        }
+
+        BlockEntity t = this.level.getBlockEntity(pos);
+        if (t instanceof BlockEntitySpawnable) {
+            CompoundTag nbt;
+            try {
+                nbt = NBTIO.read(blockEntityDataPacket.namedTag, ByteOrder.LITTLE_ENDIAN, true);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            if (!((BlockEntitySpawnable) t).updateCompoundTag(nbt, this)) {
+                ((BlockEntitySpawnable) t).spawnTo(this);
+            }
+        }
+    }
+
+    private void handleRequestChunkRadius(DataPacket packet) {
+        RequestChunkRadiusPacket requestChunkRadiusPacket = (RequestChunkRadiusPacket) packet;
+        ChunkRadiusUpdatedPacket chunkRadiusUpdatePacket = new ChunkRadiusUpdatedPacket();
+        this.chunkRadius = Math.max(3, Math.min(requestChunkRadiusPacket.radius, this.viewDistance));
+        chunkRadiusUpdatePacket.radius = this.chunkRadius;
+        this.dataPacket(chunkRadiusUpdatePacket);
+    }
 
-                    pos = new Vector3(blockEntityDataPacket.x, blockEntityDataPacket.y, blockEntityDataPacket.z);
-                    if (pos.distanceSquared(this) > 10000) {
+    private void handleSetPlayerGameType(DataPacket packet) {
+        SetPlayerGameTypePacket setPlayerGameTypePacket = (SetPlayerGameTypePacket) packet;
+        if (setPlayerGameTypePacket.gamemode != this.gamemode) {
+            if (!this.hasPermission("nukkit.command.gamemode")) {
+                SetPlayerGameTypePacket setPlayerGameTypePacket1 = new SetPlayerGameTypePacket();
+                setPlayerGameTypePacket1.gamemode = this.gamemode & 0x01;
+                this.dataPacket(setPlayerGameTypePacket1);
+                this.adventureSettings.update();
+                return;
+            }
+            this.setGamemode(setPlayerGameTypePacket.gamemode, true);
+            Command.broadcastCommandMessage(this, new TranslationContainer("commands.gamemode.success.self", Server.getGamemodeString(this.gamemode)));
+        }
+    }
+
+    private void handleItemFrameDropItem(DataPacket packet) {
+        ItemFrameDropItemPacket itemFrameDropItemPacket = (ItemFrameDropItemPacket) packet;
+        Vector3 vector3 = this.temporalVector.setComponents(itemFrameDropItemPacket.x, itemFrameDropItemPacket.y, itemFrameDropItemPacket.z);
+        BlockEntity blockEntityItemFrame = this.level.getBlockEntity(vector3);
+        BlockEntityItemFrame itemFrame = (BlockEntityItemFrame) blockEntityItemFrame;
+        if (itemFrame != null) {
+            Block block = itemFrame.getBlock();
+            Item itemDrop = itemFrame.getItem();
+            ItemFrameDropItemEvent itemFrameDropItemEvent = new ItemFrameDropItemEvent(this, block, itemFrame, itemDrop);
+            this.server.getPluginManager().callEvent(itemFrameDropItemEvent);
+            if (!itemFrameDropItemEvent.isCancelled()) {
+                if (itemDrop.getId() != Item.AIR) {
+                    vector3 = this.temporalVector.setComponents(itemFrame.x + 0.5, itemFrame.y, itemFrame.z + 0.5);
+                    this.level.dropItem(vector3, itemDrop);
+                    itemFrame.setItem(new ItemBlock(Block.get(BlockID.AIR)));
+                    itemFrame.setItemRotation(0);
+                    this.getLevel().addSoundToViewers(this, Sound.BLOCK_ITEMFRAME_REMOVE_ITEM);
+                }
+            } else {
+                itemFrame.spawnTo(this);
+            }
+        }
+    }
+
+    private void handleMapInfoRequest(DataPacket packet) {
+        MapInfoRequestPacket pk = (MapInfoRequestPacket) packet;
+        Item mapItem = null;
+
+        for (Item item1 : this.inventory.getContents().values()) {
+            if (item1 instanceof ItemMap && ((ItemMap) item1).getMapId() == pk.mapId) {
+                mapItem = item1;
+            }
+        }
+
+        if (mapItem == null) {
+            for (BlockEntity be : this.level.getBlockEntities().values()) {
+                if (be instanceof BlockEntityItemFrame) {
+                    BlockEntityItemFrame itemFrame1 = (BlockEntityItemFrame) be;
+
+                    if (itemFrame1.getItem() instanceof ItemMap && ((ItemMap) itemFrame1.getItem()).getMapId() == pk.mapId) {
+                        ((ItemMap) itemFrame1.getItem()).sendImage(this);
                         break;
                     }
+                }
+            }
+        } else {
+            PlayerMapInfoRequestEvent event;
+            getServer().getPluginManager().callEvent(event = new PlayerMapInfoRequestEvent(this, mapItem));
 
-                    BlockEntity t = this.level.getBlockEntity(pos);
-                    if (t instanceof BlockEntitySpawnable) {
-                        CompoundTag nbt;
-                        try {
-                            nbt = NBTIO.read(blockEntityDataPacket.namedTag, ByteOrder.LITTLE_ENDIAN, true);
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
+            if (!event.isCancelled()) {
+                ItemMap map = (ItemMap) mapItem;
+                if (map.trySendImage(this)) {
+                    return;
+                }
+                try {
+                    int worldX = (this.getFloorX () / 128) << 7;
+                    int worldZ = (this.getFloorZ () / 128) << 7;
+                    MapData data = map.getMapData();
+                    MapRenderer.render(this.getLevel(), data, worldX, worldZ);
+                    map.saveMapData(data);
+                    data.sendTo(this);
+                } catch (Exception ex) {
+                    this.getServer().getLogger().debug("There was an error while generating map image", ex);
+                }
+            }
+        }
 
-                        if (!((BlockEntitySpawnable) t).updateCompoundTag(nbt, this)) {
-                            ((BlockEntitySpawnable) t).spawnTo(this);
-                        }
-                    }
-                    break;
-                case ProtocolInfo.REQUEST_CHUNK_RADIUS_PACKET:
-                    RequestChunkRadiusPacket requestChunkRadiusPacket = (RequestChunkRadiusPacket) packet;
-                    ChunkRadiusUpdatedPacket chunkRadiusUpdatePacket = new ChunkRadiusUpdatedPacket();
-                    this.chunkRadius = Math.max(3, Math.min(requestChunkRadiusPacket.radius, this.viewDistance));
-                    chunkRadiusUpdatePacket.radius = this.chunkRadius;
-                    this.dataPacket(chunkRadiusUpdatePacket);
-                    break;
-                case ProtocolInfo.SET_PLAYER_GAME_TYPE_PACKET:
-                    SetPlayerGameTypePacket setPlayerGameTypePacket = (SetPlayerGameTypePacket) packet;
-                    if (setPlayerGameTypePacket.gamemode != this.gamemode) {
-                        if (!this.hasPermission("nukkit.command.gamemode")) {
-                            SetPlayerGameTypePacket setPlayerGameTypePacket1 = new SetPlayerGameTypePacket();
-                            setPlayerGameTypePacket1.gamemode = this.gamemode & 0x01;
-                            this.dataPacket(setPlayerGameTypePacket1);
-                            this.adventureSettings.update();
-                            break;
-                        }
-                        this.setGamemode(setPlayerGameTypePacket.gamemode, true);
-                        Command.broadcastCommandMessage(this, new TranslationContainer("commands.gamemode.success.self", Server.getGamemodeString(this.gamemode)));
-                    }
-                    break;
-                case ProtocolInfo.ITEM_FRAME_DROP_ITEM_PACKET:
-                    ItemFrameDropItemPacket itemFrameDropItemPacket = (ItemFrameDropItemPacket) packet;
-                    Vector3 vector3 = this.temporalVector.setComponents(itemFrameDropItemPacket.x, itemFrameDropItemPacket.y, itemFrameDropItemPacket.z);
-                    BlockEntity blockEntityItemFrame = this.level.getBlockEntity(vector3);
-                    BlockEntityItemFrame itemFrame = (BlockEntityItemFrame) blockEntityItemFrame;
-                    if (itemFrame != null) {
-                        block = itemFrame.getBlock();
-                        Item itemDrop = itemFrame.getItem();
-                        ItemFrameDropItemEvent itemFrameDropItemEvent = new ItemFrameDropItemEvent(this, block, itemFrame, itemDrop);
-                        this.server.getPluginManager().callEvent(itemFrameDropItemEvent);
-                        if (!itemFrameDropItemEvent.isCancelled()) {
-                            if (itemDrop.getId() != Item.AIR) {
-                                vector3 = this.temporalVector.setComponents(itemFrame.x + 0.5, itemFrame.y, itemFrame.z + 0.5);
-                                this.level.dropItem(vector3, itemDrop);
-                                itemFrame.setItem(new ItemBlock(Block.get(BlockID.AIR)));
-                                itemFrame.setItemRotation(0);
-                                this.getLevel().addSoundToViewers(this, Sound.BLOCK_ITEMFRAME_REMOVE_ITEM);
-                            }
-                        } else {
-                            itemFrame.spawnTo(this);
-                        }
-                    }
-                    break;
-                case ProtocolInfo.MAP_INFO_REQUEST_PACKET:
-                    MapInfoRequestPacket pk = (MapInfoRequestPacket) packet;
-                    Item mapItem = null;
+    }
 
-                    for (Item item1 : this.inventory.getContents().values()) {
-                        if (item1 instanceof ItemMap && ((ItemMap) item1).getMapId() == pk.mapId) {
-                            mapItem = item1;
-                        }
+    private void handleLevelSoundEvent(DataPacket packet) {
+        if (this.isSpectator()) {
+            if (((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_HIT || ((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_ATTACK_NODAMAGE || ((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_ATTACK || ((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_ATTACK_STRONG) {
+                return;
+            }
+        }
+        this.level.addChunkPacket(this.getChunkX(), this.getChunkZ(), packet);
+    }
+
+    private void handleInventoryTransaction(DataPacket packet) {
+        if (this.isSpectator()) {
+            this.sendAllInventories();
+            return;
+        }
+
+        InventoryTransactionPacket transactionPacket = (InventoryTransactionPacket) packet;
+
+        List<InventoryAction> actions = new ArrayList<>();
+        for (NetworkInventoryAction networkInventoryAction : transactionPacket.actions) {
+            InventoryAction a = networkInventoryAction.createInventoryAction(this);
+
+            if (a == null) {
+                this.getServer().getLogger().debug("Unmatched inventory action from " + this.username + ": " + networkInventoryAction);
+                this.sendAllInventories();
+                return;
+            }
+
+            actions.add(a);
+        }
+
+        if (transactionPacket.isCraftingPart) {
+            if (this.craftingTransaction == null) {
+                this.craftingTransaction = new CraftingTransaction(this, actions);
+            } else {
+                for (InventoryAction action : actions) {
+                    this.craftingTransaction.addAction(action);
+                }
+            }
+
+            if (this.craftingTransaction.getPrimaryOutput() != null && this.craftingTransaction.canExecute()) {
+                try {
+                    this.craftingTransaction.execute();
+                } catch (Exception e) {
+                    this.server.getLogger().debug("Executing crafting transaction failed");
+                }
+                this.craftingTransaction = null;
+            }
+            return;
+        } else if (this.protocol >= ProtocolInfo.v1_16_0 && transactionPacket.isEnchantingPart) {
+            if (this.enchantTransaction == null) {
+                this.enchantTransaction = new EnchantTransaction(this, actions);
+            } else {
+                for (InventoryAction action : actions) {
+                    this.enchantTransaction.addAction(action);
+                }
+            }
+            if (this.enchantTransaction.canExecute()) {
+                this.enchantTransaction.execute();
+                this.enchantTransaction = null;
+            }
+            return;
+        } else if (this.protocol >= ProtocolInfo.v1_16_0 && transactionPacket.isRepairItemPart) {
+            if (this.repairItemTransaction == null) {
+                this.repairItemTransaction = new RepairItemTransaction(this, actions);
+            } else {
+                for (InventoryAction action : actions) {
+                    this.repairItemTransaction.addAction(action);
+                }
+            }
+            if (this.repairItemTransaction.canExecute()) {
+                this.repairItemTransaction.execute();
+                this.repairItemTransaction = null;
+            }
+            return;
+        } else if (this.craftingTransaction != null) {
+            if (craftingTransaction.checkForCraftingPart(actions)) {
+                for (InventoryAction action : actions) {
+                    craftingTransaction.addAction(action);
+                }
+                return;
+            } else {
+                this.server.getLogger().debug("Got unexpected normal inventory action with incomplete crafting transaction from " + this.username + ", refusing to execute crafting");
+                if (this.protocol >= ProtocolInfo.v1_16_0) {
+                    this.removeAllWindows(false);
+                    this.sendAllInventories();
+                }
+                this.craftingTransaction = null;
+            }
+        } else if (this.protocol >= ProtocolInfo.v1_16_0 && this.enchantTransaction != null) {
+            if (enchantTransaction.checkForEnchantPart(actions)) {
+                for (InventoryAction action : actions) {
+                    enchantTransaction.addAction(action);
+                }
+                return;
+            } else {
+                this.server.getLogger().debug("Got unexpected normal inventory action with incomplete enchanting transaction from " + this.username + ", refusing to execute enchant " + transactionPacket.toString());
+                this.removeAllWindows(false);
+                this.sendAllInventories();
+                this.enchantTransaction = null;
+            }
+        } else if (this.protocol >= ProtocolInfo.v1_16_0 && this.repairItemTransaction != null) {
+            if (RepairItemTransaction.checkForRepairItemPart(actions)) {
+                for (InventoryAction action : actions) {
+                    this.repairItemTransaction.addAction(action);
+                }
+                return;
+            } else {
+                this.server.getLogger().debug("Got unexpected normal inventory action with incomplete repair item transaction from " + this.username + ", refusing to execute repair item " + transactionPacket.toString());
+                this.removeAllWindows(false);
+                this.sendAllInventories();
+                this.repairItemTransaction = null;
+            }
+        }
+
+        BlockFace face;
+        Block block;
+        Item item;
+        switch (transactionPacket.transactionType) {
+            case InventoryTransactionPacket.TYPE_NORMAL:
+                InventoryTransaction transaction = new InventoryTransaction(this, actions);
+
+                if (!transaction.execute()) {
+                    this.server.getLogger().debug("Failed to execute inventory transaction from " + this.username + " with actions: " + Arrays.toString(transactionPacket.actions));
+                    failedTransactions++;
+                    if (failedTransactions > 10) {
+                        this.close("", "Too many failed inventory transactions");
                     }
+                    return;
+                }
 
-                    if (mapItem == null) {
-                        for (BlockEntity be : this.level.getBlockEntities().values()) {
-                            if (be instanceof BlockEntityItemFrame) {
-                                BlockEntityItemFrame itemFrame1 = (BlockEntityItemFrame) be;
+                return;
+            case InventoryTransactionPacket.TYPE_MISMATCH:
+                if (transactionPacket.actions.length > 0) {
+                    this.server.getLogger().debug("Expected 0 actions for mismatch, got " + transactionPacket.actions.length + ", " + Arrays.toString(transactionPacket.actions));
+                }
+                this.sendAllInventories();
 
-                                if (itemFrame1.getItem() instanceof ItemMap && ((ItemMap) itemFrame1.getItem()).getMapId() == pk.mapId) {
-                                    ((ItemMap) itemFrame1.getItem()).sendImage(this);
-                                    break;
-                                }
-                            }
+                return;
+            case InventoryTransactionPacket.TYPE_USE_ITEM:
+                UseItemData useItemData;
+                BlockVector3 blockVector;
+                int type;
+
+                try {
+                    useItemData = (UseItemData) transactionPacket.transactionData;
+                    blockVector = useItemData.blockPos;
+                    face = useItemData.face;
+                    type = useItemData.actionType;
+                } catch (Exception ignored) {
+                    return;
+                }
+
+                if (this.isBlocking()) {
+                    this.setBlocking(false);
+                }
+
+                switch (type) {
+                    case InventoryTransactionPacket.USE_ITEM_ACTION_CLICK_BLOCK:
+                        // Hack: Fix client spamming right clicks
+                        if (!server.doNotLimitInteractions && (lastRightClickPos != null && this.getInventory().getItemInHandFast().getBlockId() == BlockID.AIR && System.currentTimeMillis() - lastRightClickTime < 200.0 && blockVector.distanceSquared(lastRightClickPos) < 0.00001)) {
+                            return;
                         }
-                    } else {
-                        PlayerMapInfoRequestEvent event;
-                        getServer().getPluginManager().callEvent(event = new PlayerMapInfoRequestEvent(this, mapItem));
 
-                        if (!event.isCancelled()) {
-                            ItemMap map = (ItemMap) mapItem;
-                            if (map.trySendImage(this)) {
-                                return;
-                            }
-                            try {
-                                BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
-                                Graphics2D graphics = image.createGraphics();
-
-                                int worldX = (this.getFloorX () / 128) << 7;
-                                int worldZ = (this.getFloorZ () / 128) << 7;
-                                for (int x = 0; x < 128; x++) {
-                                    for (int y = 0; y < 128; y++) {
-                                        graphics.setColor(new Color(this.getLevel().getMapColorAt(worldX + x, worldZ + y).getRGB()));
-                                        graphics.fillRect(x, y, x + 1, y + 1);
+                        lastRightClickPos = blockVector.asVector3();
+                        lastRightClickTime = System.currentTimeMillis();
+
+                        this.setDataFlag(DATA_FLAGS, DATA_FLAG_ACTION, false);
+
+                        if (!(this.distance(blockVector.asVector3()) > (this.isCreative() ? 13 : 7))) {
+                            if (this.isCreative()) {
+                                if (this.level.useItemOn(blockVector.asVector3(), inventory.getItemInHand(), face, useItemData.clickPos.x, useItemData.clickPos.y, useItemData.clickPos.z, this) != null) {
+                                    return;
+                                }
+                            } else if (inventory.getItemInHand().equals(useItemData.itemInHand)) {
+                                Item i = inventory.getItemInHand();
+                                Item oldItem = i.clone();
+                                if ((i = this.level.useItemOn(blockVector.asVector3(), i, face, useItemData.clickPos.x, useItemData.clickPos.y, useItemData.clickPos.z, this)) != null) {
+                                    if (!i.equals(oldItem) || i.getCount() != oldItem.getCount()) {
+                                        if (oldItem.getId() == i.getId() || i.getId() == 0) {
+                                            inventory.setItemInHand(i);
+                                        } else {
+                                            server.getLogger().debug("Tried to set item " + i.getId() + " but " + this.username + " had item " + oldItem.getId() + " in their hand slot");
+                                        }
+                                        inventory.sendHeldItem(this.getViewers().values());
                                     }
+                                    return;
                                 }
-
-                                map.setImage(image);
-                                map.sendImage(this);
-                            } catch (Exception ex) {
-                                this.getServer().getLogger().debug("There was an error while generating map image", ex);
                             }
                         }
-                    }
 
-                    break;
-                case ProtocolInfo.LEVEL_SOUND_EVENT_PACKET:
-                case ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V1:
-                case ProtocolInfo.LEVEL_SOUND_EVENT_PACKET_V2:
-                    if (this.isSpectator()) {
-                        if (((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_HIT || ((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_ATTACK_NODAMAGE || ((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_ATTACK || ((LevelSoundEventPacket) packet).sound == LevelSoundEventPacket.SOUND_ATTACK_STRONG) {
-                            break;
+                        inventory.sendHeldItem(this);
+
+                        if (blockVector.distanceSquared(this) > 10000) {
+                            return;
                         }
-                    }
-                    this.level.addChunkPacket(this.getChunkX(), this.getChunkZ(), packet);
-                    break;
-                case ProtocolInfo.INVENTORY_TRANSACTION_PACKET:
-                    if (this.isSpectator()) {
-                        this.sendAllInventories();
-                        break;
-                    }
 
-                    InventoryTransactionPacket transactionPacket = (InventoryTransactionPacket) packet;
+                        Block target = this.level.getBlock(blockVector.asVector3());
+                        block = target.getSide(face);
 
-                    List<InventoryAction> actions = new ArrayList<>();
-                    for (NetworkInventoryAction networkInventoryAction : transactionPacket.actions) {
-                        InventoryAction a = networkInventoryAction.createInventoryAction(this);
+                        this.level.sendBlocks(this, new Block[]{target, block}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
 
-                        if (a == null) {
-                            this.getServer().getLogger().debug("Unmatched inventory action from " + this.username + ": " + networkInventoryAction);
-                            this.sendAllInventories();
-                            break packetswitch;
-                        }
+                        if (target instanceof BlockDoor) {
+                            BlockDoor door = (BlockDoor) target;
 
-                        actions.add(a);
-                    }
+                            Block part;
 
-                    if (transactionPacket.isCraftingPart) {
-                        if (this.craftingTransaction == null) {
-                            this.craftingTransaction = new CraftingTransaction(this, actions);
-                        } else {
-                            for (InventoryAction action : actions) {
-                                this.craftingTransaction.addAction(action);
-                            }
-                        }
+                            if ((door.getDamage() & 0x08) > 0) {
+                                part = target.down();
 
-                        if (this.craftingTransaction.getPrimaryOutput() != null && this.craftingTransaction.canExecute()) {
-                            try {
-                                this.craftingTransaction.execute();
-                            } catch (Exception e) {
-                                this.server.getLogger().debug("Executing crafting transaction failed");
-                            }
-                            this.craftingTransaction = null;
-                        }
-                        return;
-                    } else if (this.protocol >= ProtocolInfo.v1_16_0 && transactionPacket.isEnchantingPart) {
-                        if (this.enchantTransaction == null) {
-                            this.enchantTransaction = new EnchantTransaction(this, actions);
-                        } else {
-                            for (InventoryAction action : actions) {
-                                this.enchantTransaction.addAction(action);
-                            }
-                        }
-                        if (this.enchantTransaction.canExecute()) {
-                            this.enchantTransaction.execute();
-                            this.enchantTransaction = null;
-                        }
-                        return;
-                    } else if (this.protocol >= ProtocolInfo.v1_16_0 && transactionPacket.isRepairItemPart) {
-                        if (this.repairItemTransaction == null) {
-                            this.repairItemTransaction = new RepairItemTransaction(this, actions);
-                        } else {
-                            for (InventoryAction action : actions) {
-                                this.repairItemTransaction.addAction(action);
+                                if (part.getId() == target.getId()) {
+                                    target = part;
+
+                                    this.level.sendBlocks(this, new Block[]{target}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
+                                }
                             }
                         }
-                        if (this.repairItemTransaction.canExecute()) {
-                            this.repairItemTransaction.execute();
-                            this.repairItemTransaction = null;
-                        }
                         return;
-                    } else if (this.craftingTransaction != null) {
-                        if (craftingTransaction.checkForCraftingPart(actions)) {
-                            for (InventoryAction action : actions) {
-                                craftingTransaction.addAction(action);
-                            }
-                            return;
-                        } else {
-                            this.server.getLogger().debug("Got unexpected normal inventory action with incomplete crafting transaction from " + this.username + ", refusing to execute crafting");
-                            if (this.protocol >= ProtocolInfo.v1_16_0) {
-                                this.removeAllWindows(false);
-                                this.sendAllInventories();
-                            }
-                            this.craftingTransaction = null;
-                        }
-                    } else if (this.protocol >= ProtocolInfo.v1_16_0 && this.enchantTransaction != null) {
-                        if (enchantTransaction.checkForEnchantPart(actions)) {
-                            for (InventoryAction action : actions) {
-                                enchantTransaction.addAction(action);
-                            }
-                            return;
-                        } else {
-                            this.server.getLogger().debug("Got unexpected normal inventory action with incomplete enchanting transaction from " + this.username + ", refusing to execute enchant " + transactionPacket.toString());
-                            this.removeAllWindows(false);
-                            this.sendAllInventories();
-                            this.enchantTransaction = null;
-                        }
-                    } else if (this.protocol >= ProtocolInfo.v1_16_0 && this.repairItemTransaction != null) {
-                        if (RepairItemTransaction.checkForRepairItemPart(actions)) {
-                            for (InventoryAction action : actions) {
-                                this.repairItemTransaction.addAction(action);
-                            }
+                    case InventoryTransactionPacket.USE_ITEM_ACTION_BREAK_BLOCK:
+                        if (!this.spawned || !this.isAlive()) {
                             return;
-                        } else {
-                            this.server.getLogger().debug("Got unexpected normal inventory action with incomplete repair item transaction from " + this.username + ", refusing to execute repair item " + transactionPacket.toString());
-                            this.removeAllWindows(false);
-                            this.sendAllInventories();
-                            this.repairItemTransaction = null;
                         }
-                    }
-
-                    switch (transactionPacket.transactionType) {
-                        case InventoryTransactionPacket.TYPE_NORMAL:
-                            InventoryTransaction transaction = new InventoryTransaction(this, actions);
-
-                            if (!transaction.execute()) {
-                                this.server.getLogger().debug("Failed to execute inventory transaction from " + this.username + " with actions: " + Arrays.toString(transactionPacket.actions));
-                                failedTransactions++;
-                                if (failedTransactions > 10) {
-                                    this.close("", "Too many failed inventory transactions");
-                                }
-                                break packetswitch;
-                            }
 
-                            break packetswitch;
-                        case InventoryTransactionPacket.TYPE_MISMATCH:
-                            if (transactionPacket.actions.length > 0) {
-                                this.server.getLogger().debug("Expected 0 actions for mismatch, got " + transactionPacket.actions.length + ", " + Arrays.toString(transactionPacket.actions));
-                            }
-                            this.sendAllInventories();
-
-                            break packetswitch;
-                        case InventoryTransactionPacket.TYPE_USE_ITEM:
-                            UseItemData useItemData;
-                            BlockVector3 blockVector;
-                            int type;
-
-                            try {
-                                useItemData = (UseItemData) transactionPacket.transactionData;
-                                blockVector = useItemData.blockPos;
-                                face = useItemData.face;
-                                type = useItemData.actionType;
-                            } catch (Exception ignored) {
-                                break packetswitch;
-                            }
+                        this.resetCraftingGridType();
 
-                            if (this.isBlocking()) {
-                                this.setBlocking(false);
-                            }
+                        Item i = this.getInventory().getItemInHand();
 
-                            switch (type) {
-                                case InventoryTransactionPacket.USE_ITEM_ACTION_CLICK_BLOCK:
-                                    // Hack: Fix client spamming right clicks
-                                    if (!server.doNotLimitInteractions && (lastRightClickPos != null && this.getInventory().getItemInHandFast().getBlockId() == BlockID.AIR && System.currentTimeMillis() - lastRightClickTime < 200.0 && blockVector.distanceSquared(lastRightClickPos) < 0.00001)) {
-                                        return;
-                                    }
+                        Item oldItem = i.clone();
 
-                                    lastRightClickPos = blockVector.asVector3();
-                                    lastRightClickTime = System.currentTimeMillis();
-
-                                    this.setDataFlag(DATA_FLAGS, DATA_FLAG_ACTION, false);
-
-                                    if (!(this.distance(blockVector.asVector3()) > (this.isCreative() ? 13 : 7))) {
-                                        if (this.isCreative()) {
-                                            if (this.level.useItemOn(blockVector.asVector3(), inventory.getItemInHand(), face, useItemData.clickPos.x, useItemData.clickPos.y, useItemData.clickPos.z, this) != null) {
-                                                break packetswitch;
-                                            }
-                                        } else if (inventory.getItemInHand().equals(useItemData.itemInHand)) {
-                                            Item i = inventory.getItemInHand();
-                                            Item oldItem = i.clone();
-                                            if ((i = this.level.useItemOn(blockVector.asVector3(), i, face, useItemData.clickPos.x, useItemData.clickPos.y, useItemData.clickPos.z, this)) != null) {
-                                                if (!i.equals(oldItem) || i.getCount() != oldItem.getCount()) {
-                                                    if (oldItem.getId() == i.getId() || i.getId() == 0) {
-                                                        inventory.setItemInHand(i);
-                                                    } else {
-                                                        server.getLogger().debug("Tried to set item " + i.getId() + " but " + this.username + " had item " + oldItem.getId() + " in their hand slot");
-                                                    }
-                                                    inventory.sendHeldItem(this.getViewers().values());
-                                                }
-                                                break packetswitch;
-                                            }
-                                        }
+                        if (this.canInteract(blockVector.add(0.5, 0.5, 0.5), this.isCreative() ? 13 : 7) && (i = this.level.useBreakOn(blockVector.asVector3(), face, i, this, true)) != null) {
+                            if (this.isSurvival() || this.isAdventure()) {
+                                this.foodData.updateFoodExpLevel(0.025);
+                                if (!i.equals(oldItem) || i.getCount() != oldItem.getCount()) {
+                                    if (oldItem.getId() == i.getId() || i.getId() == 0) {
+                                        inventory.setItemInHand(i);
+                                    } else {
+                                        server.getLogger().debug("Tried to set item " + i.getId() + " but " + this.username + " had item " + oldItem.getId() + " in their hand slot");
                                     }
+                                    inventory.sendHeldItem(this.getViewers().values());
+                                }
+                            }
+                            return;
+                        }
 
-                                    inventory.sendHeldItem(this);
+                        inventory.sendContents(this);
+                        target = this.level.getBlock(blockVector.asVector3());
+                        BlockEntity blockEntity = this.level.getBlockEntity(blockVector.asVector3());
 
-                                    if (blockVector.distanceSquared(this) > 10000) {
-                                        break packetswitch;
-                                    }
+                        this.level.sendBlocks(this, new Block[]{target}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
 
-                                    Block target = this.level.getBlock(blockVector.asVector3());
-                                    block = target.getSide(face);
+                        inventory.sendHeldItem(this);
 
-                                    this.level.sendBlocks(this, new Block[]{target, block}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
+                        if (blockEntity instanceof BlockEntitySpawnable) {
+                            ((BlockEntitySpawnable) blockEntity).spawnTo(this);
+                        }
 
-                                    if (target instanceof BlockDoor) {
-                                        BlockDoor door = (BlockDoor) target;
+                        return;
+                    case InventoryTransactionPacket.USE_ITEM_ACTION_CLICK_AIR:
+                        Vector3 directionVector = this.getDirectionVector();
 
-                                        Block part;
+                        item = this.inventory.getItemInHand();
 
-                                        if ((door.getDamage() & 0x08) > 0) {
-                                            part = target.down();
+                        if (item instanceof ItemCrossbow) {
+                            if (!item.onClickAir(this, directionVector)) {
+                                return; // Shoot
+                            }
+                        }
 
-                                            if (part.getId() == target.getId()) {
-                                                target = part;
+                        if (!item.equals(useItemData.itemInHand)) {
+                            this.inventory.sendHeldItem(this);
+                            return;
+                        }
 
-                                                this.level.sendBlocks(this, new Block[]{target}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
-                                            }
-                                        }
-                                    }
-                                    break packetswitch;
-                                case InventoryTransactionPacket.USE_ITEM_ACTION_BREAK_BLOCK:
-                                    if (!this.spawned || !this.isAlive()) {
-                                        break packetswitch;
-                                    }
+                        PlayerInteractEvent interactEvent = new PlayerInteractEvent(this, item, directionVector, face, Action.RIGHT_CLICK_AIR);
 
-                                    this.resetCraftingGridType();
+                        this.server.getPluginManager().callEvent(interactEvent);
 
-                                    Item i = this.getInventory().getItemInHand();
+                        if (interactEvent.isCancelled()) {
+                            this.inventory.sendHeldItem(this);
+                            return;
+                        }
 
-                                    Item oldItem = i.clone();
+                        if (item.onClickAir(this, directionVector)) {
+                            if (this.isSurvival() || this.isAdventure()) {
+                                if (this.inventory.getItemInHand().getId() == item.getId() || item.getId() == 0) {
+                                    this.inventory.setItemInHand(item);
+                                } else {
+                                    server.getLogger().debug("Tried to set item " + item.getId() + " but " + this.username + " had item " + this.inventory.getItemInHand().getId() + " in their hand slot");
+                                }
+                            }
 
-                                    if (this.canInteract(blockVector.add(0.5, 0.5, 0.5), this.isCreative() ? 13 : 7) && (i = this.level.useBreakOn(blockVector.asVector3(), face, i, this, true)) != null) {
-                                        if (this.isSurvival() || this.isAdventure()) {
-                                            this.foodData.updateFoodExpLevel(0.025);
-                                            if (!i.equals(oldItem) || i.getCount() != oldItem.getCount()) {
-                                                if (oldItem.getId() == i.getId() || i.getId() == 0) {
-                                                    inventory.setItemInHand(i);
-                                                } else {
-                                                    server.getLogger().debug("Tried to set item " + i.getId() + " but " + this.username + " had item " + oldItem.getId() + " in their hand slot");
-                                                }
-                                                inventory.sendHeldItem(this.getViewers().values());
-                                            }
-                                        }
-                                        break packetswitch;
-                                    }
+                            if (!this.isUsingItem()) {
+                                this.setUsingItem(true);
+                                return;
+                            }
 
-                                    inventory.sendContents(this);
-                                    target = this.level.getBlock(blockVector.asVector3());
-                                    BlockEntity blockEntity = this.level.getBlockEntity(blockVector.asVector3());
+                            // Used item
+                            int ticksUsed = this.server.getTick() - this.startAction;
+                            this.setUsingItem(false);
+                            if (!item.onUse(this, ticksUsed)) {
+                                this.inventory.sendContents(this);
+                            }
+                        }
 
-                                    this.level.sendBlocks(this, new Block[]{target}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
+                        return;
+                    default:
+                        break;
+                }
+                break;
+            case InventoryTransactionPacket.TYPE_USE_ITEM_ON_ENTITY:
+                UseItemOnEntityData useItemOnEntityData = (UseItemOnEntityData) transactionPacket.transactionData;
 
-                                    inventory.sendHeldItem(this);
+                Entity target = this.level.getEntity(useItemOnEntityData.entityRuntimeId);
+                if (target == null) {
+                    return;
+                }
 
-                                    if (blockEntity instanceof BlockEntitySpawnable) {
-                                        ((BlockEntitySpawnable) blockEntity).spawnTo(this);
-                                    }
+                type = useItemOnEntityData.actionType;
 
-                                    break packetswitch;
-                                case InventoryTransactionPacket.USE_ITEM_ACTION_CLICK_AIR:
-                                    Vector3 directionVector = this.getDirectionVector();
+                if (!useItemOnEntityData.itemInHand.equalsExact(this.inventory.getItemInHand())) {
+                    this.inventory.sendHeldItem(this);
+                }
 
-                                    item = this.inventory.getItemInHand();
+                item = this.inventory.getItemInHand();
 
-                                    if (item instanceof ItemCrossbow) {
-                                        if (!item.onClickAir(this, directionVector)) {
-                                            return; // Shoot
-                                        }
-                                    }
+                switch (type) {
+                    case InventoryTransactionPacket.USE_ITEM_ON_ENTITY_ACTION_INTERACT:
+                        PlayerInteractEntityEvent playerInteractEntityEvent = new PlayerInteractEntityEvent(this, target, item, useItemOnEntityData.clickPos);
+                        if (this.isSpectator()) playerInteractEntityEvent.setCancelled();
+                        getServer().getPluginManager().callEvent(playerInteractEntityEvent);
 
-                                    if (!item.equals(useItemData.itemInHand)) {
-                                        this.inventory.sendHeldItem(this);
-                                        break packetswitch;
-                                    }
+                        if (playerInteractEntityEvent.isCancelled()) {
+                            break;
+                        }
 
-                                    PlayerInteractEvent interactEvent = new PlayerInteractEvent(this, item, directionVector, face, Action.RIGHT_CLICK_AIR);
+                        if (target.onInteract(this, item, useItemOnEntityData.clickPos) && (this.isSurvival() || this.isAdventure())) {
+                            if (item.isTool()) {
+                                if (item.useOn(target) && item.getDamage() >= item.getMaxDurability()) {
+                                    item = new ItemBlock(Block.get(BlockID.AIR));
+                                }
+                            } else {
+                                if (item.count > 1) {
+                                    item.count--;
+                                } else {
+                                    item = new ItemBlock(Block.get(BlockID.AIR));
+                                }
+                            }
 
-                                    this.server.getPluginManager().callEvent(interactEvent);
+                            if (this.inventory.getItemInHand().getId() == item.getId() || item.getId() == 0) {
+                                this.inventory.setItemInHand(item);
+                            } else {
+                                server.getLogger().debug("Tried to set item " + item.getId() + " but " + this.username + " had item " + this.inventory.getItemInHand().getId() + " in their hand slot");
+                            }
+                        }
+                        break;
+                    case InventoryTransactionPacket.USE_ITEM_ON_ENTITY_ACTION_ATTACK:
+                        if (target.getId() == this.getId()) {
+                            return;
+                        }
 
-                                    if (interactEvent.isCancelled()) {
-                                        this.inventory.sendHeldItem(this);
-                                        break packetswitch;
-                                    }
+                        float itemDamage = item.getAttackDamage();
+                        for (Enchantment enchantment : item.getEnchantments()) {
+                            itemDamage += enchantment.getDamageBonus(target);
+                        }
 
-                                    if (item.onClickAir(this, directionVector)) {
-                                        if (this.isSurvival() || this.isAdventure()) {
-                                            if (this.inventory.getItemInHand().getId() == item.getId() || item.getId() == 0) {
-                                                this.inventory.setItemInHand(item);
-                                            } else {
-                                                server.getLogger().debug("Tried to set item " + item.getId() + " but " + this.username + " had item " + this.inventory.getItemInHand().getId() + " in their hand slot");
-                                            }
-                                        }
+                        Map<DamageModifier, Float> damage = new EnumMap<>(DamageModifier.class);
+                        damage.put(DamageModifier.BASE, itemDamage);
 
-                                        if (!this.isUsingItem()) {
-                                            this.setUsingItem(true);
-                                            break packetswitch;
-                                        }
+                        if (!this.canInteractEntity(target, isCreative() ? 8 : 5)) {
+                            break;
+                        } else if (target instanceof Player) {
+                            if ((((Player) target).gamemode & 0x01) > 0) {
+                                break;
+                            } else if (!this.server.pvp) {
+                                break;
+                            }
+                        }
 
-                                        // Used item
-                                        int ticksUsed = this.server.getTick() - this.startAction;
-                                        this.setUsingItem(false);
-                                        if (!item.onUse(this, ticksUsed)) {
-                                            this.inventory.sendContents(this);
-                                        }
-                                    }
+                        EntityDamageByEntityEvent entityDamageByEntityEvent = new EntityDamageByEntityEvent(this, target, DamageCause.ENTITY_ATTACK, damage);
+                        if (this.isSpectator()) entityDamageByEntityEvent.setCancelled();
+                        if ((target instanceof Player) && !this.level.getGameRules().getBoolean(GameRule.PVP)) {
+                            entityDamageByEntityEvent.setCancelled();
+                        }
 
-                                    break packetswitch;
-                                default:
-                                    break;
+                        if (!target.attack(entityDamageByEntityEvent)) {
+                            if (item.isTool() && !this.isCreative()) {
+                                this.inventory.sendContents(this);
                             }
                             break;
-                        case InventoryTransactionPacket.TYPE_USE_ITEM_ON_ENTITY:
-                            UseItemOnEntityData useItemOnEntityData = (UseItemOnEntityData) transactionPacket.transactionData;
+                        }
 
-                            Entity target = this.level.getEntity(useItemOnEntityData.entityRuntimeId);
-                            if (target == null) {
-                                return;
-                            }
+                        for (Enchantment enchantment : item.getEnchantments()) {
+                            enchantment.doPostAttack(this, target);
+                        }
 
-                            type = useItemOnEntityData.actionType;
+                        if (item.isTool() && !this.isCreative()) {
+                            if (item.useOn(target) && item.getDamage() >= item.getMaxDurability()) {
+                                this.inventory.setItemInHand(Item.get(0));
+                            } else {
+                                if (this.inventory.getItemInHand().getId() == item.getId() || item.getId() == 0) {
+                                    this.inventory.setItemInHand(item);
+                                } else {
+                                    server.getLogger().debug("Tried to set item " + item.getId() + " but " + this.username + " had item " + this.inventory.getItemInHand().getId() + " in their hand slot");
+                                }
+                            }
+                        }
+                        return;
+                    default:
+                        break;
+                }
 
-                            if (!useItemOnEntityData.itemInHand.equalsExact(this.inventory.getItemInHand())) {
-                                this.inventory.sendHeldItem(this);
+                break;
+            case InventoryTransactionPacket.TYPE_RELEASE_ITEM:
+                if (this.isSpectator()) {
+                    this.sendAllInventories();
+                    return;
+                }
+                ReleaseItemData releaseItemData = (ReleaseItemData) transactionPacket.transactionData;
+
+                try {
+                    type = releaseItemData.actionType;
+                    switch (type) {
+                        case InventoryTransactionPacket.RELEASE_ITEM_ACTION_RELEASE:
+                            if (this.isUsingItem()) {
+                                item = this.inventory.getItemInHand();
+                                int ticksUsed = this.server.getTick() - this.startAction;
+                                if (!item.onRelease(this, ticksUsed)) {
+                                    this.inventory.sendContents(this);
+                                }
+                                this.setUsingItem(false);
+                            } else {
+                                this.inventory.sendContents(this);
                             }
+                            return;
+                        case InventoryTransactionPacket.RELEASE_ITEM_ACTION_CONSUME:
+                            if (this.protocol >= 388) break; // Usage of potions on 1.13 and later is handled at ItemPotion#onUse
+                            Item itemInHand = this.inventory.getItemInHand();
+                            PlayerItemConsumeEvent consumeEvent = new PlayerItemConsumeEvent(this, itemInHand);
 
-                            item = this.inventory.getItemInHand();
+                            if (itemInHand.getId() == Item.POTION) {
+                                this.server.getPluginManager().callEvent(consumeEvent);
+                                if (consumeEvent.isCancelled()) {
+                                    this.inventory.sendContents(this);
+                                    break;
+                                }
+                                Potion potion = Potion.getPotion(itemInHand.getDamage());
 
-                            switch (type) {
-                                case InventoryTransactionPacket.USE_ITEM_ON_ENTITY_ACTION_INTERACT:
-                                    PlayerInteractEntityEvent playerInteractEntityEvent = new PlayerInteractEntityEvent(this, target, item, useItemOnEntityData.clickPos);
-                                    if (this.isSpectator()) playerInteractEntityEvent.setCancelled();
-                                    getServer().getPluginManager().callEvent(playerInteractEntityEvent);
+                                if (this.gamemode == SURVIVAL || this.gamemode == ADVENTURE) {
+                                    this.getInventory().decreaseCount(this.getInventory().getHeldItemIndex());
+                                    this.inventory.addItem(new ItemGlassBottle());
+                                }
 
-                                    if (playerInteractEntityEvent.isCancelled()) {
-                                        break;
-                                    }
+                                if (potion != null) {
+                                    potion.applyPotion(this);
+                                }
+                            } else { // Food
+                                this.server.getPluginManager().callEvent(consumeEvent);
+                                if (consumeEvent.isCancelled()) {
+                                    this.inventory.sendContents(this);
+                                    break;
+                                }
 
-                                    if (target.onInteract(this, item, useItemOnEntityData.clickPos) && (this.isSurvival() || this.isAdventure())) {
-                                        if (item.isTool()) {
-                                            if (item.useOn(target) && item.getDamage() >= item.getMaxDurability()) {
-                                                item = new ItemBlock(Block.get(BlockID.AIR));
-                                            }
-                                        } else {
-                                            if (item.count > 1) {
-                                                item.count--;
-                                            } else {
-                                                item = new ItemBlock(Block.get(BlockID.AIR));
-                                            }
-                                        }
+                                Food food = Food.getByRelative(itemInHand);
+                                if (food != null && food.eatenBy(this)) {
+                                    this.getInventory().decreaseCount(this.getInventory().getHeldItemIndex());
+                                }
+                            }
+                            return;
+                        default:
+                            break;
+                    }
+                } finally {
+                    this.setUsingItem(false);
+                }
+                break;
+            default:
+                this.inventory.sendContents(this);
+                break;
+        }
+    }
 
-                                        if (this.inventory.getItemInHand().getId() == item.getId() || item.getId() == 0) {
-                                            this.inventory.setItemInHand(item);
-                                        } else {
-                                            server.getLogger().debug("Tried to set item " + item.getId() + " but " + this.username + " had item " + this.inventory.getItemInHand().getId() + " in their hand slot");
-                                        }
-                                    }
-                                    break;
-                                case InventoryTransactionPacket.USE_ITEM_ON_ENTITY_ACTION_ATTACK:
-                                    if (target.getId() == this.getId()) {
-                                        return;
-                                    }
+    private void handlePlayerHotbar(DataPacket packet) {
+        PlayerHotbarPacket hotbarPacket = (PlayerHotbarPacket) packet;
 
-                                    float itemDamage = item.getAttackDamage();
-                                    for (Enchantment enchantment : item.getEnchantments()) {
-                                        itemDamage += enchantment.getDamageBonus(target);
-                                    }
+        if (hotbarPacket.windowId != ContainerIds.INVENTORY) {
+            return;
+        }
 
-                                    Map<DamageModifier, Float> damage = new EnumMap<>(DamageModifier.class);
-                                    damage.put(DamageModifier.BASE, itemDamage);
+        this.inventory.equipItem(hotbarPacket.selectedHotbarSlot);
+    }
 
-                                    if (!this.canInteractEntity(target, isCreative() ? 8 : 5)) {
-                                        break;
-                                    } else if (target instanceof Player) {
-                                        if ((((Player) target).gamemode & 0x01) > 0) {
-                                            break;
-                                        } else if (!this.server.pvp) {
-                                            break;
-                                        }
-                                    }
+    private void handleServerSettingsRequest(DataPacket packet) {
+        PlayerServerSettingsRequestEvent settingsRequestEvent = new PlayerServerSettingsRequestEvent(this, new HashMap<>(this.serverSettings));
+        this.getServer().getPluginManager().callEvent(settingsRequestEvent);
 
-                                    EntityDamageByEntityEvent entityDamageByEntityEvent = new EntityDamageByEntityEvent(this, target, DamageCause.ENTITY_ATTACK, damage);
-                                    if (this.isSpectator()) entityDamageByEntityEvent.setCancelled();
-                                    if ((target instanceof Player) && !this.level.getGameRules().getBoolean(GameRule.PVP)) {
-                                        entityDamageByEntityEvent.setCancelled();
-                                    }
+        if (!settingsRequestEvent.isCancelled()) {
+            settingsRequestEvent.getSettings().forEach((id, window) -> {
+                ServerSettingsResponsePacket re = new ServerSettingsResponsePacket();
+                re.formId = id;
+                re.data = window.getJSONData();
+                this.dataPacket(re);
+            });
+        }
+    }
 
-                                    if (!target.attack(entityDamageByEntityEvent)) {
-                                        if (item.isTool() && !this.isCreative()) {
-                                            this.inventory.sendContents(this);
-                                        }
-                                        break;
-                                    }
+    private void handleSetLocalPlayerAsInitialized(DataPacket packet) {
+        if (this.locallyInitialized || this.protocol <= 274) {
+            return;
+        }
 
-                                    for (Enchantment enchantment : item.getEnchantments()) {
-                                        enchantment.doPostAttack(this, target);
-                                    }
+        this.doFirstSpawn();
+    }
 
-                                    if (item.isTool() && !this.isCreative()) {
-                                        if (item.useOn(target) && item.getDamage() >= item.getMaxDurability()) {
-                                            this.inventory.setItemInHand(Item.get(0));
-                                        } else {
-                                            if (this.inventory.getItemInHand().getId() == item.getId() || item.getId() == 0) {
-                                                this.inventory.setItemInHand(item);
-                                            } else {
-                                                server.getLogger().debug("Tried to set item " + item.getId() + " but " + this.username + " had item " + this.inventory.getItemInHand().getId() + " in their hand slot");
-                                            }
-                                        }
-                                    }
-                                    return;
-                                default:
-                                    break;
-                            }
+    private void handleRespawn(DataPacket packet) {
+        if (this.isAlive() || this.protocol < 388) {
+            return;
+        }
 
-                            break;
-                        case InventoryTransactionPacket.TYPE_RELEASE_ITEM:
-                            if (this.isSpectator()) {
-                                this.sendAllInventories();
-                                break packetswitch;
-                            }
-                            ReleaseItemData releaseItemData = (ReleaseItemData) transactionPacket.transactionData;
-
-                            try {
-                                type = releaseItemData.actionType;
-                                switch (type) {
-                                    case InventoryTransactionPacket.RELEASE_ITEM_ACTION_RELEASE:
-                                        if (this.isUsingItem()) {
-                                            item = this.inventory.getItemInHand();
-                                            int ticksUsed = this.server.getTick() - this.startAction;
-                                            if (!item.onRelease(this, ticksUsed)) {
-                                                this.inventory.sendContents(this);
-                                            }
-                                            this.setUsingItem(false);
-                                        } else {
-                                            this.inventory.sendContents(this);
-                                        }
-                                        return;
-                                    case InventoryTransactionPacket.RELEASE_ITEM_ACTION_CONSUME:
-                                        if (this.protocol >= 388) break; // Usage of potions on 1.13 and later is handled at ItemPotion#onUse
-                                        Item itemInHand = this.inventory.getItemInHand();
-                                        PlayerItemConsumeEvent consumeEvent = new PlayerItemConsumeEvent(this, itemInHand);
-
-                                        if (itemInHand.getId() == Item.POTION) {
-                                            this.server.getPluginManager().callEvent(consumeEvent);
-                                            if (consumeEvent.isCancelled()) {
-                                                this.inventory.sendContents(this);
-                                                break;
-                                            }
-                                            Potion potion = Potion.getPotion(itemInHand.getDamage());
-
-                                            if (this.gamemode == SURVIVAL || this.gamemode == ADVENTURE) {
-                                                this.getInventory().decreaseCount(this.getInventory().getHeldItemIndex());
-                                                this.inventory.addItem(new ItemGlassBottle());
-                                            }
-
-                                            if (potion != null) {
-                                                potion.applyPotion(this);
-                                            }
-                                        } else { // Food
-                                            this.server.getPluginManager().callEvent(consumeEvent);
-                                            if (consumeEvent.isCancelled()) {
-                                                this.inventory.sendContents(this);
-                                                break;
-                                            }
-
-                                            Food food = Food.getByRelative(itemInHand);
-                                            if (food != null && food.eatenBy(this)) {
-                                                this.getInventory().decreaseCount(this.getInventory().getHeldItemIndex());
-                                            }
-                                        }
-                                        return;
-                                    default:
-                                        break;
-                                }
-                            } finally {
-                                this.setUsingItem(false);
-                            }
-                            break;
-                        default:
-                            this.inventory.sendContents(this);
-                            break;
-                    }
-                    break;
-                case ProtocolInfo.PLAYER_HOTBAR_PACKET:
-                    PlayerHotbarPacket hotbarPacket = (PlayerHotbarPacket) packet;
+        RespawnPacket respawnPacket = (RespawnPacket) packet;
+        if (respawnPacket.respawnState == RespawnPacket.STATE_CLIENT_READY_TO_SPAWN) {
+            RespawnPacket respawn1 = new RespawnPacket();
+            respawn1.x = (float) this.getX();
+            respawn1.y = (float) this.getY();
+            respawn1.z = (float) this.getZ();
+            respawn1.respawnState = RespawnPacket.STATE_READY_TO_SPAWN;
+            this.dataPacket(respawn1);
+        }
+    }
 
-                    if (hotbarPacket.windowId != ContainerIds.INVENTORY) {
-                        return;
-                    }
+    private void handleBookEdit(DataPacket packet) {
+        BookEditPacket bookEditPacket = (BookEditPacket) packet;
+        Item oldBook = this.inventory.getItem(bookEditPacket.inventorySlot);
+        if (oldBook.getId() != Item.BOOK_AND_QUILL) {
+            return;
+        }
 
-                    this.inventory.equipItem(hotbarPacket.selectedHotbarSlot);
-                    break;
-                case ProtocolInfo.SERVER_SETTINGS_REQUEST_PACKET:
-                    PlayerServerSettingsRequestEvent settingsRequestEvent = new PlayerServerSettingsRequestEvent(this, new HashMap<>(this.serverSettings));
-                    this.getServer().getPluginManager().callEvent(settingsRequestEvent);
-
-                    if (!settingsRequestEvent.isCancelled()) {
-                        settingsRequestEvent.getSettings().forEach((id, window) -> {
-                            ServerSettingsResponsePacket re = new ServerSettingsResponsePacket();
-                            re.formId = id;
-                            re.data = window.getJSONData();
-                            this.dataPacket(re);
-                        });
-                    }
-                    break;
-                case ProtocolInfo.SET_LOCAL_PLAYER_AS_INITIALIZED_PACKET:
-                    if (this.locallyInitialized || this.protocol <= 274) {
-                        return;
-                    }
+        if (bookEditPacket.text != null && bookEditPacket.text.length() > 256) {
+            return;
+        }
 
-                    this.doFirstSpawn();
-                    break;
-                case ProtocolInfo.RESPAWN_PACKET:
-                    if (this.isAlive() || this.protocol < 388) {
-                        break;
-                    }
+        Item newBook = oldBook.clone();
+        boolean success;
+        switch (bookEditPacket.action) {
+            case REPLACE_PAGE:
+                success = ((ItemBookAndQuill) newBook).setPageText(bookEditPacket.pageNumber, bookEditPacket.text);
+                break;
+            case ADD_PAGE:
+                success = ((ItemBookAndQuill) newBook).insertPage(bookEditPacket.pageNumber, bookEditPacket.text);
+                break;
+            case DELETE_PAGE:
+                success = ((ItemBookAndQuill) newBook).deletePage(bookEditPacket.pageNumber);
+                break;
+            case SWAP_PAGES:
+                success = ((ItemBookAndQuill) newBook).swapPages(bookEditPacket.pageNumber, bookEditPacket.secondaryPageNumber);
+                break;
+            case SIGN_BOOK:
+                newBook = Item.get(Item.WRITTEN_BOOK, 0, 1, oldBook.getCompoundTag());
+                success = ((ItemBookWritten) newBook).signBook(bookEditPacket.title, bookEditPacket.author, bookEditPacket.xuid, ItemBookWritten.GENERATION_ORIGINAL);
+                break;
+            default:
+                return;
+        }
 
-                    RespawnPacket respawnPacket = (RespawnPacket) packet;
-                    if (respawnPacket.respawnState == RespawnPacket.STATE_CLIENT_READY_TO_SPAWN) {
-                        RespawnPacket respawn1 = new RespawnPacket();
-                        respawn1.x = (float) this.getX();
-                        respawn1.y = (float) this.getY();
-                        respawn1.z = (float) this.getZ();
-                        respawn1.respawnState = RespawnPacket.STATE_READY_TO_SPAWN;
-                        this.dataPacket(respawn1);
-                    }
-                    break;
-                case ProtocolInfo.BOOK_EDIT_PACKET:
-                    BookEditPacket bookEditPacket = (BookEditPacket) packet;
-                    Item oldBook = this.inventory.getItem(bookEditPacket.inventorySlot);
-                    if (oldBook.getId() != Item.BOOK_AND_QUILL) {
-                        return;
-                    }
+        if (success) {
+            PlayerEditBookEvent editBookEvent = new PlayerEditBookEvent(this, oldBook, newBook, bookEditPacket.action);
+            this.server.getPluginManager().callEvent(editBookEvent);
+            if (!editBookEvent.isCancelled()) {
+                this.inventory.setItem(bookEditPacket.inventorySlot, editBookEvent.getNewBook());
+            }
+        }
+    }
 
-                    if (bookEditPacket.text != null && bookEditPacket.text.length() > 256) {
-                        return;
-                    }
+    private void handleFilterText(DataPacket packet) {
+        FilterTextPacket filterTextPacket = (FilterTextPacket) packet;
+        FilterTextPacket textResponsePacket = new FilterTextPacket();
+        textResponsePacket.text = filterTextPacket.text;
+        textResponsePacket.fromServer = true;
+        this.dataPacket(textResponsePacket);
+    }
 
-                    Item newBook = oldBook.clone();
-                    boolean success;
-                    switch (bookEditPacket.action) {
-                        case REPLACE_PAGE:
-                            success = ((ItemBookAndQuill) newBook).setPageText(bookEditPacket.pageNumber, bookEditPacket.text);
-                            break;
-                        case ADD_PAGE:
-                            success = ((ItemBookAndQuill) newBook).insertPage(bookEditPacket.pageNumber, bookEditPacket.text);
-                            break;
-                        case DELETE_PAGE:
-                            success = ((ItemBookAndQuill) newBook).deletePage(bookEditPacket.pageNumber);
-                            break;
-                        case SWAP_PAGES:
-                            success = ((ItemBookAndQuill) newBook).swapPages(bookEditPacket.pageNumber, bookEditPacket.secondaryPageNumber);
-                            break;
-                        case SIGN_BOOK:
-                            newBook = Item.get(Item.WRITTEN_BOOK, 0, 1, oldBook.getCompoundTag());
-                            success = ((ItemBookWritten) newBook).signBook(bookEditPacket.title, bookEditPacket.author, bookEditPacket.xuid, ItemBookWritten.GENERATION_ORIGINAL);
-                            break;
-                        default:
-                            return;
+    private void handlePacketViolationWarning(DataPacket packet) {
+        PacketViolationWarningPacket PVWpk = (PacketViolationWarningPacket) packet;
+        Optional<String> PVWpkName = Arrays.stream(ProtocolInfo.class.getDeclaredFields()).filter(field -> field.getType() == Byte.TYPE)
+                .filter(field -> {
+                    try {
+                        return field.getByte(null) == ((PacketViolationWarningPacket) packet).packetId;
+                    } catch (IllegalAccessException e) {
+                        return false;
                     }
+                }).map(Field::getName).findFirst();
+        this.getServer().getLogger().warning("PacketViolationWarningPacket" + PVWpkName.map(name -> " for packet " + name).orElse(" UNKNOWN") + " from " + this.username + ": " + PVWpk.toString());
+    }
 
-                    if (success) {
-                        PlayerEditBookEvent editBookEvent = new PlayerEditBookEvent(this, oldBook, newBook, bookEditPacket.action);
-                        this.server.getPluginManager().callEvent(editBookEvent);
-                        if (!editBookEvent.isCancelled()) {
-                            this.inventory.setItem(bookEditPacket.inventorySlot, editBookEvent.getNewBook());
-                        }
-                    }
-                    break;
-                case ProtocolInfo.FILTER_TEXT_PACKET:
-                    FilterTextPacket filterTextPacket = (FilterTextPacket) packet;
-                    FilterTextPacket textResponsePacket = new FilterTextPacket();
-                    textResponsePacket.text = filterTextPacket.text;
-                    textResponsePacket.fromServer = true;
-                    this.dataPacket(textResponsePacket);
-                    break;
-                case ProtocolInfo.PACKET_VIOLATION_WARNING_PACKET:
-                    PacketViolationWarningPacket PVWpk = (PacketViolationWarningPacket) packet;
-                    Optional<String> PVWpkName = Arrays.stream(ProtocolInfo.class.getDeclaredFields()).filter(field -> field.getType() == Byte.TYPE)
-                            .filter(field -> {
-                                try {
-                                    return field.getByte(null) == ((PacketViolationWarningPacket) packet).packetId;
-                                } catch (IllegalAccessException e) {
-                                    return false;
-                                }
-                            }).map(Field::getName).findFirst();
-                    this.getServer().getLogger().warning("PacketViolationWarningPacket" + PVWpkName.map(name -> " for packet " + name).orElse(" UNKNOWN") + " from " + this.username + ": " + PVWpk.toString());
-                    break;
-                case ProtocolInfo.EMOTE_PACKET:
-                    EmotePacket emotePacket = (EmotePacket) packet;
-                    this.emote(emotePacket);
-                    break;
-                default:
-                    break;
-            }
-        }
+    private void handleEmote(DataPacket packet) {
+        EmotePacket emotePacket = (EmotePacket) packet;
+        this.emote(emotePacket);
     }
 
     /**
@@ -4159,6 +4333,9 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
                 this.server.removeOnlinePlayer(this);
             }
 
+            MapData.removeViewerFromAll(this);
+            this.removeViewTicket();
+
             this.loggedIn = false;
 
             if (ev != null && !Objects.equals(this.username, "") && this.spawned && !Objects.equals(ev.getQuitMessage().toString(), "")) {
@@ -4175,6 +4352,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             this.windows.clear();
             this.usedChunks.clear();
             this.loadQueue.clear();
+            this.viewRadius = -1;
             this.hasSpawned.clear();
             this.spawnPosition = null;
 
@@ -4776,6 +4954,12 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             return false;
         }
 
+        if (location.level != null && location.level != this.level && LevelTickPool.isLevelTickThread()) {
+            // Can't be cancelled, no event listeners are registered while levels are ticked in parallel
+            this.server.getLevelTickPool().runAfterTick(() -> this.teleport(location, cause));
+            return true;
+        }
+
         Location from = this.getLocation();
         Location to = location;
 
@@ -5174,7 +5358,11 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
     @Override
     public void onChunkChanged(FullChunk chunk) {
-        this.usedChunks.remove(Level.chunkHash(chunk.getX(), chunk.getZ()));
+        long index = Level.chunkHash(chunk.getX(), chunk.getZ());
+        if (this.usedChunks.remove(index) != null) {
+            // Send it again
+            this.loadQueue.add(index, this.getChunkSendPriority(index));
+        }
     }
 
     @Override
@@ -5298,6 +5486,8 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
             this.dataPacket(spawnPosition);
 
             this.forceSendEmptyChunks();
+            MapData.removeViewerFromAll(this);
+            this.removeViewTicket();
 
             // Remove old chunks
             for (long index : new ArrayList<>(this.usedChunks.keySet())) {
@@ -5308,6 +5498,7 @@ public class Player extends EntityHuman implements CommandSender, InventoryHolde
 
             this.usedChunks.clear();
             this.loadQueue.clear();
+            this.viewRadius = -1;
 
             level.sendTime(this);
             level.sendWeather(this);
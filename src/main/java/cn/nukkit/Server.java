@@ -21,6 +21,7 @@ import cn.nukkit.event.server.BatchPacketsEvent;
 import cn.nukkit.event.server.PlayerDataSerializeEvent;
 import cn.nukkit.event.server.QueryRegenerateEvent;
 import cn.nukkit.event.server.ServerStopEvent;
+import cn.nukkit.inventory.BaseInventory;
 import cn.nukkit.inventory.CraftingManager;
 import cn.nukkit.inventory.Recipe;
 import cn.nukkit.item.Item;
@@ -37,6 +38,8 @@ import cn.nukkit.level.format.LevelProvider;
 import cn.nukkit.level.format.LevelProviderManager;
 import cn.nukkit.level.format.anvil.Anvil;
 import cn.nukkit.level.generator.*;
+import cn.nukkit.level.map.MapData;
+import cn.nukkit.level.util.ChunkPacketCache;
 import cn.nukkit.math.NukkitMath;
 import cn.nukkit.metadata.EntityMetadataStore;
 import cn.nukkit.metadata.LevelMetadataStore;
@@ -48,6 +51,7 @@ import cn.nukkit.nbt.tag.FloatTag;
 import cn.nukkit.nbt.tag.ListTag;
 import cn.nukkit.network.BatchingHelper;
 import cn.nukkit.network.Network;
+import cn.nukkit.network.PacketHandlerRegistry;
 import cn.nukkit.network.RakNetInterface;
 import cn.nukkit.network.SourceInterface;
 import cn.nukkit.network.protocol.DataPacket;
@@ -68,6 +72,8 @@ import cn.nukkit.plugin.service.ServiceManager;
 import cn.nukkit.potion.Effect;
 import cn.nukkit.potion.Potion;
 import cn.nukkit.resourcepacks.ResourcePackManager;
+import cn.nukkit.scheduler.ChunkLoadPool;
+import cn.nukkit.scheduler.LevelTickPool;
 import cn.nukkit.scheduler.ServerScheduler;
 import cn.nukkit.scheduler.Task;
 import cn.nukkit.utils.*;
@@ -147,6 +153,8 @@ public class Server {
     private final LevelMetadataStore levelMetadata;
     private final Network network;
 
+    private ChunkPacketCache chunkPacketCache;
+
     private boolean autoTickRate;
     private int autoTickRateLimit;
     private boolean alwaysTickPlayers;
@@ -210,6 +218,9 @@ public class Server {
 
     private SpawnerTask spawnerTask;
     private final BatchingHelper batchingHelper;
+    private LevelTickPool levelTickPool;
+    private boolean levelTickingSerial;
+    private ChunkLoadPool chunkLoadPool;
 
     /* Some settings */
     private String motd;
@@ -332,6 +343,19 @@ public class Server {
 
         this.batchingHelper = new BatchingHelper();
 
+        if (this.getPropertyBoolean("parallel-level-ticking", false)) {
+            int threads = this.getPropertyInt("parallel-level-ticking-threads", 0);
+            if (threads <= 0) {
+                threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            }
+            this.levelTickPool = new LevelTickPool(this, threads);
+            log.info("Parallel level ticking enabled with " + threads + " worker threads");
+        }
+
+        if (this.getPropertyBoolean("async-chunk-loading", true)) {
+            this.chunkLoadPool = new ChunkLoadPool(this, Math.max(1, this.getPropertyInt("async-chunk-loading-threads", 2)));
+        }
+
         if (this.getPropertyBoolean("enable-rcon", false)) {
             try {
                 this.rcon = new RCON(this, this.getPropertyString("rcon.password", ""), (!this.getIp().isEmpty()) ? this.getIp() : "0.0.0.0", this.getPropertyInt("rcon.port", this.getPort()));
@@ -414,6 +438,8 @@ public class Server {
 
         log.info(this.baseLang.translateString("nukkit.server.networkStart", new String[]{this.getIp().isEmpty() ? "*" : this.getIp(), String.valueOf(this.getPort())}));
         this.network = new Network(this);
+        Player.registerPacketHandlers(this.network.getPacketHandlers());
+        this.loadPacketRateLimits();
         this.network.setName(this.getMotd());
         this.network.setSubName(this.getSubMotd());
         this.network.registerInterface(new RakNetInterface(this));
@@ -738,6 +764,7 @@ public class Server {
         }
 
         this.loadSettings();
+        this.loadPacketRateLimits();
 
         this.banByIP.load();
         this.banByName.load();
@@ -809,6 +836,16 @@ public class Server {
             this.getLogger().debug("Closing BatchingHelper...");
             this.batchingHelper.shutdown();
 
+            if (this.levelTickPool != null) {
+                this.getLogger().debug("Stopping level tick workers...");
+                this.levelTickPool.shutdown();
+            }
+
+            if (this.chunkLoadPool != null) {
+                this.getLogger().debug("Stopping chunk loaders...");
+                this.chunkLoadPool.shutdownNow();
+            }
+
             this.getLogger().debug("Stopping network interfaces...");
             for (SourceInterface interfaz : this.network.getInterfaces()) {
                 interfaz.shutdown();
@@ -984,6 +1021,16 @@ public class Server {
         player.dataPacket(pk);
     }
 
+    /**
+     * Check whether a player has been added to the player list of all online players
+     *
+     * @param uuid player uuid
+     * @return player is listed
+     */
+    public boolean isInPlayerList(UUID uuid) {
+        return this.playerList.containsKey(uuid);
+    }
+
     public void sendFullPlayerListData(Player player) {
         PlayerListPacket pk = new PlayerListPacket();
         pk.type = PlayerListPacket.TYPE_ADD;
@@ -1025,39 +1072,53 @@ public class Server {
         }
 
         // Do level ticks
-        for (Level level : this.levelArray) {
-            if (level.getTickRate() > this.baseTickRate && --level.tickRateCounter > 0) {
-                continue;
+        // Event listeners expect to be called on the main thread, so levels are only ticked in parallel without them
+        boolean parallel = this.levelTickPool != null && !HandlerList.hasAnyRegisteredListeners();
+        if (this.levelTickPool != null && parallel == this.levelTickingSerial) {
+            this.levelTickingSerial = !parallel;
+            this.getLogger().info(parallel ? "Parallel level ticking resumed" : "Parallel level ticking paused while plugins have event listeners registered");
+        }
+        if (parallel) {
+            this.levelTickPool.tick(this.levelArray, level -> this.tickLevel(level, currentTick));
+        } else {
+            for (Level level : this.levelArray) {
+                this.tickLevel(level, currentTick);
             }
+        }
+    }
 
-            try {
-                long levelTime = System.currentTimeMillis();
-                level.doTick(currentTick);
-                int tickMs = (int) (System.currentTimeMillis() - levelTime);
-                level.tickRateTime = tickMs;
-
-                if (this.autoTickRate) {
-                    if (tickMs < 50 && level.getTickRate() > this.baseTickRate) {
-                        int r;
-                        level.setTickRate(r = level.getTickRate() - 1);
-                        if (r > this.baseTickRate) {
-                            level.tickRateCounter = level.getTickRate();
-                        }
-                        this.getLogger().debug("Raising level \"" + level.getName() + "\" tick rate to " + level.getTickRate() + " ticks");
-                    } else if (tickMs >= 50) {
-                        if (level.getTickRate() == this.baseTickRate) {
-                            level.setTickRate(Math.max(this.baseTickRate + 1, Math.min(this.autoTickRateLimit, tickMs / 50)));
-                            this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
-                        } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < this.autoTickRateLimit) {
-                            level.setTickRate(level.getTickRate() + 1);
-                            this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
-                        }
+    private void tickLevel(Level level, int currentTick) {
+        if (level.getTickRate() > this.baseTickRate && --level.tickRateCounter > 0) {
+            return;
+        }
+
+        try {
+            long levelTime = System.currentTimeMillis();
+            level.doTick(currentTick);
+            int tickMs = (int) (System.currentTimeMillis() - levelTime);
+            level.tickRateTime = tickMs;
+
+            if (this.autoTickRate) {
+                if (tickMs < 50 && level.getTickRate() > this.baseTickRate) {
+                    int r;
+                    level.setTickRate(r = level.getTickRate() - 1);
+                    if (r > this.baseTickRate) {
                         level.tickRateCounter = level.getTickRate();
                     }
+                    this.getLogger().debug("Raising level \"" + level.getName() + "\" tick rate to " + level.getTickRate() + " ticks");
+                } else if (tickMs >= 50) {
+                    if (level.getTickRate() == this.baseTickRate) {
+                        level.setTickRate(Math.max(this.baseTickRate + 1, Math.min(this.autoTickRateLimit, tickMs / 50)));
+                        this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
+                    } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < this.autoTickRateLimit) {
+                        level.setTickRate(level.getTickRate() + 1);
+                        this.getLogger().debug("Level \"" + level.getName() + "\" took " + tickMs + "ms, setting tick rate to " + level.getTickRate() + " ticks");
+                    }
+                    level.tickRateCounter = level.getTickRate();
                 }
-            } catch (Exception e) {
-                log.error(this.baseLang.translateString("nukkit.level.tickError", new String[]{level.getFolderName(), Utils.getExceptionMessage(e)}));
             }
+        } catch (Exception e) {
+            log.error(this.baseLang.translateString("nukkit.level.tickError", new String[]{level.getFolderName(), Utils.getExceptionMessage(e)}));
         }
     }
 
@@ -1118,6 +1179,8 @@ public class Server {
 
         this.checkTickUpdates(this.tickCounter);
 
+        BaseInventory.sendAllPendingSlots();
+
         for (Player player : new ArrayList<>(this.players.values())) {
             player.checkNetwork();
         }
@@ -1152,6 +1215,7 @@ public class Server {
             for (Level level : this.levelArray) {
                 level.doChunkGarbageCollection();
             }
+            MapData.removeUnused();
         }
 
         if (Timings.isTimingsEnabled()) {
@@ -1441,6 +1505,24 @@ public class Server {
         return resourcePackManager;
     }
 
+    /**
+     * Get the level tick worker pool
+     *
+     * @return level tick pool or null if parallel level ticking is disabled
+     */
+    public LevelTickPool getLevelTickPool() {
+        return levelTickPool;
+    }
+
+    /**
+     * Get the pool used to read chunks from disk
+     *
+     * @return chunk load pool or null if asynchronous chunk loading is disabled
+     */
+    public ChunkLoadPool getChunkLoadPool() {
+        return chunkLoadPool;
+    }
+
     public ServerScheduler getScheduler() {
         return scheduler;
     }
@@ -1966,6 +2048,10 @@ public class Server {
         return network;
     }
 
+    public ChunkPacketCache getChunkPacketCache() {
+        return chunkPacketCache;
+    }
+
     public Config getProperties() {
         return this.properties;
     }
@@ -2313,6 +2399,13 @@ public class Server {
     /**
      * Load some settings from server.properties
      */
+    private void loadPacketRateLimits() {
+        PacketHandlerRegistry registry = this.network.getPacketHandlers();
+        registry.setMovementRateLimit(Math.max(1, this.getPropertyInt("packet-limit-movement", PacketHandlerRegistry.DEFAULT_MOVEMENT_RATE)));
+        registry.setInventoryRateLimit(Math.max(1, this.getPropertyInt("packet-limit-inventory", PacketHandlerRegistry.DEFAULT_INVENTORY_RATE)));
+        registry.setAbuseThreshold(Math.max(1, this.getPropertyInt("packet-limit-disconnect", PacketHandlerRegistry.DEFAULT_ABUSE_THRESHOLD)));
+    }
+
     private void loadSettings() {
         this.forceLanguage = this.getPropertyBoolean("force-language", false);
         this.networkCompressionLevel = Math.max(Math.min(this.getPropertyInt("compression-level", 4), 9), 0);
@@ -2371,6 +2464,12 @@ public class Server {
         this.vanillaPortals = this.getPropertyBoolean("vanilla-portals", true);
         this.personaSkins = this.getPropertyBoolean("persona-skins", true);
         this.cacheChunks = this.getPropertyBoolean("cache-chunks", false);
+        long chunkCacheSize = this.cacheChunks ? Math.max(0, this.getPropertyInt("chunk-cache-size-mb", 64)) * 1048576L : 0;
+        if (this.chunkPacketCache == null) {
+            this.chunkPacketCache = new ChunkPacketCache(chunkCacheSize);
+        } else {
+            this.chunkPacketCache.setMaxSize(chunkCacheSize);
+        }
         this.callEntityMotionEv = this.getPropertyBoolean("call-entity-motion-event", true);
         this.c_s_spawnThreshold = (int) Math.ceil(Math.sqrt(this.spawnThreshold));
         try {
@@ -2451,6 +2550,7 @@ public class Server {
             put("light-updates", false);
             put("clear-chunk-tick-list", true);
             put("cache-chunks", false);
+            put("chunk-cache-size-mb", 64);
             put("spawn-threshold", 50);
             put("chunk-sending-per-tick", 5);
             put("chunk-ticking-per-tick", 40);
@@ -2494,6 +2594,19 @@ public class Server {
             put("persona-skins", true);
             put("multi-nether-worlds", "");
             put("call-entity-motion-event", true);
+            put("entity-activation-range", true);
+            put("entity-activation-range-monsters", 32);
+            put("entity-activation-range-animals", 32);
+            put("entity-activation-range-items", 16);
+            put("entity-activation-range-projectiles", 16);
+            put("entity-activation-inactive-tick-rate", 20);
+            put("parallel-level-ticking", false);
+            put("parallel-level-ticking-threads", 0);
+            put("async-chunk-loading", true);
+            put("async-chunk-loading-threads", 2);
+            put("packet-limit-movement", PacketHandlerRegistry.DEFAULT_MOVEMENT_RATE);
+            put("packet-limit-inventory", PacketHandlerRegistry.DEFAULT_INVENTORY_RATE);
+            put("packet-limit-disconnect", PacketHandlerRegistry.DEFAULT_ABUSE_THRESHOLD);
         }
     }
 
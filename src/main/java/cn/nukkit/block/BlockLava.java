@@ -16,6 +16,7 @@ import cn.nukkit.math.Vector3;
 import cn.nukkit.potion.Effect;
 import cn.nukkit.utils.BlockColor;
 import cn.nukkit.utils.Utils;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
 
 /**
  * @author MagicDroidX
@@ -204,6 +205,9 @@ public class BlockLava extends BlockLiquid {
                 1000
         };
         int maxCost = 4 / this.getFlowDecayPerBlock();
+        if (this.flowCostVisited == null) {
+            this.flowCostVisited = new Long2ByteOpenHashMap();
+        }
         for (int j = 0; j < 4; ++j) {
             int x = (int) this.x;
             int y = (int) this.y;
@@ -217,10 +221,10 @@ public class BlockLava extends BlockLiquid {
             } else {
                 ++z;
             }
-            Block block = this.level.getBlock(x, y, z);
+            Block block = this.getSharedBlock(x, y, z);
             if (!this.canFlowInto(block)) {
                 this.flowCostVisited.put(Level.blockHash(x, y, z), BLOCKED);
-            } else if (this.level.getBlock(x, y - 1, z).canBeFlowedInto()) {
+            } else if (this.getSharedBlock(x, y - 1, z).canBeFlowedInto()) {
                 this.flowCostVisited.put(Level.blockHash(x, y, z), CAN_FLOW_DOWN);
                 flowCost[j] = maxCost = 0;
             } else if (maxCost > 0) {
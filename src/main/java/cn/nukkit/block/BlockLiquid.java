@@ -6,6 +6,7 @@ import cn.nukkit.event.block.LiquidFlowEvent;
 import cn.nukkit.item.Item;
 import cn.nukkit.item.ItemBlock;
 import cn.nukkit.level.Level;
+import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.particle.SmokeParticle;
 import cn.nukkit.level.sound.FizzSound;
 import cn.nukkit.math.AxisAlignedBB;
@@ -27,7 +28,8 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
     protected static final byte BLOCKED = -1;
     public int adjacentSources = 0;
     protected Vector3 flowVector = null;
-    protected Long2ByteMap flowCostVisited = new Long2ByteOpenHashMap();
+    // Created when the flow directions are calculated, most liquid blocks never flow
+    protected Long2ByteMap flowCostVisited = null;
 
     protected BlockLiquid(int meta) {
         super(meta);
@@ -112,7 +114,25 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
 
     public void clearCaches() {
         this.flowVector = null;
-        this.flowCostVisited.clear();
+        if (this.flowCostVisited != null) {
+            this.flowCostVisited.clear();
+        }
+    }
+
+    /**
+     * Get the block at a position without creating a new block instance. The returned block is shared, has no
+     * position and must not be modified.
+     */
+    protected Block getSharedBlock(int x, int y, int z) {
+        if (y < 0 || y > 255) {
+            return Block.fullList[0];
+        }
+        // Like Level.getBlock, a chunk that doesn't exist yet is air
+        BaseFullChunk chunk = this.level.getChunk(x >> 4, z >> 4);
+        if (chunk == null) {
+            return Block.fullList[0];
+        }
+        return Block.fullList[chunk.getFullBlock(x & 0x0f, y, z & 0x0f) & 0xfff];
     }
 
     public Vector3 getFlowVector() {
@@ -138,35 +158,33 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
                 default:
                     z++;
             }
-            Block sideBlock = this.level.getBlock(x, y, z);
+            Block sideBlock = this.getSharedBlock(x, y, z);
             int blockDecay = this.getEffectiveFlowDecay(sideBlock);
             if (blockDecay < 0) {
                 if (!sideBlock.canBeFlowedInto()) {
                     continue;
                 }
-                blockDecay = this.getEffectiveFlowDecay(this.level.getBlock(x, y - 1, z));
+                blockDecay = this.getEffectiveFlowDecay(this.getSharedBlock(x, y - 1, z));
                 if (blockDecay >= 0) {
                     int realDecay = blockDecay - (decay - 8);
-                    vector.x += (sideBlock.x - this.x) * realDecay;
-                    vector.y += (sideBlock.y - this.y) * realDecay;
-                    vector.z += (sideBlock.z - this.z) * realDecay;
+                    vector.x += (x - (int) this.x) * realDecay;
+                    vector.z += (z - (int) this.z) * realDecay;
                 }
             } else {
                 int realDecay = blockDecay - decay;
-                vector.x += (sideBlock.x - this.x) * realDecay;
-                vector.y += (sideBlock.y - this.y) * realDecay;
-                vector.z += (sideBlock.z - this.z) * realDecay;
+                vector.x += (x - (int) this.x) * realDecay;
+                vector.z += (z - (int) this.z) * realDecay;
             }
         }
         if (this.getDamage() >= 8) {
-            if (!this.canFlowInto(this.level.getBlock((int) this.x, (int) this.y, (int) this.z - 1)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x, (int) this.y, (int) this.z + 1)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x - 1, (int) this.y, (int) this.z)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x + 1, (int) this.y, (int) this.z)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x, (int) this.y + 1, (int) this.z - 1)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x, (int) this.y + 1, (int) this.z + 1)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x - 1, (int) this.y + 1, (int) this.z)) ||
-                    !this.canFlowInto(this.level.getBlock((int) this.x + 1, (int) this.y + 1, (int) this.z))) {
+            if (!this.canFlowInto(this.getSharedBlock((int) this.x, (int) this.y, (int) this.z - 1)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x, (int) this.y, (int) this.z + 1)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x - 1, (int) this.y, (int) this.z)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x + 1, (int) this.y, (int) this.z)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x, (int) this.y + 1, (int) this.z - 1)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x, (int) this.y + 1, (int) this.z + 1)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x - 1, (int) this.y + 1, (int) this.z)) ||
+                    !this.canFlowInto(this.getSharedBlock((int) this.x + 1, (int) this.y + 1, (int) this.z))) {
                 vector = vector.normalize().add(0, -6, 0);
             }
         }
@@ -194,25 +212,30 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
             this.level.scheduleUpdate(this, this.tickRate());
             return 0;
         } else if (type == Level.BLOCK_UPDATE_SCHEDULED) {
+            if (!this.level.tryLiquidFlow()) {
+                // Too much liquid is flowing this tick, continue next tick
+                this.level.scheduleUpdate(this, 1);
+                return 0;
+            }
             int decay = this.getFlowDecay(this);
             int multiplier = this.getFlowDecayPerBlock();
             if (decay > 0) {
                 int smallestFlowDecay = -100;
                 this.adjacentSources = 0;
-                smallestFlowDecay = this.getSmallestFlowDecay(this.level.getBlock((int) this.x, (int) this.y, (int) this.z - 1), smallestFlowDecay);
-                smallestFlowDecay = this.getSmallestFlowDecay(this.level.getBlock((int) this.x, (int) this.y, (int) this.z + 1), smallestFlowDecay);
-                smallestFlowDecay = this.getSmallestFlowDecay(this.level.getBlock((int) this.x - 1, (int) this.y, (int) this.z), smallestFlowDecay);
-                smallestFlowDecay = this.getSmallestFlowDecay(this.level.getBlock((int) this.x + 1, (int) this.y, (int) this.z), smallestFlowDecay);
+                smallestFlowDecay = this.getSmallestFlowDecay(this.getSharedBlock((int) this.x, (int) this.y, (int) this.z - 1), smallestFlowDecay);
+                smallestFlowDecay = this.getSmallestFlowDecay(this.getSharedBlock((int) this.x, (int) this.y, (int) this.z + 1), smallestFlowDecay);
+                smallestFlowDecay = this.getSmallestFlowDecay(this.getSharedBlock((int) this.x - 1, (int) this.y, (int) this.z), smallestFlowDecay);
+                smallestFlowDecay = this.getSmallestFlowDecay(this.getSharedBlock((int) this.x + 1, (int) this.y, (int) this.z), smallestFlowDecay);
                 int newDecay = smallestFlowDecay + multiplier;
                 if (newDecay >= 8 || smallestFlowDecay < 0) {
                     newDecay = -1;
                 }
-                int topFlowDecay = this.getFlowDecay(this.level.getBlock((int) this.x, (int) this.y + 1, (int) this.z));
+                int topFlowDecay = this.getFlowDecay(this.getSharedBlock((int) this.x, (int) this.y + 1, (int) this.z));
                 if (topFlowDecay >= 0) {
                     newDecay = topFlowDecay | 0x08;
                 }
                 if (this.adjacentSources >= 2 && this instanceof BlockWater) {
-                    Block bottomBlock = this.level.getBlock((int) this.x, (int) this.y - 1, (int) this.z);
+                    Block bottomBlock = this.getSharedBlock((int) this.x, (int) this.y - 1, (int) this.z);
                     if (bottomBlock.isSolid()) {
                         newDecay = 0;
                     } else if (bottomBlock instanceof BlockWater && bottomBlock.getDamage() == 0) {
@@ -231,7 +254,7 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
                     BlockFromToEvent event = new BlockFromToEvent(this, to);
                     level.getServer().getPluginManager().callEvent(event);
                     if (!event.isCancelled()) {
-                        this.level.setBlock(this, event.getTo(), true, true);
+                        this.level.setBlock(this, event.getTo(), false, true);
                         if (!decayed) {
                             this.level.scheduleUpdate(this, this.tickRate());
                         }
@@ -239,8 +262,8 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
                 }
             }
             if (decay >= 0) {
-                Block bottomBlock = this.level.getBlock((int) this.x, (int) this.y - 1, (int) this.z);
-                this.flowIntoBlock(bottomBlock, decay | 0x08);
+                Block bottomBlock = this.getSharedBlock((int) this.x, (int) this.y - 1, (int) this.z);
+                this.flowIntoBlock((int) this.x, (int) this.y - 1, (int) this.z, decay | 0x08);
                 if (decay == 0 || !bottomBlock.canBeFlowedInto()) {
                     int adjacentDecay;
                     if (decay >= 8) {
@@ -251,16 +274,16 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
                     if (adjacentDecay < 8) {
                         boolean[] flags = this.getOptimalFlowDirections();
                         if (flags[0]) {
-                            this.flowIntoBlock(this.level.getBlock((int) this.x - 1, (int) this.y, (int) this.z), adjacentDecay);
+                            this.flowIntoBlock((int) this.x - 1, (int) this.y, (int) this.z, adjacentDecay);
                         }
                         if (flags[1]) {
-                            this.flowIntoBlock(this.level.getBlock((int) this.x + 1, (int) this.y, (int) this.z), adjacentDecay);
+                            this.flowIntoBlock((int) this.x + 1, (int) this.y, (int) this.z, adjacentDecay);
                         }
                         if (flags[2]) {
-                            this.flowIntoBlock(this.level.getBlock((int) this.x, (int) this.y, (int) this.z - 1), adjacentDecay);
+                            this.flowIntoBlock((int) this.x, (int) this.y, (int) this.z - 1, adjacentDecay);
                         }
                         if (flags[3]) {
-                            this.flowIntoBlock(this.level.getBlock((int) this.x, (int) this.y, (int) this.z + 1), adjacentDecay);
+                            this.flowIntoBlock((int) this.x, (int) this.y, (int) this.z + 1, adjacentDecay);
                         }
                     }
                 }
@@ -270,6 +293,14 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
         return 0;
     }
 
+    private void flowIntoBlock(int x, int y, int z, int newFlowDecay) {
+        Block shared = this.getSharedBlock(x, y, z);
+        // Only liquids and blocks liquid can flow into need to be looked at closer
+        if (shared instanceof BlockLiquid || this.canFlowInto(shared)) {
+            this.flowIntoBlock(this.level.getBlock(x, y, z), newFlowDecay);
+        }
+    }
+
     protected void flowIntoBlock(Block block, int newFlowDecay) {
         if (this.canFlowInto(block) && !(block instanceof BlockLiquid)) {
             LiquidFlowEvent event = new LiquidFlowEvent(block, this, newFlowDecay);
@@ -278,7 +309,7 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
                 if (block.getId() > 0) {
                     this.level.useBreakOn(block, block.getId() == COBWEB ? Item.get(Item.WOODEN_SWORD) : null);
                 }
-                this.level.setBlock(block, getBlock(newFlowDecay), true, true);
+                this.level.setBlock(block, getBlock(newFlowDecay), false, true);
                 this.level.scheduleUpdate(block, this.tickRate());
             }
         }
@@ -303,10 +334,10 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
             }
             long hash = Level.blockHash(x, blockY, z);
             if (!this.flowCostVisited.containsKey(hash)) {
-                Block blockSide = this.level.getBlock(x, blockY, z);
+                Block blockSide = this.getSharedBlock(x, blockY, z);
                 if (!this.canFlowInto(blockSide)) {
                     this.flowCostVisited.put(hash, BLOCKED);
-                } else if (this.level.getBlock(x, blockY - 1, z).canBeFlowedInto()) {
+                } else if (this.getSharedBlock(x, blockY - 1, z).canBeFlowedInto()) {
                     this.flowCostVisited.put(hash, CAN_FLOW_DOWN);
                 } else {
                     this.flowCostVisited.put(hash, CAN_FLOW);
@@ -347,6 +378,9 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
                 1000
         };
         int maxCost = 4;
+        if (this.flowCostVisited == null) {
+            this.flowCostVisited = new Long2ByteOpenHashMap();
+        }
         for (int j = 0; j < 4; ++j) {
             int x = (int) this.x;
             int y = (int) this.y;
@@ -360,10 +394,10 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
             } else {
                 ++z;
             }
-            Block block = this.level.getBlock(x, y, z);
+            Block block = this.getSharedBlock(x, y, z);
             if (!this.canFlowInto(block)) {
                 this.flowCostVisited.put(Level.blockHash(x, y, z), BLOCKED);
-            } else if (this.level.getBlock(x, y - 1, z).canBeFlowedInto()) {
+            } else if (this.getSharedBlock(x, y - 1, z).canBeFlowedInto()) {
                 this.flowCostVisited.put(Level.blockHash(x, y, z), CAN_FLOW_DOWN);
                 flowCost[j] = maxCost = 0;
             } else if (maxCost > 0) {
@@ -425,7 +459,7 @@ public abstract class BlockLiquid extends BlockTransparentMeta {
         if (event.isCancelled()) {
             return false;
         }
-        this.level.setBlock(this, event.getTo(), true, true);
+        this.level.setBlock(this, event.getTo(), false, true);
         this.getLevel().addLevelSoundEvent(this.add(0.5, 0.5, 0.5), LevelSoundEventPacket.SOUND_FIZZ);
         return true;
     }
@@ -1,7 +1,6 @@
 package cn.nukkit.block;
 
 import cn.nukkit.Player;
-import cn.nukkit.event.block.BlockRedstoneEvent;
 import cn.nukkit.event.redstone.RedstoneUpdateEvent;
 import cn.nukkit.item.Item;
 import cn.nukkit.item.ItemRedstone;
@@ -19,8 +18,6 @@ import java.util.EnumSet;
  */
 public class BlockRedstoneWire extends BlockFlowable {
 
-    private boolean canProvidePower = true;
-
     public BlockRedstoneWire() {
         this(0);
     }
@@ -46,137 +43,14 @@ public class BlockRedstoneWire extends BlockFlowable {
         }
 
         this.getLevel().setBlock(block, this, true, false);
-        this.calculateCurrentChanges(true, true);
-        Vector3 pos = getLocation();
-
-        for (BlockFace blockFace : Plane.VERTICAL) {
-            this.level.updateAroundRedstone(pos.getSide(blockFace), blockFace.getOpposite());
-        }
-
-        for (BlockFace blockFace : Plane.VERTICAL) {
-            this.updateAround(pos.getSide(blockFace), blockFace.getOpposite());
-        }
-
-        for (BlockFace blockFace : Plane.HORIZONTAL) {
-            Vector3 v = pos.getSide(blockFace);
-
-            if (this.level.getBlock(v).isNormalBlock()) {
-                this.updateAround(v.up(), BlockFace.DOWN);
-            } else {
-                this.updateAround(v.down(), BlockFace.UP);
-            }
-        }
+        RedstoneWireNetwork.update(this.level, this);
         return true;
     }
 
-    private void updateAround(Vector3 pos, BlockFace face) {
-        if (this.level.getBlock(pos).getId() == Block.REDSTONE_WIRE) {
-            this.level.updateAroundRedstone(pos, face);
-
-            for (BlockFace side : BlockFace.values()) {
-                this.level.updateAroundRedstone(pos.getSide(side), side.getOpposite());
-            }
-        }
-    }
-
-    private void calculateCurrentChanges(boolean force, boolean stillExists) {
-        Vector3 pos = this.getLocation();
-
-        int meta = this.getDamage();
-        int maxStrength = meta;
-        this.canProvidePower = false;
-        int power = this.getIndirectPower();
-
-        this.canProvidePower = true;
-
-        if (power > 0 && power > maxStrength - 1) {
-            maxStrength = power;
-        }
-
-        int strength = 0;
-
-        for (BlockFace face : Plane.HORIZONTAL) {
-            Vector3 v = pos.getSide(face);
-
-            if (v.getX() == this.getX() && v.getZ() == this.getZ()) {
-                continue;
-            }
-
-
-            strength = this.getMaxCurrentStrength(v, strength);
-
-            boolean vNormal = this.level.getBlock(v).isNormalBlock();
-
-            if (vNormal && !this.level.getBlock(pos.up()).isNormalBlock()) {
-                strength = this.getMaxCurrentStrength(v.up(), strength);
-            } else if (!vNormal) {
-                strength = this.getMaxCurrentStrength(v.down(), strength);
-            }
-        }
-
-        if (strength > maxStrength) {
-            maxStrength = strength - 1;
-        } else if (maxStrength > 0) {
-            --maxStrength;
-        } else {
-            maxStrength = 0;
-        }
-
-        if (power > maxStrength - 1) {
-            maxStrength = power;
-        } else if (power < maxStrength && strength <= maxStrength) {
-            maxStrength = Math.max(power, strength - 1);
-        }
-
-        if (meta != maxStrength) {
-            if (stillExists) {
-                this.level.getServer().getPluginManager().callEvent(new BlockRedstoneEvent(this, meta, maxStrength));
-
-                this.setDamage(maxStrength);
-                this.level.setBlock(this, this, false, false);
-            }
-
-            this.level.updateAroundRedstone(this, null);
-            for (BlockFace face : BlockFace.values()) {
-                this.level.updateAroundRedstone(pos.getSide(face), face.getOpposite());
-            }
-        } else if (force) {
-            for (BlockFace face : BlockFace.values()) {
-                this.level.updateAroundRedstone(pos.getSide(face), face.getOpposite());
-            }
-        }
-    }
-
-    private int getMaxCurrentStrength(Vector3 pos, int maxStrength) {
-        if (this.level.getBlockIdAt(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ()) != REDSTONE_WIRE) {
-            return maxStrength;
-        } else {
-            int strength = this.level.getBlockDataAt(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
-            return Math.max(strength, maxStrength);
-        }
-    }
-
     @Override
     public boolean onBreak(Item item) {
         this.getLevel().setBlock(this, Block.get(BlockID.AIR), true, true);
-
-        Vector3 pos = getLocation();
-
-        this.calculateCurrentChanges(false, false);
-
-        for (BlockFace blockFace : BlockFace.values()) {
-            this.level.updateAroundRedstone(pos.getSide(blockFace), null);
-        }
-
-        for (BlockFace blockFace : Plane.HORIZONTAL) {
-            Vector3 v = pos.getSide(blockFace);
-
-            if (this.level.getBlock(v).isNormalBlock()) {
-                this.updateAround(v.up(), BlockFace.DOWN);
-            } else {
-                this.updateAround(v.down(), BlockFace.UP);
-            }
-        }
+        RedstoneWireNetwork.updateRemoved(this.level, this, this.getDamage());
         return true;
     }
 
@@ -208,7 +82,7 @@ public class BlockRedstoneWire extends BlockFlowable {
             return 0;
         }
 
-        this.calculateCurrentChanges(false, true);
+        RedstoneWireNetwork.update(this.level, this);
 
         return Level.BLOCK_UPDATE_REDSTONE;
     }
@@ -220,35 +94,31 @@ public class BlockRedstoneWire extends BlockFlowable {
     }
 
     public int getStrongPower(BlockFace side) {
-        return !this.canProvidePower ? 0 : getWeakPower(side);
+        return getWeakPower(side);
     }
 
     public int getWeakPower(BlockFace side) {
-        if (!this.canProvidePower) {
+        int power = this.getDamage();
+
+        if (power == 0) {
             return 0;
+        } else if (side == BlockFace.UP) {
+            return power;
         } else {
-            int power = this.getDamage();
-
-            if (power == 0) {
-                return 0;
-            } else if (side == BlockFace.UP) {
-                return power;
-            } else {
-                EnumSet<BlockFace> enumset = EnumSet.noneOf(BlockFace.class);
+            EnumSet<BlockFace> enumset = EnumSet.noneOf(BlockFace.class);
 
-                for (BlockFace face : Plane.HORIZONTAL) {
-                    if (this.isPowerSourceAt(face)) {
-                        enumset.add(face);
-                    }
+            for (BlockFace face : Plane.HORIZONTAL) {
+                if (this.isPowerSourceAt(face)) {
+                    enumset.add(face);
                 }
+            }
 
-                if (side.getAxis().isHorizontal() && enumset.isEmpty()) {
-                    return power;
-                } else if (enumset.contains(side) && !enumset.contains(side.rotateYCCW()) && !enumset.contains(side.rotateY())) {
-                    return power;
-                } else {
-                    return 0;
-                }
+            if (side.getAxis().isHorizontal() && enumset.isEmpty()) {
+                return power;
+            } else if (enumset.contains(side) && !enumset.contains(side.rotateYCCW()) && !enumset.contains(side.rotateY())) {
+                return power;
+            } else {
+                return 0;
             }
         }
     }
@@ -283,43 +153,6 @@ public class BlockRedstoneWire extends BlockFlowable {
 
     @Override
     public boolean isPowerSource() {
-        return this.canProvidePower;
-    }
-
-    private int getIndirectPower() {
-        int power = 0;
-        Vector3 pos = getLocation();
-
-        for (BlockFace face : BlockFace.values()) {
-            int blockPower = this.getIndirectPower(pos.getSide(face), face);
-
-            if (blockPower >= 15) {
-                return 15;
-            }
-
-            if (blockPower > power) {
-                power = blockPower;
-            }
-        }
-
-        return power;
-    }
-
-    private int getIndirectPower(Vector3 pos, BlockFace face) {
-        Block block = this.level.getBlock(pos);
-        if (block.getId() == Block.REDSTONE_WIRE) {
-            return 0;
-        }
-        return block.isNormalBlock() ? getStrongPower(pos.getSide(face), face) : block.getWeakPower(face);
-    }
-
-    private int getStrongPower(Vector3 pos, BlockFace direction) {
-        Block block = this.level.getBlock(pos);
-
-        if (block.getId() == Block.REDSTONE_WIRE) {
-            return 0;
-        }
-
-        return block.getStrongPower(direction);
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,321 @@
+package cn.nukkit.block;
+
+import cn.nukkit.event.block.BlockRedstoneEvent;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.Position;
+import cn.nukkit.math.BlockFace;
+import cn.nukkit.math.Vector3;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+
+/**
+ * Computes the power of connected redstone wires together.
+ * <p>
+ * Every wire is powered by the strongest of the power it gets from other blocks and the power of the wires connected to
+ * it minus one. Instead of letting every wire recompute its power and update its neighbours one by one, the network of
+ * wires connected to the changed ones is collected, the power is spread through it once starting from the strongest
+ * wires, and only then are the changed wires set and their neighbours updated.
+ */
+final class RedstoneWireNetwork {
+
+    private static final BlockFace[] FACES = BlockFace.values();
+    private static final BlockFace[] HORIZONTAL = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+
+    private final Level level;
+
+    // Wires by position hash and their index in the lists below
+    private final Long2IntOpenHashMap indexes = new Long2IntOpenHashMap();
+    private final LongArrayList wires = new LongArrayList();
+    private final IntArrayList oldPower = new IntArrayList();
+    // Connections of wire i are connections[connectionStart[i]] until connections[connectionStart[i + 1]]
+    private final IntArrayList connectionStart = new IntArrayList();
+    private final IntArrayList connections = new IntArrayList();
+
+    private RedstoneWireNetwork(Level level) {
+        this.level = level;
+        this.indexes.defaultReturnValue(-1);
+    }
+
+    /**
+     * Update the power of a wire and the wires connected to it
+     *
+     * @param level level
+     * @param pos   wire position
+     */
+    static void update(Level level, Vector3 pos) {
+        RedstoneWireNetwork network = new RedstoneWireNetwork(level);
+        network.collect(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+        network.run();
+    }
+
+    /**
+     * Update the power of the wires a removed wire was connected to and the blocks it could have powered
+     *
+     * @param level level
+     * @param pos   position of the removed wire
+     * @param power power the wire had
+     */
+    static void updateRemoved(Level level, Vector3 pos, int power) {
+        int x = pos.getFloorX();
+        int y = pos.getFloorY();
+        int z = pos.getFloorZ();
+
+        RedstoneWireNetwork network = new RedstoneWireNetwork(level);
+        LongIterator connections = getConnections(level, x, y, z).iterator();
+        while (connections.hasNext()) {
+            long hash = connections.nextLong();
+            network.collect(getX(hash), getY(hash), getZ(hash));
+        }
+        network.run();
+
+        // Blocks next to the wire and the blocks they could pass its power to
+        LongLinkedOpenHashSet neighbours = new LongLinkedOpenHashSet();
+        for (BlockFace face : FACES) {
+            int sideX = x + face.getXOffset();
+            int sideY = y + face.getYOffset();
+            int sideZ = z + face.getZOffset();
+            if (power > 0 && sideY >= 0 && sideY < 256) {
+                neighbours.add(Level.blockHash(sideX, sideY, sideZ));
+            }
+            for (BlockFace sideFace : FACES) {
+                int nextY = sideY + sideFace.getYOffset();
+                if (nextY >= 0 && nextY < 256) {
+                    neighbours.add(Level.blockHash(sideX + sideFace.getXOffset(), nextY, sideZ + sideFace.getZOffset()));
+                }
+            }
+        }
+        updateBlocks(level, neighbours);
+    }
+
+    /**
+     * Get the wires a wire at a position connects to, whether or not there is a wire at the position itself
+     *
+     * @param level level
+     * @param x     x
+     * @param y     y
+     * @param z     z
+     * @return wire position hashes
+     */
+    private static LongArrayList getConnections(Level level, int x, int y, int z) {
+        LongArrayList connections = new LongArrayList(4);
+        boolean upNormal = isNormalBlock(level, x, y + 1, z);
+        for (BlockFace face : HORIZONTAL) {
+            int sideX = x + face.getXOffset();
+            int sideZ = z + face.getZOffset();
+            if (!level.isChunkLoaded(sideX >> 4, sideZ >> 4)) {
+                continue;
+            }
+
+            if (isWire(level, sideX, y, sideZ)) {
+                connections.add(Level.blockHash(sideX, y, sideZ));
+            }
+            boolean sideNormal = isNormalBlock(level, sideX, y, sideZ);
+            if (sideNormal && !upNormal) {
+                if (isWire(level, sideX, y + 1, sideZ)) {
+                    connections.add(Level.blockHash(sideX, y + 1, sideZ));
+                }
+            } else if (!sideNormal) {
+                if (isWire(level, sideX, y - 1, sideZ)) {
+                    connections.add(Level.blockHash(sideX, y - 1, sideZ));
+                }
+            }
+        }
+        return connections;
+    }
+
+    private void run() {
+        if (!this.wires.isEmpty()) {
+            this.apply(this.spreadPower());
+        }
+    }
+
+    private void collect(int x, int y, int z) {
+        if (!isWire(this.level, x, y, z) || this.indexes.containsKey(Level.blockHash(x, y, z))) {
+            return;
+        }
+
+        this.add(Level.blockHash(x, y, z));
+        // The connections of every wire are added to the lists in the order the wires were found
+        for (int i = this.connectionStart.size(); i < this.wires.size(); i++) {
+            long hash = this.wires.getLong(i);
+            this.connectionStart.add(this.connections.size());
+            LongIterator iterator = getConnections(this.level, getX(hash), getY(hash), getZ(hash)).iterator();
+            while (iterator.hasNext()) {
+                long connection = iterator.nextLong();
+                int index = this.indexes.get(connection);
+                this.connections.add(index >= 0 ? index : this.add(connection));
+            }
+        }
+    }
+
+    private int add(long hash) {
+        int index = this.wires.size();
+        this.indexes.put(hash, index);
+        this.wires.add(hash);
+        this.oldPower.add(this.level.getBlockDataAt(getX(hash), getY(hash), getZ(hash)));
+        return index;
+    }
+
+    private int[] spreadPower() {
+        int count = this.wires.size();
+        this.connectionStart.add(this.connections.size());
+
+        int[] power = new int[count];
+        IntArrayList[] byPower = new IntArrayList[16];
+        for (int i = 0; i < count; i++) {
+            long hash = this.wires.getLong(i);
+            power[i] = this.getReceivedPower(getX(hash), getY(hash), getZ(hash));
+            if (power[i] > 1) {
+                if (byPower[power[i]] == null) {
+                    byPower[power[i]] = new IntArrayList();
+                }
+                byPower[power[i]].add(i);
+            }
+        }
+
+        // Go from the strongest wires to the weakest, so that every wire is only spread from once
+        for (int strength = 15; strength > 1; strength--) {
+            IntArrayList bucket = byPower[strength];
+            if (bucket == null) {
+                continue;
+            }
+            for (int b = 0; b < bucket.size(); b++) {
+                int wire = bucket.getInt(b);
+                if (power[wire] != strength) {
+                    continue;
+                }
+                for (int c = this.connectionStart.getInt(wire); c < this.connectionStart.getInt(wire + 1); c++) {
+                    int connection = this.connections.getInt(c);
+                    if (power[connection] < strength - 1) {
+                        power[connection] = strength - 1;
+                        if (strength - 1 > 1) {
+                            if (byPower[strength - 1] == null) {
+                                byPower[strength - 1] = new IntArrayList();
+                            }
+                            byPower[strength - 1].add(connection);
+                        }
+                    }
+                }
+            }
+        }
+        return power;
+    }
+
+    private void apply(int[] power) {
+        LongLinkedOpenHashSet neighbours = new LongLinkedOpenHashSet();
+        for (int i = 0; i < power.length; i++) {
+            int oldPower = this.oldPower.getInt(i);
+            if (power[i] == oldPower) {
+                continue;
+            }
+
+            long hash = this.wires.getLong(i);
+            int x = getX(hash);
+            int y = getY(hash);
+            int z = getZ(hash);
+            this.level.getServer().getPluginManager().callEvent(new BlockRedstoneEvent(
+                    Block.get(Block.REDSTONE_WIRE, oldPower, new Position(x, y, z, this.level)), oldPower, power[i]));
+            this.level.setBlockDataAt(x, y, z, power[i]);
+
+            for (BlockFace face : FACES) {
+                int sideY = y + face.getYOffset();
+                if (sideY >= 0 && sideY < 256) {
+                    long side = Level.blockHash(x + face.getXOffset(), sideY, z + face.getZOffset());
+                    if (!this.indexes.containsKey(side)) {
+                        neighbours.add(side);
+                    }
+                }
+            }
+        }
+
+        // Only update the other blocks once every wire has its final power
+        updateBlocks(this.level, neighbours);
+    }
+
+    /**
+     * Get the power a wire receives from blocks other than wires
+     */
+    private int getReceivedPower(int x, int y, int z) {
+        int power = 0;
+        for (BlockFace face : FACES) {
+            int sideX = x + face.getXOffset();
+            int sideY = y + face.getYOffset();
+            int sideZ = z + face.getZOffset();
+            int id = this.getBlockId(sideX, sideY, sideZ);
+            if (id == Block.AIR || id == Block.REDSTONE_WIRE) {
+                continue;
+            }
+
+            Block block = this.level.getBlock(sideX, sideY, sideZ);
+            int blockPower;
+            if (block.isNormalBlock()) {
+                int behindX = sideX + face.getXOffset();
+                int behindY = sideY + face.getYOffset();
+                int behindZ = sideZ + face.getZOffset();
+                int behindId = this.getBlockId(behindX, behindY, behindZ);
+                if (behindId == Block.AIR || behindId == Block.REDSTONE_WIRE) {
+                    continue;
+                }
+                blockPower = this.level.getBlock(behindX, behindY, behindZ).getStrongPower(face);
+            } else {
+                blockPower = block.getWeakPower(face);
+            }
+
+            if (blockPower >= 15) {
+                return 15;
+            }
+            power = Math.max(power, blockPower);
+        }
+        return power;
+    }
+
+    private int getBlockId(int x, int y, int z) {
+        if (y < 0 || y > 255 || !this.level.isChunkLoaded(x >> 4, z >> 4)) {
+            return Block.AIR;
+        }
+        return this.level.getBlockIdAt(x, y, z);
+    }
+
+    /**
+     * Send a redstone update to the blocks that aren't wires
+     */
+    private static void updateBlocks(Level level, LongLinkedOpenHashSet blocks) {
+        LongIterator iterator = blocks.iterator();
+        while (iterator.hasNext()) {
+            long hash = iterator.nextLong();
+            int x = getX(hash);
+            int y = getY(hash);
+            int z = getZ(hash);
+            if (!level.isChunkLoaded(x >> 4, z >> 4)) {
+                continue;
+            }
+            int id = level.getBlockIdAt(x, y, z);
+            if (id != Block.AIR && id != Block.REDSTONE_WIRE) {
+                level.getBlock(x, y, z).onUpdate(Level.BLOCK_UPDATE_REDSTONE);
+            }
+        }
+    }
+
+    private static boolean isWire(Level level, int x, int y, int z) {
+        return y >= 0 && y <= 255 && level.getBlockIdAt(x, y, z) == Block.REDSTONE_WIRE;
+    }
+
+    private static boolean isNormalBlock(Level level, int x, int y, int z) {
+        return y >= 0 && y <= 255 && Block.fullList[level.getFullBlock(x, y, z) & 0xfff].isNormalBlock();
+    }
+
+    private static int getX(long hash) {
+        return (int) (hash >> 36);
+    }
+
+    private static int getY(long hash) {
+        return (int) (hash >> 28) & 0xff;
+    }
+
+    private static int getZ(long hash) {
+        return (int) (hash << 36 >> 36);
+    }
+}
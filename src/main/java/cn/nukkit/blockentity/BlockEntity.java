@@ -13,6 +13,7 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
 import java.lang.reflect.Constructor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author MagicDroidX
@@ -45,7 +46,15 @@ public abstract class BlockEntity extends Position {
     public static final String DROPPER = "Dropper";
     public static final String DISPENSER = "Dispenser";
 
-    public static long count = 1;
+    private static final AtomicLong BLOCK_ENTITY_ID = new AtomicLong(1);
+
+    /**
+     * Next block entity id. Kept in sync with the ids handed out by {@link #nextBlockEntityId()}.
+     *
+     * @deprecated use {@link #nextBlockEntityId()}, this field can't be updated atomically
+     */
+    @Deprecated
+    public static volatile long count = 1;
 
     private static final BiMap<String, Class<? extends BlockEntity>> knownBlockEntities = HashBiMap.create(24);
 
@@ -71,7 +80,7 @@ public abstract class BlockEntity extends Position {
         this.setLevel(chunk.getProvider().getLevel());
         this.namedTag = nbt;
         this.name = "";
-        this.id = BlockEntity.count++;
+        this.id = nextBlockEntityId();
         this.x = this.namedTag.getInt("x");
         this.y = this.namedTag.getInt("y");
         this.z = this.namedTag.getInt("z");
@@ -85,6 +94,23 @@ public abstract class BlockEntity extends Position {
 
     protected void initBlockEntity() {}
 
+    /**
+     * Get a new unique block entity id. Safe to call from any thread.
+     *
+     * @return block entity id
+     */
+    @SuppressWarnings("deprecation")
+    public static long nextBlockEntityId() {
+        while (true) {
+            long id = BLOCK_ENTITY_ID.get();
+            long next = Math.max(id, count);
+            if (BLOCK_ENTITY_ID.compareAndSet(id, next + 1)) {
+                count = next + 1;
+                return next;
+            }
+        }
+    }
+
     public static BlockEntity createBlockEntity(String type, FullChunk chunk, CompoundTag nbt, Object... args) {
         BlockEntity blockEntity = null;
 
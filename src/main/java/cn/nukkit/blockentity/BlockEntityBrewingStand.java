@@ -32,6 +32,10 @@ public class BlockEntityBrewingStand extends BlockEntitySpawnable implements Inv
     public int fuelTotal;
     public int fuelAmount;
 
+    // Recipes of the potions in slots 1 to 3, matched again after the ingredient or a potion changed
+    private MixRecipe[] recipes;
+    private int recipeRevision;
+
     public static final List<Integer> ingredients = new ArrayList<>(Arrays.asList(Item.NETHER_WART, Item.GHAST_TEAR, Item.GLOWSTONE_DUST, Item.REDSTONE_DUST, Item.GUNPOWDER, Item.MAGMA_CREAM, Item.BLAZE_POWDER, Item.GOLDEN_CARROT, Item.SPIDER_EYE, Item.FERMENTED_SPIDER_EYE, Item.GLISTERING_MELON, Item.SUGAR, Item.RABBIT_FOOT, Item.PUFFERFISH, Item.TURTLE_SHELL, Item.PHANTOM_MEMBRANE, Item.DRAGON_BREATH));
 
     public BlockEntityBrewingStand(FullChunk chunk, CompoundTag nbt) {
@@ -182,7 +186,7 @@ public class BlockEntityBrewingStand extends BlockEntitySpawnable implements Inv
 
         restockFuel();
 
-        if (this.fuelAmount <= 0 || matchRecipes(true)[0] == null) {
+        if (this.fuelAmount <= 0 || !hasRecipe()) {
             stopBrewing();
             return false;
         }
@@ -217,7 +221,7 @@ public class BlockEntityBrewingStand extends BlockEntitySpawnable implements Inv
         }
 
         boolean mixed = false;
-        MixRecipe[] recipes = matchRecipes(false);
+        MixRecipe[] recipes = matchRecipes();
         for (int i = 0; i < 3; i++) {
             MixRecipe recipe = recipes[i];
             if (recipe == null) {
@@ -271,33 +275,44 @@ public class BlockEntityBrewingStand extends BlockEntitySpawnable implements Inv
         this.brewTime = MAX_BREW_TIME;
     }
 
-    private MixRecipe[] matchRecipes(boolean quickTest) {
-        MixRecipe[] recipes = new MixRecipe[quickTest? 1 : 3];
-        Item ingredient = inventory.getIngredient();
+    private MixRecipe[] matchRecipes() {
         CraftingManager craftingManager = getLevel().getServer().getCraftingManager();
-        for (int i = 0; i < 3; i++) {
-            Item potion = inventory.getItem(i + 1);
-            if (potion.isNull()) {
-                continue;
-            }
+        if (this.recipes == null || this.recipeRevision != craftingManager.getMixRevision()) {
+            this.recipes = new MixRecipe[3];
+            this.recipeRevision = craftingManager.getMixRevision();
+
+            Item ingredient = inventory.getItemFast(0);
+            for (int i = 0; i < 3; i++) {
+                Item potion = inventory.getItemFast(i + 1);
+                if (potion.isNull()) {
+                    continue;
+                }
 
-            MixRecipe recipe = craftingManager.matchBrewingRecipe(ingredient, potion);
-            if (recipe == null) {
-                recipe = craftingManager.matchContainerRecipe(ingredient, potion);
-            }
-            if (recipe == null) {
-                continue;
+                MixRecipe recipe = craftingManager.matchBrewingRecipe(ingredient.getId(), ingredient.getDamage(), potion.getId(), potion.getDamage());
+                if (recipe == null) {
+                    recipe = craftingManager.matchContainerRecipe(ingredient.getId(), potion.getId());
+                }
+                this.recipes[i] = recipe;
             }
+        }
 
-            if (quickTest) {
-                recipes[0] = recipe;
-                return recipes;
-            }
+        return this.recipes;
+    }
 
-            recipes[i] = recipe;
+    private boolean hasRecipe() {
+        for (MixRecipe recipe : this.matchRecipes()) {
+            if (recipe != null) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return recipes;
+    /**
+     * Match the recipes of the potions again on the next update
+     */
+    public void clearRecipes() {
+        this.recipes = null;
     }
 
     protected void sendFuel() {
@@ -355,7 +370,7 @@ public class BlockEntityBrewingStand extends BlockEntitySpawnable implements Inv
         block.setDamage(meta);
         this.level.setBlock(block, block, false, false);
 
-        if (brewTime != MAX_BREW_TIME && matchRecipes(true)[0] == null) {
+        if (brewTime != MAX_BREW_TIME && !hasRecipe()) {
             stopBrewing();
         }
     }
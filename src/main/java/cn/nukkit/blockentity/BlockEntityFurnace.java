@@ -6,6 +6,7 @@ import cn.nukkit.block.Block;
 import cn.nukkit.block.BlockID;
 import cn.nukkit.event.inventory.FurnaceBurnEvent;
 import cn.nukkit.event.inventory.FurnaceSmeltEvent;
+import cn.nukkit.inventory.CraftingManager;
 import cn.nukkit.inventory.FurnaceInventory;
 import cn.nukkit.inventory.FurnaceRecipe;
 import cn.nukkit.inventory.InventoryHolder;
@@ -31,6 +32,11 @@ public class BlockEntityFurnace extends BlockEntitySpawnable implements Inventor
     private int cookTime;
     private int maxTime;
 
+    // Recipe of the item being smelted, matched again after the slot changed
+    private FurnaceRecipe smeltingRecipe;
+    private boolean smeltingRecipeValid;
+    private int recipeRevision;
+
     public BlockEntityFurnace(FullChunk chunk, CompoundTag nbt) {
         super(chunk, nbt);
     }
@@ -221,6 +227,23 @@ public class BlockEntityFurnace extends BlockEntitySpawnable implements Inventor
         }
     }
 
+    private FurnaceRecipe getSmeltingRecipe(Item raw) {
+        CraftingManager craftingManager = this.server.getCraftingManager();
+        if (!this.smeltingRecipeValid || this.recipeRevision != craftingManager.getMixRevision()) {
+            this.smeltingRecipe = raw.isNull() ? null : craftingManager.matchFurnaceRecipe(raw.getId(), raw.getDamage());
+            this.smeltingRecipeValid = true;
+            this.recipeRevision = craftingManager.getMixRevision();
+        }
+        return this.smeltingRecipe;
+    }
+
+    /**
+     * Match the recipe of the item being smelted again on the next update
+     */
+    public void clearSmeltingRecipe() {
+        this.smeltingRecipeValid = false;
+    }
+
     @Override
     public boolean onUpdate() {
         if (this.closed) {
@@ -233,7 +256,7 @@ public class BlockEntityFurnace extends BlockEntitySpawnable implements Inventor
         Item fuel = this.inventory.getFuel();
         Item raw = this.inventory.getSmelting();
         Item product = this.inventory.getResult();
-        FurnaceRecipe smelt = this.server.getCraftingManager().matchFurnaceRecipe(raw);
+        FurnaceRecipe smelt = this.getSmeltingRecipe(raw);
         boolean canSmelt = (smelt != null && raw.getCount() > 0 && ((smelt.getResult().equals(product, true) && product.getCount() < product.getMaxStackSize()) || product.getId() == Item.AIR));
 
         if (burnTime <= 0 && canSmelt && fuel.getFuelTime() != null && fuel.getCount() > 0) {
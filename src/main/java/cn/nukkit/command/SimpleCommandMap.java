@@ -61,6 +61,7 @@ public class SimpleCommandMap implements CommandMap {
         this.register("nukkit", new SummonCommand("summon"));
         this.register("nukkit", new WorldCommand("world"));
         this.register("nukkit", new GenerateWorldCommand("genworld"));
+        this.register("nukkit", new PregenCommand("pregen"));
         this.register("nukkit", new WhitelistCommand("whitelist"));
         this.register("nukkit", new GameruleCommand("gamerule"));
         this.register("nukkit", new SpawnCommand("spawn"));
@@ -0,0 +1,148 @@
+package cn.nukkit.command.defaults;
+
+import cn.nukkit.Server;
+import cn.nukkit.command.Command;
+import cn.nukkit.command.CommandSender;
+import cn.nukkit.command.data.CommandParamType;
+import cn.nukkit.command.data.CommandParameter;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.generator.Pregenerator;
+import cn.nukkit.math.Vector3;
+
+public class PregenCommand extends Command {
+
+    public PregenCommand(String name) {
+        super(name, "%nukkit.command.pregen.description", "%nukkit.command.pregen.usage");
+        this.setPermission("nukkit.command.pregen");
+        this.commandParameters.clear();
+        this.commandParameters.put("start", new CommandParameter[]{
+                new CommandParameter("start", new String[]{"start"}),
+                new CommandParameter("world", CommandParamType.STRING, false),
+                new CommandParameter("radius", CommandParamType.INT, false),
+                new CommandParameter("threads", CommandParamType.INT, true)
+        });
+        this.commandParameters.put("center", new CommandParameter[]{
+                new CommandParameter("center", new String[]{"center"}),
+                new CommandParameter("world", CommandParamType.STRING, false),
+                new CommandParameter("chunkX", CommandParamType.INT, false),
+                new CommandParameter("chunkZ", CommandParamType.INT, false),
+                new CommandParameter("radius", CommandParamType.INT, false),
+                new CommandParameter("threads", CommandParamType.INT, true)
+        });
+        this.commandParameters.put("region", new CommandParameter[]{
+                new CommandParameter("region", new String[]{"region"}),
+                new CommandParameter("world", CommandParamType.STRING, false),
+                new CommandParameter("x1", CommandParamType.INT, false),
+                new CommandParameter("z1", CommandParamType.INT, false),
+                new CommandParameter("x2", CommandParamType.INT, false),
+                new CommandParameter("z2", CommandParamType.INT, false),
+                new CommandParameter("threads", CommandParamType.INT, true)
+        });
+        this.commandParameters.put("default", new CommandParameter[]{
+                new CommandParameter("action", new String[]{"stop", "status", "resume"}),
+                new CommandParameter("world", CommandParamType.STRING, false)
+        });
+    }
+
+    @Override
+    public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+        if (!this.testPermission(sender)) {
+            return true;
+        }
+
+        if (args.length < 2) {
+            return false;
+        }
+
+        Level level = Server.getInstance().getLevelByName(args[1]);
+        if (level == null) {
+            sender.sendMessage("\u00A7cWorld \u00A77" + args[1] + " \u00A7cis not loaded");
+            return true;
+        }
+
+        Pregenerator running = Pregenerator.get(level);
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        switch (args[0].toLowerCase()) {
+            case "start":
+            case "center":
+            case "region":
+            case "resume":
+                if (running != null) {
+                    sender.sendMessage("\u00A7cWorld \u00A77" + level.getName() + " \u00A7cis already being pregenerated");
+                    return true;
+                }
+
+                Pregenerator pregenerator;
+                try {
+                    if (args[0].equalsIgnoreCase("resume")) {
+                        if (args.length > 2) {
+                            threads = Integer.parseInt(args[2]);
+                        }
+                        pregenerator = Pregenerator.resume(level, threads, sender);
+                        if (pregenerator == null) {
+                            sender.sendMessage("\u00A7cNo pregeneration to resume in \u00A77" + level.getName());
+                            return true;
+                        }
+                    } else if (args[0].equalsIgnoreCase("region")) {
+                        if (args.length < 6) {
+                            return false;
+                        }
+                        if (args.length > 6) {
+                            threads = Integer.parseInt(args[6]);
+                        }
+                        pregenerator = Pregenerator.region(level, Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                                Integer.parseInt(args[4]), Integer.parseInt(args[5]), threads, sender);
+                    } else {
+                        boolean center = args[0].equalsIgnoreCase("center");
+                        int radiusArg = center ? 4 : 2;
+                        if (args.length <= radiusArg) {
+                            return false;
+                        }
+                        int radius = Integer.parseInt(args[radiusArg]);
+                        if (args.length > radiusArg + 1) {
+                            threads = Integer.parseInt(args[radiusArg + 1]);
+                        }
+                        if (radius < 0) {
+                            sender.sendMessage("\u00A7cThe radius must not be negative");
+                            return true;
+                        }
+                        if (center) {
+                            pregenerator = new Pregenerator(level, Integer.parseInt(args[2]), Integer.parseInt(args[3]), radius, threads, sender);
+                        } else {
+                            Vector3 spawn = level.getSpawnLocation();
+                            pregenerator = new Pregenerator(level, spawn.getChunkX(), spawn.getChunkZ(), radius, threads, sender);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("\u00A7cThe coordinates, radius and thread count must be numeric");
+                    return true;
+                }
+
+                int maxThreads = Runtime.getRuntime().availableProcessors();
+                if (threads > maxThreads) {
+                    sender.sendMessage("\u00A7eUsing " + maxThreads + " threads, the number of available processors");
+                }
+
+                pregenerator.start();
+                return true;
+            case "stop":
+                if (running == null) {
+                    sender.sendMessage("\u00A7cWorld \u00A77" + level.getName() + " \u00A7cis not being pregenerated");
+                    return true;
+                }
+                running.stop();
+                return true;
+            case "status":
+                if (running == null) {
+                    sender.sendMessage("\u00A7cWorld \u00A77" + level.getName() + " \u00A7cis not being pregenerated");
+                    return true;
+                }
+                sender.sendMessage(String.format("\u00A72Pregenerating \u00A77%s\u00A72: %.1f%%, %d/%d chunks, %.1f chunks/s",
+                        level.getName(), running.getProgress() * 100, running.getChunksDone(), running.getTotalChunks(), running.getChunksPerSecond()));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import cn.nukkit.Nukkit;
 import cn.nukkit.Server;
 import cn.nukkit.command.CommandSender;
 import cn.nukkit.level.Level;
+import cn.nukkit.level.util.ChunkPacketCache;
 import cn.nukkit.math.NukkitMath;
 import cn.nukkit.utils.TextFormat;
 
@@ -78,6 +79,19 @@ public class StatusCommand extends VanillaCommand {
 
         sender.sendMessage(TextFormat.GOLD + "Available processors: " + TextFormat.GREEN + runtime.availableProcessors());
 
+        ChunkPacketCache chunkCache = server.getChunkPacketCache();
+        if (chunkCache.getMaxSize() > 0) {
+            long hits = 0;
+            long requests = 0;
+            for (int protocol : chunkCache.getProtocols()) {
+                hits += chunkCache.getHits(protocol);
+                requests += chunkCache.getHits(protocol) + chunkCache.getMisses(protocol);
+            }
+            sender.sendMessage(TextFormat.GOLD + "Chunk cache: " + TextFormat.GREEN + NukkitMath.round(chunkCache.getSize() / 1048576d, 2) + " MB of " +
+                    chunkCache.getMaxSize() / 1048576 + " MB, " + chunkCache.getChunkCount() + " chunks, " +
+                    (requests > 0 ? NukkitMath.round(hits * 100d / requests, 2) : 0) + "% hits");
+        }
+
 
         int players = server.getOnlinePlayersCount();
 
@@ -94,7 +108,8 @@ public class StatusCommand extends VanillaCommand {
                     TextFormat.GOLD + "World \"" + level.getFolderName() + '"' + (!Objects.equals(level.getFolderName(), level.getName()) ? " (" + level.getName() + ')' : "") + ": " +
                             TextFormat.RED + level.getChunks().size() + TextFormat.GREEN + " chunks, " +
                             TextFormat.RED + level.getEntities().length + TextFormat.GREEN + " entities, " +
-                            TextFormat.RED + level.getBlockEntities().size() + TextFormat.GREEN + " block entities." +
+                            TextFormat.RED + level.getBlockEntities().size() + TextFormat.GREEN + " block entities" +
+                            (level.getInactiveEntityTicks() > 0 ? ", " + TextFormat.RED + level.getInactiveEntityTicks() + TextFormat.GREEN + " inactive entity ticks skipped" : "") + '.' +
                             " Time " + ((level.getTickRate() > 1 || level.getTickRateTime() > 40) ? TextFormat.RED : TextFormat.YELLOW) + NukkitMath.round(level.getTickRateTime(), 2) + "ms" +
                             (level.getTickRate() > 1 ? " (tick rate " + level.getTickRate() + ')' : "")
             );
@@ -0,0 +1,159 @@
+package cn.nukkit.entity;
+
+import cn.nukkit.Player;
+import cn.nukkit.Server;
+import cn.nukkit.entity.item.EntityItem;
+import cn.nukkit.entity.item.EntityXPOrb;
+import cn.nukkit.entity.mob.EntityMob;
+import cn.nukkit.entity.passive.EntityAnimal;
+import cn.nukkit.entity.projectile.EntityProjectile;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.format.FullChunk;
+
+/**
+ * Entity activation ranges
+ * <p>
+ * Entities that are not within the activation range of any player are ticked only every
+ * {@code entity-activation-inactive-tick-rate} ticks. Damage and player approach wake them up again.
+ */
+public class ActivationRange {
+
+    public static final int CATEGORY_MISC = 0;
+    public static final int CATEGORY_MONSTER = 1;
+    public static final int CATEGORY_ANIMAL = 2;
+    public static final int CATEGORY_ITEM = 3;
+    public static final int CATEGORY_PROJECTILE = 4;
+
+    /**
+     * How long an entity stays active after it has been woken up by damage
+     */
+    public static final int WAKE_UP_TICKS = 100;
+
+    /**
+     * Activation range per category in blocks, 0 means always active
+     */
+    private final int[] ranges = new int[5];
+    private final int maxRange;
+    private final int inactiveTickRate;
+
+    public ActivationRange(Server server) {
+        boolean enabled = server.getPropertyBoolean("entity-activation-range", true);
+        if (enabled) {
+            this.ranges[CATEGORY_MONSTER] = Math.max(0, server.getPropertyInt("entity-activation-range-monsters", 32));
+            this.ranges[CATEGORY_ANIMAL] = Math.max(0, server.getPropertyInt("entity-activation-range-animals", 32));
+            this.ranges[CATEGORY_ITEM] = Math.max(0, server.getPropertyInt("entity-activation-range-items", 16));
+            this.ranges[CATEGORY_PROJECTILE] = Math.max(0, server.getPropertyInt("entity-activation-range-projectiles", 16));
+        }
+        int max = 0;
+        for (int range : this.ranges) {
+            max = Math.max(max, range);
+        }
+        this.maxRange = max;
+        this.inactiveTickRate = Math.max(1, server.getPropertyInt("entity-activation-inactive-tick-rate", 20));
+    }
+
+    public boolean isEnabled() {
+        return this.maxRange > 0 && this.inactiveTickRate > 1;
+    }
+
+    public int getRange(int category) {
+        return this.ranges[category];
+    }
+
+    public int getInactiveTickRate() {
+        return this.inactiveTickRate;
+    }
+
+    public static int getCategory(Entity entity) {
+        if (entity instanceof Player) {
+            return CATEGORY_MISC;
+        }
+        if (entity instanceof EntityMob) {
+            return CATEGORY_MONSTER;
+        }
+        if (entity instanceof EntityAnimal) {
+            return CATEGORY_ANIMAL;
+        }
+        if (entity instanceof EntityItem || entity instanceof EntityXPOrb) {
+            return CATEGORY_ITEM;
+        }
+        if (entity instanceof EntityProjectile) {
+            return CATEGORY_PROJECTILE;
+        }
+        return CATEGORY_MISC;
+    }
+
+    /**
+     * Mark all entities within the activation range of a player as active for this tick
+     *
+     * @param level level
+     * @param currentTick current server tick
+     */
+    public void activateEntities(Level level, int currentTick) {
+        if (!this.isEnabled()) {
+            return;
+        }
+
+        for (Player player : level.getPlayers().values()) {
+            if (!player.spawned) {
+                continue;
+            }
+
+            int px = player.getFloorX();
+            int pz = player.getFloorZ();
+            int minX = (px - this.maxRange) >> 4;
+            int maxX = (px + this.maxRange) >> 4;
+            int minZ = (pz - this.maxRange) >> 4;
+            int maxZ = (pz + this.maxRange) >> 4;
+
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    FullChunk chunk = level.getChunkIfLoaded(cx, cz);
+                    if (chunk == null) {
+                        continue;
+                    }
+
+                    for (Entity entity : chunk.getEntities().values()) {
+                        if (entity.activatedTick >= currentTick) {
+                            continue;
+                        }
+
+                        int range = this.ranges[entity.getActivationCategory()];
+                        if (range > 0 && Math.abs(entity.x - px) <= range && Math.abs(entity.z - pz) <= range) {
+                            entity.activatedTick = currentTick;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the entity should get a full tick this tick
+     *
+     * @param entity entity
+     * @param currentTick current server tick
+     * @return entity should be ticked
+     */
+    public boolean isActive(Entity entity, int currentTick) {
+        if (!this.isEnabled() || entity.activatedTick >= currentTick) {
+            return true;
+        }
+
+        if (this.ranges[entity.getActivationCategory()] == 0) {
+            return true;
+        }
+
+        // Keep entities in the middle of something ticking normally
+        if (entity.riding != null || !entity.passengers.isEmpty() || entity.fireTicks > 0 || !entity.isAlive()) {
+            return true;
+        }
+
+        if (entity instanceof EntityProjectile && !((EntityProjectile) entity).hadCollision) {
+            return true;
+        }
+
+        // Spread the inactive ticks over the interval
+        return (currentTick + entity.getId()) % this.inactiveTickRate == 0;
+    }
+}
@@ -27,6 +27,7 @@ import cn.nukkit.network.protocol.*;
 import cn.nukkit.network.protocol.types.EntityLink;
 import cn.nukkit.plugin.Plugin;
 import cn.nukkit.potion.Effect;
+import cn.nukkit.scheduler.LevelTickPool;
 import cn.nukkit.utils.ChunkException;
 import cn.nukkit.utils.MainLogger;
 import cn.nukkit.utils.Utils;
@@ -39,6 +40,7 @@ import org.apache.commons.math3.util.FastMath;
 import java.lang.reflect.Constructor;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static cn.nukkit.network.protocol.SetEntityLinkPacket.*;
 
@@ -250,13 +252,24 @@ public abstract class Entity extends Location implements Metadatable {
 
     public static final double STEP_CLIP_MULTIPLIER = 0.4;
 
-    public static long entityCount = 1;
+    private static final AtomicLong ENTITY_ID = new AtomicLong(1);
+
+    /**
+     * Next entity runtime id. Kept in sync with the ids handed out by {@link #nextEntityId()}; plugins that increment it
+     * to reserve an id on the main thread are taken into account.
+     *
+     * @deprecated use {@link #nextEntityId()}, this field can't be updated atomically
+     */
+    @Deprecated
+    public static volatile long entityCount = 1;
 
     private static final Map<String, Class<? extends Entity>> knownEntities = new HashMap<>();
     private static final Map<String, String> shortNames = new HashMap<>();
 
     public final Map<Integer, Player> hasSpawned = new HashMap<>();
 
+    private MovementTracker movementTracker;
+
     protected final Map<Integer, Effect> effects = new ConcurrentHashMap<>();
 
     protected long id;
@@ -317,6 +330,8 @@ public abstract class Entity extends Location implements Metadatable {
 
     public float fallDistance = 0;
     public int lastUpdate;
+    public int activatedTick = Integer.MIN_VALUE;
+    private int activationCategory = -1;
     public int fireTicks = 0;
     public int inPortalTicks = 0;
     public int inEndPortalTicks = 0;
@@ -461,7 +476,7 @@ public abstract class Entity extends Location implements Metadatable {
         this.isPlayer = this instanceof Player;
         this.temporalVector = new Vector3();
 
-        this.id = entityCount++;
+        this.id = nextEntityId();
         this.justCreated = true;
         this.namedTag = nbt;
 
@@ -528,11 +543,19 @@ public abstract class Entity extends Location implements Metadatable {
         this.initEntity();
 
         this.lastUpdate = this.server.getTick();
+        this.activatedTick = this.lastUpdate + ActivationRange.WAKE_UP_TICKS;
         this.server.getPluginManager().callEvent(new EntitySpawnEvent(this));
 
         this.scheduleUpdate();
     }
 
+    public int getActivationCategory() {
+        if (this.activationCategory == -1) {
+            this.activationCategory = ActivationRange.getCategory(this);
+        }
+        return this.activationCategory;
+    }
+
     public boolean hasCustomName() {
         return !this.getNameTag().isEmpty();
     }
@@ -799,6 +822,24 @@ public abstract class Entity extends Location implements Metadatable {
         }
     }
 
+    /**
+     * Get a new unique entity runtime id. Safe to call from any thread.
+     *
+     * @return entity runtime id
+     */
+    @SuppressWarnings("deprecation")
+    public static long nextEntityId() {
+        while (true) {
+            long id = ENTITY_ID.get();
+            // entityCount may have been raised by a plugin reserving ids the old way
+            long next = Math.max(id, entityCount);
+            if (ENTITY_ID.compareAndSet(id, next + 1)) {
+                entityCount = next + 1;
+                return next;
+            }
+        }
+    }
+
     public static Entity createEntity(String name, Position pos, Object... args) {
         return createEntity(name, pos.getChunk(), getDefaultNBT(pos), args);
     }
@@ -1026,6 +1067,18 @@ public abstract class Entity extends Location implements Metadatable {
         return hasSpawned;
     }
 
+    /**
+     * Get the tracker of the movement sent to the viewers of this entity
+     *
+     * @return movement tracker
+     */
+    public MovementTracker getMovementTracker() {
+        if (this.movementTracker == null) {
+            this.movementTracker = new MovementTracker();
+        }
+        return this.movementTracker;
+    }
+
     public void sendPotionEffects(Player player) {
         for (Effect effect : this.effects.values()) {
             MobEffectPacket pk = new MobEffectPacket();
@@ -1083,6 +1136,9 @@ public abstract class Entity extends Location implements Metadatable {
             pk.eid = this.id;
             player.dataPacket(pk);
             this.hasSpawned.remove(player.getLoaderId());
+            if (this.movementTracker != null) {
+                this.movementTracker.remove(player);
+            }
         }
     }
 
@@ -1098,6 +1154,7 @@ public abstract class Entity extends Location implements Metadatable {
         if (source.isCancelled()) {
             return false;
         }
+        this.activatedTick = Math.max(this.activatedTick, this.server.getTick() + ActivationRange.WAKE_UP_TICKS);
         if (this.absorption > 0) { // Damage Absorption
             this.setAbsorption(Math.max(0, this.absorption + source.getDamage(EntityDamageEvent.DamageModifier.ABSORPTION)));
         }
@@ -1388,10 +1445,17 @@ public abstract class Entity extends Location implements Metadatable {
             this.server.getPluginManager().callEvent(ev);
 
             if (!ev.isCancelled()) {
-                if (this.getLevel().getDimension() == Level.DIMENSION_NETHER) {
-                    this.switchLevel(server.getDefaultLevel());
+                Level target = this.getLevel().getDimension() == Level.DIMENSION_NETHER ? server.getDefaultLevel() : server.getNetherWorld(this.level.getName());
+                Runnable travel = () -> {
+                    if (this.switchLevel(target)) {
+                        // Entities don't load chunks, keep the exit loaded for a while
+                        target.addChunkTicket(ChunkTicketType.PORTAL, this.getChunkX(), this.getChunkZ(), 1);
+                    }
+                };
+                if (LevelTickPool.isLevelTickThread()) {
+                    this.server.getLevelTickPool().runAfterTick(travel);
                 } else {
-                    this.switchLevel(server.getNetherWorld(this.level.getName()));
+                    travel.run();
                 }
             }
         }
@@ -2168,6 +2232,14 @@ public abstract class Entity extends Location implements Metadatable {
         }
 
         if (pos instanceof Position && ((Position) pos).level != null && ((Position) pos).level != this.level) {
+            if (LevelTickPool.isLevelTickThread()) {
+                if (this.closed) {
+                    return false;
+                }
+                // No event listeners are registered while levels are ticked in parallel, so the move can't be cancelled
+                this.server.getLevelTickPool().runAfterTick(() -> this.setPosition(pos));
+                return true;
+            }
             if (!this.switchLevel(((Position) pos).getLevel())) {
                 return false;
             }
@@ -2246,6 +2318,16 @@ public abstract class Entity extends Location implements Metadatable {
     }
 
     public boolean teleport(Location location, PlayerTeleportEvent.TeleportCause cause) {
+        if (location.level != null && location.level != this.level && LevelTickPool.isLevelTickThread()) {
+            if (this.closed) {
+                return false;
+            }
+            // Moving between levels is not safe while the levels are being ticked in parallel. No event listeners are
+            // registered while they are, so the teleport can't be cancelled and only fails if the entity is closed.
+            this.server.getLevelTickPool().runAfterTick(() -> this.teleport(location, cause));
+            return true;
+        }
+
         double yaw = location.yaw;
         double pitch = location.pitch;
 
@@ -2294,7 +2376,7 @@ public abstract class Entity extends Location implements Metadatable {
             return;
         }
 
-        for (Player player : this.level.getChunkPlayers(this.chunk.getX(), this.chunk.getZ()).values()) {
+        for (Player player : this.level.getChunkPlayerArray(this.chunk.getX(), this.chunk.getZ())) {
             if (player.isOnline()) {
                 this.spawnTo(player);
             }
@@ -89,6 +89,9 @@ public class EntityHuman extends EntityHumanType {
     }
 
     public void setSkin(Skin skin) {
+        if (skin != null) {
+            skin.intern();
+        }
         this.skin = skin;
     }
 
@@ -298,7 +301,10 @@ public class EntityHuman extends EntityHumanType {
             }
 
             if (this.isPlayer) {
-                this.server.updatePlayerListData(this.uuid, this.getId(), ((Player) this).getDisplayName(), this.skin, ((Player) this).getLoginChainData().getXUID(), new Player[]{player});
+                // Listed players have already been sent to everyone in the list when either of them joined
+                if (!this.server.isInPlayerList(this.uuid) || !this.server.isInPlayerList(player.getUniqueId())) {
+                    this.server.updatePlayerListData(this.uuid, this.getId(), ((Player) this).getDisplayName(), this.skin, ((Player) this).getLoginChainData().getXUID(), new Player[]{player});
+                }
             } else {
                 this.server.updatePlayerListData(this.uuid, this.getId(), this.getName(), this.skin, new Player[]{player});
             }
@@ -0,0 +1,169 @@
+package cn.nukkit.entity.data;
+
+import cn.nukkit.Player;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.network.protocol.MoveEntityAbsolutePacket;
+import cn.nukkit.network.protocol.MoveEntityDeltaPacket;
+import cn.nukkit.network.protocol.ProtocolInfo;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sends the movement of an entity to its viewers.
+ * <p>
+ * The position and rotation last sent to every viewer is remembered. Clients supporting it are only sent the axes
+ * and rotations that changed by more than the precision they are sent with, using {@link MoveEntityDeltaPacket}.
+ * The full position is sent again every {@value RESYNC_INTERVAL} updates and to viewers that haven't been sent the
+ * position yet. Older clients are always sent {@link MoveEntityAbsolutePacket}.
+ */
+public class MovementTracker {
+
+    public static final int RESYNC_INTERVAL = 20;
+
+    private static final float POSITION_THRESHOLD = 0.001f;
+
+    private final Int2ObjectMap<State> states = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Send a movement to the viewers of an entity
+     */
+    public synchronized void sendMovement(Entity entity, Collection<Player> viewers, double x, double y, double z, double yaw, double pitch, double headYaw) {
+        float fx = (float) x;
+        float fy = (float) y;
+        float fz = (float) z;
+        byte byteYaw = toByte(yaw);
+        byte bytePitch = toByte(pitch);
+        byte byteHeadYaw = toByte(headYaw);
+        boolean onGround = entity.onGround;
+
+        MoveEntityAbsolutePacket absolute = null;
+        List<MoveEntityDeltaPacket> deltas = null;
+
+        for (Player player : viewers) {
+            State state = null;
+            if (player.protocol >= ProtocolInfo.v1_16_100) {
+                state = this.states.get(player.getLoaderId());
+                if (state == null) {
+                    state = new State();
+                    this.states.put(player.getLoaderId(), state);
+                } else if (++state.updates < RESYNC_INTERVAL) {
+                    int flags = 0;
+                    if (Math.abs(fx - state.x) >= POSITION_THRESHOLD) {
+                        flags |= MoveEntityDeltaPacket.FLAG_HAS_X;
+                        state.x = fx;
+                    }
+                    if (Math.abs(fy - state.y) >= POSITION_THRESHOLD) {
+                        flags |= MoveEntityDeltaPacket.FLAG_HAS_Y;
+                        state.y = fy;
+                    }
+                    if (Math.abs(fz - state.z) >= POSITION_THRESHOLD) {
+                        flags |= MoveEntityDeltaPacket.FLAG_HAS_Z;
+                        state.z = fz;
+                    }
+                    if (byteYaw != state.yaw) {
+                        flags |= MoveEntityDeltaPacket.FLAG_HAS_YAW;
+                        state.yaw = byteYaw;
+                    }
+                    if (byteHeadYaw != state.headYaw) {
+                        flags |= MoveEntityDeltaPacket.FLAG_HAS_HEAD_YAW;
+                        state.headYaw = byteHeadYaw;
+                    }
+                    if (bytePitch != state.pitch) {
+                        flags |= MoveEntityDeltaPacket.FLAG_HAS_PITCH;
+                        state.pitch = bytePitch;
+                    }
+                    if (flags == 0 && onGround == state.onGround) {
+                        continue;
+                    }
+                    state.onGround = onGround;
+                    if (onGround) {
+                        flags |= MoveEntityDeltaPacket.FLAG_ON_GROUND;
+                    }
+
+                    if (deltas == null) {
+                        deltas = new ArrayList<>(2);
+                    }
+                    MoveEntityDeltaPacket delta = null;
+                    for (MoveEntityDeltaPacket pk : deltas) {
+                        if (pk.flags == flags) {
+                            delta = pk;
+                            break;
+                        }
+                    }
+                    if (delta == null) {
+                        delta = new MoveEntityDeltaPacket();
+                        delta.eid = entity.getId();
+                        delta.flags = flags;
+                        delta.x = fx;
+                        delta.y = fy;
+                        delta.z = fz;
+                        delta.yawDelta = yaw;
+                        delta.headYawDelta = headYaw;
+                        delta.pitchDelta = pitch;
+                        deltas.add(delta);
+                    }
+                    player.batchDataPacket(delta);
+                    continue;
+                }
+            }
+
+            if (absolute == null) {
+                absolute = new MoveEntityAbsolutePacket();
+                absolute.eid = entity.getId();
+                absolute.x = fx;
+                absolute.y = fy;
+                absolute.z = fz;
+                absolute.yaw = yaw;
+                absolute.headYaw = headYaw;
+                absolute.pitch = pitch;
+                absolute.onGround = onGround;
+            }
+            if (state != null) {
+                state.set(fx, fy, fz, byteYaw, byteHeadYaw, bytePitch, onGround);
+            }
+            player.batchDataPacket(absolute);
+        }
+    }
+
+    /**
+     * Forget what was sent to a player, e.g. when the entity is despawned for them
+     */
+    public synchronized void remove(Player player) {
+        this.states.remove(player.getLoaderId());
+    }
+
+    public synchronized void clear() {
+        this.states.clear();
+    }
+
+    private static byte toByte(double rotation) {
+        return (byte) (rotation / 1.40625);
+    }
+
+    private static class State {
+
+        private float x;
+        private float y;
+        private float z;
+        private byte yaw;
+        private byte headYaw;
+        private byte pitch;
+        private boolean onGround;
+        private int updates;
+
+        private void set(float x, float y, float z, byte yaw, byte headYaw, byte pitch, boolean onGround) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.headYaw = headYaw;
+            this.pitch = pitch;
+            this.onGround = onGround;
+            this.updates = 0;
+        }
+    }
+}
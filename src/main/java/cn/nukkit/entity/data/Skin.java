@@ -15,12 +15,14 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author MagicDroidX
  * Nukkit Project
  */
-@ToString
+@ToString(exclude = {"encoded"})
 public class Skin {
 
     public static final int SINGLE_SKIN_SIZE = 8192;
@@ -50,9 +52,9 @@ public class Skin {
     private String playFabId = "";
     private String skinResourcePatch;
     private SerializedImage skinData;
-    private final List<SkinAnimation> animations = new ArrayList<>();
-    private final List<PersonaPiece> personaPieces = new ArrayList<>();
-    private final List<PersonaPieceTint> tintColors = new ArrayList<>();
+    private final List<SkinAnimation> animations = new EncodedList<>();
+    private final List<PersonaPiece> personaPieces = new EncodedList<>();
+    private final List<PersonaPieceTint> tintColors = new EncodedList<>();
     private SerializedImage capeData;
     private String geometryData;
     private String animationData;
@@ -65,6 +67,11 @@ public class Skin {
     private String armSize = "wide";
     private boolean trusted = true;
 
+    /**
+     * Network encoding of this skin by protocol
+     */
+    private final Map<Integer, byte[]> encoded = new ConcurrentHashMap<>();
+
     public boolean isValid() {
         return isValidSkin() && isValidResourcePatch();
     }
@@ -97,6 +104,7 @@ public class Skin {
     }
 
     public void setSkinId(String skinId) {
+        this.encoded.clear();
         if (skinId == null || skinId.trim().isEmpty()) {
             return;
         }
@@ -112,11 +120,13 @@ public class Skin {
     }
 
     public void setSkinData(SerializedImage skinData) {
+        this.encoded.clear();
         Objects.requireNonNull(skinData, "skinData");
         this.skinData = skinData;
     }
 
     public void setSkinResourcePatch(String skinResourcePatch) {
+        this.encoded.clear();
         if (skinResourcePatch == null || skinResourcePatch.trim().isEmpty()) {
             this.skinResourcePatch = GEOMETRY_CUSTOM;
             return;
@@ -125,6 +135,7 @@ public class Skin {
     }
 
     public void setGeometryName(String geometryName) {
+        this.encoded.clear();
         // Hack for slim skins on older versions
         if (geometryName.equals("geometry.humanoid.customSlim")) {
             this.isLegacySlim = true;
@@ -160,6 +171,7 @@ public class Skin {
     }
 
     public void setCapeId(String capeId) {
+        this.encoded.clear();
         if (capeId == null || capeId.trim().isEmpty()) {
             capeId = null;
         }
@@ -178,6 +190,7 @@ public class Skin {
     }
 
     public void setCapeData(SerializedImage capeData) {
+        this.encoded.clear();
         Objects.requireNonNull(capeData, "capeData");
         this.capeData = capeData;
     }
@@ -190,6 +203,7 @@ public class Skin {
     }
 
     public void setGeometryData(String geometryData) {
+        this.encoded.clear();
         Preconditions.checkNotNull(geometryData, "geometryData");
         if (!geometryData.equals(this.geometryData)) {
             if (Server.getInstance().doNotLimitSkinGeometry || geometryData.getBytes().length < MAX_DATA_SIZE) {
@@ -206,6 +220,7 @@ public class Skin {
     }
 
     public void setAnimationData(String animationData) {
+        this.encoded.clear();
         Preconditions.checkNotNull(animationData, "animationData");
         if (!animationData.equals(this.animationData)) {
             if (Server.getInstance().doNotLimitSkinGeometry|| animationData.getBytes().length < MAX_DATA_SIZE) {
@@ -231,6 +246,7 @@ public class Skin {
     }
 
     public void setPremium(boolean premium) {
+        this.encoded.clear();
         this.premium = premium;
     }
 
@@ -239,6 +255,7 @@ public class Skin {
     }
 
     public void setPersona(boolean persona) {
+        this.encoded.clear();
         this.persona = persona;
     }
 
@@ -247,6 +264,7 @@ public class Skin {
     }
 
     public void setCapeOnClassic(boolean capeOnClassic) {
+        this.encoded.clear();
         this.capeOnClassic = capeOnClassic;
     }
 
@@ -263,6 +281,7 @@ public class Skin {
     }
 
     public void setSkinColor(String skinColor) {
+        this.encoded.clear();
         this.skinColor = skinColor;
     }
 
@@ -271,6 +290,7 @@ public class Skin {
     }
 
     public void setArmSize(String armSize) {
+        this.encoded.clear();
         this.armSize = armSize;
     }
 
@@ -279,6 +299,7 @@ public class Skin {
     }
 
     public void setPlayFabId(String playFabId) {
+        this.encoded.clear();
         this.playFabId = playFabId;
     }
 
@@ -286,6 +307,40 @@ public class Skin {
         return this.playFabId;
     }
 
+    /**
+     * Get the cached network encoding of this skin
+     *
+     * @param protocol protocol version
+     * @return encoded skin or null if it hasn't been encoded for the protocol yet
+     */
+    public byte[] getEncoded(int protocol) {
+        return this.encoded.get(protocol);
+    }
+
+    public void setEncoded(int protocol, byte[] data) {
+        this.encoded.put(protocol, data);
+    }
+
+    /**
+     * Replace the images and geometry of this skin with the instances shared through the {@link SkinStore}.
+     * Cached encodings are dropped.
+     */
+    public void intern() {
+        this.encoded.clear();
+        this.skinData = SkinStore.intern(this.skinData);
+        this.capeData = SkinStore.intern(this.capeData);
+        this.geometryData = SkinStore.intern(this.geometryData);
+        this.animationData = SkinStore.intern(this.animationData);
+        this.skinResourcePatch = SkinStore.intern(this.skinResourcePatch);
+        for (int i = 0; i < this.animations.size(); i++) {
+            SkinAnimation animation = this.animations.get(i);
+            SerializedImage image = SkinStore.intern(animation.image);
+            if (image != animation.image) {
+                this.animations.set(i, new SkinAnimation(image, animation.type, animation.frames, animation.expression));
+            }
+        }
+    }
+
     private static SerializedImage parseBufferedImage(BufferedImage image) {
         FastByteArrayOutputStream outputStream = new FastByteArrayOutputStream();
         for (int y = 0; y < image.getHeight(); y++) {
@@ -304,4 +359,42 @@ public class Skin {
     private static String convertLegacyGeometryName(String geometryName) {
         return "{\"geometry\" : {\"default\" : \"" + geometryName + "\"}}";
     }
+
+    /**
+     * List that drops the cached encodings of the skin whenever it is changed
+     */
+    private class EncodedList<E> extends AbstractList<E> {
+
+        private final List<E> list = new ArrayList<>();
+
+        @Override
+        public E get(int index) {
+            return this.list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return this.list.size();
+        }
+
+        @Override
+        public E set(int index, E element) {
+            encoded.clear();
+            return this.list.set(index, element);
+        }
+
+        @Override
+        public void add(int index, E element) {
+            encoded.clear();
+            this.list.add(index, element);
+            this.modCount++;
+        }
+
+        @Override
+        public E remove(int index) {
+            encoded.clear();
+            this.modCount++;
+            return this.list.remove(index);
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package cn.nukkit.entity.data;
+
+import cn.nukkit.utils.SerializedImage;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * Shares the image data and geometry of equal skins.
+ * <p>
+ * Many players wear the same default or marketplace skins. Images are looked up by a hash of their content and
+ * strings are interned, so every distinct image or geometry is kept in memory once no matter how many players use
+ * it. Entries are weakly referenced and go away with the last skin using them.
+ */
+public class SkinStore {
+
+    private static final Cache<HashCode, SerializedImage> images = CacheBuilder.newBuilder().weakValues().build();
+    private static final Interner<String> strings = Interners.newWeakInterner();
+
+    /**
+     * Get the shared instance of an image
+     *
+     * @param image image
+     * @return an image with the same size and data
+     */
+    public static SerializedImage intern(SerializedImage image) {
+        if (image == null || image.data.length == 0) {
+            return image;
+        }
+
+        HashCode hash = Hashing.murmur3_128().newHasher()
+                .putInt(image.width)
+                .putInt(image.height)
+                .putBytes(image.data)
+                .hash();
+        SerializedImage shared = images.asMap().putIfAbsent(hash, image);
+        if (shared == null) {
+            return image;
+        }
+        if (shared.width != image.width || shared.height != image.height || !Arrays.equals(shared.data, image.data)) {
+            // Hash collision, don't share
+            return image;
+        }
+        return shared;
+    }
+
+    /**
+     * Get the shared instance of a string, e.g. geometry or animation data
+     *
+     * @param string string
+     * @return an equal string
+     */
+    public static String intern(String string) {
+        if (string == null || string.isEmpty()) {
+            return string;
+        }
+        return strings.intern(string);
+    }
+
+    /**
+     * Get the number of distinct skin images in use
+     *
+     * @return image count
+     */
+    public static long getImageCount() {
+        return images.size();
+    }
+}
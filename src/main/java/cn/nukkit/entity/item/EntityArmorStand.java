@@ -24,7 +24,6 @@ import cn.nukkit.network.protocol.LevelEventPacket;
 import cn.nukkit.network.protocol.SetEntityDataPacket;
 import cn.nukkit.scheduler.Task;
 
-import java.util.Collection;
 
 public class EntityArmorStand extends Entity implements InventoryHolder, EntityInteractable {
 
@@ -241,7 +240,7 @@ public class EntityArmorStand extends Entity implements InventoryHolder, EntityI
     @Override
     public void spawnToAll() {
         if (this.chunk != null && !this.closed) {
-            Collection<Player> chunkPlayers = this.level.getChunkPlayers(this.chunk.getX(), this.chunk.getZ()).values();
+            Player[] chunkPlayers = this.level.getChunkPlayerArray(this.chunk.getX(), this.chunk.getZ());
             for (Player chunkPlayer : chunkPlayers) {
                 this.spawnTo(chunkPlayer);
             }
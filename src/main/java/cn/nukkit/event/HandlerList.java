@@ -144,6 +144,22 @@ public class HandlerList {
         return listeners;
     }
 
+    /**
+     * Check whether any listener is registered for any event
+     *
+     * @return there are registered listeners
+     */
+    public static boolean hasAnyRegisteredListeners() {
+        synchronized (allLists) {
+            for (HandlerList h : allLists) {
+                if (h.getRegisteredListeners().length > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public static ArrayList<HandlerList> getHandlerLists() {
         synchronized (allLists) {
             return new ArrayList<>(allLists);
@@ -14,6 +14,7 @@ import cn.nukkit.network.protocol.InventoryContentPacket;
 import cn.nukkit.network.protocol.InventorySlotPacket;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * @author MagicDroidX
@@ -21,6 +22,17 @@ import java.util.*;
  */
 public abstract class BaseInventory implements Inventory {
 
+    /**
+     * Rough serialized size of the parts of the inventory packets that don't depend on the items
+     */
+    private static final int SLOT_PACKET_OVERHEAD = 6;
+    static final int CONTENT_PACKET_OVERHEAD = 4;
+
+    /**
+     * Inventories with slot changes that will be sent to the viewers at the end of the tick
+     */
+    private static final Queue<BaseInventory> pendingSlotSyncs = new ConcurrentLinkedQueue<>();
+
     protected final InventoryType type;
 
     protected int maxStackSize = Inventory.MAX_STACK;
@@ -31,7 +43,9 @@ public abstract class BaseInventory implements Inventory {
 
     protected final String title;
 
-    public final Map<Integer, Item> slots = new HashMap<>();
+    public final Map<Integer, Item> slots = new ItemSlotMap();
+
+    private final BitSet dirtySlots = new BitSet();
 
     protected final Set<Player> viewers = new HashSet<>();
 
@@ -105,11 +119,13 @@ public abstract class BaseInventory implements Inventory {
 
     @Override
     public Item getItem(int index) {
-        return this.slots.containsKey(index) ? this.slots.get(index).clone() : new ItemBlock(Block.get(BlockID.AIR), null, 0);
+        Item item = ((ItemSlotMap) this.slots).getItem(index);
+        return item != null ? item.clone() : new ItemBlock(Block.get(BlockID.AIR), null, 0);
     }
 
     public Item getItemFast(int index) {
-        return this.slots.containsKey(index) ? this.slots.get(index) : air;
+        Item item = ((ItemSlotMap) this.slots).getItem(index);
+        return item != null ? item : air;
     }
 
     @Override
@@ -462,7 +478,95 @@ public abstract class BaseInventory implements Inventory {
     @Override
     public void onSlotChange(int index, Item before, boolean send) {
         if (send) {
-            this.sendSlot(index, this.getViewers());
+            this.queueSlotSync(index);
+        }
+    }
+
+    /**
+     * Mark a slot as changed. All changed slots are sent to the viewers once at the end of the tick.
+     *
+     * @param index slot index
+     */
+    protected void queueSlotSync(int index) {
+        boolean queue;
+        synchronized (this.dirtySlots) {
+            queue = this.dirtySlots.isEmpty();
+            this.dirtySlots.set(index);
+        }
+        if (queue) {
+            pendingSlotSyncs.offer(this);
+        }
+    }
+
+    /**
+     * Send the slots changed during this tick to the viewers, either as separate slot packets or as one
+     * content packet, whichever is smaller.
+     */
+    public void sendPendingSlots() {
+        BitSet dirty;
+        synchronized (this.dirtySlots) {
+            if (this.dirtySlots.isEmpty()) {
+                return;
+            }
+            dirty = (BitSet) this.dirtySlots.clone();
+            this.dirtySlots.clear();
+        }
+
+        Player[] viewers = this.getViewers().toArray(new Player[0]);
+        if (viewers.length == 0 && !(this instanceof PlayerInventory)) {
+            return;
+        }
+        // Player inventories send slot updates to the holder even without viewers
+        boolean allowContents = viewers.length > 0;
+
+        int slotBytes = 0;
+        int size = this.getSize();
+        for (int i = dirty.nextSetBit(0); i >= 0 && i < size; i = dirty.nextSetBit(i + 1)) {
+            slotBytes += SLOT_PACKET_OVERHEAD + estimateItemSize(this.getItemFast(i));
+        }
+
+        // Slots out of the content range (e.g. armor slots) can't be sent with a content packet
+        if (allowContents && dirty.nextSetBit(size) == -1 && slotBytes > this.estimateContentsSize()) {
+            this.sendContents(viewers);
+        } else {
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                this.sendSlot(i, viewers);
+            }
+        }
+    }
+
+    /**
+     * Estimate the size of the packet sent by {@link #sendContents(Player...)}
+     */
+    protected int estimateContentsSize() {
+        return CONTENT_PACKET_OVERHEAD + this.estimateSlotsSize();
+    }
+
+    /**
+     * Estimate the serialized size of the items in this inventory's own slots
+     */
+    int estimateSlotsSize() {
+        int bytes = 0;
+        for (int i = 0; i < this.getSize(); i++) {
+            bytes += estimateItemSize(this.getItemFast(i));
+        }
+        return bytes;
+    }
+
+    private static int estimateItemSize(Item item) {
+        if (item.getId() == 0) {
+            return 1;
+        }
+        return item.hasCompoundTag() ? 8 + item.getCompoundTag().length : 8;
+    }
+
+    /**
+     * Send the slot changes of all inventories changed during this tick
+     */
+    public static void sendAllPendingSlots() {
+        BaseInventory inventory;
+        while ((inventory = pendingSlotSyncs.poll()) != null) {
+            inventory.sendPendingSlots();
         }
     }
 
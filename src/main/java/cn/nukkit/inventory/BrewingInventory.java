@@ -35,6 +35,10 @@ public class BrewingInventory extends ContainerInventory {
     public void onSlotChange(int index, Item before, boolean send) {
         super.onSlotChange(index, before, send);
 
+        if (index <= 3) {
+            this.getHolder().clearRecipes();
+        }
+
         if (index >= 1 && index <= 3) {
             this.getHolder().updateBlock();
         }
@@ -71,6 +71,20 @@ public class ChestInventory extends ContainerInventory {
         return doubleInventory;
     }
 
+    @Override
+    public void sendContents(Player... players) {
+        if (this.doubleInventory != null) {
+            this.doubleInventory.sendContents(players);
+        } else {
+            super.sendContents(players);
+        }
+    }
+
+    @Override
+    protected int estimateContentsSize() {
+        return this.doubleInventory != null ? this.doubleInventory.estimateContentsSize() : super.estimateContentsSize();
+    }
+
     @Override
     public void sendSlot(int index, Player... players) {
         if (this.doubleInventory != null) {
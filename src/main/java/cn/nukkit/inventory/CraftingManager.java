@@ -11,6 +11,7 @@ import cn.nukkit.utils.Config;
 import cn.nukkit.utils.MainLogger;
 import cn.nukkit.utils.Utils;
 import io.netty.util.collection.CharObjectHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.util.*;
@@ -35,15 +36,21 @@ public class CraftingManager {
     public static DataPacket packet419 = null;
 
     protected final Map<Integer, Map<UUID, ShapedRecipe>> shapedRecipes = new Int2ObjectOpenHashMap<>();
-    public final Map<Integer, FurnaceRecipe> furnaceRecipes = new Int2ObjectOpenHashMap<>();
+    // Same maps as the public ones, used for lookups without boxing the keys
+    private final Int2ObjectMap<FurnaceRecipe> furnaceRecipeIndex = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<BrewingRecipe> brewingRecipeIndex = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<ContainerRecipe> containerRecipeIndex = new Int2ObjectOpenHashMap<>();
+
+    public final Map<Integer, FurnaceRecipe> furnaceRecipes = furnaceRecipeIndex;
     public final Map<UUID, MultiRecipe> multiRecipes = new HashMap<>();
-    public final Map<Integer, BrewingRecipe> brewingRecipes = new Int2ObjectOpenHashMap<>();
+    public final Map<Integer, BrewingRecipe> brewingRecipes = brewingRecipeIndex;
     public final Map<Integer, BrewingRecipe> brewingRecipesOld = new Int2ObjectOpenHashMap<>();
-    public final Map<Integer, ContainerRecipe> containerRecipes = new Int2ObjectOpenHashMap<>();
+    public final Map<Integer, ContainerRecipe> containerRecipes = containerRecipeIndex;
     public final Map<Integer, ContainerRecipe> containerRecipesOld = new Int2ObjectOpenHashMap<>();
     protected final Map<Integer, Map<UUID, ShapelessRecipe>> shapelessRecipes = new Int2ObjectOpenHashMap<>();
 
     private static int RECIPE_COUNT = 0;
+    private int mixRevision = 0;
     public static int NEXT_NETWORK_ID = 0;
 
     public static final Comparator<Item> recipeComparator = (i1, i2) -> {
@@ -410,11 +417,25 @@ public class CraftingManager {
     }
 
     public FurnaceRecipe matchFurnaceRecipe(Item input) {
-        FurnaceRecipe recipe = this.furnaceRecipes.get(getItemHash(input));
-        if (recipe == null) recipe = this.furnaceRecipes.get(getItemHash(input.getId(), 0));
+        return this.matchFurnaceRecipe(input.getId(), input.getDamage());
+    }
+
+    public FurnaceRecipe matchFurnaceRecipe(int id, int meta) {
+        FurnaceRecipe recipe = this.furnaceRecipeIndex.get(getItemHash(id, meta));
+        if (recipe == null) recipe = this.furnaceRecipeIndex.get(getItemHash(id, 0));
         return recipe;
     }
 
+    /**
+     * Get a number that changes whenever a furnace, brewing or container recipe is registered, so that matched recipes
+     * can be cached until then
+     *
+     * @return revision
+     */
+    public int getMixRevision() {
+        return this.mixRevision;
+    }
+
     private static UUID getMultiItemHash(Collection<Item> items) {
         BinaryStream stream = new BinaryStream();
         for (Item item : items) {
@@ -429,6 +450,7 @@ public class CraftingManager {
 
     public void registerFurnaceRecipe(FurnaceRecipe recipe) {
         this.furnaceRecipes.put(getItemHash(recipe.getInput()), recipe);
+        this.mixRevision++;
     }
 
     private static int getItemHash(Item item) {
@@ -467,8 +489,12 @@ public class CraftingManager {
     }
 
     private static int getPotionHash(Item ingredient, Item potion) {
-        int ingredientHash = ((ingredient.getId() & 0x3FF) << 6) | (ingredient.getDamage() & 0x3F);
-        int potionHash = ((potion.getId() & 0x3FF) << 6) | (potion.getDamage() & 0x3F);
+        return getPotionHash(ingredient.getId(), ingredient.getDamage(), potion.getId(), potion.getDamage());
+    }
+
+    private static int getPotionHash(int ingredientId, int ingredientMeta, int potionId, int potionMeta) {
+        int ingredientHash = ((ingredientId & 0x3FF) << 6) | (ingredientMeta & 0x3F);
+        int potionHash = ((potionId & 0x3FF) << 6) | (potionMeta & 0x3F);
         return ingredientHash << 16 | potionHash;
     }
 
@@ -485,6 +511,7 @@ public class CraftingManager {
         Item potion = recipe.getInput();
         int potionHash = getPotionHash(input, potion);
         this.brewingRecipes.put(potionHash, recipe);
+        this.mixRevision++;
     }
 
     public void registerBrewingRecipeOld(BrewingRecipe recipe) {
@@ -497,6 +524,7 @@ public class CraftingManager {
         Item input = recipe.getIngredient();
         Item potion = recipe.getInput();
         this.containerRecipes.put(getContainerHash(input.getId(), potion.getId()), recipe);
+        this.mixRevision++;
     }
 
     public void registerContainerRecipeOld(ContainerRecipe recipe) {
@@ -506,11 +534,19 @@ public class CraftingManager {
     }
 
     public BrewingRecipe matchBrewingRecipe(Item input, Item potion) {
-        return this.brewingRecipes.get(getPotionHash(input, potion));
+        return this.brewingRecipeIndex.get(getPotionHash(input, potion));
+    }
+
+    public BrewingRecipe matchBrewingRecipe(int inputId, int inputMeta, int potionId, int potionMeta) {
+        return this.brewingRecipeIndex.get(getPotionHash(inputId, inputMeta, potionId, potionMeta));
     }
 
     public ContainerRecipe matchContainerRecipe(Item input, Item potion) {
-        return this.containerRecipes.get(getContainerHash(input.getId(), potion.getId()));
+        return this.matchContainerRecipe(input.getId(), potion.getId());
+    }
+
+    public ContainerRecipe matchContainerRecipe(int inputId, int potionId) {
+        return this.containerRecipeIndex.get(getContainerHash(inputId, potionId));
     }
 
     public CraftingRecipe matchRecipe(List<Item> inputList, Item primaryOutput, List<Item> extraOutputList) {
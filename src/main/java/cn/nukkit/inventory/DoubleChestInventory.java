@@ -176,6 +176,12 @@ public class DoubleChestInventory extends ContainerInventory implements Inventor
         return this.right;
     }
 
+    @Override
+    protected int estimateContentsSize() {
+        // The items are stored in the halves
+        return CONTENT_PACKET_OVERHEAD + this.left.estimateSlotsSize() + this.right.estimateSlotsSize();
+    }
+
     public void sendSlot(Inventory inv, int index, Player... players) {
         InventorySlotPacket pk = new InventorySlotPacket();
         pk.slot = inv == this.right ? this.left.getSize() + index : index;
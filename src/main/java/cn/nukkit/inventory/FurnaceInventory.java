@@ -46,6 +46,10 @@ public class FurnaceInventory extends ContainerInventory {
     public void onSlotChange(int index, Item before, boolean send) {
         super.onSlotChange(index, before, send);
 
+        if (index == 0) {
+            this.getHolder().clearSmeltingRecipe();
+        }
+
         this.getHolder().scheduleUpdate();
     }
 }
@@ -0,0 +1,159 @@
+package cn.nukkit.inventory;
+
+import cn.nukkit.item.Item;
+
+import java.util.*;
+
+/**
+ * Inventory slot storage backed by an {@code Item[]} indexed by slot.
+ * Empty slots are stored as null and negative slot indexes are ignored.
+ */
+final class ItemSlotMap extends AbstractMap<Integer, Item> {
+
+    private static final Item[] EMPTY = new Item[0];
+
+    private Item[] items = EMPTY;
+    private int count;
+    private int modCount;
+
+    Item getItem(int index) {
+        return index >= 0 && index < this.items.length ? this.items[index] : null;
+    }
+
+    Item setItem(int index, Item item) {
+        if (item == null) {
+            return this.removeItem(index);
+        }
+        if (index < 0) {
+            return null;
+        }
+        if (index >= this.items.length) {
+            this.items = Arrays.copyOf(this.items, Math.max(index + 1, this.items.length + (this.items.length >> 1)));
+        }
+
+        Item old = this.items[index];
+        this.items[index] = item;
+        if (old == null) {
+            this.count++;
+            this.modCount++;
+        }
+        return old;
+    }
+
+    Item removeItem(int index) {
+        Item old = this.getItem(index);
+        if (old != null) {
+            this.items[index] = null;
+            this.count--;
+            this.modCount++;
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return this.count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && this.getItem((Integer) key) != null;
+    }
+
+    @Override
+    public Item get(Object key) {
+        return key instanceof Integer ? this.getItem((Integer) key) : null;
+    }
+
+    @Override
+    public Item put(Integer key, Item value) {
+        return this.setItem(key, value);
+    }
+
+    @Override
+    public Item remove(Object key) {
+        return key instanceof Integer ? this.removeItem((Integer) key) : null;
+    }
+
+    @Override
+    public void clear() {
+        if (this.count > 0) {
+            Arrays.fill(this.items, null);
+            this.count = 0;
+            this.modCount++;
+        }
+    }
+
+    @Override
+    public Set<Entry<Integer, Item>> entrySet() {
+        return new AbstractSet<Entry<Integer, Item>>() {
+            @Override
+            public Iterator<Entry<Integer, Item>> iterator() {
+                return new SlotIterator();
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private class SlotIterator implements Iterator<Entry<Integer, Item>> {
+
+        private int next = this.seek(0);
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        private int seek(int from) {
+            while (from < items.length && items[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < items.length;
+        }
+
+        @Override
+        public Entry<Integer, Item> next() {
+            if (this.expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next = this.seek(this.next + 1);
+            return new SlotEntry(this.last);
+        }
+
+        @Override
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            removeItem(this.last);
+            this.last = -1;
+            this.expectedModCount = modCount;
+        }
+    }
+
+    private class SlotEntry extends SimpleEntry<Integer, Item> {
+
+        private static final long serialVersionUID = 1L;
+
+        private SlotEntry(int index) {
+            super(index, items[index]);
+        }
+
+        @Override
+        public Item setValue(Item value) {
+            Objects.requireNonNull(value);
+            items[this.getKey()] = value;
+            return super.setValue(value);
+        }
+    }
+}
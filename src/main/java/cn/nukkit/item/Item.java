@@ -19,6 +19,9 @@ import cn.nukkit.utils.MainLogger;
 import cn.nukkit.utils.Utils;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.ByteOrder;
 import java.util.*;
 import java.util.regex.Pattern;
@@ -32,6 +35,10 @@ public class Item implements Cloneable, BlockID, ItemID, ProtocolInfo {
     protected static final String UNKNOWN_STR = "Unknown";
     public static Class[] list = null;
 
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Item.class, Integer.class, int.class);
+    // Constructors of the classes in list by id, resolved again if the class in list changes
+    private static final Factory[] factories = new Factory[65535];
+
     protected Block block = null;
     protected final int id;
     protected int meta;
@@ -560,7 +567,7 @@ public class Item implements Cloneable, BlockID, ItemID, ProtocolInfo {
                     item = new ItemBlock(Block.get(id), meta, count);
                 }
             } else {
-                item = ((Item) c.getConstructor(Integer.class, int.class).newInstance(meta, count));
+                item = getFactory(id, c).create(meta, count);
             }
 
             if (tags.length != 0) {
@@ -573,6 +580,36 @@ public class Item implements Cloneable, BlockID, ItemID, ProtocolInfo {
         }
     }
 
+    private static Factory getFactory(int id, Class<?> c) throws ReflectiveOperationException {
+        Factory factory = factories[id];
+        if (factory == null || factory.type != c) {
+            factory = new Factory(c);
+            factories[id] = factory;
+        }
+        return factory;
+    }
+
+    private static final class Factory {
+
+        private final Class<?> type;
+        private final MethodHandle constructor;
+
+        private Factory(Class<?> type) throws ReflectiveOperationException {
+            this.type = type;
+            this.constructor = MethodHandles.lookup().unreflectConstructor(type.getConstructor(Integer.class, int.class)).asType(FACTORY_TYPE);
+        }
+
+        private Item create(Integer meta, int count) throws Exception {
+            try {
+                return (Item) this.constructor.invokeExact(meta, count);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
     public static Item fromString(String str) {
         String[] b = str.trim().replace(' ', '_').replace("minecraft:", "").split(":");
 
@@ -967,7 +1004,7 @@ public class Item implements Cloneable, BlockID, ItemID, ProtocolInfo {
 
     public static CompoundTag parseCompoundTag(byte[] tag) {
         try {
-            return NBTIO.read(tag, ByteOrder.LITTLE_ENDIAN);
+            return NBTIO.readLazy(tag, ByteOrder.LITTLE_ENDIAN, false);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -1,12 +1,11 @@
 package cn.nukkit.item;
 
 import cn.nukkit.Player;
+import cn.nukkit.level.map.MapData;
 import cn.nukkit.nbt.tag.CompoundTag;
-import cn.nukkit.network.protocol.ClientboundMapItemDataPacket;
 import cn.nukkit.utils.MainLogger;
 
 import javax.imageio.ImageIO;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -18,9 +17,13 @@ import java.io.IOException;
  */
 public class ItemMap extends Item {
 
+    /**
+     * @deprecated map ids are random now, see {@link MapData#createId()}
+     */
+    @Deprecated
     public static int mapCount = 0;
 
-    private BufferedImage image;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
 
     public ItemMap() {
         this(0, 1);
@@ -35,7 +38,7 @@ public class ItemMap extends Item {
 
         if (!hasCompoundTag() || !getNamedTag().contains("map_uuid")) {
             CompoundTag tag = new CompoundTag();
-            tag.putLong("map_uuid", mapCount++);
+            tag.putLong("map_uuid", MapData.createId());
             this.setNamedTag(tag);
         }
     }
@@ -45,36 +48,68 @@ public class ItemMap extends Item {
     }
 
     public void setImage(BufferedImage image) {
-        try {
-            if (image.getHeight() != 128 || image.getWidth() != 128) {
-                this.image = new BufferedImage(128, 128, image.getType());
-                Graphics2D g = this.image.createGraphics();
-                g.drawImage(image, 0, 0, 128, 128, null);
-                g.dispose();
-            } else {
-                this.image = image;
-            }
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(this.image, "png", baos);
+        this.setNamedTag(this.getNamedTag().putLong("map_uuid", MapData.createId()));
+        MapData data = MapData.get(getMapId());
+        data.setImage(image);
+        this.saveMapData(data);
+    }
 
-            this.setNamedTag(this.getNamedTag().putLong("map_uuid", mapCount++).putByteArray("Colors", baos.toByteArray()));
-            baos.close();
+    /**
+     * Store the colors of a map in the item. They are stored as a PNG image to keep the item small in packets.
+     *
+     * @param data map data
+     */
+    public void saveMapData(MapData data) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(data.toImage(), "png", out);
+            this.setNamedTag(this.getNamedTag().putByteArray("Colors", out.toByteArray()));
         } catch (IOException e) {
             MainLogger.getLogger().logException(e);
         }
     }
 
-    protected BufferedImage loadImageFromNBT() {
-        try {
-            byte[] data = getNamedTag().getByteArray("Colors");
-            image = ImageIO.read(new ByteArrayInputStream(data));
-            return image;
-        } catch (IOException e) {
-            MainLogger.getLogger().logException(e);
+    /**
+     * Get the colors of this map. The colors stored in the item are loaded if the map hasn't been used yet.
+     *
+     * @return map data
+     */
+    public MapData getMapData() {
+        MapData data = MapData.get(getMapId());
+        if (data.isEmpty() && getNamedTag().contains("Colors")) {
+            byte[] bytes = getNamedTag().getByteArray("Colors");
+            if (!isPng(bytes)) {
+                // Raw colors written by earlier versions
+                data.fromBytes(bytes);
+            } else {
+                try {
+                    BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+                    if (image != null) {
+                        data.setImage(image);
+                    }
+                } catch (IOException e) {
+                    MainLogger.getLogger().logException(e);
+                }
+            }
+        }
+        return data;
+    }
+
+    private static boolean isPng(byte[] bytes) {
+        if (bytes.length < PNG_SIGNATURE.length) {
+            return false;
         }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (bytes[i] != PNG_SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return null;
+    protected BufferedImage loadImageFromNBT() {
+        MapData data = getMapData();
+        return data.isEmpty() ? null : data.toImage();
     }
 
     public long getMapId() {
@@ -82,35 +117,13 @@ public class ItemMap extends Item {
     }
 
     public void sendImage(Player p) {
-        // Don't load the image from NBT if it has been done before
-        BufferedImage image = this.image != null ? this.image : loadImageFromNBT();
-
-        ClientboundMapItemDataPacket pk = new ClientboundMapItemDataPacket();
-        pk.mapId = getMapId();
-        pk.update = 2;
-        pk.scale = 0;
-        pk.width = 128;
-        pk.height = 128;
-        pk.offsetX = 0;
-        pk.offsetZ = 0;
-        pk.image = image;
-
-        p.dataPacket(pk);
+        getMapData().sendTo(p);
     }
 
     public boolean trySendImage(Player p) {
-        BufferedImage image = this.image != null ? this.image : loadImageFromNBT();
-        if (image == null) return false;
-        ClientboundMapItemDataPacket pk = new ClientboundMapItemDataPacket();
-        pk.mapId = getMapId();
-        pk.update = 2;
-        pk.scale = 0;
-        pk.width = 128;
-        pk.height = 128;
-        pk.offsetX = 0;
-        pk.offsetZ = 0;
-        pk.image = image;
-        p.dataPacket(pk);
+        MapData data = getMapData();
+        if (data.isEmpty()) return false;
+        data.sendTo(p);
         return true;
     }
 
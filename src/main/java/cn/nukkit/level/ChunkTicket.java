@@ -0,0 +1,99 @@
+package cn.nukkit.level;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps a square of chunks loaded until it is removed with {@link Level#removeChunkTicket(ChunkTicket)} or expires.
+ * Tickets on the {@link #LEVEL_TICKING} level also make the chunks eligible for random ticks without a player
+ * nearby.
+ */
+public class ChunkTicket {
+
+    /**
+     * Chunks are loaded and ticked
+     */
+    public static final int LEVEL_TICKING = 0;
+    /**
+     * Chunks are only kept loaded
+     */
+    public static final int LEVEL_LOADED = 1;
+
+    private final Level level;
+    private final ChunkTicketType type;
+    private final int chunkX;
+    private final int chunkZ;
+    private final int radius;
+    private final int ticketLevel;
+    private final long expiryTick;
+    CompletableFuture<Void> loadFuture;
+    boolean removed;
+
+    ChunkTicket(Level level, ChunkTicketType type, int chunkX, int chunkZ, int radius, int ticketLevel, long expiryTick) {
+        this.level = level;
+        this.type = type;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.radius = radius;
+        this.ticketLevel = ticketLevel;
+        this.expiryTick = expiryTick;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public ChunkTicketType getType() {
+        return type;
+    }
+
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getTicketLevel() {
+        return ticketLevel;
+    }
+
+    public boolean isTicking() {
+        return ticketLevel == LEVEL_TICKING;
+    }
+
+    /**
+     * Get the level tick this ticket expires at
+     *
+     * @return level tick, or -1 if the ticket doesn't expire
+     */
+    public long getExpiryTick() {
+        return expiryTick;
+    }
+
+    public boolean contains(int x, int z) {
+        return Math.abs(x - chunkX) <= radius && Math.abs(z - chunkZ) <= radius;
+    }
+
+    /**
+     * Get a future completed on the level thread once all chunks of this ticket are loaded
+     *
+     * @return load future
+     */
+    public CompletableFuture<Void> getLoadFuture() {
+        return loadFuture;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkTicket(type=" + type + ", x=" + chunkX + ", z=" + chunkZ + ", radius=" + radius + ", level=" + ticketLevel + ')';
+    }
+}
@@ -0,0 +1,43 @@
+package cn.nukkit.level;
+
+/**
+ * Reasons for keeping chunks loaded with a {@link ChunkTicket}
+ */
+public enum ChunkTicketType {
+
+    /**
+     * Keeps the chunks around a player loaded and ticking, moved along with the player
+     */
+    PLAYER(ChunkTicket.LEVEL_TICKING, 0),
+    /**
+     * Keeps the spawn area of a level loaded and ticking
+     */
+    SPAWN(ChunkTicket.LEVEL_TICKING, 0),
+    PLUGIN(ChunkTicket.LEVEL_LOADED, 0),
+    /**
+     * Keeps the area around the exit of a portal loaded for a while after an entity went through it
+     */
+    PORTAL(ChunkTicket.LEVEL_TICKING, 300),
+    FORCED(ChunkTicket.LEVEL_TICKING, 0);
+
+    private final int defaultLevel;
+    private final int defaultExpiry;
+
+    ChunkTicketType(int defaultLevel, int defaultExpiry) {
+        this.defaultLevel = defaultLevel;
+        this.defaultExpiry = defaultExpiry;
+    }
+
+    public int getDefaultLevel() {
+        return defaultLevel;
+    }
+
+    /**
+     * Get the number of ticks tickets of this type last by default
+     *
+     * @return ticks, 0 if the tickets don't expire
+     */
+    public int getDefaultExpiry() {
+        return defaultExpiry;
+    }
+}
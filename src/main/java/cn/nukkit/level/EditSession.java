@@ -0,0 +1,343 @@
+package cn.nukkit.level;
+
+import cn.nukkit.Player;
+import cn.nukkit.block.Block;
+import cn.nukkit.entity.Entity;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.math.Vector3;
+import cn.nukkit.network.protocol.UpdateBlockPacket;
+import cn.nukkit.utils.Hash;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bulk block changes for a level, e.g. for world editing plugins and minigame map resets.
+ * <p>
+ * Blocks are written straight into the chunk sections. No events are called and nothing is sent while blocks are
+ * being set: lighting, height maps, neighbour updates and resending the changed chunks are done once for the whole
+ * edit when it is committed.
+ * <pre>
+ * EditSession session = new EditSession(level);
+ * session.fill(0, 0, 0, 99, 63, 99, Block.get(Block.STONE));
+ * session.commit();
+ * </pre>
+ */
+public class EditSession {
+
+    private static final Object PRESENT = new Object();
+
+    private final Level level;
+    private boolean neighbourUpdates;
+
+    private final Long2ObjectOpenHashMap<ChangedChunk> changedChunks = new Long2ObjectOpenHashMap<>();
+    private final Map<Long, Map<Character, Object>> lightUpdates = new HashMap<>();
+    private final LongOpenHashSet updatePositions = new LongOpenHashSet();
+    private ChangedChunk lastChunk;
+    private int changedBlocks;
+
+    public EditSession(Level level) {
+        this.level = level;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Run normal block updates on the changed blocks and their neighbours when the session is committed.
+     * This is disabled by default, as it makes large edits considerably slower.
+     *
+     * @param neighbourUpdates update changed blocks and their neighbours
+     */
+    public void setNeighbourUpdates(boolean neighbourUpdates) {
+        this.neighbourUpdates = neighbourUpdates;
+    }
+
+    public boolean isNeighbourUpdates() {
+        return neighbourUpdates;
+    }
+
+    /**
+     * Get the number of blocks changed since the session was created or last committed
+     *
+     * @return changed block count
+     */
+    public int getChangedBlocks() {
+        return changedBlocks;
+    }
+
+    public boolean setBlock(Vector3 pos, Block block) {
+        return this.setBlock(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), block.getFullId());
+    }
+
+    public boolean setBlock(int x, int y, int z, int id, int meta) {
+        return this.setBlock(x, y, z, (id << 4) | (meta & 0xf));
+    }
+
+    public boolean setBlock(int x, int y, int z, int fullId) {
+        synchronized (level) {
+            return this.set(x, y, z, fullId);
+        }
+    }
+
+    /**
+     * Set a list of blocks at their own positions
+     *
+     * @param blocks blocks with positions
+     * @return changed block count
+     */
+    public int setBlocks(Collection<? extends Block> blocks) {
+        int count = 0;
+        synchronized (level) {
+            for (Block block : blocks) {
+                if (this.set(block.getFloorX(), block.getFloorY(), block.getFloorZ(), block.getFullId())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fill a cuboid with one block, both corners inclusive
+     *
+     * @return changed block count
+     */
+    public int fill(int x1, int y1, int z1, int x2, int y2, int z2, Block block) {
+        int fullId = block.getFullId();
+        int minX = Math.min(x1, x2);
+        int maxX = Math.max(x1, x2);
+        int minY = Math.max(0, Math.min(y1, y2));
+        int maxY = Math.min(255, Math.max(y1, y2));
+        int minZ = Math.min(z1, z2);
+        int maxZ = Math.max(z1, z2);
+
+        int count = 0;
+        synchronized (level) {
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        if (this.set(x, y, z, fullId)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Paste a schematic style block array. Blocks are indexed by {@code (y * length + z) * width + x}.
+     *
+     * @param originX   position of the lowest corner
+     * @param originY   position of the lowest corner
+     * @param originZ   position of the lowest corner
+     * @param width     size on the X axis
+     * @param height    size on the Y axis
+     * @param length    size on the Z axis
+     * @param blocks    block ids
+     * @param data      block meta values or null
+     * @param ignoreAir leave the existing block where the schematic has air
+     * @return changed block count
+     */
+    public int paste(int originX, int originY, int originZ, int width, int height, int length, byte[] blocks, byte[] data, boolean ignoreAir) {
+        if (blocks.length < width * height * length) {
+            throw new IllegalArgumentException("Expected " + (width * height * length) + " blocks, got " + blocks.length);
+        }
+
+        int count = 0;
+        synchronized (level) {
+            for (int y = 0; y < height; y++) {
+                int worldY = originY + y;
+                if (worldY < 0 || worldY > 255) {
+                    continue;
+                }
+                for (int z = 0; z < length; z++) {
+                    for (int x = 0; x < width; x++) {
+                        int index = (y * length + z) * width + x;
+                        int id = blocks[index] & 0xff;
+                        if (id == 0 && ignoreAir) {
+                            continue;
+                        }
+                        int meta = data != null ? data[index] & 0xf : 0;
+                        if (this.set(originX + x, worldY, originZ + z, (id << 4) | meta)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean set(int x, int y, int z, int fullId) {
+        if (y < 0 || y > 255) {
+            return false;
+        }
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        ChangedChunk changed = this.lastChunk;
+        if (changed == null || changed.chunk.getX() != chunkX || changed.chunk.getZ() != chunkZ) {
+            long index = Level.chunkHash(chunkX, chunkZ);
+            changed = this.changedChunks.get(index);
+            if (changed == null) {
+                changed = new ChangedChunk(this.level.getChunk(chunkX, chunkZ, true));
+                this.changedChunks.put(index, changed);
+            }
+            this.lastChunk = changed;
+        }
+
+        BaseFullChunk chunk = changed.chunk;
+        int lx = x & 0xf;
+        int lz = z & 0xf;
+        int previous = chunk.getFullBlock(lx, y, lz);
+        if (previous == fullId) {
+            return false;
+        }
+        chunk.setFullBlockId(lx, y, lz, fullId);
+        changed.add(Level.chunkBlockHash(lx, y, lz));
+        this.changedBlocks++;
+
+        int previousId = previous >> 4;
+        int id = fullId >> 4;
+        if (Block.light[previousId] != Block.light[id] || Block.lightFilter[previousId] != Block.lightFilter[id]) {
+            this.lightUpdates.computeIfAbsent(Level.chunkHash(chunkX, chunkZ), k -> new HashMap<>()).put(Level.localBlockHash(x, y, z), PRESENT);
+        }
+
+        if (this.neighbourUpdates) {
+            this.updatePositions.add(Hash.hashBlock(x, y, z));
+        }
+        return true;
+    }
+
+    /**
+     * Update lighting, height maps and neighbours of all changed blocks and send the changes to the players
+     *
+     * @return changed block count
+     */
+    public int commit() {
+        int count = this.changedBlocks;
+        synchronized (level) {
+            for (ChangedChunk changed : this.changedChunks.values()) {
+                changed.chunk.recalculateHeightMap();
+            }
+
+            if (!this.lightUpdates.isEmpty()) {
+                this.level.updateBlockLight(this.lightUpdates);
+                this.lightUpdates.clear();
+            }
+
+            if (!this.updatePositions.isEmpty()) {
+                this.updateNeighbours();
+            }
+
+            for (ChangedChunk changed : this.changedChunks.values()) {
+                this.sendChanges(changed);
+            }
+
+            this.changedChunks.clear();
+            this.lastChunk = null;
+            this.changedBlocks = 0;
+        }
+        return count;
+    }
+
+    private void updateNeighbours() {
+        LongOpenHashSet positions = new LongOpenHashSet(this.updatePositions.size() * 2);
+        LongIterator iterator = this.updatePositions.iterator();
+        while (iterator.hasNext()) {
+            long hash = iterator.nextLong();
+            int x = Hash.hashBlockX(hash);
+            int y = Hash.hashBlockY(hash);
+            int z = Hash.hashBlockZ(hash);
+            positions.add(hash);
+            positions.add(Hash.hashBlock(x - 1, y, z));
+            positions.add(Hash.hashBlock(x + 1, y, z));
+            positions.add(Hash.hashBlock(x, y, z - 1));
+            positions.add(Hash.hashBlock(x, y, z + 1));
+            if (y > 0) positions.add(Hash.hashBlock(x, y - 1, z));
+            if (y < 255) positions.add(Hash.hashBlock(x, y + 1, z));
+        }
+        this.updatePositions.clear();
+
+        iterator = positions.iterator();
+        while (iterator.hasNext()) {
+            long hash = iterator.nextLong();
+            int x = Hash.hashBlockX(hash);
+            int y = Hash.hashBlockY(hash);
+            int z = Hash.hashBlockZ(hash);
+            if (this.level.isChunkLoaded(x >> 4, z >> 4)) {
+                this.level.getBlock(x, y, z).onUpdate(Level.BLOCK_UPDATE_NORMAL);
+            }
+        }
+    }
+
+    private void sendChanges(ChangedChunk changed) {
+        BaseFullChunk chunk = changed.chunk;
+        for (Entity entity : chunk.getEntities().values()) {
+            entity.scheduleUpdate();
+        }
+
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+        if (changed.positions == null) {
+            // Too many changes for block updates, send the whole chunk again
+            for (ChunkLoader loader : this.level.getChunkLoaders(chunkX, chunkZ)) {
+                loader.onChunkChanged(chunk);
+            }
+            return;
+        }
+
+        Player[] players = this.level.getChunkPlayerArray(chunkX, chunkZ);
+        ChunkLoader[] loaders = this.level.getChunkLoaders(chunkX, chunkZ);
+        if (players.length == 0 && loaders.length == 0) {
+            return;
+        }
+
+        Block[] blocks = new Block[changed.positions.size()];
+        for (int i = 0; i < blocks.length; i++) {
+            int hash = changed.positions.getInt(i);
+            blocks[i] = this.level.getBlock((chunkX << 4) | (hash >> 12), hash & 0xff, (chunkZ << 4) | ((hash >> 8) & 0xf));
+        }
+
+        for (ChunkLoader loader : loaders) {
+            for (Block block : blocks) {
+                loader.onBlockChanged(block);
+            }
+        }
+        if (players.length > 0) {
+            this.level.sendBlocks(players, blocks, UpdateBlockPacket.FLAG_ALL);
+        }
+    }
+
+    private static class ChangedChunk {
+
+        private final BaseFullChunk chunk;
+        /**
+         * Changed positions as chunk block hashes, null once there are too many to send as block updates
+         */
+        private IntArrayList positions = new IntArrayList();
+
+        private ChangedChunk(BaseFullChunk chunk) {
+            this.chunk = chunk;
+        }
+
+        private void add(int hash) {
+            if (this.positions != null) {
+                if (this.positions.size() >= Level.MAX_BLOCK_CACHE) {
+                    this.positions = null;
+                } else {
+                    this.positions.add(hash);
+                }
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import cn.nukkit.Player;
 import cn.nukkit.Server;
 import cn.nukkit.block.*;
 import cn.nukkit.blockentity.BlockEntity;
+import cn.nukkit.entity.ActivationRange;
 import cn.nukkit.entity.BaseEntity;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.entity.item.EntityItem;
@@ -40,6 +41,10 @@ import cn.nukkit.level.generator.task.PopulationTask;
 import cn.nukkit.level.particle.DestroyBlockParticle;
 import cn.nukkit.level.particle.Particle;
 import cn.nukkit.level.sound.Sound;
+import cn.nukkit.level.util.BlockChangeJournal;
+import cn.nukkit.level.util.ChunkLocks;
+import cn.nukkit.level.util.ChunkUnloadQueue;
+import cn.nukkit.level.util.ChunkViewers;
 import cn.nukkit.math.*;
 import cn.nukkit.math.BlockFace.Plane;
 import cn.nukkit.metadata.BlockMetadataStore;
@@ -51,6 +56,8 @@ import cn.nukkit.network.protocol.*;
 import cn.nukkit.plugin.Plugin;
 import cn.nukkit.potion.Effect;
 import cn.nukkit.scheduler.BlockUpdateScheduler;
+import cn.nukkit.scheduler.ChunkLoadPool;
+import cn.nukkit.scheduler.LevelTickPool;
 import cn.nukkit.utils.*;
 import co.aikar.timings.Timings;
 import co.aikar.timings.TimingsHistory;
@@ -61,7 +68,6 @@ import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectList;
 
-import java.lang.ref.SoftReference;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -97,6 +103,17 @@ public class Level implements ChunkManager, Metadatable {
 
     // Lower values use less memory
     public static final int MAX_BLOCK_CACHE = 512;
+    // Changed blocks in one chunk section after which the chunk is resent
+    public static final int MAX_SECTION_BLOCK_CACHE = 256;
+    // Liquid flow updates per tick, the rest is delayed to the next tick
+    public static final int MAX_LIQUID_FLOWS_PER_TICK = 2048;
+
+    // Time in milliseconds an unused chunk is kept loaded
+    private static final int CHUNK_UNLOAD_DELAY = 20000;
+    // Time in milliseconds spent on unloading chunks each tick
+    private static final int CHUNK_UNLOAD_TICK_BUDGET = 5;
+    // Loaded chunks checked for a missed unload request each garbage collection
+    private static final int CHUNK_GC_SWEEP_SIZE = 256;
 
     // The blocks that can randomly tick
     private static final boolean[] randomTickBlocks = new boolean[256];
@@ -148,13 +165,22 @@ public class Level implements ChunkManager, Metadatable {
 
     private final Int2IntMap loaderCounter = new Int2IntOpenHashMap();
 
-    private final Long2ObjectOpenHashMap<Map<Integer, ChunkLoader>> chunkLoaders = new Long2ObjectOpenHashMap<>();
-
-    private final Long2ObjectOpenHashMap<Map<Integer, Player>> playerLoaders = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<ChunkViewers> chunkViewers = new Long2ObjectOpenHashMap<>();
 
     private final Long2ObjectOpenHashMap<Deque<DataPacket>> chunkPackets = new Long2ObjectOpenHashMap<>();
 
-    private final Long2LongMap unloadQueue = Long2LongMaps.synchronize(new Long2LongOpenHashMap());
+    private final ChunkUnloadQueue unloadQueue = new ChunkUnloadQueue();
+    private final Long2IntOpenHashMap chunkHolds = new Long2IntOpenHashMap();
+    // Guards the ticket collections below, tickets can be added and removed from any thread
+    private final Set<ChunkTicket> chunkTickets = new LinkedHashSet<>();
+    private final List<ChunkTicket> expiringChunkTickets = new ArrayList<>();
+    private final Long2IntOpenHashMap tickingTicketChunks = new Long2IntOpenHashMap();
+    private ChunkTicket spawnTicket;
+    private long[] chunkGcSweep = new long[0];
+    private int chunkGcSweepPosition;
+
+    private final Map<Long, AsyncChunkLoad> asyncChunkLoads = new ConcurrentHashMap<>();
+    private final Queue<AsyncChunkLoad> completedChunkLoads = new ConcurrentLinkedQueue<>();
 
     private int time;
 
@@ -164,12 +190,10 @@ public class Level implements ChunkManager, Metadatable {
 
     private final String folderName;
 
-    // Avoid OOM, gc'd references result in whole chunk being sent (possibly higher cpu)
-    private final Long2ObjectOpenHashMap<SoftReference<Map<Character, Object>>> changedBlocks = new Long2ObjectOpenHashMap<>();
+    private final BlockChangeJournal changedBlocks = new BlockChangeJournal(MAX_BLOCK_CACHE, MAX_SECTION_BLOCK_CACHE);
+    private int liquidFlows;
     // Storing the vector is redundant
     private final Object changeBlocksPresent = new Object();
-    // Storing extra blocks past 512 is redundant
-    private final Map<Character, Object> changeBlocksFullMap = new CharacterHashMap();
 
     private final BlockUpdateScheduler updateQueue;
     private final Queue<Block> normalUpdateQueue = new ConcurrentLinkedDeque<>();
@@ -183,6 +207,7 @@ public class Level implements ChunkManager, Metadatable {
     private final Long2ObjectOpenHashMap<Boolean> chunkPopulationQueue = new Long2ObjectOpenHashMap<>();
     private final Long2ObjectOpenHashMap<Boolean> chunkPopulationLock = new Long2ObjectOpenHashMap<>();
     private final Long2ObjectOpenHashMap<Boolean> chunkGenerationQueue = new Long2ObjectOpenHashMap<>();
+    private final ChunkLocks generationLocks = new ChunkLocks(256);
     private final int chunkGenerationQueueSize;
     private final int chunkPopulationQueueSize;
 
@@ -249,6 +274,9 @@ public class Level implements ChunkManager, Metadatable {
 
     private final boolean randomTickingEnabled;
 
+    private final ActivationRange activationRange;
+    private long inactiveEntityTicks;
+
     public Level(Server server, String name, String path, Class<? extends LevelProvider> provider) {
         this.levelId = levelIdCounter++;
         this.blockMetadata = new BlockMetadataStore(this);
@@ -309,6 +337,7 @@ public class Level implements ChunkManager, Metadatable {
         this.isEnd = name.equals("the_end");
 
         this.randomTickingEnabled = !Server.noTickingWorlds.contains(name);
+        this.activationRange = new ActivationRange(server);
     }
 
     public static long chunkHash(int x, int z) {
@@ -385,12 +414,22 @@ public class Level implements ChunkManager, Metadatable {
         Generator generator = generators.get();
         this.dimension = generator.getDimension();
         this.gameRules = this.provider.getGamerules();
+        this.updateSpawnTicket();
     }
 
     public Generator getGenerator() {
         return generators.get();
     }
 
+    /**
+     * Get the locks held by generation and population tasks while they work on chunks of this level
+     *
+     * @return chunk locks
+     */
+    public ChunkLocks getGenerationLocks() {
+        return generationLocks;
+    }
+
     public BlockMetadataStore getBlockMetadata() {
         return this.blockMetadata;
     }
@@ -412,6 +451,12 @@ public class Level implements ChunkManager, Metadatable {
             this.save(true);
         }
 
+        for (AsyncChunkLoad load : this.asyncChunkLoads.values()) {
+            load.future.complete(null);
+        }
+        this.asyncChunkLoads.clear();
+        this.completedChunkLoads.clear();
+
         this.provider.close();
         this.provider = null;
         this.blockMetadata = null;
@@ -603,7 +648,7 @@ public class Level implements ChunkManager, Metadatable {
     public void addParticle(Particle particle, Player[] players, int count) {
         Int2ObjectMap<ObjectList<Player>> targets;
         if (players == null) {
-            targets = Server.shortPlayers(this.getChunkPlayers(particle.getChunkX(), particle.getChunkZ()).values());
+            targets = Server.shortPlayers(this.getChunkPlayerArray(particle.getChunkX(), particle.getChunkZ()));
         } else {
             targets = Server.shortPlayers(players);
         }
@@ -711,22 +756,36 @@ public class Level implements ChunkManager, Metadatable {
         return true;
     }
 
+    private ChunkViewers getChunkViewers(int chunkX, int chunkZ) {
+        return this.chunkViewers.getOrDefault(Level.chunkHash(chunkX, chunkZ), ChunkViewers.EMPTY);
+    }
+
+    /**
+     * Get the players using a chunk as a new map that may be modified
+     *
+     * @see #getChunkPlayerArray(int, int)
+     */
     public Map<Integer, Player> getChunkPlayers(int chunkX, int chunkZ) {
-        long index = Level.chunkHash(chunkX, chunkZ);
-        if (this.playerLoaders.containsKey(index)) {
-            return new HashMap<>(this.playerLoaders.get(index));
-        } else {
-            return new HashMap<>();
+        Player[] players = this.getChunkViewers(chunkX, chunkZ).getPlayers();
+        Map<Integer, Player> map = new HashMap<>();
+        for (Player player : players) {
+            map.put(player.getLoaderId(), player);
         }
+        return map;
+    }
+
+    /**
+     * Get the players using a chunk without copying them. The array is shared and must not be modified.
+     */
+    public Player[] getChunkPlayerArray(int chunkX, int chunkZ) {
+        return this.getChunkViewers(chunkX, chunkZ).getPlayers();
     }
 
+    /**
+     * Get the loaders using a chunk without copying them. The array is shared and must not be modified.
+     */
     public ChunkLoader[] getChunkLoaders(int chunkX, int chunkZ) {
-        long index = Level.chunkHash(chunkX, chunkZ);
-        if (this.chunkLoaders.containsKey(index)) {
-            return this.chunkLoaders.get(index).values().toArray(new ChunkLoader[0]);
-        } else {
-            return new ChunkLoader[0];
-        }
+        return this.getChunkViewers(chunkX, chunkZ).getLoaders();
     }
 
     public void addChunkPacket(int chunkX, int chunkZ, DataPacket packet) {
@@ -744,17 +803,11 @@ public class Level implements ChunkManager, Metadatable {
     public void registerChunkLoader(ChunkLoader loader, int chunkX, int chunkZ, boolean autoLoad) {
         int hash = loader.getLoaderId();
         long index = Level.chunkHash(chunkX, chunkZ);
-        if (!this.chunkLoaders.containsKey(index)) {
-            this.chunkLoaders.put(index, new HashMap<>());
-            this.playerLoaders.put(index, new HashMap<>());
-        } else if (this.chunkLoaders.get(index).containsKey(hash)) {
+        ChunkViewers viewers = this.chunkViewers.getOrDefault(index, ChunkViewers.EMPTY);
+        if (viewers.contains(hash)) {
             return;
         }
-
-        this.chunkLoaders.get(index).put(hash, loader);
-        if (loader instanceof Player) {
-            this.playerLoaders.get(index).put(hash, (Player) loader);
-        }
+        this.chunkViewers.put(index, viewers.add(loader));
 
         if (!this.loaders.containsKey(hash)) {
             this.loaderCounter.put(hash, 1);
@@ -763,7 +816,7 @@ public class Level implements ChunkManager, Metadatable {
             this.loaderCounter.put(hash, this.loaderCounter.get(hash) + 1);
         }
 
-        this.cancelUnloadChunkRequest(hash);
+        this.cancelUnloadChunkRequest(index);
 
         if (autoLoad) {
             this.loadChunk(chunkX, chunkZ);
@@ -773,17 +826,15 @@ public class Level implements ChunkManager, Metadatable {
     public void unregisterChunkLoader(ChunkLoader loader, int chunkX, int chunkZ) {
         int hash = loader.getLoaderId();
         long index = Level.chunkHash(chunkX, chunkZ);
-        Map<Integer, ChunkLoader> chunkLoadersIndex = this.chunkLoaders.get(index);
-        if (chunkLoadersIndex != null) {
-            ChunkLoader oldLoader = chunkLoadersIndex.remove(hash);
-            if (oldLoader != null) {
-                if (chunkLoadersIndex.isEmpty()) {
-                    this.chunkLoaders.remove(index);
-                    this.playerLoaders.remove(index);
+        ChunkViewers viewers = this.chunkViewers.get(index);
+        if (viewers != null) {
+            ChunkViewers newViewers = viewers.remove(hash);
+            if (newViewers != viewers) {
+                if (newViewers.isEmpty()) {
+                    this.chunkViewers.remove(index);
                     this.unloadChunkRequest(chunkX, chunkZ, true);
                 } else {
-                    Map<Integer, Player> playerLoadersIndex = this.playerLoaders.get(index);
-                    playerLoadersIndex.remove(hash);
+                    this.chunkViewers.put(index, newViewers);
                 }
 
                 int count = this.loaderCounter.get(hash);
@@ -822,6 +873,8 @@ public class Level implements ChunkManager, Metadatable {
     public void doTick(int currentTick) {
         if (this.timings.doTick != null) this.timings.doTick.startTiming();
 
+        this.liquidFlows = 0;
+
         updateBlockLight(lightQueue);
         this.checkTime();
         
@@ -877,6 +930,11 @@ public class Level implements ChunkManager, Metadatable {
 
         this.levelCurrentTick++;
 
+        this.processChunkLoads();
+        // The spawn area depends on the default level and random ticking, which can change at any time
+        this.updateSpawnTicket();
+        this.removeExpiredChunkTickets();
+
         this.unloadChunks();
 
         if (this.timings.doTickPending != null) this.timings.doTickPending.startTiming();
@@ -892,13 +950,25 @@ public class Level implements ChunkManager, Metadatable {
         if (this.timings.entityTick != null) this.timings.entityTick.startTiming();
 
         if (!this.updateEntities.isEmpty()) {
+            if (this.timings.entityActivationCheck != null) this.timings.entityActivationCheck.startTiming();
+            this.activationRange.activateEntities(this, currentTick);
+            if (this.timings.entityActivationCheck != null) this.timings.entityActivationCheck.stopTiming();
+
             for (long id : new ArrayList<>(this.updateEntities.keySet())) {
                 Entity entity = this.updateEntities.get(id);
                 if (entity == null) {
                     this.updateEntities.remove(id);
                     continue;
                 }
-                if (entity.closed || !entity.onUpdate(currentTick)) {
+                if (entity.closed) {
+                    this.updateEntities.remove(id);
+                    continue;
+                }
+                if (!this.activationRange.isActive(entity, currentTick)) {
+                    this.inactiveEntityTicks++;
+                    continue;
+                }
+                if (!entity.onUpdate(currentTick)) {
                     this.updateEntities.remove(id);
                 }
             }
@@ -914,34 +984,10 @@ public class Level implements ChunkManager, Metadatable {
         this.tickChunks();
         if (this.timings.tickChunks != null)  this.timings.tickChunks.stopTiming();
 
-        synchronized (changedBlocks) {
-            if (!this.changedBlocks.isEmpty()) {
-                if (!this.players.isEmpty()) {
-                    ObjectIterator<Long2ObjectMap.Entry<SoftReference<Map<Character, Object>>>> iter = changedBlocks.long2ObjectEntrySet().fastIterator();
-                    while (iter.hasNext()) {
-                        Long2ObjectMap.Entry<SoftReference<Map<Character, Object>>> entry = iter.next();
-                        long index = entry.getLongKey();
-                        Map<Character, Object> blocks = entry.getValue().get();
-                        int chunkX = Level.getHashX(index);
-                        int chunkZ = Level.getHashZ(index);
-                        if (blocks == null || blocks.size() > MAX_BLOCK_CACHE) {
-                            FullChunk chunk = this.getChunk(chunkX, chunkZ);
-                            for (Player p : this.getChunkPlayers(chunkX, chunkZ).values()) {
-                                p.onChunkChanged(chunk);
-                            }
-                        } else {
-                            Player[] playerArray = this.getChunkPlayers(chunkX, chunkZ).values().toArray(new Player[0]);
-                            Vector3[] blocksArray = new Vector3[blocks.size()];
-                            int i = 0;
-                            for (char blockHash : blocks.keySet()) {
-                                Vector3 hash = getBlockXYZ(index, blockHash);
-                                blocksArray[i++] = hash;
-                            }
-                            this.sendBlocks(playerArray, blocksArray, UpdateBlockPacket.FLAG_ALL);
-                        }
-                    }
-                }
-                this.changedBlocks.clear();
+        if (!this.changedBlocks.isEmpty()) {
+            Long2ObjectMap<BlockChangeJournal.ChunkChanges> changes = this.changedBlocks.drain();
+            if (!this.players.isEmpty()) {
+                this.sendBlockChanges(changes);
             }
         }
 
@@ -955,9 +1001,8 @@ public class Level implements ChunkManager, Metadatable {
             for (long index : this.chunkPackets.keySet()) {
                 int chunkX = Level.getHashX(index);
                 int chunkZ = Level.getHashZ(index);
-                Map<Integer, Player> map = this.getChunkPlayers(chunkX, chunkZ);
-                if (!map.isEmpty()) {
-                    Player[] chunkPlayers = map.values().toArray(new Player[0]);
+                Player[] chunkPlayers = this.getChunkPlayerArray(chunkX, chunkZ);
+                if (chunkPlayers.length > 0) {
                     for (DataPacket pk : this.chunkPackets.get(index)) {
                         Server.broadcastPacket(chunkPlayers, pk);
                     }
@@ -1064,7 +1109,7 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void sendBlockExtraData(int x, int y, int z, int id, int data) {
-        this.sendBlockExtraData(x, y, z, id, data, this.getChunkPlayers(x >> 4, z >> 4).values());
+        this.sendBlockExtraData(x, y, z, id, data, this.getChunkPlayerArray(x >> 4, z >> 4));
     }
 
     public void sendBlockExtraData(int x, int y, int z, int id, int data, Collection<Player> players) {
@@ -1097,6 +1142,7 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         Int2ObjectMap<ObjectList<Player>> targets = Server.shortPlayers(target);
+        Int2ObjectMap<ObjectList<DataPacket>> packets = new Int2ObjectOpenHashMap<>();
         for (Vector3 b : blocks) {
             if (b == null) {
                 continue;
@@ -1117,7 +1163,6 @@ public class Level implements ChunkManager, Metadatable {
             updateBlockPacket.flags = first ? flags : UpdateBlockPacket.FLAG_NONE;
 
             for (int protocolId : targets.keySet()) {
-                ObjectList<Player> players = targets.get(protocolId);
                 UpdateBlockPacket packet = (UpdateBlockPacket) updateBlockPacket.clone();
                 try {
                     if (protocolId > 201) {
@@ -1135,8 +1180,62 @@ public class Level implements ChunkManager, Metadatable {
                     throw new IllegalStateException("Unable to create BlockUpdatePacket at (" + b.x + ", " + b.y + ", " + b.z + ") in " + getName() + " for players with protocol " +protocolId);
                 }
 
-                this.server.batchPackets(players.toArray(new Player[0]), new DataPacket[]{packet});
+                packets.computeIfAbsent(protocolId, i -> new ObjectArrayList<>()).add(packet);
+            }
+        }
+
+        // One batch for all blocks per protocol
+        for (Int2ObjectMap.Entry<ObjectList<DataPacket>> entry : packets.int2ObjectEntrySet()) {
+            ObjectList<Player> players = targets.get(entry.getIntKey());
+            this.server.batchPackets(players.toArray(new Player[0]), entry.getValue().toArray(new DataPacket[0]));
+        }
+    }
+
+    /**
+     * Send the blocks changed during the last tick. Chunks seen by the same players are sent together, and chunks
+     * with too many changes are resent as a whole.
+     */
+    private void sendBlockChanges(Long2ObjectMap<BlockChangeJournal.ChunkChanges> changes) {
+        Map<Set<Integer>, List<Vector3>> blocksByViewers = new HashMap<>();
+        Map<Set<Integer>, Player[]> viewers = new HashMap<>();
+
+        for (Long2ObjectMap.Entry<BlockChangeJournal.ChunkChanges> entry : changes.long2ObjectEntrySet()) {
+            long index = entry.getLongKey();
+            int chunkX = Level.getHashX(index);
+            int chunkZ = Level.getHashZ(index);
+            Player[] players = this.getChunkPlayerArray(chunkX, chunkZ);
+            if (players.length == 0) {
+                continue;
+            }
+
+            BlockChangeJournal.ChunkChanges chunkChanges = entry.getValue();
+            if (chunkChanges.isResend()) {
+                FullChunk chunk = this.getChunk(chunkX, chunkZ);
+                for (Player p : players) {
+                    p.onChunkChanged(chunk);
+                }
+                continue;
+            }
+
+            Set<Integer> key = new HashSet<>();
+            for (Player player : players) {
+                key.add(player.getLoaderId());
+            }
+            List<Vector3> blocks = blocksByViewers.get(key);
+            if (blocks == null) {
+                blocks = new ArrayList<>();
+                blocksByViewers.put(key, blocks);
+                viewers.put(key, players);
             }
+            IntIterator iter = chunkChanges.getBlocks().iterator();
+            while (iter.hasNext()) {
+                int hash = iter.nextInt();
+                blocks.add(new Vector3((chunkX << 4) | (hash & 0xf), hash >> 8, (chunkZ << 4) | ((hash >> 4) & 0xf)));
+            }
+        }
+
+        for (Map.Entry<Set<Integer>, List<Vector3>> entry : blocksByViewers.entrySet()) {
+            this.sendBlocks(viewers.get(entry.getKey()), entry.getValue().toArray(new Vector3[0]), UpdateBlockPacket.FLAG_ALL);
         }
     }
 
@@ -1172,8 +1271,14 @@ public class Level implements ChunkManager, Metadatable {
         }
     }
 
+    private boolean hasTickingTicketChunks() {
+        synchronized (this.chunkTickets) {
+            return !this.tickingTicketChunks.isEmpty();
+        }
+    }
+
     private void tickChunks() {
-        if (this.chunksPerTicks <= 0 || this.loaders.isEmpty()) {
+        if (this.chunksPerTicks <= 0 || (this.loaders.isEmpty() && !this.hasTickingTicketChunks())) {
             this.chunkTickList.clear();
             return;
         }
@@ -1199,6 +1304,25 @@ public class Level implements ChunkManager, Metadatable {
             }
         }
 
+        // Chunks with a ticking ticket are ticked without a player nearby, within what is left of the budget
+        synchronized (this.chunkTickets) {
+            int ticketChunks = this.tickingTicketChunks.size();
+            int budget = this.chunksPerTicks - this.chunkTickList.size();
+            if (ticketChunks > 0 && budget > 0) {
+                LongIterator iterator = this.tickingTicketChunks.keySet().iterator();
+                while (iterator.hasNext()) {
+                    long index = iterator.nextLong();
+                    // Pick a random part of the chunks when there are more than the budget allows
+                    if (ticketChunks > budget && Utils.random.nextInt(ticketChunks) >= budget) {
+                        continue;
+                    }
+                    if (!this.chunkTickList.containsKey(index) && provider.isChunkLoaded(index)) {
+                        this.chunkTickList.put(index, -1);
+                    }
+                }
+            }
+        }
+
         int blockTest = 0;
 
         if (!chunkTickList.isEmpty()) {
@@ -1380,6 +1504,15 @@ public class Level implements ChunkManager, Metadatable {
         }
     }
 
+    /**
+     * Count a liquid flow update for this tick
+     *
+     * @return false if too many liquid blocks flowed this tick and the update should be delayed
+     */
+    public boolean tryLiquidFlow() {
+        return ++this.liquidFlows <= MAX_LIQUID_FLOWS_PER_TICK;
+    }
+
     public void scheduleUpdate(Block pos, int delay) {
         this.scheduleUpdate(pos, pos, delay, 0, true);
     }
@@ -1399,9 +1532,8 @@ public class Level implements ChunkManager, Metadatable {
 
         BlockUpdateEntry entry = new BlockUpdateEntry(pos.floor(), block, ((long) delay) + levelCurrentTick, priority);
 
-        if (!this.updateQueue.contains(entry)) {
-            this.updateQueue.add(entry);
-        }
+        // Duplicates are ignored by the queue
+        this.updateQueue.add(entry);
     }
 
     public boolean cancelSheduledUpdate(Vector3 pos, Block block) {
@@ -1817,7 +1949,7 @@ public class Level implements ChunkManager, Metadatable {
         int cz = z >> 4;
 
         if (direct) {
-            this.sendBlocks(this.getChunkPlayers(cx, cz).values().toArray(new Player[0]), new Block[]{block}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
+            this.sendBlocks(this.getChunkPlayerArray(cx, cz), new Block[]{block}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
         } else {
             addBlockChange(Level.chunkHash(cx, cz), x, y, z);
         }
@@ -1849,17 +1981,7 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     private void addBlockChange(long index, int x, int y, int z) {
-        synchronized (changedBlocks) {
-            SoftReference<Map<Character, Object>> current = changedBlocks.computeIfAbsent(index, k -> new SoftReference<>(new HashMap<>()));
-            Map<Character, Object> currentMap = current.get();
-            if (currentMap != changeBlocksFullMap && currentMap != null) {
-                if (currentMap.size() > MAX_BLOCK_CACHE) {
-                    this.changedBlocks.put(index, new SoftReference<>(changeBlocksFullMap));
-                } else {
-                    currentMap.put(Level.localBlockHash(x, y, z), changeBlocksPresent);
-                }
-            }
-        }
+        this.changedBlocks.add(index, x, y, z);
     }
 
     public void dropItem(Vector3 source, Item item) {
@@ -2075,8 +2197,7 @@ public class Level implements ChunkManager, Metadatable {
         }
 
         if (createParticles) {
-            Map<Integer, Player> players = this.getChunkPlayers((int) target.x >> 4, (int) target.z >> 4);
-            this.addParticle(new DestroyBlockParticle(target.add(0.5), target), players.values());
+            this.addParticle(new DestroyBlockParticle(target.add(0.5), target), this.getChunkPlayerArray((int) target.x >> 4, (int) target.z >> 4));
         }
 
         BlockEntity blockEntity = this.getBlockEntity(target);
@@ -2397,7 +2518,7 @@ public class Level implements ChunkManager, Metadatable {
 
 
         if (playSound) {
-            Int2ObjectMap<ObjectList<Player>> players = Server.shortPlayers(this.getChunkPlayers(hand.getChunkX(), hand.getChunkZ()).values());
+            Int2ObjectMap<ObjectList<Player>> players = Server.shortPlayers(this.getChunkPlayerArray(hand.getChunkX(), hand.getChunkZ()));
             for (int protocolId : players.keySet()) {
                 ObjectList<Player> targets = players.get(protocolId);
                 int soundData = GlobalBlockPalette.getOrCreateRuntimeId(protocolId > ProtocolInfo.v1_2_10 ? protocolId : ProtocolInfo.CURRENT_PROTOCOL, // no block palette in <= 1.2.10
@@ -2791,30 +2912,34 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public BlockColor getMapColorAt(int x, int z) {
-        int y = getHighestBlockAt(x, z, false);
+        BaseFullChunk chunk = this.getChunk(x >> 4, z >> 4, true);
+        int lx = x & 0x0f;
+        int lz = z & 0x0f;
+        int y = chunk.getHighestBlockAt(lx, lz, false);
 
         while (y > 1) {
-            Block block = getBlock(new Vector3(x, y, z));
+            Block block = Block.fullList[chunk.getFullBlock(lx, y, lz) & 0xfff];
             if (block instanceof BlockGrass) {
-                return getGrassColorAt(x, z);
+                return getGrassColor(chunk.getBiomeId(lx, lz));
             //} else if (block instanceof BlockWater) {
             //    return getWaterColorAt(x, z);
-            } else {
+            } else if (block != null) {
                 BlockColor blockColor = block.getColor();
-                if (blockColor.getAlpha() == 0x00) {
-                    y--;
-                } else {
+                if (blockColor.getAlpha() != 0x00) {
                     return blockColor;
                 }
             }
+            y--;
         }
 
         return BlockColor.VOID_BLOCK_COLOR;
     }
 
     public BlockColor getGrassColorAt(int x, int z) {
-        int biome = this.getBiomeId(x, z);
+        return getGrassColor(this.getBiomeId(x, z));
+    }
 
+    public static BlockColor getGrassColor(int biome) {
         switch (biome) {
             case 0: //ocean
             case 7: //river
@@ -3024,6 +3149,7 @@ public class Level implements ChunkManager, Metadatable {
     public void setSpawnLocation(Vector3 pos) {
         Position previousSpawn = this.getSpawnLocation();
         this.provider.setSpawn(pos);
+        this.updateSpawnTicket();
         this.server.getPluginManager().callEvent(new SpawnChangeEvent(this, previousSpawn));
         SetSpawnPositionPacket pk = new SetSpawnPositionPacket();
         pk.spawnType = SetSpawnPositionPacket.TYPE_WORLD_SPAWN;
@@ -3208,7 +3334,12 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public boolean isChunkInUse(long hash) {
-        return this.chunkLoaders.containsKey(hash) && !this.chunkLoaders.get(hash).isEmpty();
+        if (this.chunkViewers.containsKey(hash)) {
+            return true;
+        }
+        synchronized (this.chunkHolds) {
+            return this.chunkHolds.containsKey(hash);
+        }
     }
 
     public boolean loadChunk(int x, int z) {
@@ -3226,6 +3357,12 @@ public class Level implements ChunkManager, Metadatable {
     private synchronized BaseFullChunk forceLoadChunk(long index, int x, int z, boolean generate) {
         if (this.timings.syncChunkLoadTimer != null) this.timings.syncChunkLoadTimer.startTiming();
 
+        // Data read by a pending asynchronous load could be outdated once the chunk has been loaded here
+        AsyncChunkLoad pending = this.asyncChunkLoads.get(index);
+        if (pending != null) {
+            pending.stale = true;
+        }
+
         BaseFullChunk chunk = this.provider.getChunk(x, z, generate);
 
         if (chunk == null) {
@@ -3236,12 +3373,17 @@ public class Level implements ChunkManager, Metadatable {
             return null;
         }
 
+        this.initLoadedChunk(index, x, z, chunk);
+        if (this.timings.syncChunkLoadTimer != null) this.timings.syncChunkLoadTimer.stopTiming();
+        return chunk;
+    }
+
+    private void initLoadedChunk(long index, int x, int z, BaseFullChunk chunk) {
         if (chunk.getProvider() != null) {
             this.server.getPluginManager().callEvent(new ChunkLoadEvent(chunk, !chunk.isGenerated()));
         } else {
             this.unloadChunk(x, z, false);
-            if (this.timings.syncChunkLoadTimer != null) this.timings.syncChunkLoadTimer.stopTiming();
-            return chunk;
+            return;
         }
 
         chunk.initChunk();
@@ -3256,15 +3398,307 @@ public class Level implements ChunkManager, Metadatable {
                 loader.onChunkLoaded(chunk);
             }
         } else {
-            this.unloadQueue.put(index, System.currentTimeMillis());
+            this.unloadQueue.add(index, System.currentTimeMillis() + CHUNK_UNLOAD_DELAY);
+        }
+    }
+
+    /**
+     * Load a chunk without blocking the level tick. The chunk is read from disk by the chunk load pool and
+     * added to the level during the next level tick, which is also when the returned future is completed.
+     * Falls back to loading the chunk right away when asynchronous chunk loading is disabled.
+     *
+     * @param x        chunk x
+     * @param z        chunk z
+     * @param generate create an empty chunk for generation if the chunk isn't stored
+     * @return future completed with the chunk, or with null if the chunk isn't stored and generate is false
+     */
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int x, int z, boolean generate) {
+        return this.loadChunkAsync(x, z, generate, null);
+    }
+
+    /**
+     * Load a chunk without blocking the level tick, reading it on the given executor instead of the chunk load pool.
+     *
+     * @param x        chunk x
+     * @param z        chunk z
+     * @param generate create an empty chunk for generation if the chunk isn't stored
+     * @param executor executor to read the chunk on, or null to use the chunk load pool
+     * @return future completed with the chunk, or with null if the chunk isn't stored and generate is false
+     * @see #loadChunkAsync(int, int, boolean)
+     */
+    public CompletableFuture<BaseFullChunk> loadChunkAsync(int x, int z, boolean generate, Executor executor) {
+        long index = Level.chunkHash(x, z);
+        BaseFullChunk chunk = this.provider.getLoadedChunk(index);
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(chunk);
+        }
+
+        ChunkLoadPool pool = this.server.getChunkLoadPool();
+        if ((executor == null && pool == null) || !(this.provider instanceof BaseLevelProvider)) {
+            return CompletableFuture.completedFuture(this.getChunk(x, z, generate));
+        }
+
+        AsyncChunkLoad load = this.asyncChunkLoads.computeIfAbsent(index, i -> {
+            AsyncChunkLoad request = new AsyncChunkLoad(i, x, z);
+            BaseLevelProvider provider = (BaseLevelProvider) this.provider;
+            CompletableFuture<BaseFullChunk> task = executor != null
+                    ? CompletableFuture.supplyAsync(() -> provider.readChunk(x, z), executor)
+                    : pool.submit(() -> provider.readChunk(x, z), this.getChunkLoadPriority(x, z));
+            task.whenComplete((read, error) -> {
+                request.chunk = read;
+                request.error = error;
+                this.completedChunkLoads.offer(request);
+            });
+            return request;
+        });
+        load.generate |= generate;
+        return load.future;
+    }
+
+    public boolean isChunkLoading(int x, int z) {
+        return this.asyncChunkLoads.containsKey(Level.chunkHash(x, z));
+    }
+
+    /**
+     * Chunks closer to a player are read first
+     */
+    private double getChunkLoadPriority(int x, int z) {
+        double priority = Double.MAX_VALUE;
+        for (Player player : this.players.values()) {
+            double dx = (player.getFloorX() >> 4) - x;
+            double dz = (player.getFloorZ() >> 4) - z;
+            priority = Math.min(priority, dx * dx + dz * dz);
+        }
+        return priority;
+    }
+
+    /**
+     * Add the chunks read by the chunk load pool to the level
+     */
+    private void processChunkLoads() {
+        AsyncChunkLoad load;
+        while ((load = this.completedChunkLoads.poll()) != null) {
+            this.asyncChunkLoads.remove(load.index, load);
+
+            BaseFullChunk chunk = this.provider.getLoadedChunk(load.index);
+            if (chunk == null) {
+                if (load.error != null) {
+                    this.server.getLogger().error("Could not read chunk (" + load.x + ", " + load.z + ") in " + this.getName(), load.error);
+                }
+
+                if (load.chunk != null && !load.stale) {
+                    synchronized (this) {
+                        if (this.timings.syncChunkLoadTimer != null) this.timings.syncChunkLoadTimer.startTiming();
+                        chunk = load.chunk;
+                        ((BaseLevelProvider) this.provider).putChunk(load.index, chunk);
+                        this.initLoadedChunk(load.index, load.x, load.z, chunk);
+                        if (this.timings.syncChunkLoadTimer != null) this.timings.syncChunkLoadTimer.stopTiming();
+                    }
+                } else {
+                    // Not stored, failed or outdated: let the provider handle it on this thread
+                    chunk = this.forceLoadChunk(load.index, load.x, load.z, load.generate);
+                }
+            }
+            load.future.complete(chunk);
+        }
+    }
+
+    private static class AsyncChunkLoad {
+
+        private final long index;
+        private final int x;
+        private final int z;
+        private final CompletableFuture<BaseFullChunk> future = new CompletableFuture<>();
+        private volatile boolean generate;
+        private volatile boolean stale;
+        private volatile BaseFullChunk chunk;
+        private volatile Throwable error;
+
+        private AsyncChunkLoad(long index, int x, int z) {
+            this.index = index;
+            this.x = x;
+            this.z = z;
         }
-        if (this.timings.syncChunkLoadTimer != null) this.timings.syncChunkLoadTimer.stopTiming();
-        return chunk;
     }
 
     private void queueUnloadChunk(int x, int z) {
         long index = Level.chunkHash(x, z);
-        this.unloadQueue.put(index, System.currentTimeMillis());
+        this.unloadQueue.add(index, System.currentTimeMillis() + CHUNK_UNLOAD_DELAY);
+    }
+
+    /**
+     * Keep a chunk loaded until {@link #releaseChunk(int, int)} is called as often as this method.
+     * The chunk is queued for unloading when its last loader or hold is gone.
+     *
+     * @param x chunk x
+     * @param z chunk z
+     */
+    public void holdChunk(int x, int z) {
+        long index = Level.chunkHash(x, z);
+        synchronized (this.chunkHolds) {
+            this.chunkHolds.addTo(index, 1);
+        }
+        this.cancelUnloadChunkRequest(index);
+    }
+
+    public void releaseChunk(int x, int z) {
+        long index = Level.chunkHash(x, z);
+        synchronized (this.chunkHolds) {
+            int holds = this.chunkHolds.get(index);
+            if (holds <= 0) {
+                return;
+            }
+            if (holds > 1) {
+                this.chunkHolds.put(index, holds - 1);
+                return;
+            }
+            this.chunkHolds.remove(index);
+        }
+        if (this.isChunkLoaded(x, z)) {
+            this.unloadChunkRequest(x, z, true);
+        }
+    }
+
+    /**
+     * Keep the chunks within the radius of a chunk loaded, using the default level and expiry of the ticket type.
+     * Chunks that are not loaded yet are loaded asynchronously, see {@link ChunkTicket#getLoadFuture()}.
+     *
+     * @param type   ticket type
+     * @param x      center chunk x
+     * @param z      center chunk z
+     * @param radius radius in chunks, 0 for just the center chunk
+     * @return ticket
+     */
+    public ChunkTicket addChunkTicket(ChunkTicketType type, int x, int z, int radius) {
+        return this.addChunkTicket(type, x, z, radius, type.getDefaultLevel(), type.getDefaultExpiry());
+    }
+
+    /**
+     * Keep the chunks within the radius of a chunk loaded
+     *
+     * @param type        ticket type
+     * @param x           center chunk x
+     * @param z           center chunk z
+     * @param radius      radius in chunks, 0 for just the center chunk
+     * @param ticketLevel {@link ChunkTicket#LEVEL_TICKING} or {@link ChunkTicket#LEVEL_LOADED}
+     * @param expiry      ticks until the ticket is removed, 0 to keep it until it is removed manually
+     * @return ticket
+     */
+    public ChunkTicket addChunkTicket(ChunkTicketType type, int x, int z, int radius, int ticketLevel, int expiry) {
+        Preconditions.checkArgument(radius >= 0, "Negative ticket radius");
+        ChunkTicket ticket = new ChunkTicket(this, type, x, z, radius, ticketLevel, expiry > 0 ? this.levelCurrentTick + expiry : -1);
+
+        synchronized (this.chunkTickets) {
+            this.chunkTickets.add(ticket);
+            if (ticket.getExpiryTick() >= 0) {
+                this.expiringChunkTickets.add(ticket);
+            }
+            if (ticket.isTicking()) {
+                for (int cx = x - radius; cx <= x + radius; cx++) {
+                    for (int cz = z - radius; cz <= z + radius; cz++) {
+                        this.tickingTicketChunks.addTo(Level.chunkHash(cx, cz), 1);
+                    }
+                }
+            }
+        }
+
+        List<CompletableFuture<BaseFullChunk>> loads = new ArrayList<>();
+        for (int cx = x - radius; cx <= x + radius; cx++) {
+            for (int cz = z - radius; cz <= z + radius; cz++) {
+                this.holdChunk(cx, cz);
+                loads.add(this.loadChunkAsync(cx, cz, true));
+            }
+        }
+        ticket.loadFuture = CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+        return ticket;
+    }
+
+    public boolean removeChunkTicket(ChunkTicket ticket) {
+        return this.removeChunkTicket(ticket, false);
+    }
+
+    /**
+     * Remove a chunk ticket
+     *
+     * @param ticket ticket
+     * @param unload unload the chunks that are no longer used right away instead of queueing them for unloading,
+     *               only done when called on the thread ticking the level
+     * @return ticket was removed
+     */
+    public boolean removeChunkTicket(ChunkTicket ticket, boolean unload) {
+        if (ticket.getLevel() != this) {
+            return false;
+        }
+
+        int radius = ticket.getRadius();
+        synchronized (this.chunkTickets) {
+            if (!this.chunkTickets.remove(ticket)) {
+                return false;
+            }
+            ticket.removed = true;
+            if (ticket.getExpiryTick() >= 0) {
+                this.expiringChunkTickets.remove(ticket);
+            }
+            if (ticket.isTicking()) {
+                for (int cx = ticket.getChunkX() - radius; cx <= ticket.getChunkX() + radius; cx++) {
+                    for (int cz = ticket.getChunkZ() - radius; cz <= ticket.getChunkZ() + radius; cz++) {
+                        long index = Level.chunkHash(cx, cz);
+                        if (this.tickingTicketChunks.addTo(index, -1) <= 1) {
+                            this.tickingTicketChunks.remove(index);
+                        }
+                    }
+                }
+            }
+        }
+
+        unload &= this.server.isPrimaryThread() || LevelTickPool.isLevelTickThread();
+        for (int cx = ticket.getChunkX() - radius; cx <= ticket.getChunkX() + radius; cx++) {
+            for (int cz = ticket.getChunkZ() - radius; cz <= ticket.getChunkZ() + radius; cz++) {
+                this.releaseChunk(cx, cz);
+                if (unload && !this.isChunkInUse(cx, cz) && !this.isSpawnChunk(cx, cz)) {
+                    this.unloadChunk(cx, cz, true);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the tickets of this level
+     *
+     * @return copy of the tickets
+     */
+    public Set<ChunkTicket> getChunkTickets() {
+        synchronized (this.chunkTickets) {
+            return new LinkedHashSet<>(this.chunkTickets);
+        }
+    }
+
+    public List<ChunkTicket> getChunkTickets(int x, int z) {
+        List<ChunkTicket> tickets = new ArrayList<>();
+        synchronized (this.chunkTickets) {
+            for (ChunkTicket ticket : this.chunkTickets) {
+                if (ticket.contains(x, z)) {
+                    tickets.add(ticket);
+                }
+            }
+        }
+        return tickets;
+    }
+
+    private void removeExpiredChunkTickets() {
+        ChunkTicket[] expiring;
+        synchronized (this.chunkTickets) {
+            if (this.expiringChunkTickets.isEmpty()) {
+                return;
+            }
+            expiring = this.expiringChunkTickets.toArray(new ChunkTicket[0]);
+        }
+        for (ChunkTicket ticket : expiring) {
+            if (ticket.getExpiryTick() <= this.levelCurrentTick) {
+                this.removeChunkTicket(ticket);
+            }
+        }
     }
 
     public boolean unloadChunkRequest(int x, int z) {
@@ -3353,14 +3787,40 @@ public class Level implements ChunkManager, Metadatable {
 
     public boolean isSpawnChunk(int X, int Z) {
         Vector3 spawn = this.getSpawnLocation();
+        int radius = this.getSpawnChunkRadius();
+        return Math.abs(X - (spawn.getFloorX() >> 4)) <= radius && Math.abs(Z - (spawn.getFloorZ() >> 4)) <= radius;
+    }
 
+    /**
+     * Get the radius of the spawn area that is kept loaded
+     *
+     * @return radius in chunks
+     */
+    public int getSpawnChunkRadius() {
         if (this.server.suomiCraftPEMode() && !this.randomTickingEnabled()) {
-            if (this.equals(this.getServer().getDefaultLevel())) {
-                return Math.abs(X - (spawn.getFloorX() >> 4)) <= 9 && Math.abs(Z - (spawn.getFloorZ() >> 4)) <= 9;
-            }
-            return Math.abs(X - (spawn.getFloorX() >> 4)) <= 5 && Math.abs(Z - (spawn.getFloorZ() >> 4)) <= 5;
-        } else {
-            return Math.abs(X - (spawn.getFloorX() >> 4)) <= 1 && Math.abs(Z - (spawn.getFloorZ() >> 4)) <= 1;
+            return this.equals(this.getServer().getDefaultLevel()) ? 9 : 5;
+        }
+        return 1;
+    }
+
+    /**
+     * Move the spawn ticket to the current spawn area if the spawn or its radius changed
+     */
+    private void updateSpawnTicket() {
+        Vector3 spawn = this.provider.getSpawn();
+        int x = spawn.getFloorX() >> 4;
+        int z = spawn.getFloorZ() >> 4;
+        int radius = this.getSpawnChunkRadius();
+        ChunkTicket old = this.spawnTicket;
+        if (old != null && old.getChunkX() == x && old.getChunkZ() == z && old.getRadius() == radius) {
+            return;
+        }
+        // Add the new ticket first, so the chunks both areas share are not queued for unloading.
+        // Spawn chunks of levels without random ticking are only kept loaded.
+        this.spawnTicket = this.addChunkTicket(ChunkTicketType.SPAWN, x, z, radius,
+                this.randomTickingEnabled ? ChunkTicket.LEVEL_TICKING : ChunkTicket.LEVEL_LOADED, 0);
+        if (old != null) {
+            this.removeChunkTicket(old);
         }
     }
 
@@ -3469,12 +3929,33 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public boolean populateChunk(int x, int z, boolean force) {
+        return this.populateChunk(x, z, force, null);
+    }
+
+    /**
+     * Populate a chunk, generating it and its neighbours first if needed
+     *
+     * @param x        chunk x
+     * @param z        chunk z
+     * @param force    ignore the population queue size limit and load the chunk right away if it isn't loaded
+     * @param executor executor to run the population task on, null for the asynchronous task pool
+     * @return chunk is populated
+     */
+    public boolean populateChunk(int x, int z, boolean force, Executor executor) {
         long index = Level.chunkHash(x, z);
         if (this.chunkPopulationQueue.containsKey(index) || this.chunkPopulationQueue.size() >= this.chunkPopulationQueueSize && !force) {
             return false;
         }
 
-        BaseFullChunk chunk = this.getChunk(x, z, true);
+        BaseFullChunk chunk = this.provider.getLoadedChunk(index);
+        if (chunk == null) {
+            if (!force && this.server.getChunkLoadPool() != null) {
+                // Read the chunk off the main thread and try again once it's loaded
+                this.loadChunkAsync(x, z, true);
+                return false;
+            }
+            chunk = this.getChunk(x, z, true);
+        }
         boolean populate;
         if (!chunk.isPopulated()) {
             if (Timings.populationTimer != null) Timings.populationTimer.startTiming();
@@ -3497,7 +3978,12 @@ public class Level implements ChunkManager, Metadatable {
                         }
                     }
 
-                    this.server.getScheduler().scheduleAsyncTask(new PopulationTask(this, chunk));
+                    PopulationTask task = new PopulationTask(this, chunk);
+                    if (executor != null) {
+                        executor.execute(task);
+                    } else {
+                        this.server.getScheduler().scheduleAsyncTask(task);
+                    }
                 }
             }
             if (Timings.populationTimer != null) Timings.populationTimer.stopTiming();
@@ -3551,12 +4037,20 @@ public class Level implements ChunkManager, Metadatable {
             }
         }
 
-        for (Map.Entry<Long, ? extends FullChunk> entry : provider.getLoadedChunks().entrySet()) {
-            long index = entry.getKey();
-            if (!this.unloadQueue.containsKey(index)) {
-                FullChunk chunk = entry.getValue();
-                int X = chunk.getX();
-                int Z = chunk.getZ();
+        // Chunks are queued for unloading when their last user is gone, this only catches the ones loaded
+        // around the level, checking a few of them each time
+        if (this.chunkGcSweepPosition >= this.chunkGcSweep.length) {
+            this.chunkGcSweep = this.provider instanceof BaseLevelProvider ?
+                    ((BaseLevelProvider) this.provider).getLoadedChunkIndexes() :
+                    this.provider.getLoadedChunks().keySet().stream().mapToLong(Long::longValue).toArray();
+            this.chunkGcSweepPosition = 0;
+        }
+        int sweepEnd = Math.min(this.chunkGcSweep.length, this.chunkGcSweepPosition + CHUNK_GC_SWEEP_SIZE);
+        for (; this.chunkGcSweepPosition < sweepEnd; this.chunkGcSweepPosition++) {
+            long index = this.chunkGcSweep[this.chunkGcSweepPosition];
+            if (!this.unloadQueue.contains(index) && this.provider.isChunkLoaded(index)) {
+                int X = getHashX(index);
+                int Z = getHashZ(index);
                 if (!this.isSpawnChunk(X, Z)) {
                     this.unloadChunkRequest(X, Z, true);
                 }
@@ -3585,48 +4079,10 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void unloadChunks(int maxUnload, boolean force) {
-        if (!this.unloadQueue.isEmpty()) {
-            long now = System.currentTimeMillis();
-
-            LongList toRemove = null;
-            for (Long2LongMap.Entry entry : unloadQueue.long2LongEntrySet()) {
-                long index = entry.getLongKey();
-
-                if (isChunkInUse(index)) {
-                    continue;
-                }
-
-                if (!force) {
-                    long time = entry.getLongValue();
-                    if (maxUnload <= 0) {
-                        break;
-                    } else if (time > (now - 20000)) {
-                        continue;
-                    }
-                }
-
-                if (toRemove == null) toRemove = new LongArrayList();
-                toRemove.add(index);
-            }
-
-            if (toRemove != null) {
-                int size = toRemove.size();
-                for (int i = 0; i < size; i++) {
-                    long index = toRemove.getLong(i);
-                    int X = getHashX(index);
-                    int Z = getHashZ(index);
-
-                    if (this.unloadChunk(X, Z, true)) {
-                        this.unloadQueue.remove(index);
-                        --maxUnload;
-                    }
-                }
-            }
-        }
+        long start = System.currentTimeMillis();
+        this.unloadChunks(start, force ? Long.MAX_VALUE : CHUNK_UNLOAD_TICK_BUDGET, force ? Integer.MAX_VALUE : maxUnload, force);
     }
 
-    private int lastUnloadIndex;
-
     /**
      * @param now current time
      * @param allocatedTime allocated time
@@ -3634,57 +4090,30 @@ public class Level implements ChunkManager, Metadatable {
      * @return true if there is allocated time remaining
      */
     private boolean unloadChunks(long now, long allocatedTime, boolean force) {
-        if (!this.unloadQueue.isEmpty()) {
-            boolean result = true;
-            int maxIterations = this.unloadQueue.size();
-
-            if (lastUnloadIndex > maxIterations) lastUnloadIndex = 0;
-            ObjectIterator<Long2LongMap.Entry> iter = this.unloadQueue.long2LongEntrySet().iterator();
-            if (lastUnloadIndex != 0) iter.skip(lastUnloadIndex);
-
-            LongList toUnload = null;
-
-            for (int i = 0; i < maxIterations; i++) {
-                if (!iter.hasNext()) {
-                    iter = this.unloadQueue.long2LongEntrySet().iterator();
-                }
-                Long2LongMap.Entry entry = iter.next();
-
-                long index = entry.getLongKey();
-
-                if (isChunkInUse(index)) {
-                    continue;
-                }
+        return this.unloadChunks(now, allocatedTime, Integer.MAX_VALUE, force);
+    }
 
-                if (!force) {
-                    long time = entry.getLongValue();
-                    if (time > (now - 20000)) {
-                        continue;
-                    }
-                }
+    private boolean unloadChunks(long now, long allocatedTime, int maxUnload, boolean force) {
+        long expiredBefore = force ? Long.MAX_VALUE : now;
+        long index;
+        while (maxUnload > 0 && (index = this.unloadQueue.poll(expiredBefore)) != Long.MIN_VALUE) {
+            // Chunks that got used again are queued once more when they are released
+            if (this.isChunkInUse(index)) {
+                continue;
+            }
 
-                if (toUnload == null) toUnload = new LongArrayList();
-                toUnload.add(index);
+            if (this.unloadChunk(getHashX(index), getHashZ(index), true)) {
+                --maxUnload;
+            } else if (!this.isChunkInUse(index)) {
+                // Unloading was cancelled, try again later
+                this.unloadQueue.add(index, now + CHUNK_UNLOAD_DELAY);
             }
 
-            if (toUnload != null) {
-                //long[] arr = toUnload.toLongArray();
-                for (long index : toUnload) {
-                    int X = getHashX(index);
-                    int Z = getHashZ(index);
-                    if (this.unloadChunk(X, Z, true)) {
-                        this.unloadQueue.remove(index);
-                        if (System.currentTimeMillis() - now >= allocatedTime) {
-                            result = false;
-                            break;
-                        }
-                    }
-                }
+            if (System.currentTimeMillis() - now >= allocatedTime) {
+                return false;
             }
-            return result;
-        } else {
-            return true;
         }
+        return true;
     }
 
     @Override
@@ -3708,20 +4137,7 @@ public class Level implements ChunkManager, Metadatable {
     }
 
     public void addEntityMovement(Entity entity, double x, double y, double z, double yaw, double pitch, double headYaw) {
-        MoveEntityAbsolutePacket pk = new MoveEntityAbsolutePacket();
-        pk.eid = entity.getId();
-        pk.x = (float) x;
-        pk.y = (float) y;
-        pk.z = (float) z;
-        pk.yaw = (float) yaw;
-        pk.headYaw = (float) headYaw;
-        pk.pitch = (float) pitch;
-        pk.onGround = entity.onGround;
-
-        //Server.broadcastPacket(entity.getViewers().values(), pk);
-        for (Player p : entity.getViewers().values()) {
-            p.batchDataPacket(pk);
-        }
+        entity.getMovementTracker().sendMovement(entity, entity.getViewers().values(), x, y, z, yaw, pitch, headYaw);
     }
 
     public boolean isRaining() {
@@ -3951,6 +4367,28 @@ public class Level implements ChunkManager, Metadatable {
         return (this.updateLCG = (this.updateLCG * 3) ^ LCG_CONSTANT);
     }
 
+    public ActivationRange getActivationRange() {
+        return this.activationRange;
+    }
+
+    /**
+     * Get the number of entity ticks skipped because the entities were outside the activation range
+     *
+     * @return skipped entity ticks since the level was loaded
+     */
+    public long getInactiveEntityTicks() {
+        return this.inactiveEntityTicks;
+    }
+
+    /**
+     * Get the radius around players in which chunks are picked for random ticks
+     *
+     * @return radius in chunks
+     */
+    public int getChunkTickRadius() {
+        return this.chunkTickRadius;
+    }
+
     public boolean randomTickingEnabled() {
         return this.randomTickingEnabled;
     }
@@ -4253,12 +4691,4 @@ public class Level implements ChunkManager, Metadatable {
                 (chunk >= ProtocolInfo.v1_16_100 && player >= ProtocolInfo.v1_16_100 && chunk < ProtocolInfo.v1_16_210 && player < ProtocolInfo.v1_16_210) ||
                 (chunk == ProtocolInfo.v1_16_210 && player == ProtocolInfo.v1_16_210);
     }
-
-    private static class CharacterHashMap extends HashMap<Character, Object> {
-
-        @Override
-        public int size() {
-            return Character.MAX_VALUE;
-        }
-    }
 }
@@ -0,0 +1,79 @@
+package cn.nukkit.level.biome;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the biomes picked by a {@link BiomeSelector} in 16x16 tiles.
+ * <p>
+ * Terrain generation samples the biomes of a chunk and a margin around it, so neighbouring chunks pick most of the
+ * same positions again. Tiles are filled lazily and the least recently used ones are dropped once the cache is full.
+ * A grid is not thread safe, each generator thread should use its own.
+ */
+public class BiomeGrid {
+
+    private final BiomeSelector selector;
+    private final Map<Long, Biome[]> tiles;
+
+    private long lastKey = Long.MIN_VALUE;
+    private Biome[] lastTile;
+
+    public BiomeGrid(BiomeSelector selector, int capacity) {
+        this.selector = selector;
+        this.tiles = new LinkedHashMap<Long, Biome[]>(capacity + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Biome[]> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    public Biome get(int x, int z) {
+        Biome[] tile = this.getTile(x >> 4, z >> 4);
+        int index = ((x & 0xf) << 4) | (z & 0xf);
+        Biome biome = tile[index];
+        if (biome == null) {
+            tile[index] = biome = this.selector.pickBiome(x, z);
+        }
+        return biome;
+    }
+
+    /**
+     * Get the biomes of an area
+     *
+     * @param out   array to reuse or null
+     * @param x     lowest x
+     * @param z     lowest z
+     * @param sizeX size on the X axis
+     * @param sizeZ size on the Z axis
+     * @return biomes indexed by {@code dx * sizeZ + dz}
+     */
+    public Biome[] getArea(Biome[] out, int x, int z, int sizeX, int sizeZ) {
+        if (out == null || out.length < sizeX * sizeZ) {
+            out = new Biome[sizeX * sizeZ];
+        }
+
+        for (int dx = 0; dx < sizeX; dx++) {
+            for (int dz = 0; dz < sizeZ; dz++) {
+                out[dx * sizeZ + dz] = this.get(x + dx, z + dz);
+            }
+        }
+        return out;
+    }
+
+    private Biome[] getTile(int tileX, int tileZ) {
+        long key = (((long) tileX) << 32) | (tileZ & 0xffffffffL);
+        if (key == this.lastKey) {
+            return this.lastTile;
+        }
+
+        Biome[] tile = this.tiles.get(key);
+        if (tile == null) {
+            tile = new Biome[256];
+            this.tiles.put(key, tile);
+        }
+        this.lastKey = key;
+        this.lastTile = tile;
+        return tile;
+    }
+}
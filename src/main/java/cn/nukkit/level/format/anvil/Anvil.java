@@ -221,6 +221,27 @@ public class Anvil extends BaseLevelProvider {
         return chunk;
     }
 
+    @Override
+    public BaseFullChunk readChunk(int chunkX, int chunkZ) {
+        int regionX = getRegionIndexX(chunkX);
+        int regionZ = getRegionIndexZ(chunkZ);
+        RegionLoader region;
+        byte[] data;
+        // Only the file access needs the lock, decoding is done outside of it
+        synchronized (this) {
+            if (this.level == null) {
+                return null;
+            }
+            region = (RegionLoader) this.loadRegion(regionX, regionZ);
+            try {
+                data = region.readChunkData(chunkX - (regionX << 5), chunkZ - (regionZ << 5));
+            } catch (IOException e) {
+                throw new ChunkException("Error reading chunk (" + chunkX + ", " + chunkZ + ')', e);
+            }
+        }
+        return data == null ? null : region.decodeChunk(chunkX, chunkZ, data);
+    }
+
     @Override
     public synchronized void saveChunk(int X, int Z) {
         BaseFullChunk chunk = this.getChunk(X, Z);
@@ -37,6 +37,7 @@ public class ChunkSection implements cn.nukkit.level.format.ChunkSection {
     private ChunkSection(int y, BlockStorage storage, byte[] blockLight, byte[] skyLight, byte[] compressedLight, boolean hasBlockLight, boolean hasSkyLight) {
         this.y = y;
         this.storage = storage;
+        this.blockLight = blockLight;
         this.skyLight = skyLight;
         this.compressedLight = compressedLight;
         this.hasBlockLight = hasBlockLight;
@@ -65,11 +66,11 @@ public class ChunkSection implements cn.nukkit.level.format.ChunkSection {
             for (int z = 0; z < 16; z++) {
                 for (int y = 0; y < 16; y++) {
                     int index = getAnvilIndex(x, y, z);
-                    storage.setBlockId(x, y, z, blocks[index]);
-                    storage.setBlockData(x, y, z, data.get(index));
+                    storage.setFullBlock(x, y, z, ((blocks[index] & 0xff) << 4) | (data.get(index) & 0xf));
                 }
             }
         }
+        storage.compact();
 
         this.blockLight = nbt.getByteArray("BlockLight");
         this.skyLight = nbt.getByteArray("SkyLight");
@@ -336,6 +337,10 @@ public class ChunkSection implements cn.nukkit.level.format.ChunkSection {
     }
 
     public boolean compress() {
+        boolean compacted;
+        synchronized (storage) {
+            compacted = storage.compact();
+        }
         if (blockLight != null) {
             byte[] arr1 = blockLight;
             hasBlockLight = !Utils.isByteArrayEmpty(arr1);
@@ -366,7 +371,7 @@ public class ChunkSection implements cn.nukkit.level.format.ChunkSection {
             }
             return true;
         }
-        return false;
+        return compacted;
     }
 
     public ChunkSection copy() {
@@ -31,6 +31,27 @@ public class RegionLoader extends BaseRegionLoader {
 
     @Override
     public Chunk readChunk(int x, int z) throws IOException {
+        byte[] data = this.readChunkData(x, z);
+        return data == null ? null : this.decodeChunk(x, z, data);
+    }
+
+    /**
+     * Decode chunk data read with {@link #readChunkData(int, int)}. Doesn't touch the region file.
+     */
+    public Chunk decodeChunk(int x, int z, byte[] data) {
+        Chunk chunk = this.unserializeChunk(data);
+        if (chunk == null) {
+            MainLogger.getLogger().error("Corrupted chunk detected at (" + x + ", " + z + ") in " + levelProvider.getName());
+        }
+        return chunk;
+    }
+
+    /**
+     * Read the compressed data of a chunk from the region file
+     *
+     * @return chunk data or null if the chunk doesn't exist
+     */
+    public byte[] readChunkData(int x, int z) throws IOException {
         int index = getChunkOffset(x, z);
         if (index < 0 || index >= 4096) {
             return null;
@@ -70,13 +91,7 @@ public class RegionLoader extends BaseRegionLoader {
 
         byte[] data = new byte[length - 1];
         raf.readFully(data);
-        Chunk chunk = this.unserializeChunk(data);
-        if (chunk != null) {
-            return chunk;
-        } else {
-            MainLogger.getLogger().error("Corrupted chunk detected at (" + x + ", " + z + ") in " + levelProvider.getName());
-            return null;
-        }
+        return data;
         } catch (EOFException e) {
             MainLogger.getLogger().error("Your world is corrupted because some code is bad and corrupted it");
             return null;
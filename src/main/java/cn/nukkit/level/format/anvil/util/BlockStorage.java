@@ -1,25 +1,61 @@
 package cn.nukkit.level.format.anvil.util;
 
 import cn.nukkit.level.GlobalBlockPalette;
+import cn.nukkit.level.util.BitArray;
+import cn.nukkit.level.util.BitArrayVersion;
 import cn.nukkit.level.util.PalettedBlockStorage;
 import cn.nukkit.utils.BinaryStream;
 import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 
 import java.util.Arrays;
 
+/**
+ * Blocks of a chunk section, stored as a palette of full block ids and a bit array of palette indexes.
+ * <p>
+ * The bit array uses as few bits per block as the palette size allows and grows when new blocks are added. Sections
+ * made of a single block have no bit array at all and share their one-entry palette with every other section made of
+ * the same block, until a different block is set. {@link #compact()} drops unused palette entries again.
+ */
 public class BlockStorage {
+
     private static final int SECTION_SIZE = 4096;
-    private final byte[] blockIds;
-    private final NibbleArray blockData;
+
+    private static final int[][] UNIFORM_PALETTES = new int[4096][];
+    private static final int[] EMPTY_WORDS = new int[BitArrayVersion.V1.getWordsForSize(SECTION_SIZE)];
+
+    static {
+        for (int fullId = 0; fullId < UNIFORM_PALETTES.length; fullId++) {
+            UNIFORM_PALETTES[fullId] = new int[]{fullId};
+        }
+    }
+
+    private int[] palette;
+    private int paletteSize;
+    // Null while every block is palette[0]
+    private BitArray bitArray;
+    // Palette entries might be unused since the last compaction
+    private boolean modified;
 
     public BlockStorage() {
-        blockIds = new byte[SECTION_SIZE];
-        blockData = new NibbleArray(SECTION_SIZE);
+        this(0);
     }
 
-    private BlockStorage(byte[] blockIds, NibbleArray blockData) {
-        this.blockIds = blockIds;
-        this.blockData = blockData;
+    /**
+     * Create a section made of a single block
+     *
+     * @param fullId full block id
+     */
+    public BlockStorage(int fullId) {
+        this.palette = UNIFORM_PALETTES[fullId];
+        this.paletteSize = 1;
+    }
+
+    private BlockStorage(int[] palette, int paletteSize, BitArray bitArray) {
+        this.palette = palette;
+        this.paletteSize = paletteSize;
+        this.bitArray = bitArray;
     }
 
     private static int getIndex(int x, int y, int z) {
@@ -29,19 +65,21 @@ public class BlockStorage {
     }
 
     public int getBlockData(int x, int y, int z) {
-        return blockData.get(getIndex(x, y, z)) & 0xf;
+        return getFullBlock(getIndex(x, y, z)) & 0xf;
     }
 
     public int getBlockId(int x, int y, int z) {
-        return blockIds[getIndex(x, y, z)] & 0xFF;
+        return getFullBlock(getIndex(x, y, z)) >> 4;
     }
 
     public void setBlockId(int x, int y, int z, int id) {
-        blockIds[getIndex(x, y, z)] = (byte) (id & 0xff);
+        int index = getIndex(x, y, z);
+        setFullBlock(index, ((id & 0xff) << 4) | (getFullBlock(index) & 0xf));
     }
 
     public void setBlockData(int x, int y, int z, int data) {
-        blockData.set(getIndex(x, y, z), (byte) data);
+        int index = getIndex(x, y, z);
+        setFullBlock(index, (getFullBlock(index) & 0xff0) | (data & 0xf));
     }
 
     public int getFullBlock(int x, int y, int z) {
@@ -49,60 +87,195 @@ public class BlockStorage {
     }
 
     public void setFullBlock(int x, int y, int z, int value) {
-        this.setFullBlock(getIndex(x, y, z), (short) value);
+        Preconditions.checkArgument(value >= 0 && value <= 0xfff, "Invalid full block");
+        this.setFullBlock(getIndex(x, y, z), value);
     }
 
     public int getAndSetFullBlock(int x, int y, int z, int value) {
-        return getAndSetFullBlock(getIndex(x, y, z), (short) value);
+        Preconditions.checkArgument(value >= 0 && value <= 0xfff, "Invalid full block");
+        int index = getIndex(x, y, z);
+        int old = getFullBlock(index);
+        if (old != value) {
+            setFullBlock(index, value);
+        }
+        return old;
     }
 
-    private int getAndSetFullBlock(int index, short value) {
-        Preconditions.checkArgument(value < 0xfff, "Invalid full block");
-        byte oldBlock = blockIds[index];
-        byte oldData = blockData.get(index);
-        byte newBlock = (byte) ((value & 0xff0) >> 4);
-        byte newData = (byte) (value & 0xf);
-        if (oldBlock != newBlock) {
-            blockIds[index] = newBlock;
+    private int getFullBlock(int index) {
+        if (this.bitArray == null) {
+            return this.palette[0];
         }
-        if (oldData != newData) {
-            blockData.set(index, newData);
+        return this.palette[this.bitArray.get(index)];
+    }
+
+    private void setFullBlock(int index, int value) {
+        if (this.bitArray == null) {
+            if (this.palette[0] == value) {
+                return;
+            }
+            // First block that differs, promote to a bit array
+            this.palette = Arrays.copyOf(this.palette, 2);
+            this.bitArray = BitArrayVersion.V1.createPalette(SECTION_SIZE);
         }
-        return ((oldBlock & 0xff) << 4) | oldData;
+        int id = this.idFor(value);
+        this.bitArray.set(index, id);
+        this.modified = true;
     }
 
-    private int getFullBlock(int index) {
-        byte block = blockIds[index];
-        byte data = blockData.get(index);
-        return ((block & 0xff) << 4) | data;
+    private int idFor(int fullId) {
+        for (int i = 0; i < this.paletteSize; i++) {
+            if (this.palette[i] == fullId) {
+                return i;
+            }
+        }
+
+        int id = this.paletteSize;
+        BitArrayVersion version = this.bitArray.getVersion();
+        if (id > version.getMaxEntryValue()) {
+            BitArrayVersion next = version.next();
+            if (next == null) {
+                throw new IllegalStateException("Palette is full");
+            }
+            BitArray newBitArray = next.createPalette(SECTION_SIZE);
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                newBitArray.set(i, this.bitArray.get(i));
+            }
+            this.bitArray = newBitArray;
+        }
+        if (id >= this.palette.length) {
+            this.palette = Arrays.copyOf(this.palette, this.palette.length << 1);
+        }
+        this.palette[id] = fullId;
+        this.paletteSize++;
+        return id;
     }
 
-    private void setFullBlock(int index, short value) {
-        Preconditions.checkArgument(value < 0xfff, "Invalid full block");
-        byte block = (byte) ((value & 0xff0) >> 4);
-        byte data = (byte) (value & 0xf);
+    /**
+     * Remove unused palette entries and use the smallest bit array that fits the remaining ones. A section made of a
+     * single block goes back to the shared palette.
+     *
+     * @return whether the storage changed
+     */
+    public boolean compact() {
+        if (this.bitArray == null || !this.modified) {
+            return false;
+        }
+        this.modified = false;
+
+        int[] used = new int[this.paletteSize];
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            used[this.bitArray.get(i)]++;
+        }
+        int[] remap = new int[this.paletteSize];
+        int size = 0;
+        for (int i = 0; i < this.paletteSize; i++) {
+            remap[i] = used[i] > 0 ? size++ : -1;
+        }
+
+        if (size == 1) {
+            for (int i = 0; i < this.paletteSize; i++) {
+                if (remap[i] == 0) {
+                    this.palette = UNIFORM_PALETTES[this.palette[i]];
+                    break;
+                }
+            }
+            this.paletteSize = 1;
+            this.bitArray = null;
+            return true;
+        }
+
+        BitArrayVersion version = BitArrayVersion.V1;
+        while (size - 1 > version.getMaxEntryValue()) {
+            version = version.next();
+        }
+        if (size == this.paletteSize && version == this.bitArray.getVersion()) {
+            return false;
+        }
+
+        int[] palette = new int[size];
+        for (int i = 0; i < this.paletteSize; i++) {
+            if (remap[i] >= 0) {
+                palette[remap[i]] = this.palette[i];
+            }
+        }
+        BitArray bitArray = version.createPalette(SECTION_SIZE);
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            bitArray.set(i, remap[this.bitArray.get(i)]);
+        }
+        this.palette = palette;
+        this.paletteSize = size;
+        this.bitArray = bitArray;
+        return true;
+    }
 
-        blockIds[index] = block;
-        blockData.set(index, data);
+    /**
+     * Check whether all blocks are the same
+     */
+    public boolean isUniform() {
+        return this.bitArray == null;
     }
 
     public byte[] getBlockIds() {
-        return Arrays.copyOf(blockIds, blockIds.length);
+        byte[] ids = new byte[SECTION_SIZE];
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            ids[i] = (byte) (getFullBlock(i) >> 4);
+        }
+        return ids;
     }
 
     public byte[] getBlockData() {
-        return blockData.getData();
+        NibbleArray data = new NibbleArray(SECTION_SIZE);
+        for (int i = 0; i < SECTION_SIZE; i++) {
+            data.set(i, (byte) (getFullBlock(i) & 0xf));
+        }
+        return data.getData();
     }
 
     public void writeTo(int protocol, BinaryStream stream) {
-        PalettedBlockStorage storage = new PalettedBlockStorage(protocol);
-        for (int i = 0; i < SECTION_SIZE; i++) {
-            storage.setBlock(i, GlobalBlockPalette.getOrCreateRuntimeId(protocol, blockIds[i] & 0xff, blockData.get(i)));
+        int[] runtimeIds = new int[this.paletteSize];
+        for (int i = 0; i < this.paletteSize; i++) {
+            runtimeIds[i] = GlobalBlockPalette.getOrCreateRuntimeId(protocol, this.palette[i] >> 4, this.palette[i] & 0xf);
+        }
+
+        if (this.bitArray == null) {
+            stream.putByte((byte) ((BitArrayVersion.V1.getId() << 1) | 1));
+            for (int word : EMPTY_WORDS) {
+                stream.putLInt(word);
+            }
+            stream.putVarInt(1);
+            stream.putVarInt(runtimeIds[0]);
+            return;
+        }
+
+        IntSet unique = new IntOpenHashSet(runtimeIds.length);
+        for (int runtimeId : runtimeIds) {
+            unique.add(runtimeId);
+        }
+        if (unique.size() != runtimeIds.length) {
+            // Different blocks share a runtime id, build a palette of runtime ids instead
+            PalettedBlockStorage storage = new PalettedBlockStorage(protocol);
+            for (int i = 0; i < SECTION_SIZE; i++) {
+                storage.setBlock(i, runtimeIds[this.bitArray.get(i)]);
+            }
+            storage.writeTo(protocol, stream);
+            return;
+        }
+
+        // The palette indexes can be sent as they are
+        stream.putByte((byte) ((this.bitArray.getVersion().getId() << 1) | 1));
+        for (int word : this.bitArray.getWords()) {
+            stream.putLInt(word);
+        }
+        stream.putVarInt(runtimeIds.length);
+        for (int runtimeId : runtimeIds) {
+            stream.putVarInt(runtimeId);
         }
-        storage.writeTo(protocol, stream);
     }
 
     public BlockStorage copy() {
-        return new BlockStorage(blockIds.clone(), blockData.copy());
+        if (this.bitArray == null) {
+            return new BlockStorage(this.palette, 1, null);
+        }
+        return new BlockStorage(Arrays.copyOf(this.palette, this.palette.length), this.paletteSize, this.bitArray.copy());
     }
-}
\ No newline at end of file
+}
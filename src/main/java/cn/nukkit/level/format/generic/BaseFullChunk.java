@@ -1,6 +1,7 @@
 package cn.nukkit.level.format.generic;
 
 import cn.nukkit.Player;
+import cn.nukkit.Server;
 import cn.nukkit.blockentity.BlockEntity;
 import cn.nukkit.entity.Entity;
 import cn.nukkit.level.ChunkManager;
@@ -20,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author MagicDroidX
@@ -27,6 +29,8 @@ import java.util.Map;
  */
 public abstract class BaseFullChunk implements FullChunk, ChunkManager {
 
+    private static final AtomicLong packetVersions = new AtomicLong();
+
     protected Map<Long, Entity> entities;
 
     protected Map<Long, BlockEntity> tiles;
@@ -67,7 +71,9 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
 
     protected boolean isInit;
 
-    protected Map<Integer, BatchPacket> chunkPackets;
+    // Identifies the current contents of the chunk in the chunk packet cache
+    private volatile long packetVersion = packetVersions.incrementAndGet();
+    private volatile boolean hasChunkPackets;
 
     @Override
     public BaseFullChunk clone() {
@@ -104,24 +110,27 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
     }
 
     public void setChunkPacket(int protocol, BatchPacket packet) {
-        if (packet != null) {
-            packet.trim();
-            if (chunkPackets == null) {
-                chunkPackets = new Int2ObjectOpenHashMap<>();
-            }
-            this.chunkPackets.put(protocol, packet);
+        if (packet != null && Server.getInstance().getChunkPacketCache().put(this.packetVersion, protocol, packet)) {
+            this.hasChunkPackets = true;
         }
     }
 
     public BatchPacket getChunkPacket(int protocol) {
-        if (chunkPackets == null) {
-            return null;
-        }
-        BatchPacket pk = chunkPackets.get(protocol);
-        if (pk != null) {
-            pk.trim();
+        return Server.getInstance().getChunkPacketCache().get(this.packetVersion, protocol);
+    }
+
+    /**
+     * Get the version of the chunk contents, which changes every time the chunk is changed
+     */
+    public long getPacketVersion() {
+        return this.packetVersion;
+    }
+
+    private void clearChunkPackets() {
+        if (this.hasChunkPackets) {
+            this.hasChunkPackets = false;
+            Server.getInstance().getChunkPacketCache().remove(this.packetVersion);
         }
-        return pk;
     }
 
     public void initChunk() {
@@ -454,6 +463,7 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
         for (BlockEntity blockEntity : new ArrayList<>(this.getBlockEntities().values())) {
             blockEntity.close();
         }
+        this.clearChunkPackets();
         this.provider = null;
         return true;
     }
@@ -505,7 +515,8 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
     @Override
     public void setChanged() {
         this.changes++;
-        chunkPackets = null;
+        this.clearChunkPackets();
+        this.packetVersion = packetVersions.incrementAndGet();
     }
 
     @Override
@@ -603,14 +614,6 @@ public abstract class BaseFullChunk implements FullChunk, ChunkManager {
     }
 
     public boolean compress() {
-        if (chunkPackets == null) {
-            return false;
-        }
-        for (BatchPacket pk : chunkPackets.values()) {
-            if (pk != null) {
-                pk.trim();
-            }
-        }
-        return !chunkPackets.isEmpty();
+        return this.hasChunkPackets;
     }
 }
@@ -74,6 +74,18 @@ public abstract class BaseLevelProvider implements LevelProvider {
 
     public abstract BaseFullChunk loadChunk(long index, int chunkX, int chunkZ, boolean create);
 
+    /**
+     * Read a chunk from disk without adding it to the loaded chunks. Safe to call from any thread.
+     * Providers that don't support this return null, in which case the chunk is loaded on the main thread.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     * @return chunk or null if it isn't stored
+     */
+    public BaseFullChunk readChunk(int chunkX, int chunkZ) {
+        return null;
+    }
+
     public int size() {
         synchronized (chunks) {
             return this.chunks.size();
@@ -110,6 +122,17 @@ public abstract class BaseLevelProvider implements LevelProvider {
         }
     }
 
+    /**
+     * Get the hashes of all loaded chunks without copying the chunks map
+     *
+     * @return chunk hashes
+     */
+    public long[] getLoadedChunkIndexes() {
+        synchronized (chunks) {
+            return chunks.keySet().toLongArray();
+        }
+    }
+
     @Override
     public boolean isChunkLoaded(int X, int Z) {
         return isChunkLoaded(Level.chunkHash(X, Z));
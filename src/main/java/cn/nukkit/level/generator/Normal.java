@@ -3,6 +3,7 @@ package cn.nukkit.level.generator;
 import cn.nukkit.block.*;
 import cn.nukkit.level.ChunkManager;
 import cn.nukkit.level.biome.Biome;
+import cn.nukkit.level.biome.BiomeGrid;
 import cn.nukkit.level.biome.BiomeSelector;
 import cn.nukkit.level.biome.EnumBiome;
 import cn.nukkit.level.format.generic.BaseFullChunk;
@@ -28,6 +29,10 @@ import java.util.*;
 public class Normal extends Generator {
 
     private static final float[] biomeWeights = new float[25];
+    /**
+     * Biomes sampled for a chunk: the chunk itself and the 2 block margin used for height smoothing
+     */
+    private static final int BIOME_AREA_SIZE = 21;
 
     static {
         for (int i = -2; i <= 2; ++i) {
@@ -47,6 +52,8 @@ public class Normal extends Generator {
     private long localSeed1;
     private long localSeed2;
     private BiomeSelector selector;
+    private ThreadLocal<BiomeGrid> biomeGrid;
+    private ThreadLocal<Biome[]> biomeArea = ThreadLocal.withInitial(() -> new Biome[BIOME_AREA_SIZE * BIOME_AREA_SIZE]);
     private ThreadLocal<float[]> depthRegion = ThreadLocal.withInitial(() -> null);
     private ThreadLocal<float[]> mainNoiseRegion = ThreadLocal.withInitial(() -> null);
     private ThreadLocal<float[]> minLimitRegion = ThreadLocal.withInitial(() -> null);
@@ -84,7 +91,7 @@ public class Normal extends Generator {
     }
 
     public Biome pickBiome(int x, int z) {
-        return this.selector.pickBiome(x, z);
+        return this.biomeGrid.get().get(x, z);
     }
 
     @Override
@@ -97,6 +104,8 @@ public class Normal extends Generator {
         this.localSeed2 = random1.nextLong();
         this.nukkitRandom.setSeed(this.level.getSeed());
         this.selector = new BiomeSelector(this.nukkitRandom);
+        BiomeSelector selector = this.selector;
+        this.biomeGrid = ThreadLocal.withInitial(() -> new BiomeGrid(selector, 64));
 
         this.minLimitPerlinNoise = new NoiseGeneratorOctavesF(random, 16);
         this.maxLimitPerlinNoise = new NoiseGeneratorOctavesF(random, 16);
@@ -147,6 +156,7 @@ public class Normal extends Generator {
         float[] maxLimitRegion = this.maxLimitPerlinNoise.generateNoiseOctaves(this.maxLimitRegion.get(), chunkX << 2, 0, chunkZ << 2, 5, 33, 5, 684.412f, 684.412f, 684.412f);
         this.maxLimitRegion.set(maxLimitRegion);
         float[] heightMap = this.heightMap.get();
+        Biome[] biomes = this.biomeGrid.get().getArea(this.biomeArea.get(), baseX - 2, baseZ - 2, BIOME_AREA_SIZE, BIOME_AREA_SIZE);
 
         //generate heightmap and smooth biome heights
         int horizCounter = 0;
@@ -156,11 +166,11 @@ public class Normal extends Generator {
                 float heightVariationSum = 0.0F;
                 float baseHeightSum = 0.0F;
                 float biomeWeightSum = 0.0F;
-                Biome biome = pickBiome(baseX + (xSeg << 2), baseZ + (zSeg << 2));
+                Biome biome = biomes[((xSeg << 2) + 2) * BIOME_AREA_SIZE + (zSeg << 2) + 2];
 
                 for (int xSmooth = -2; xSmooth <= 2; ++xSmooth) {
                     for (int zSmooth = -2; zSmooth <= 2; ++zSmooth) {
-                        Biome biome1 = pickBiome(baseX + (xSeg << 2) + xSmooth, baseZ + (zSeg << 2) + zSmooth);
+                        Biome biome1 = biomes[((xSeg << 2) + xSmooth + 2) * BIOME_AREA_SIZE + (zSeg << 2) + zSmooth + 2];
                         float baseHeight = biome1.getBaseHeight();
                         float heightVariation = biome1.getHeightVariation();
 
@@ -289,7 +299,7 @@ public class Normal extends Generator {
 
         for (int x = 0; x < 16; x++) {
             for (int z = 0; z < 16; z++) {
-                chunk.setBiome(x, z, selector.pickBiome(baseX | x, baseZ | z));
+                chunk.setBiome(x, z, biomes[(x + 2) * BIOME_AREA_SIZE + z + 2]);
             }
         }
 
@@ -0,0 +1,561 @@
+package cn.nukkit.level.generator;
+
+import cn.nukkit.Server;
+import cn.nukkit.command.CommandSender;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.format.LevelProvider;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.scheduler.TaskHandler;
+import cn.nukkit.utils.Config;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates and populates a square or rectangular area of a level ahead of time.
+ * <p>
+ * Chunks are processed in spiral order from the center. Every chunk before the oldest unfinished one in the spiral is
+ * done, so only the chunks finished ahead of it need to be remembered. The population tasks run on a dedicated pool, while the
+ * 3x3 population locking of the level is kept as it is. Chunks are read and written by a single pregeneration I/O
+ * thread, so that pregeneration doesn't compete with players for the chunk load pool. Chunks are written in batches
+ * grouped by region once they and all their neighbours are populated, and unloaded once the batch is written. New
+ * chunks are not started while too many chunks are waiting to be written. The progress is saved to
+ * {@code pregen.yml} in the level folder, so an interrupted run can be resumed.
+ */
+public class Pregenerator implements Runnable {
+
+    private static final Map<Level, Pregenerator> RUNNING = new ConcurrentHashMap<>();
+
+    private static final int WRITE_BATCH_SIZE = 64;
+    private static final int MAX_PENDING_WRITES = WRITE_BATCH_SIZE * 4;
+    private static final long REPORT_INTERVAL = 10000;
+
+    private final Level level;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final int minX;
+    private final int minZ;
+    private final int maxX;
+    private final int maxZ;
+    private final int threads;
+    private final CommandSender sender;
+
+    private ThreadPoolExecutor pool;
+    private ExecutorService io;
+    private TaskHandler handler;
+
+    // Spiral state
+    private int spiralX;
+    private int spiralZ;
+    private int spiralDx = 1;
+    private int spiralDz;
+    private int segmentLength = 1;
+    private int segmentPassed;
+    private int segmentsDone;
+    private long spiralIndex;
+    private final long spiralSize;
+
+    private final List<Job> jobs = new ArrayList<>();
+    // Spiral indexes of the chunks completed after the oldest unfinished one
+    private final LongOpenHashSet doneAhead = new LongOpenHashSet();
+    private final LongArrayList writeBatch = new LongArrayList();
+    // Chunks held while the I/O thread writes them
+    private LongList writing;
+    private CompletableFuture<?> write;
+
+    private long startTime;
+    private long lastReport;
+    private int chunksDone;
+
+    /**
+     * @param level   level
+     * @param centerX center chunk x
+     * @param centerZ center chunk z
+     * @param radius  radius in chunks
+     * @param threads population threads
+     * @param sender  receives progress reports, may be null
+     */
+    public Pregenerator(Level level, int centerX, int centerZ, int radius, int threads, CommandSender sender) {
+        this(level, centerX, centerZ, radius, centerX - radius, centerZ - radius, centerX + radius, centerZ + radius, threads, sender);
+    }
+
+    private Pregenerator(Level level, int centerX, int centerZ, int radius, int minX, int minZ, int maxX, int maxZ, int threads, CommandSender sender) {
+        this.level = level;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxZ = maxZ;
+        this.threads = Math.max(1, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+        this.sender = sender;
+        long side = 2L * radius + 1;
+        this.spiralSize = side * side;
+    }
+
+    /**
+     * Create a pregenerator for a rectangular area, processed in spiral order from its center
+     *
+     * @param level   level
+     * @param x1      chunk x of one corner
+     * @param z1      chunk z of one corner
+     * @param x2      chunk x of the opposite corner
+     * @param z2      chunk z of the opposite corner
+     * @param threads population threads
+     * @param sender  receives progress reports, may be null
+     * @return pregenerator
+     */
+    public static Pregenerator region(Level level, int x1, int z1, int x2, int z2, int threads, CommandSender sender) {
+        int minX = Math.min(x1, x2);
+        int minZ = Math.min(z1, z2);
+        int maxX = Math.max(x1, x2);
+        int maxZ = Math.max(z1, z2);
+        int centerX = (minX + maxX) >> 1;
+        int centerZ = (minZ + maxZ) >> 1;
+        int radius = Math.max(Math.max(maxX - centerX, centerX - minX), Math.max(maxZ - centerZ, centerZ - minZ));
+        return new Pregenerator(level, centerX, centerZ, radius, minX, minZ, maxX, maxZ, threads, sender);
+    }
+
+    /**
+     * Create a pregenerator for the area saved by an interrupted run
+     *
+     * @return pregenerator or null if there is nothing to resume
+     */
+    public static Pregenerator resume(Level level, int threads, CommandSender sender) {
+        File file = getStateFile(level);
+        if (!file.exists()) {
+            return null;
+        }
+
+        Config state = new Config(file, Config.YAML);
+        int centerX = state.getInt("centerX");
+        int centerZ = state.getInt("centerZ");
+        int radius = state.getInt("radius");
+        Pregenerator pregenerator = new Pregenerator(level, centerX, centerZ, radius,
+                state.getInt("minX", centerX - radius), state.getInt("minZ", centerZ - radius),
+                state.getInt("maxX", centerX + radius), state.getInt("maxZ", centerZ + radius), threads, sender);
+        pregenerator.skip(state.getLong("index"));
+        return pregenerator;
+    }
+
+    public static Pregenerator get(Level level) {
+        return RUNNING.get(level);
+    }
+
+    private static File getStateFile(Level level) {
+        return new File(level.getProvider().getPath(), "pregen.yml");
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public int getChunksDone() {
+        return chunksDone;
+    }
+
+    public long getTotalChunks() {
+        return (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+    }
+
+    /**
+     * Get the fraction of the area that has been processed
+     *
+     * @return progress from 0 to 1
+     */
+    public double getProgress() {
+        return Math.min(1, (double) this.getResumeIndex() / spiralSize);
+    }
+
+    public double getChunksPerSecond() {
+        long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed <= 0 ? 0 : chunksDone * 1000d / elapsed;
+    }
+
+    public boolean isRunning() {
+        return RUNNING.get(level) == this;
+    }
+
+    public boolean start() {
+        if (RUNNING.putIfAbsent(level, this) != null) {
+            return false;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Nukkit Pregenerator #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.io = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Nukkit Pregenerator I/O");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.startTime = this.lastReport = System.currentTimeMillis();
+        this.handler = Server.getInstance().getScheduler().scheduleRepeatingTask(this, 1);
+        this.report("Pregenerating " + this.getTotalChunks() + " chunks from " + minX + ", " + minZ + " to " + maxX + ", " + maxZ + " in " + level.getName());
+        return true;
+    }
+
+    /**
+     * Stop generating. Progress is saved so the run can be resumed later.
+     */
+    public void stop() {
+        this.finish(false);
+    }
+
+    private void finish(boolean completed) {
+        if (!RUNNING.remove(level, this)) {
+            return;
+        }
+        this.handler.cancel();
+        this.pool.shutdown();
+
+        for (Job job : this.jobs) {
+            job.release();
+        }
+
+        if (completed) {
+            this.jobs.clear();
+            this.flushWrites(true);
+            this.io.shutdown();
+            File file = getStateFile(level);
+            if (file.exists() && !file.delete()) {
+                Server.getInstance().getLogger().warning("Could not delete " + file);
+            }
+            this.report("Pregeneration of " + level.getName() + " finished: " + chunksDone + " chunks at " + String.format("%.1f", this.getChunksPerSecond()) + " chunks/s, "
+                    + level.getGenerationLocks().getWaitNanos() / 1000000 + " ms spent waiting for chunk locks");
+        } else {
+            this.saveState();
+            this.jobs.clear();
+            this.flushWrites(true);
+            this.io.shutdown();
+            this.report("Pregeneration of " + level.getName() + " stopped at " + String.format("%.1f%%", this.getProgress() * 100));
+        }
+    }
+
+    @Override
+    public void run() {
+        if (level.getProvider() == null) {
+            // Level was unloaded, there is nothing left to save
+            RUNNING.remove(level, this);
+            this.handler.cancel();
+            this.pool.shutdown();
+            this.io.shutdown();
+            return;
+        }
+
+        if (this.write != null && this.write.isDone()) {
+            this.completeWrite();
+        }
+
+        Iterator<Job> iterator = this.jobs.iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            if (job.tick()) {
+                iterator.remove();
+                job.release();
+                this.complete(job);
+            }
+        }
+
+        while (this.jobs.size() < threads * 4 && this.writeBatch.size() < MAX_PENDING_WRITES && this.spiralIndex < this.spiralSize) {
+            int x = this.spiralX + centerX;
+            int z = this.spiralZ + centerZ;
+            long index = this.spiralIndex;
+            this.advance();
+            if (this.inArea(x, z)) {
+                this.jobs.add(new Job(x, z, index));
+            }
+        }
+
+        if (this.write == null && this.writeBatch.size() >= WRITE_BATCH_SIZE) {
+            this.saveState();
+            this.flushWrites(false);
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - this.lastReport >= REPORT_INTERVAL) {
+            this.lastReport = now;
+            this.report(String.format("Pregenerating %s: %.1f%%, %d chunks, %.1f chunks/s", level.getName(), this.getProgress() * 100, chunksDone, this.getChunksPerSecond()));
+        }
+
+        if (this.jobs.isEmpty() && this.write == null && this.spiralIndex >= this.spiralSize) {
+            this.finish(true);
+        }
+    }
+
+    private void complete(Job job) {
+        int x = job.x;
+        int z = job.z;
+        this.chunksDone++;
+        this.doneAhead.add(job.spiralIndex);
+
+        long frontier = this.getResumeIndex();
+        LongIterator iterator = this.doneAhead.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.nextLong() < frontier) {
+                iterator.remove();
+            }
+        }
+
+        // The chunk and its neighbours can be written once every chunk around them has been populated
+        for (int nx = x - 1; nx <= x + 1; nx++) {
+            for (int nz = z - 1; nz <= z + 1; nz++) {
+                if (this.isFinal(nx, nz)) {
+                    this.writeBatch.add(Level.chunkHash(nx, nz));
+                }
+            }
+        }
+    }
+
+    private boolean isFinal(int x, int z) {
+        if (!this.inArea(x, z) || !this.isDone(x, z)) {
+            return false;
+        }
+        for (int nx = x - 1; nx <= x + 1; nx++) {
+            for (int nz = z - 1; nz <= z + 1; nz++) {
+                if (this.inArea(nx, nz) && !this.isDone(nx, nz)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isDone(int x, int z) {
+        long index = getSpiralIndex(x - centerX, z - centerZ);
+        return index < this.getResumeIndex() || this.doneAhead.contains(index);
+    }
+
+    private boolean inArea(int x, int z) {
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Get the position of a chunk in the spiral, the inverse of {@link #advance()}
+     *
+     * @param dx x offset from the center
+     * @param dz z offset from the center
+     * @return spiral index
+     */
+    private static long getSpiralIndex(int dx, int dz) {
+        long k = Math.max(Math.abs(dx), Math.abs(dz));
+        if (k == 0) {
+            return 0;
+        }
+        // Ring k starts right after the (2k - 1) * (2k - 1) square inside it, going along x = k, z = k, x = -k, z = -k
+        long start = (2 * k - 1) * (2 * k - 1);
+        if (dx == k && dz > -k) {
+            return start + dz + k - 1;
+        }
+        if (dz == k) {
+            return start + 2 * k - 1 + (k - dx);
+        }
+        if (dx == -k) {
+            return start + 4 * k - 1 + (k - dz);
+        }
+        return start + 6 * k - 1 + (dx + k);
+    }
+
+    /**
+     * Write the batched chunks on the I/O thread
+     *
+     * @param wait wait for the chunks to be written and unload them
+     */
+    private void flushWrites(boolean wait) {
+        if (this.write != null) {
+            if (!wait) {
+                return;
+            }
+            this.write.join();
+            this.completeWrite();
+        }
+        if (this.writeBatch.isEmpty()) {
+            return;
+        }
+
+        // Write region by region
+        long[] batch = this.writeBatch.toLongArray();
+        this.writeBatch.clear();
+        LongArrays.quickSort(batch, (a, b) -> {
+            int result = Integer.compare(Level.getHashX(a) >> 5, Level.getHashX(b) >> 5);
+            if (result == 0) {
+                result = Integer.compare(Level.getHashZ(a) >> 5, Level.getHashZ(b) >> 5);
+            }
+            return result != 0 ? result : Long.compare(a, b);
+        });
+
+        LongList writing = new LongArrayList(batch.length);
+        List<BaseFullChunk> chunks = new ArrayList<>(batch.length);
+        for (long index : batch) {
+            int x = Level.getHashX(index);
+            int z = Level.getHashZ(index);
+            BaseFullChunk chunk = level.getChunkIfLoaded(x, z);
+            // Chunks used by players are saved by the level when they are unloaded
+            if (chunk == null || level.isChunkInUse(x, z)) {
+                continue;
+            }
+            // Keep the chunk loaded until it is written, so it can't be read back from disk before that
+            level.holdChunk(x, z);
+            writing.add(index);
+            if (chunk.hasChanged()) {
+                chunk.setChanged(false);
+                chunks.add(chunk);
+            }
+        }
+
+        LevelProvider provider = level.getProvider();
+        this.writing = writing;
+        this.write = CompletableFuture.runAsync(() -> {
+            for (BaseFullChunk chunk : chunks) {
+                try {
+                    provider.saveChunk(chunk.getX(), chunk.getZ(), chunk);
+                } catch (Exception e) {
+                    Server.getInstance().getLogger().error("Could not save chunk (" + chunk.getX() + ", " + chunk.getZ() + ") in " + level.getName(), e);
+                }
+            }
+        }, this.io);
+
+        if (wait) {
+            this.write.join();
+            this.completeWrite();
+        }
+    }
+
+    /**
+     * Unload the chunks written by the I/O thread
+     */
+    private void completeWrite() {
+        LongList writing = this.writing;
+        this.writing = null;
+        this.write = null;
+        if (level.getProvider() == null) {
+            return;
+        }
+
+        for (int i = 0; i < writing.size(); i++) {
+            long index = writing.getLong(i);
+            int x = Level.getHashX(index);
+            int z = Level.getHashZ(index);
+            level.releaseChunk(x, z);
+            if (!level.isChunkInUse(x, z) && !level.isSpawnChunk(x, z)) {
+                BaseFullChunk chunk = level.getChunkIfLoaded(x, z);
+                // Only save again if the chunk was changed while it was written
+                level.unloadChunk(x, z, true, chunk != null && chunk.hasChanged());
+            }
+        }
+    }
+
+    private long getResumeIndex() {
+        long index = this.spiralIndex;
+        for (Job job : this.jobs) {
+            index = Math.min(index, job.spiralIndex);
+        }
+        return index;
+    }
+
+    private void saveState() {
+        Config state = new Config(getStateFile(level), Config.YAML);
+        state.set("centerX", centerX);
+        state.set("centerZ", centerZ);
+        state.set("radius", radius);
+        state.set("minX", minX);
+        state.set("minZ", minZ);
+        state.set("maxX", maxX);
+        state.set("maxZ", maxZ);
+        state.set("index", this.getResumeIndex());
+        state.save();
+    }
+
+    private void report(String message) {
+        Server.getInstance().getLogger().info(message);
+        // The console already gets the log message
+        if (this.sender != null && this.sender.isPlayer()) {
+            this.sender.sendMessage(message);
+        }
+    }
+
+    private void skip(long count) {
+        while (this.spiralIndex < count && this.spiralIndex < this.spiralSize) {
+            this.advance();
+        }
+    }
+
+    private void advance() {
+        this.spiralIndex++;
+        this.spiralX += this.spiralDx;
+        this.spiralZ += this.spiralDz;
+        if (++this.segmentPassed == this.segmentLength) {
+            this.segmentPassed = 0;
+            // Turn left
+            int dx = this.spiralDx;
+            this.spiralDx = -this.spiralDz;
+            this.spiralDz = dx;
+            if (++this.segmentsDone % 2 == 0) {
+                this.segmentLength++;
+            }
+        }
+    }
+
+    private class Job {
+
+        private final int x;
+        private final int z;
+        private final long spiralIndex;
+        private CompletableFuture<?> load;
+        private boolean held;
+
+        private Job(int x, int z, long spiralIndex) {
+            this.x = x;
+            this.z = z;
+            this.spiralIndex = spiralIndex;
+        }
+
+        /**
+         * @return chunk is populated
+         */
+        private boolean tick() {
+            if (this.load == null) {
+                // Population needs the chunk and its neighbours
+                List<CompletableFuture<BaseFullChunk>> loads = new ArrayList<>(9);
+                for (int nx = x - 1; nx <= x + 1; nx++) {
+                    for (int nz = z - 1; nz <= z + 1; nz++) {
+                        level.holdChunk(nx, nz);
+                        loads.add(level.loadChunkAsync(nx, nz, true, io));
+                    }
+                }
+                this.held = true;
+                this.load = CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+                return false;
+            }
+
+            if (!this.load.isDone()) {
+                return false;
+            }
+
+            return level.populateChunk(x, z, true, pool);
+        }
+
+        private void release() {
+            if (this.held) {
+                this.held = false;
+                for (int nx = x - 1; nx <= x + 1; nx++) {
+                    for (int nz = z - 1; nz <= z + 1; nz++) {
+                        level.releaseChunk(nx, nz);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import cn.nukkit.level.Level;
 import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.generator.Generator;
 import cn.nukkit.level.generator.SimpleChunkManager;
+import cn.nukkit.level.util.ChunkLocks;
 import cn.nukkit.scheduler.AsyncTask;
 
 /**
@@ -39,28 +40,28 @@ public class GenerationTask extends AsyncTask {
             return;
         }
 
-        manager.cleanChunks(level.getSeed());
-        synchronized (manager) {
-            try {
-                BaseFullChunk chunk = this.chunk;
+        BaseFullChunk chunk = this.chunk;
 
-                if (chunk == null) {
-                    return;
-                }
+        if (chunk == null) {
+            return;
+        }
 
-                synchronized (chunk) {
-                    if (!chunk.isGenerated()) {
-                        manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
-                        generator.generateChunk(chunk.getX(), chunk.getZ());
-                        chunk = manager.getChunk(chunk.getX(), chunk.getZ());
-                        chunk.setGenerated();
-                    }
-                }
-                this.chunk = chunk;
-                state = true;
-            } finally {
-                manager.cleanChunks(level.getSeed());
+        // The chunk manager belongs to the generator of this thread, so only the chunk itself has to be locked
+        ChunkLocks locks = level.getGenerationLocks();
+        int[] held = locks.lock(chunk.getX(), chunk.getZ());
+        try {
+            manager.cleanChunks(level.getSeed());
+            if (!chunk.isGenerated()) {
+                manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
+                generator.generateChunk(chunk.getX(), chunk.getZ());
+                chunk = manager.getChunk(chunk.getX(), chunk.getZ());
+                chunk.setGenerated();
             }
+            this.chunk = chunk;
+            state = true;
+        } finally {
+            manager.cleanChunks(level.getSeed());
+            locks.unlock(held);
         }
     }
 
@@ -5,6 +5,7 @@ import cn.nukkit.level.Level;
 import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.generator.Generator;
 import cn.nukkit.level.generator.SimpleChunkManager;
+import cn.nukkit.level.util.ChunkLocks;
 import cn.nukkit.scheduler.AsyncTask;
 
 /**
@@ -42,19 +43,19 @@ public class PopulationTask extends AsyncTask {
 
     @Override
     public void onRun() {
-        syncGen(0);
-    }
+        BaseFullChunk centerChunk = this.centerChunk;
+        if (centerChunk == null) {
+            this.state = false;
+            return;
+        }
 
-    private void syncGen(int i) {
-        if (i == chunks.length) {
+        // Lock the whole area that is populated, the chunk manager belongs to the generator of this thread
+        ChunkLocks locks = level.getGenerationLocks();
+        int[] held = locks.lockArea(centerChunk.getX(), centerChunk.getZ(), 1);
+        try {
             generationTask();
-        } else {
-            BaseFullChunk chunk = chunks[i];
-            if (chunk != null) {
-                synchronized (chunk) {
-                    syncGen(i + 1);
-                }
-            }
+        } finally {
+            locks.unlock(held);
         }
     }
 
@@ -72,72 +73,70 @@ public class PopulationTask extends AsyncTask {
             return;
         }
 
-        synchronized (manager) {
-            try {
-                manager.cleanChunks(this.seed);
-                BaseFullChunk centerChunk = this.centerChunk;
+        try {
+            manager.cleanChunks(this.seed);
+            BaseFullChunk centerChunk = this.centerChunk;
 
-                if (centerChunk == null) {
-                    return;
-                }
+            if (centerChunk == null) {
+                return;
+            }
 
-                int index = 0;
-                for (int x = -1; x < 2; x++) {
-                    for (int z = -1; z < 2; z++, index++) {
-                        BaseFullChunk ck = this.chunks[index];
-                        if (ck == centerChunk) continue;
-                        if (ck == null) {
-                            //try {
-                                //this.chunks[index] = (BaseFullChunk) centerChunk.getClass().getMethod("getEmptyChunk", int.class, int.class).invoke(null, centerChunk.getX() + x, centerChunk.getZ() + z);
-                                this.chunks[index] = level.getProvider().getEmptyChunk(centerChunk.getX() + x, centerChunk.getZ() + z);
-                            //} catch (Exception e) {
-                            //    throw new RuntimeException(e);
-                            //}
-                        } else {
-                            this.chunks[index] = ck;
-                        }
+            int index = 0;
+            for (int x = -1; x < 2; x++) {
+                for (int z = -1; z < 2; z++, index++) {
+                    BaseFullChunk ck = this.chunks[index];
+                    if (ck == centerChunk) continue;
+                    if (ck == null) {
+                        //try {
+                            //this.chunks[index] = (BaseFullChunk) centerChunk.getClass().getMethod("getEmptyChunk", int.class, int.class).invoke(null, centerChunk.getX() + x, centerChunk.getZ() + z);
+                            this.chunks[index] = level.getProvider().getEmptyChunk(centerChunk.getX() + x, centerChunk.getZ() + z);
+                        //} catch (Exception e) {
+                        //    throw new RuntimeException(e);
+                        //}
+                    } else {
+                        this.chunks[index] = ck;
                     }
                 }
+            }
 
-                for (BaseFullChunk chunk : this.chunks) {
-                    manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
-                    if (!chunk.isGenerated()) {
-                        generator.generateChunk(chunk.getX(), chunk.getZ());
-                        BaseFullChunk newChunk = manager.getChunk(chunk.getX(), chunk.getZ());
-                        newChunk.setGenerated();
-                        if (newChunk != chunk) manager.setChunk(chunk.getX(), chunk.getZ(), newChunk);
-                    }
+            for (BaseFullChunk chunk : this.chunks) {
+                manager.setChunk(chunk.getX(), chunk.getZ(), chunk);
+                if (!chunk.isGenerated()) {
+                    generator.generateChunk(chunk.getX(), chunk.getZ());
+                    BaseFullChunk newChunk = manager.getChunk(chunk.getX(), chunk.getZ());
+                    newChunk.setGenerated();
+                    if (newChunk != chunk) manager.setChunk(chunk.getX(), chunk.getZ(), newChunk);
                 }
+            }
 
-                isPopulated = centerChunk.isPopulated();
-                if (!isPopulated) {
-                    generator.populateChunk(centerChunk.getX(), centerChunk.getZ());
-                    centerChunk = manager.getChunk(centerChunk.getX(), centerChunk.getZ());
-                    centerChunk.setPopulated();
-                    centerChunk.recalculateHeightMap();
-                    centerChunk.populateSkyLight();
-                    centerChunk.setLightPopulated();
-                    this.centerChunk = centerChunk;
-                }
+            isPopulated = centerChunk.isPopulated();
+            if (!isPopulated) {
+                generator.populateChunk(centerChunk.getX(), centerChunk.getZ());
+                centerChunk = manager.getChunk(centerChunk.getX(), centerChunk.getZ());
+                centerChunk.setPopulated();
+                centerChunk.recalculateHeightMap();
+                centerChunk.populateSkyLight();
+                centerChunk.setLightPopulated();
+                this.centerChunk = centerChunk;
+            }
+
+            manager.setChunk(centerChunk.getX(), centerChunk.getZ());
 
-                manager.setChunk(centerChunk.getX(), centerChunk.getZ());
-
-                index = 0;
-                for (int x = -1; x < 2; x++) {
-                    for (int z = -1; z < 2; z++, index++) {
-                        chunks[index] = null;
-                        BaseFullChunk newChunk = manager.getChunk(centerChunk.getX() + x, centerChunk.getZ() + z);
-                        if (newChunk != null) {
-                            if (newChunk.hasChanged()) {
-                                chunks[index] = newChunk;
-                            }
+            index = 0;
+            for (int x = -1; x < 2; x++) {
+                for (int z = -1; z < 2; z++, index++) {
+                    chunks[index] = null;
+                    BaseFullChunk newChunk = manager.getChunk(centerChunk.getX() + x, centerChunk.getZ() + z);
+                    if (newChunk != null) {
+                        if (newChunk.hasChanged()) {
+                            chunks[index] = newChunk;
                         }
                     }
                 }
-                this.state = true;
-            } finally {
-                manager.cleanChunks(this.seed);
             }
+            this.state = true;
+        } finally {
+            manager.cleanChunks(this.seed);
         }
     }
 
@@ -0,0 +1,341 @@
+package cn.nukkit.level.map;
+
+import cn.nukkit.Player;
+import cn.nukkit.network.protocol.ClientboundMapItemDataPacket;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.utils.Utils;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Colors of a map, shared by all map items with the same map id.
+ * <p>
+ * Colors are kept as the raw ABGR values the client expects, so sending a map needs no image conversion. The full
+ * map packet is encoded once per protocol and shared by every player that requests the map. Changed pixels are
+ * tracked as one rectangle and only that rectangle is sent to the viewers by {@link #sendUpdates()}.
+ * <p>
+ * Maps are kept while players view them and are dropped by {@link #removeUnused()} once nobody has used them for
+ * {@link #UNUSED_TIMEOUT} milliseconds. The colors are stored in the map item, which loads them again when the map is
+ * needed after it was dropped.
+ */
+public class MapData {
+
+    public static final int SIZE = 128;
+
+    /**
+     * Milliseconds a map without viewers stays loaded after it was last used
+     */
+    public static final long UNUSED_TIMEOUT = 60000;
+
+    private static final Map<Long, MapData> maps = new ConcurrentHashMap<>();
+
+    private final long id;
+    private final int[] colors = new int[SIZE * SIZE];
+    private boolean empty = true;
+
+    private int dirtyMinX = SIZE;
+    private int dirtyMinZ = SIZE;
+    private int dirtyMaxX = -1;
+    private int dirtyMaxZ = -1;
+
+    private final Int2ObjectMap<DataPacket> packets = new Int2ObjectOpenHashMap<>();
+    private final Set<Player> viewers = ConcurrentHashMap.newKeySet();
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private MapData(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the map data for a map id, creating it if it doesn't exist yet
+     *
+     * @param id map id
+     * @return map data
+     */
+    public static MapData get(long id) {
+        return maps.compute(id, (key, data) -> {
+            if (data == null) {
+                data = new MapData(key);
+            }
+            data.lastUsed = System.currentTimeMillis();
+            return data;
+        });
+    }
+
+    /**
+     * Create a random map id that isn't used by a loaded map. Random ids don't repeat after a restart like a counter
+     * would, so new maps don't show the colors of maps saved in the world.
+     *
+     * @return new map id
+     */
+    public static long createId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0 || maps.containsKey(id));
+        return id;
+    }
+
+    public static MapData getIfExists(long id) {
+        return maps.get(id);
+    }
+
+    public static void remove(long id) {
+        maps.remove(id);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Check whether no colors have been set yet
+     *
+     * @return map is empty
+     */
+    public synchronized boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Get a color as ABGR
+     */
+    public synchronized int getColor(int x, int z) {
+        return this.colors[(z << 7) | x];
+    }
+
+    /**
+     * Set a color
+     *
+     * @param x    pixel x
+     * @param z    pixel z
+     * @param abgr color as ABGR
+     */
+    public synchronized void setColor(int x, int z, int abgr) {
+        this.empty = false;
+        int index = (z << 7) | x;
+        if (this.colors[index] != abgr) {
+            this.colors[index] = abgr;
+            this.markDirty(x, z, x, z);
+        }
+    }
+
+    /**
+     * Set all colors
+     *
+     * @param abgr {@value SIZE} x {@value SIZE} colors as ABGR, indexed by {@code z * SIZE + x}
+     */
+    public synchronized void setColors(int[] abgr) {
+        if (abgr.length != this.colors.length) {
+            throw new IllegalArgumentException("Expected " + this.colors.length + " colors, got " + abgr.length);
+        }
+        this.empty = false;
+        int minX = SIZE, minZ = SIZE, maxX = -1, maxZ = -1;
+        for (int i = 0; i < abgr.length; i++) {
+            if (this.colors[i] != abgr[i]) {
+                this.colors[i] = abgr[i];
+                int x = i & 0x7f;
+                int z = i >> 7;
+                minX = Math.min(minX, x);
+                minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x);
+                maxZ = z;
+            }
+        }
+        if (maxX >= 0) {
+            this.markDirty(minX, minZ, maxX, maxZ);
+        }
+    }
+
+    public void setImage(BufferedImage image) {
+        if (image.getWidth() != SIZE || image.getHeight() != SIZE) {
+            BufferedImage scaled = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.drawImage(image, 0, 0, SIZE, SIZE, null);
+            g.dispose();
+            image = scaled;
+        }
+
+        int[] abgr = new int[SIZE * SIZE];
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                abgr[(z << 7) | x] = (int) Utils.toABGR(image.getRGB(x, z));
+            }
+        }
+        this.setColors(abgr);
+    }
+
+    public synchronized BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                // ABGR and ARGB only differ by swapping red and blue
+                image.setRGB(x, z, (int) Utils.toABGR(this.colors[(z << 7) | x]));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Get the colors as bytes in RGBA order
+     */
+    public synchronized byte[] toBytes() {
+        byte[] bytes = new byte[this.colors.length << 2];
+        for (int i = 0; i < this.colors.length; i++) {
+            int color = this.colors[i];
+            int offset = i << 2;
+            bytes[offset] = (byte) color;
+            bytes[offset + 1] = (byte) (color >> 8);
+            bytes[offset + 2] = (byte) (color >> 16);
+            bytes[offset + 3] = (byte) (color >> 24);
+        }
+        return bytes;
+    }
+
+    /**
+     * Set the colors from bytes in RGBA order, as map items stored them for a while
+     *
+     * @return whether the bytes had the expected length
+     */
+    public boolean fromBytes(byte[] bytes) {
+        if (bytes.length != SIZE * SIZE * 4) {
+            return false;
+        }
+        int[] abgr = new int[SIZE * SIZE];
+        for (int i = 0; i < abgr.length; i++) {
+            int offset = i << 2;
+            abgr[i] = (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+        }
+        this.setColors(abgr);
+        return true;
+    }
+
+    private void markDirty(int minX, int minZ, int maxX, int maxZ) {
+        this.dirtyMinX = Math.min(this.dirtyMinX, minX);
+        this.dirtyMinZ = Math.min(this.dirtyMinZ, minZ);
+        this.dirtyMaxX = Math.max(this.dirtyMaxX, maxX);
+        this.dirtyMaxZ = Math.max(this.dirtyMaxZ, maxZ);
+        this.packets.clear();
+    }
+
+    /**
+     * Send the whole map to a player and keep them updated on changes
+     *
+     * @param player player
+     */
+    public void sendTo(Player player) {
+        // Viewers are added under the lock of the map entry so removeUnused() can't drop the map in between. A map
+        // that was dropped while the caller still held it is registered again.
+        MapData data = maps.compute(this.id, (key, current) -> {
+            MapData target = current != null ? current : this;
+            target.viewers.add(player);
+            target.lastUsed = System.currentTimeMillis();
+            return target;
+        });
+        data.sendFull(player);
+    }
+
+    private void sendFull(Player player) {
+        DataPacket packet;
+        synchronized (this) {
+            packet = this.packets.get(player.protocol);
+            if (packet == null) {
+                packet = this.createPacket(0, 0, SIZE, SIZE, player.protocol);
+                this.packets.put(player.protocol, packet);
+            }
+        }
+        player.dataPacket(packet);
+    }
+
+    public void removeViewer(Player player) {
+        if (this.viewers.remove(player)) {
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Stop sending map updates to a player that left or changed level
+     *
+     * @param player player
+     */
+    public static void removeViewerFromAll(Player player) {
+        for (MapData data : maps.values()) {
+            data.removeViewer(player);
+        }
+    }
+
+    /**
+     * Drop the maps that have no viewers and weren't used for {@link #UNUSED_TIMEOUT} milliseconds. Viewers that went
+     * offline are removed first.
+     */
+    public static void removeUnused() {
+        long now = System.currentTimeMillis();
+        for (Long id : maps.keySet()) {
+            maps.computeIfPresent(id, (key, data) -> {
+                data.viewers.removeIf(player -> !player.isOnline());
+                return data.viewers.isEmpty() && now - data.lastUsed > UNUSED_TIMEOUT ? null : data;
+            });
+        }
+    }
+
+    /**
+     * Send the pixels changed since the last update to all players that have the map
+     */
+    public void sendUpdates() {
+        int minX, minZ, width, height;
+        synchronized (this) {
+            if (this.dirtyMaxX < 0) {
+                return;
+            }
+            minX = this.dirtyMinX;
+            minZ = this.dirtyMinZ;
+            width = this.dirtyMaxX - minX + 1;
+            height = this.dirtyMaxZ - minZ + 1;
+            this.dirtyMinX = this.dirtyMinZ = SIZE;
+            this.dirtyMaxX = this.dirtyMaxZ = -1;
+        }
+
+        Int2ObjectMap<DataPacket> updates = new Int2ObjectOpenHashMap<>();
+        for (Player player : this.viewers) {
+            if (!player.isOnline()) {
+                this.removeViewer(player);
+                continue;
+            }
+            DataPacket packet = updates.get(player.protocol);
+            if (packet == null) {
+                synchronized (this) {
+                    packet = this.createPacket(minX, minZ, width, height, player.protocol);
+                }
+                updates.put(player.protocol, packet);
+            }
+            player.dataPacket(packet);
+        }
+    }
+
+    private DataPacket createPacket(int offsetX, int offsetZ, int width, int height, int protocol) {
+        ClientboundMapItemDataPacket pk = new ClientboundMapItemDataPacket();
+        pk.mapId = this.id;
+        pk.update = ClientboundMapItemDataPacket.TEXTURE_UPDATE;
+        pk.scale = 0;
+        pk.width = width;
+        pk.height = height;
+        pk.offsetX = offsetX;
+        pk.offsetZ = offsetZ;
+        int[] colors = new int[width * height];
+        for (int z = 0; z < height; z++) {
+            System.arraycopy(this.colors, ((offsetZ + z) << 7) + offsetX, colors, z * width, width);
+        }
+        pk.colors = colors;
+        pk.protocol = protocol;
+        pk.tryEncode();
+        return pk;
+    }
+}
@@ -0,0 +1,91 @@
+package cn.nukkit.level.map;
+
+import cn.nukkit.block.Block;
+import cn.nukkit.block.BlockGrass;
+import cn.nukkit.level.Level;
+import cn.nukkit.level.format.generic.BaseFullChunk;
+import cn.nukkit.utils.BlockColor;
+
+/**
+ * Renders the terrain of a level onto a map.
+ * <p>
+ * Columns are scanned straight from the chunk block storage, and block and grass colors are looked up from tables
+ * built once, so no block objects are created while rendering.
+ */
+public class MapRenderer {
+
+    private static final int GRASS = -1;
+    private static final int TRANSPARENT = 0;
+
+    private static final int[] blockColors = new int[4096];
+    private static final int[] grassColors = new int[256];
+
+    static {
+        for (int fullId = 0; fullId < blockColors.length; fullId++) {
+            Block block = Block.fullList[fullId];
+            if (block instanceof BlockGrass) {
+                blockColors[fullId] = GRASS;
+            } else if (block != null) {
+                BlockColor color = block.getColor();
+                blockColors[fullId] = color.getAlpha() == 0 ? TRANSPARENT : toABGR(color);
+            }
+        }
+        for (int biome = 0; biome < grassColors.length; biome++) {
+            grassColors[biome] = toABGR(Level.getGrassColor(biome));
+        }
+    }
+
+    private static int toABGR(BlockColor color) {
+        return 0xff000000 | color.getBlue() << 16 | color.getGreen() << 8 | color.getRed();
+    }
+
+    /**
+     * Render an area of the level onto a map. Only the pixels that change are sent to the map viewers.
+     *
+     * @param level  level
+     * @param map    map data
+     * @param startX lowest x of the area
+     * @param startZ lowest z of the area
+     */
+    public static void render(Level level, MapData map, int startX, int startZ) {
+        int[] colors = new int[MapData.SIZE * MapData.SIZE];
+        for (int chunkX = startX >> 4; chunkX <= (startX + MapData.SIZE - 1) >> 4; chunkX++) {
+            for (int chunkZ = startZ >> 4; chunkZ <= (startZ + MapData.SIZE - 1) >> 4; chunkZ++) {
+                BaseFullChunk chunk = level.getChunk(chunkX, chunkZ, true);
+                int minX = Math.max(startX, chunkX << 4);
+                int maxX = Math.min(startX + MapData.SIZE, (chunkX << 4) + 16);
+                int minZ = Math.max(startZ, chunkZ << 4);
+                int maxZ = Math.min(startZ + MapData.SIZE, (chunkZ << 4) + 16);
+                for (int x = minX; x < maxX; x++) {
+                    for (int z = minZ; z < maxZ; z++) {
+                        colors[((z - startZ) << 7) | (x - startX)] = getColor(chunk, x & 0xf, z & 0xf);
+                    }
+                }
+            }
+        }
+        map.setColors(colors);
+        map.sendUpdates();
+    }
+
+    /**
+     * Get the map color of a column
+     *
+     * @param chunk chunk
+     * @param x     x in the chunk
+     * @param z     z in the chunk
+     * @return color as ABGR
+     */
+    public static int getColor(BaseFullChunk chunk, int x, int z) {
+        int y = chunk.getHighestBlockAt(x, z, false);
+        while (y > 1) {
+            int color = blockColors[chunk.getFullBlock(x, y, z) & 0xfff];
+            if (color == GRASS) {
+                return grassColors[chunk.getBiomeId(x, z) & 0xff];
+            } else if (color != TRANSPARENT) {
+                return color;
+            }
+            y--;
+        }
+        return 0xff000000;
+    }
+}
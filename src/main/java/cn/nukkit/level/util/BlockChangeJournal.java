@@ -0,0 +1,90 @@
+package cn.nukkit.level.util;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Blocks changed during a tick that still have to be sent to the players, grouped by chunk.
+ * <p>
+ * Every block is recorded once no matter how often it changes during the tick. When too many blocks of a chunk or of
+ * one of its sections change, the positions are dropped and the chunk is marked to be resent as a whole instead.
+ */
+public class BlockChangeJournal {
+
+    private final int maxChunkChanges;
+    private final int maxSectionChanges;
+
+    private Long2ObjectMap<ChunkChanges> chunks = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * @param maxChunkChanges   changed blocks in a chunk after which the chunk is resent
+     * @param maxSectionChanges changed blocks in one 16x16x16 section after which the chunk is resent
+     */
+    public BlockChangeJournal(int maxChunkChanges, int maxSectionChanges) {
+        this.maxChunkChanges = maxChunkChanges;
+        this.maxSectionChanges = maxSectionChanges;
+    }
+
+    /**
+     * Record a block change
+     *
+     * @param chunkHash hash of the chunk
+     * @param x         block x
+     * @param y         block y
+     * @param z         block z
+     */
+    public synchronized void add(long chunkHash, int x, int y, int z) {
+        ChunkChanges changes = this.chunks.get(chunkHash);
+        if (changes == null) {
+            changes = new ChunkChanges();
+            this.chunks.put(chunkHash, changes);
+        } else if (changes.resend) {
+            return;
+        }
+
+        if (changes.blocks.add((y << 8) | ((z & 0xf) << 4) | (x & 0xf))) {
+            if (++changes.sectionChanges[(y >> 4) & 0xf] > this.maxSectionChanges || changes.blocks.size() > this.maxChunkChanges) {
+                changes.resend = true;
+                changes.blocks = null;
+            }
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.chunks.isEmpty();
+    }
+
+    /**
+     * Take all recorded changes and start a new journal
+     *
+     * @return changes by chunk hash
+     */
+    public synchronized Long2ObjectMap<ChunkChanges> drain() {
+        Long2ObjectMap<ChunkChanges> drained = this.chunks;
+        this.chunks = new Long2ObjectOpenHashMap<>();
+        return drained;
+    }
+
+    public static class ChunkChanges {
+
+        private IntSet blocks = new IntOpenHashSet();
+        private final int[] sectionChanges = new int[16];
+        private boolean resend;
+
+        /**
+         * Check whether the whole chunk should be resent
+         */
+        public boolean isResend() {
+            return this.resend;
+        }
+
+        /**
+         * Get the changed blocks as {@code y << 8 | z << 4 | x} in the chunk, or null if the chunk should be resent
+         */
+        public IntSet getBlocks() {
+            return this.blocks;
+        }
+    }
+}
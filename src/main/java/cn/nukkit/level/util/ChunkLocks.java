@@ -0,0 +1,112 @@
+package cn.nukkit.level.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks for chunks that are being generated or populated off the main thread.
+ * <p>
+ * Every chunk maps to one of a fixed number of stripes. Areas are locked by taking all of their stripes in ascending
+ * order, so two tasks never wait on each other in a cycle, and tasks working on distant chunks only share a stripe
+ * by chance. The time spent waiting for stripes held by other tasks is counted.
+ */
+public class ChunkLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    public ChunkLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    private int stripe(int chunkX, int chunkZ) {
+        int hash = chunkX * 0x9E3779B9 ^ chunkZ * 0x85EBCA6B;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    /**
+     * Lock a single chunk
+     *
+     * @return held locks, to be passed to {@link #unlock(int[])}
+     */
+    public int[] lock(int chunkX, int chunkZ) {
+        return this.lockArea(chunkX, chunkZ, 0);
+    }
+
+    /**
+     * Lock all chunks within a square radius around a chunk
+     *
+     * @return held locks, to be passed to {@link #unlock(int[])}
+     */
+    public int[] lockArea(int chunkX, int chunkZ, int radius) {
+        int side = radius * 2 + 1;
+        int[] indexes = new int[side * side];
+        int i = 0;
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                indexes[i++] = this.stripe(chunkX + x, chunkZ + z);
+            }
+        }
+
+        Arrays.sort(indexes);
+        int size = 0;
+        for (int index : indexes) {
+            if (size == 0 || indexes[size - 1] != index) {
+                indexes[size++] = index;
+            }
+        }
+        indexes = Arrays.copyOf(indexes, size);
+
+        for (int index : indexes) {
+            ReentrantLock lock = this.stripes[index];
+            if (!lock.tryLock()) {
+                long start = System.nanoTime();
+                lock.lock();
+                this.contended.increment();
+                this.waitNanos.add(System.nanoTime() - start);
+            }
+            this.acquisitions.increment();
+        }
+        return indexes;
+    }
+
+    public void unlock(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            this.stripes[indexes[i]].unlock();
+        }
+    }
+
+    /**
+     * Get the number of stripes locked so far
+     */
+    public long getAcquisitions() {
+        return this.acquisitions.sum();
+    }
+
+    /**
+     * Get the number of stripe locks that had to wait for another task
+     */
+    public long getContended() {
+        return this.contended.sum();
+    }
+
+    /**
+     * Get the total time spent waiting for stripes, in nanoseconds
+     */
+    public long getWaitNanos() {
+        return this.waitNanos.sum();
+    }
+}
@@ -0,0 +1,176 @@
+package cn.nukkit.level.util;
+
+import cn.nukkit.network.protocol.BatchPacket;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+/**
+ * Compressed chunk packets of all levels, shared by the players requesting the same chunk.
+ * <p>
+ * Packets are stored by the version of the chunk contents they were made of (see
+ * {@link cn.nukkit.level.format.generic.BaseFullChunk#getPacketVersion()}) and the protocol they were made for. Changing
+ * a chunk gives it a new version, so outdated packets are never returned. The cache is kept below a size in bytes by
+ * dropping the chunks that were least recently used.
+ */
+public class ChunkPacketCache {
+
+    // Rough memory used by a packet besides its payload
+    private static final int PACKET_OVERHEAD = 96;
+
+    private final Long2ObjectLinkedOpenHashMap<Int2ObjectMap<BatchPacket>> chunks = new Long2ObjectLinkedOpenHashMap<>();
+    private final Int2ObjectMap<long[]> stats = new Int2ObjectOpenHashMap<>();
+
+    private long maxSize;
+    private long size;
+    private long evictions;
+
+    /**
+     * @param maxSize maximum size in bytes, 0 disables the cache
+     */
+    public ChunkPacketCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a cached packet
+     *
+     * @param version  chunk version
+     * @param protocol protocol
+     * @return packet, or null if it isn't cached
+     */
+    public synchronized BatchPacket get(long version, int protocol) {
+        if (this.maxSize <= 0) {
+            return null;
+        }
+
+        Int2ObjectMap<BatchPacket> packets = this.chunks.getAndMoveToLast(version);
+        BatchPacket packet = packets != null ? packets.get(protocol) : null;
+        long[] stats = this.stats.computeIfAbsent(protocol, p -> new long[2]);
+        if (packet != null) {
+            stats[0]++;
+        } else {
+            stats[1]++;
+        }
+        return packet;
+    }
+
+    /**
+     * Cache a packet
+     *
+     * @param version  chunk version
+     * @param protocol protocol
+     * @param packet   compressed chunk packet
+     * @return whether the packet was cached
+     */
+    public synchronized boolean put(long version, int protocol, BatchPacket packet) {
+        packet.trim();
+        long packetSize = sizeOf(packet);
+        if (packetSize > this.maxSize) {
+            return false;
+        }
+
+        Int2ObjectMap<BatchPacket> packets = this.chunks.getAndMoveToLast(version);
+        if (packets == null) {
+            packets = new Int2ObjectOpenHashMap<>(2);
+            this.chunks.putAndMoveToLast(version, packets);
+        }
+        BatchPacket old = packets.put(protocol, packet);
+        if (old != null) {
+            this.size -= sizeOf(old);
+        }
+        this.size += packetSize;
+
+        while (this.size > this.maxSize && !this.chunks.isEmpty()) {
+            this.size -= sizeOf(this.chunks.removeFirst());
+            this.evictions++;
+        }
+        return this.chunks.containsKey(version);
+    }
+
+    /**
+     * Remove the packets of a chunk version
+     *
+     * @param version chunk version
+     */
+    public synchronized void remove(long version) {
+        Int2ObjectMap<BatchPacket> packets = this.chunks.remove(version);
+        if (packets != null) {
+            this.size -= sizeOf(packets);
+        }
+    }
+
+    public synchronized void clear() {
+        this.chunks.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Change the maximum size, dropping the least recently used chunks if the cache is too big
+     *
+     * @param maxSize maximum size in bytes, 0 disables the cache
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        while (this.size > maxSize && !this.chunks.isEmpty()) {
+            this.size -= sizeOf(this.chunks.removeFirst());
+            this.evictions++;
+        }
+    }
+
+    public synchronized long getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Get the estimated memory used by the cached packets in bytes
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Get the number of cached chunks
+     */
+    public synchronized int getChunkCount() {
+        return this.chunks.size();
+    }
+
+    /**
+     * Get the number of chunks dropped to stay below the maximum size
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the protocols that chunk packets were requested for
+     */
+    public synchronized IntSet getProtocols() {
+        return new IntOpenHashSet(this.stats.keySet());
+    }
+
+    public synchronized long getHits(int protocol) {
+        long[] stats = this.stats.get(protocol);
+        return stats != null ? stats[0] : 0;
+    }
+
+    public synchronized long getMisses(int protocol) {
+        long[] stats = this.stats.get(protocol);
+        return stats != null ? stats[1] : 0;
+    }
+
+    private static long sizeOf(BatchPacket packet) {
+        return packet.payload.length + PACKET_OVERHEAD;
+    }
+
+    private static long sizeOf(Int2ObjectMap<BatchPacket> packets) {
+        long size = 0;
+        for (BatchPacket packet : packets.values()) {
+            size += sizeOf(packet);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,131 @@
+package cn.nukkit.level.util;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+import java.util.NoSuchElementException;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Chunks waiting to be sent to a player, ordered by priority. Lower priorities are sent first.
+ * <p>
+ * The order is only sorted again after chunks were added or the priorities changed, so taking chunks from the head of
+ * the queue is cheap while the queue doesn't change otherwise.
+ */
+public class ChunkSendQueue {
+
+    private final Long2DoubleOpenHashMap priorities = new Long2DoubleOpenHashMap();
+
+    // Sorted chunks, may still contain chunks that were removed since
+    private long[] order = new long[0];
+    private int head;
+    private int length;
+    private boolean dirty;
+
+    /**
+     * Add a chunk or change its priority
+     *
+     * @param index    chunk hash
+     * @param priority priority
+     */
+    public void add(long index, double priority) {
+        this.priorities.put(index, priority);
+        this.dirty = true;
+    }
+
+    /**
+     * Remove a chunk
+     *
+     * @param index chunk hash
+     * @return whether the chunk was queued
+     */
+    public boolean remove(long index) {
+        if (!this.priorities.containsKey(index)) {
+            return false;
+        }
+        this.priorities.remove(index);
+        return true;
+    }
+
+    public boolean contains(long index) {
+        return this.priorities.containsKey(index);
+    }
+
+    public boolean isEmpty() {
+        return this.priorities.isEmpty();
+    }
+
+    public int size() {
+        return this.priorities.size();
+    }
+
+    public void clear() {
+        this.priorities.clear();
+        this.head = 0;
+        this.length = 0;
+        this.dirty = false;
+    }
+
+    /**
+     * Compute the priorities of all queued chunks again
+     *
+     * @param priority priority by chunk hash
+     */
+    public void updatePriorities(LongToDoubleFunction priority) {
+        for (Long2DoubleOpenHashMap.Entry entry : this.priorities.long2DoubleEntrySet()) {
+            entry.setValue(priority.applyAsDouble(entry.getLongKey()));
+        }
+        this.dirty = true;
+    }
+
+    /**
+     * Iterate the queued chunks from the highest priority to the lowest. Chunks can be removed from the queue while
+     * iterating, but not added.
+     *
+     * @return chunk hashes
+     */
+    public LongIterator iterator() {
+        if (this.dirty) {
+            this.sort();
+        }
+        while (this.head < this.length && !this.priorities.containsKey(this.order[this.head])) {
+            this.head++;
+        }
+
+        return new LongIterator() {
+            private int position = head;
+
+            @Override
+            public boolean hasNext() {
+                while (this.position < length && !priorities.containsKey(order[this.position])) {
+                    this.position++;
+                }
+                return this.position < length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return order[this.position++];
+            }
+        };
+    }
+
+    private void sort() {
+        int size = this.priorities.size();
+        if (this.order.length < size) {
+            this.order = new long[size];
+        }
+        this.length = 0;
+        LongIterator keys = this.priorities.keySet().iterator();
+        while (keys.hasNext()) {
+            this.order[this.length++] = keys.nextLong();
+        }
+        LongArrays.quickSort(this.order, 0, this.length, (a, b) -> Double.compare(this.priorities.get(a), this.priorities.get(b)));
+        this.head = 0;
+        this.dirty = false;
+    }
+}
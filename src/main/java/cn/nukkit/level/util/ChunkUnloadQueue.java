@@ -0,0 +1,138 @@
+package cn.nukkit.level.util;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Chunks waiting to be unloaded, ordered by the time they may be unloaded at.
+ * <p>
+ * A binary min-heap of (expiry, chunk index) pairs is backed by two parallel arrays. Cancelled or requeued chunks
+ * are not removed from the heap: their old heap entries no longer match the expiry stored in the map and are
+ * skipped once they reach the top.
+ */
+public class ChunkUnloadQueue {
+
+    private final Long2LongOpenHashMap expiries = new Long2LongOpenHashMap();
+
+    private long[] heapExpiries = new long[64];
+    private long[] heapIndexes = new long[64];
+    private int heapSize;
+
+    public ChunkUnloadQueue() {
+        this.expiries.defaultReturnValue(Long.MIN_VALUE);
+    }
+
+    /**
+     * Queue a chunk for unloading, replacing its previous expiry time
+     *
+     * @param index  chunk hash
+     * @param expiry time in milliseconds after which the chunk may be unloaded
+     */
+    public synchronized void add(long index, long expiry) {
+        if (this.expiries.put(index, expiry) == expiry) {
+            return;
+        }
+
+        // Drop the stale entries once they make up most of the heap
+        if (this.heapSize >= 64 && this.heapSize > this.expiries.size() << 2) {
+            this.rebuild();
+            return;
+        }
+        this.push(expiry, index);
+    }
+
+    public synchronized boolean remove(long index) {
+        return this.expiries.remove(index) != Long.MIN_VALUE;
+    }
+
+    public synchronized boolean contains(long index) {
+        return this.expiries.containsKey(index);
+    }
+
+    public synchronized int size() {
+        return this.expiries.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.expiries.isEmpty();
+    }
+
+    /**
+     * Remove and return the chunk that expires first if it has expired
+     *
+     * @param now current time in milliseconds, or Long.MAX_VALUE to ignore expiry times
+     * @return chunk hash or Long.MIN_VALUE if no chunk has expired yet
+     */
+    public synchronized long poll(long now) {
+        while (this.heapSize > 0) {
+            long expiry = this.heapExpiries[0];
+            long index = this.heapIndexes[0];
+            if (this.expiries.get(index) != expiry) {
+                this.pop();
+                continue;
+            }
+            if (expiry > now) {
+                break;
+            }
+            this.pop();
+            this.expiries.remove(index);
+            return index;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private void rebuild() {
+        this.heapSize = 0;
+        for (Long2LongOpenHashMap.Entry entry : this.expiries.long2LongEntrySet()) {
+            this.push(entry.getLongValue(), entry.getLongKey());
+        }
+    }
+
+    private void push(long expiry, long index) {
+        if (this.heapSize == this.heapExpiries.length) {
+            this.heapExpiries = Arrays.copyOf(this.heapExpiries, this.heapSize << 1);
+            this.heapIndexes = Arrays.copyOf(this.heapIndexes, this.heapSize << 1);
+        }
+
+        int i = this.heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.heapExpiries[parent] <= expiry) {
+                break;
+            }
+            this.heapExpiries[i] = this.heapExpiries[parent];
+            this.heapIndexes[i] = this.heapIndexes[parent];
+            i = parent;
+        }
+        this.heapExpiries[i] = expiry;
+        this.heapIndexes[i] = index;
+    }
+
+    private void pop() {
+        int size = --this.heapSize;
+        if (size == 0) {
+            return;
+        }
+
+        long expiry = this.heapExpiries[size];
+        long index = this.heapIndexes[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            int right = child + 1;
+            if (right < size && this.heapExpiries[right] < this.heapExpiries[child]) {
+                child = right;
+            }
+            if (expiry <= this.heapExpiries[child]) {
+                break;
+            }
+            this.heapExpiries[i] = this.heapExpiries[child];
+            this.heapIndexes[i] = this.heapIndexes[child];
+            i = child;
+        }
+        this.heapExpiries[i] = expiry;
+        this.heapIndexes[i] = index;
+    }
+}
@@ -0,0 +1,102 @@
+package cn.nukkit.level.util;
+
+import cn.nukkit.Player;
+import cn.nukkit.level.ChunkLoader;
+
+import java.util.Arrays;
+
+/**
+ * The loaders and players using a chunk.
+ * <p>
+ * Instances are immutable. Adding or removing a loader creates a new instance with new arrays, so the arrays can be
+ * handed out and iterated without copying them. They must not be modified.
+ */
+public final class ChunkViewers {
+
+    public static final ChunkViewers EMPTY = new ChunkViewers(new ChunkLoader[0], new Player[0]);
+
+    private final ChunkLoader[] loaders;
+    private final Player[] players;
+
+    private ChunkViewers(ChunkLoader[] loaders, Player[] players) {
+        this.loaders = loaders;
+        this.players = players;
+    }
+
+    public ChunkLoader[] getLoaders() {
+        return this.loaders;
+    }
+
+    public Player[] getPlayers() {
+        return this.players;
+    }
+
+    public boolean isEmpty() {
+        return this.loaders.length == 0;
+    }
+
+    public boolean contains(int loaderId) {
+        for (ChunkLoader loader : this.loaders) {
+            if (loader.getLoaderId() == loaderId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the viewers with a loader added
+     *
+     * @param loader loader
+     * @return new viewers
+     */
+    public ChunkViewers add(ChunkLoader loader) {
+        ChunkLoader[] loaders = Arrays.copyOf(this.loaders, this.loaders.length + 1);
+        loaders[this.loaders.length] = loader;
+        Player[] players = this.players;
+        if (loader instanceof Player) {
+            players = Arrays.copyOf(this.players, this.players.length + 1);
+            players[this.players.length] = (Player) loader;
+        }
+        return new ChunkViewers(loaders, players);
+    }
+
+    /**
+     * Get the viewers with a loader removed
+     *
+     * @param loaderId loader id
+     * @return new viewers, or this instance if the loader wasn't a viewer
+     */
+    public ChunkViewers remove(int loaderId) {
+        int index = -1;
+        for (int i = 0; i < this.loaders.length; i++) {
+            if (this.loaders[i].getLoaderId() == loaderId) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return this;
+        }
+        if (this.loaders.length == 1) {
+            return EMPTY;
+        }
+
+        ChunkLoader removed = this.loaders[index];
+        ChunkLoader[] loaders = new ChunkLoader[this.loaders.length - 1];
+        System.arraycopy(this.loaders, 0, loaders, 0, index);
+        System.arraycopy(this.loaders, index + 1, loaders, index, loaders.length - index);
+
+        Player[] players = this.players;
+        if (removed instanceof Player) {
+            players = new Player[this.players.length - 1];
+            int i = 0;
+            for (Player player : this.players) {
+                if (player != removed) {
+                    players[i++] = player;
+                }
+            }
+        }
+        return new ChunkViewers(loaders, players);
+    }
+}
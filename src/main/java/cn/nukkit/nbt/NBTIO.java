@@ -86,12 +86,16 @@ public class NBTIO {
 
     public static CompoundTag read(InputStream inputStream, ByteOrder endianness, boolean network) throws IOException {
         try (NBTInputStream stream = new NBTInputStream(inputStream, endianness, network)) {
-            Tag tag = Tag.readNamedTag(stream);
-            if (tag instanceof CompoundTag) {
-                return (CompoundTag) tag;
-            }
-            throw new IOException("Root tag must be a named compound tag");
+            return readCompound(stream);
+        }
+    }
+
+    private static CompoundTag readCompound(NBTInputStream stream) throws IOException {
+        Tag tag = Tag.readNamedTag(stream);
+        if (tag instanceof CompoundTag) {
+            return (CompoundTag) tag;
         }
+        throw new IOException("Root tag must be a named compound tag");
     }
 
     public static Tag readNetwork(InputStream inputStream) throws IOException {
@@ -111,11 +115,24 @@ public class NBTIO {
     }
 
     public static CompoundTag read(byte[] data, ByteOrder endianness) throws IOException {
-        return read(new ByteArrayInputStream(data), endianness);
+        return read(data, endianness, false);
     }
 
     public static CompoundTag read(byte[] data, ByteOrder endianness, boolean network) throws IOException {
-        return read(new ByteArrayInputStream(data), endianness, network);
+        return readCompound(new NBTInputStream(data, 0, data.length, endianness, network));
+    }
+
+    /**
+     * Read a compound that parses its entries only when they are accessed. The compound keeps a reference to the array,
+     * which must not be modified afterwards.
+     *
+     * @param data       data
+     * @param endianness byte order
+     * @param network    whether ints, longs and string lengths are varints
+     * @return compound tag
+     */
+    public static CompoundTag readLazy(byte[] data, ByteOrder endianness, boolean network) throws IOException {
+        return readCompound(new NBTInputStream(data, 0, data.length, endianness, network).setLazy(true));
     }
 
     public static CompoundTag readCompressed(InputStream inputStream) throws IOException {
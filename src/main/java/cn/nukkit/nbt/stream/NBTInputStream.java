@@ -4,6 +4,7 @@ import cn.nukkit.utils.VarInt;
 
 import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteOrder;
@@ -19,6 +20,12 @@ public class NBTInputStream implements DataInput, AutoCloseable {
     private final ByteOrder endianness;
     private final boolean network;
 
+    // Set when reading directly from an array instead of a stream
+    private final byte[] buffer;
+    private int position;
+    private final int limit;
+    private boolean lazy;
+
     public NBTInputStream(InputStream stream) {
         this(stream, ByteOrder.BIG_ENDIAN);
     }
@@ -31,6 +38,29 @@ public class NBTInputStream implements DataInput, AutoCloseable {
         this.stream = stream instanceof DataInputStream ? (DataInputStream) stream : new DataInputStream(stream);
         this.endianness = endianness;
         this.network = network;
+        this.buffer = null;
+        this.limit = 0;
+    }
+
+    /**
+     * Read directly from an array, without copying it
+     *
+     * @param buffer     array to read
+     * @param offset     index of the first byte to read
+     * @param length     number of bytes that can be read
+     * @param endianness byte order
+     * @param network    whether ints, longs and string lengths are varints
+     */
+    public NBTInputStream(byte[] buffer, int offset, int length, ByteOrder endianness, boolean network) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException("Offset " + offset + ", length " + length + ", size " + buffer.length);
+        }
+        this.stream = null;
+        this.endianness = endianness;
+        this.network = network;
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
     }
 
     public ByteOrder getEndianness() {
@@ -41,38 +71,186 @@ public class NBTInputStream implements DataInput, AutoCloseable {
         return network;
     }
 
+    /**
+     * Check whether compound tags read from this stream parse their entries only when they are accessed
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Let compound tags read from this stream parse their entries only when they are accessed. The compounds keep a
+     * reference to the array, so it must not be modified afterwards. Only streams reading from an array can be lazy.
+     *
+     * @param lazy lazy
+     * @return this stream
+     */
+    public NBTInputStream setLazy(boolean lazy) {
+        if (lazy && this.buffer == null) {
+            throw new IllegalStateException("Only streams reading from an array can be lazy");
+        }
+        this.lazy = lazy;
+        return this;
+    }
+
+    /**
+     * Get the index of the next byte to read in the array
+     */
+    public int getPosition() {
+        this.checkArray();
+        return this.position;
+    }
+
+    /**
+     * Create a stream reading the same array from another position, with the same settings
+     *
+     * @param position index of the first byte to read
+     * @return new stream
+     */
+    public NBTInputStream slice(int position) {
+        this.checkArray();
+        return new NBTInputStream(this.buffer, position, this.limit - position, this.endianness, this.network).setLazy(this.lazy);
+    }
+
+    /**
+     * Skip a string without decoding it
+     */
+    public void skipUTF() throws IOException {
+        int length = (int) (network ? this.readUnsignedVarInt() : this.readUnsignedShort());
+        if (this.buffer != null) {
+            this.require(length);
+            this.position += length;
+        } else {
+            this.stream.skipBytes(length);
+        }
+    }
+
+    private void checkArray() {
+        if (this.buffer == null) {
+            throw new IllegalStateException("Not reading from an array");
+        }
+    }
+
+    private void require(int bytes) throws EOFException {
+        if (bytes < 0 || this.limit - this.position < bytes) {
+            throw new EOFException();
+        }
+    }
+
+    private int nextByte() throws EOFException {
+        if (this.position >= this.limit) {
+            throw new EOFException();
+        }
+        return this.buffer[this.position++] & 0xff;
+    }
+
+    private int readRawInt() throws IOException {
+        if (this.buffer == null) {
+            int i = this.stream.readInt();
+            return endianness == ByteOrder.LITTLE_ENDIAN ? Integer.reverseBytes(i) : i;
+        }
+        this.require(4);
+        byte[] b = this.buffer;
+        int p = this.position;
+        this.position += 4;
+        if (endianness == ByteOrder.LITTLE_ENDIAN) {
+            return (b[p] & 0xff) | (b[p + 1] & 0xff) << 8 | (b[p + 2] & 0xff) << 16 | b[p + 3] << 24;
+        }
+        return b[p] << 24 | (b[p + 1] & 0xff) << 16 | (b[p + 2] & 0xff) << 8 | (b[p + 3] & 0xff);
+    }
+
+    private long readRawLong() throws IOException {
+        if (this.buffer == null) {
+            long l = this.stream.readLong();
+            return endianness == ByteOrder.LITTLE_ENDIAN ? Long.reverseBytes(l) : l;
+        }
+        long high = this.readRawInt() & 0xffffffffL;
+        long low = this.readRawInt() & 0xffffffffL;
+        return endianness == ByteOrder.LITTLE_ENDIAN ? low << 32 | high : high << 32 | low;
+    }
+
+    private long readUnsignedVarInt() throws IOException {
+        if (this.buffer == null) {
+            return VarInt.readUnsignedVarInt(this.stream);
+        }
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = this.nextByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ArithmeticException("VarInt was too large");
+    }
+
+    private long readUnsignedVarLong() throws IOException {
+        if (this.buffer == null) {
+            return VarInt.readUnsignedVarLong(this.stream);
+        }
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = this.nextByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ArithmeticException("VarLong was too large");
+    }
+
     @Override
     public void readFully(byte[] b) throws IOException {
-        this.stream.readFully(b);
+        this.readFully(b, 0, b.length);
     }
 
     @Override
     public void readFully(byte[] b, int off, int len) throws IOException {
-        this.stream.readFully(b, off, len);
+        if (this.buffer == null) {
+            this.stream.readFully(b, off, len);
+            return;
+        }
+        this.require(len);
+        System.arraycopy(this.buffer, this.position, b, off, len);
+        this.position += len;
     }
 
     @Override
     public int skipBytes(int n) throws IOException {
-        return this.stream.skipBytes(n);
+        if (this.buffer == null) {
+            return this.stream.skipBytes(n);
+        }
+        int skipped = Math.max(0, Math.min(n, this.limit - this.position));
+        this.position += skipped;
+        return skipped;
     }
 
     @Override
     public boolean readBoolean() throws IOException {
-        return this.stream.readBoolean();
+        return this.readByte() != 0;
     }
 
     @Override
     public byte readByte() throws IOException {
-        return this.stream.readByte();
+        if (this.buffer == null) {
+            return this.stream.readByte();
+        }
+        return (byte) this.nextByte();
     }
 
     @Override
     public int readUnsignedByte() throws IOException {
-        return this.stream.readUnsignedByte();
+        if (this.buffer == null) {
+            return this.stream.readUnsignedByte();
+        }
+        return this.nextByte();
     }
 
     @Override
     public short readShort() throws IOException {
+        if (this.buffer != null) {
+            return (short) this.readUnsignedShort();
+        }
         short s = this.stream.readShort();
         if (endianness == ByteOrder.LITTLE_ENDIAN) {
             s = Short.reverseBytes(s);
@@ -82,84 +260,84 @@ public class NBTInputStream implements DataInput, AutoCloseable {
 
     @Override
     public int readUnsignedShort() throws IOException {
+        if (this.buffer != null) {
+            this.require(2);
+            int first = this.buffer[this.position++] & 0xff;
+            int second = this.buffer[this.position++] & 0xff;
+            return endianness == ByteOrder.LITTLE_ENDIAN ? second << 8 | first : first << 8 | second;
+        }
         int s = this.stream.readUnsignedShort();
         if (endianness == ByteOrder.LITTLE_ENDIAN) {
-            s = Integer.reverseBytes(s) >> 16;
+            s = Integer.reverseBytes(s) >>> 16;
         }
         return s;
     }
 
     @Override
     public char readChar() throws IOException {
-        char c = this.stream.readChar();
-        if (endianness == ByteOrder.LITTLE_ENDIAN) {
-            c = Character.reverseBytes(c);
-        }
-        return c;
+        return (char) this.readUnsignedShort();
     }
 
     @Override
     public int readInt() throws IOException {
         if (network) {
-            return VarInt.readVarInt(this.stream);
-        }
-        int i = this.stream.readInt();
-        if (endianness == ByteOrder.LITTLE_ENDIAN) {
-            i = Integer.reverseBytes(i);
+            return VarInt.decodeZigZag32(this.readUnsignedVarInt());
         }
-        return i;
+        return this.readRawInt();
     }
 
     @Override
     public long readLong() throws IOException {
         if (network) {
-            return VarInt.readVarLong(this.stream);
-        }
-        long l = this.stream.readLong();
-        if (endianness == ByteOrder.LITTLE_ENDIAN) {
-            l = Long.reverseBytes(l);
+            return VarInt.decodeZigZag64(this.readUnsignedVarLong());
         }
-        return l;
+        return this.readRawLong();
     }
 
     @Override
     public float readFloat() throws IOException {
-        int i = this.stream.readInt();
-        if (endianness == ByteOrder.LITTLE_ENDIAN) {
-            i = Integer.reverseBytes(i);
-        }
-        return Float.intBitsToFloat(i);
+        return Float.intBitsToFloat(this.readRawInt());
     }
 
     @Override
     public double readDouble() throws IOException {
-        long l = this.stream.readLong();
-        if (endianness == ByteOrder.LITTLE_ENDIAN) {
-            l = Long.reverseBytes(l);
-        }
-        return Double.longBitsToDouble(l);
+        return Double.longBitsToDouble(this.readRawLong());
     }
 
     @Override
     @SuppressWarnings("deprecation")
     public String readLine() throws IOException {
+        if (this.buffer != null) {
+            throw new UnsupportedOperationException("Reading lines from an array is not supported");
+        }
         return this.stream.readLine();
     }
 
     @Override
     public String readUTF() throws IOException {
-        int length = (int) (network ? VarInt.readUnsignedVarInt(stream) : this.readUnsignedShort());
+        int length = (int) (network ? this.readUnsignedVarInt() : this.readUnsignedShort());
+        if (this.buffer != null) {
+            this.require(length);
+            String string = new String(this.buffer, this.position, length, StandardCharsets.UTF_8);
+            this.position += length;
+            return string;
+        }
         byte[] bytes = new byte[length];
-        this.stream.read(bytes);
+        this.stream.readFully(bytes);
         return new String(bytes, StandardCharsets.UTF_8);
     }
 
     public int available() throws IOException {
+        if (this.buffer != null) {
+            return this.limit - this.position;
+        }
         return this.stream.available();
     }
 
     @Override
     public void close() throws IOException {
-        this.stream.close();
+        if (this.stream != null) {
+            this.stream.close();
+        }
     }
 }
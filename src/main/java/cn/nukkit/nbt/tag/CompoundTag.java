@@ -13,7 +13,10 @@ import java.util.StringJoiner;
 
 public class CompoundTag extends Tag implements Cloneable {
 
-    private final Map<String, Tag> tags = new HashMap<>();
+    // Null until a lazily read compound is parsed, a parsed map is published once and never replaced by parsing
+    private volatile Map<String, Tag> tags = new HashMap<>();
+    // Stream positioned at the entries of a lazily read compound
+    private NBTInputStream source;
 
     public CompoundTag() {
         super("");
@@ -25,7 +28,7 @@ public class CompoundTag extends Tag implements Cloneable {
 
     @Override
     public void write(NBTOutputStream dos) throws IOException {
-        for (Map.Entry<String, Tag> entry : this.tags.entrySet()) {
+        for (Map.Entry<String, Tag> entry : this.tags().entrySet()) {
             Tag.writeNamedTag(entry.getValue(), entry.getKey(), dos);
         }
 
@@ -34,15 +37,81 @@ public class CompoundTag extends Tag implements Cloneable {
 
     @Override
     public void load(NBTInputStream dis) throws IOException {
-        tags.clear();
+        if (dis.isLazy()) {
+            // Only remember where the entries are, they are parsed when the compound is first accessed
+            NBTInputStream source = dis.slice(dis.getPosition());
+            byte type;
+            while ((type = dis.readByte()) != Tag.TAG_End) {
+                dis.skipUTF();
+                if (type < Tag.TAG_End || type > Tag.TAG_Int_Array) {
+                    break;
+                }
+                Tag.skip(type, dis);
+            }
+            synchronized (this) {
+                this.source = source;
+                this.tags = null;
+            }
+            return;
+        }
+
+        Map<String, Tag> tags = new HashMap<>();
         Tag tag;
         while ((tag = Tag.readNamedTag(dis)).getId() != Tag.TAG_End) {
             tags.put(tag.getName(), tag);
         }
+        synchronized (this) {
+            this.source = null;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Get the entries, parsing them first if the compound was read lazily.
+     * <p>
+     * Lazy compounds can be shared between threads, for example through the cached tag of item clones, so reading one
+     * must not modify it. The entries are parsed into a new map that is only published once it is complete.
+     */
+    private Map<String, Tag> tags() {
+        Map<String, Tag> tags = this.tags;
+        if (tags == null) {
+            synchronized (this) {
+                tags = this.tags;
+                if (tags == null) {
+                    tags = this.parse();
+                    this.source = null;
+                    this.tags = tags;
+                }
+            }
+        }
+        return tags;
+    }
+
+    private Map<String, Tag> parse() {
+        Map<String, Tag> tags = new HashMap<>();
+        try {
+            byte type;
+            while ((type = this.source.readByte()) != Tag.TAG_End) {
+                String name = this.source.readUTF();
+                if (type < Tag.TAG_End || type > Tag.TAG_Int_Array) {
+                    break;
+                }
+                Tag tag = Tag.newTag(type, name);
+                tag.load(this.source);
+                tags.put(name, tag);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return tags;
+    }
+
+    private Tag tag(String name) {
+        return this.tags().get(name);
     }
 
     public Collection<Tag> getAllTags() {
-        return tags.values();
+        return this.tags().values();
     }
 
     @Override
@@ -51,62 +120,62 @@ public class CompoundTag extends Tag implements Cloneable {
     }
 
     public CompoundTag put(String name, Tag tag) {
-        tags.put(name, tag.setName(name));
+        this.tags().put(name, tag.setName(name));
         return this;
     }
 
     public CompoundTag putByte(String name, int value) {
-        tags.put(name, new ByteTag(name, value));
+        this.tags().put(name, new ByteTag(name, value));
         return this;
     }
 
     public CompoundTag putShort(String name, int value) {
-        tags.put(name, new ShortTag(name, value));
+        this.tags().put(name, new ShortTag(name, value));
         return this;
     }
 
     public CompoundTag putInt(String name, int value) {
-        tags.put(name, new IntTag(name, value));
+        this.tags().put(name, new IntTag(name, value));
         return this;
     }
 
     public CompoundTag putLong(String name, long value) {
-        tags.put(name, new LongTag(name, value));
+        this.tags().put(name, new LongTag(name, value));
         return this;
     }
 
     public CompoundTag putFloat(String name, float value) {
-        tags.put(name, new FloatTag(name, value));
+        this.tags().put(name, new FloatTag(name, value));
         return this;
     }
 
     public CompoundTag putDouble(String name, double value) {
-        tags.put(name, new DoubleTag(name, value));
+        this.tags().put(name, new DoubleTag(name, value));
         return this;
     }
 
     public CompoundTag putString(String name, String value) {
-        tags.put(name, new StringTag(name, value));
+        this.tags().put(name, new StringTag(name, value));
         return this;
     }
 
     public CompoundTag putByteArray(String name, byte[] value) {
-        tags.put(name, new ByteArrayTag(name, value));
+        this.tags().put(name, new ByteArrayTag(name, value));
         return this;
     }
 
     public CompoundTag putIntArray(String name, int[] value) {
-        tags.put(name, new IntArrayTag(name, value));
+        this.tags().put(name, new IntArrayTag(name, value));
         return this;
     }
 
     public CompoundTag putList(ListTag<? extends Tag> listTag) {
-        tags.put(listTag.getName(), listTag);
+        this.tags().put(listTag.getName(), listTag);
         return this;
     }
 
     public CompoundTag putCompound(String name, CompoundTag value) {
-        tags.put(name, value.setName(name));
+        this.tags().put(name, value.setName(name));
         return this;
     }
 
@@ -116,55 +185,55 @@ public class CompoundTag extends Tag implements Cloneable {
     }
 
     public Tag get(String name) {
-        return tags.get(name);
+        return this.tag(name);
     }
 
     public boolean contains(String name) {
-        return tags.containsKey(name);
+        return this.tags().containsKey(name);
     }
 
     public CompoundTag remove(String name) {
-        tags.remove(name);
+        this.removeAndGet(name);
         return this;
     }
 
     public <T extends Tag> T removeAndGet(String name) {
-        return (T) tags.remove(name);
+        return (T) this.tags().remove(name);
     }
 
     public int getByte(String name) {
-        if (!tags.containsKey(name)) return (byte) 0;
-        return ((NumberTag) tags.get(name)).getData().intValue();
+        if (!this.contains(name)) return (byte) 0;
+        return ((NumberTag) this.tag(name)).getData().intValue();
     }
 
     public int getShort(String name) {
-        if (!tags.containsKey(name)) return 0;
-        return ((NumberTag) tags.get(name)).getData().intValue();
+        if (!this.contains(name)) return 0;
+        return ((NumberTag) this.tag(name)).getData().intValue();
     }
 
     public int getInt(String name) {
-        if (!tags.containsKey(name)) return 0;
-        return ((NumberTag) tags.get(name)).getData().intValue();
+        if (!this.contains(name)) return 0;
+        return ((NumberTag) this.tag(name)).getData().intValue();
     }
 
     public long getLong(String name) {
-        if (!tags.containsKey(name)) return 0;
-        return ((NumberTag) tags.get(name)).getData().longValue();
+        if (!this.contains(name)) return 0;
+        return ((NumberTag) this.tag(name)).getData().longValue();
     }
 
     public float getFloat(String name) {
-        if (!tags.containsKey(name)) return (float) 0;
-        return ((NumberTag) tags.get(name)).getData().floatValue();
+        if (!this.contains(name)) return (float) 0;
+        return ((NumberTag) this.tag(name)).getData().floatValue();
     }
 
     public double getDouble(String name) {
-        if (!tags.containsKey(name)) return 0;
-        return ((NumberTag) tags.get(name)).getData().doubleValue();
+        if (!this.contains(name)) return 0;
+        return ((NumberTag) this.tag(name)).getData().doubleValue();
     }
 
     public String getString(String name) {
-        if (!tags.containsKey(name)) return "";
-        Tag tag = tags.get(name);
+        if (!this.contains(name)) return "";
+        Tag tag = this.tag(name);
         if (tag instanceof NumberTag) {
             return String.valueOf(((NumberTag) tag).getData());
         }
@@ -172,42 +241,43 @@ public class CompoundTag extends Tag implements Cloneable {
     }
 
     public byte[] getByteArray(String name) {
-        if (!tags.containsKey(name)) return new byte[0];
-        return ((ByteArrayTag) tags.get(name)).data;
+        if (!this.contains(name)) return new byte[0];
+        return ((ByteArrayTag) this.tag(name)).data;
     }
 
     public int[] getIntArray(String name) {
-        if (!tags.containsKey(name)) return new int[0];
-        return ((IntArrayTag) tags.get(name)).data;
+        if (!this.contains(name)) return new int[0];
+        return ((IntArrayTag) this.tag(name)).data;
     }
 
     public CompoundTag getCompound(String name) {
-        if (!tags.containsKey(name)) return new CompoundTag(name);
-        return (CompoundTag) tags.get(name);
+        if (!this.contains(name)) return new CompoundTag(name);
+        return (CompoundTag) this.tag(name);
     }
 
     public ListTag<? extends Tag> getList(String name) {
-        if (!tags.containsKey(name)) return new ListTag<>(name);
-        return (ListTag<? extends Tag>) tags.get(name);
+        if (!this.contains(name)) return new ListTag<>(name);
+        return (ListTag<? extends Tag>) this.tag(name);
     }
 
     @SuppressWarnings("unchecked")
     public <T extends Tag> ListTag<T> getList(String name, Class<T> type) {
-        if (tags.containsKey(name)) {
-            return (ListTag<T>) tags.get(name);
+        if (this.contains(name)) {
+            return (ListTag<T>) this.tag(name);
         }
         return new ListTag<>(name);
     }
 
     public Map<String, Tag> getTags() {
-        return new HashMap<>(this.tags);
+        return new HashMap<>(this.tags());
     }
 
     @Override
     public Map<String, Object> parseValue() {
-        Map<String, Object> value = new HashMap<>(this.tags.size());
+        Map<String, Tag> tags = this.tags();
+        Map<String, Object> value = new HashMap<>(tags.size());
 
-        for (Entry<String, Tag> entry : this.tags.entrySet()) {
+        for (Entry<String, Tag> entry : tags.entrySet()) {
             value.put(entry.getKey(), entry.getValue().parseValue());
         }
 
@@ -219,11 +289,12 @@ public class CompoundTag extends Tag implements Cloneable {
     }
 
     public boolean getBoolean(String name, boolean def) {
-        if (!tags.containsKey(name)) return def;
-        return (((NumberTag) tags.get(name)).getData().intValue()) != 0;
+        if (!this.contains(name)) return def;
+        return (((NumberTag) this.tag(name)).getData().intValue()) != 0;
     }
 
     public String toString() {
+        Map<String, Tag> tags = this.tags();
         StringJoiner joiner = new StringJoiner(",\n\t");
         tags.forEach((key, tag) -> joiner.add('\'' + key + "' : " + tag.toString().replace("\n", "\n\t")));
         return "CompoundTag '" + this.getName() + "' (" + tags.size() + " entries) {\n\t" + joiner.toString() + "\n}";
@@ -234,19 +305,19 @@ public class CompoundTag extends Tag implements Cloneable {
         out.println(prefix + '{');
         String orgPrefix = prefix;
         prefix += "   ";
-        for (Tag tag : tags.values()) {
+        for (Tag tag : this.tags().values()) {
             tag.print(prefix, out);
         }
         out.println(orgPrefix + '}');
     }
 
     public boolean isEmpty() {
-        return tags.isEmpty();
+        return this.tags().isEmpty();
     }
 
     public CompoundTag copy() {
         CompoundTag tag = new CompoundTag(getName());
-        for (Entry<String, Tag> entry : tags.entrySet()) {
+        for (Entry<String, Tag> entry : this.tags().entrySet()) {
             tag.put(entry.getKey(), entry.getValue().copy());
         }
         return tag;
@@ -256,7 +327,7 @@ public class CompoundTag extends Tag implements Cloneable {
     public boolean equals(Object obj) {
         if (super.equals(obj)) {
             CompoundTag o = (CompoundTag) obj;
-            return tags.entrySet().equals(o.tags.entrySet());
+            return this.tags().entrySet().equals(o.tags().entrySet());
         }
         return false;
     }
@@ -268,7 +339,7 @@ public class CompoundTag extends Tag implements Cloneable {
      * @return - true, if tag exists
      */
     public boolean exist(String name) {
-        return tags.containsKey(name);
+        return this.contains(name);
     }
 
     @Override
@@ -3,6 +3,7 @@ package cn.nukkit.nbt.tag;
 import cn.nukkit.nbt.stream.NBTInputStream;
 import cn.nukkit.nbt.stream.NBTOutputStream;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.PrintStream;
 
@@ -90,6 +91,68 @@ public abstract class Tag {
         return tag;
     }
 
+    /**
+     * Skip the payload of a tag without creating it
+     *
+     * @param type tag type
+     * @param dis  stream positioned after the name of the tag
+     */
+    static void skip(byte type, NBTInputStream dis) throws IOException {
+        switch (type) {
+            case TAG_End:
+                break;
+            case TAG_Byte:
+                dis.readByte();
+                break;
+            case TAG_Short:
+                dis.readShort();
+                break;
+            case TAG_Int:
+                dis.readInt();
+                break;
+            case TAG_Long:
+                dis.readLong();
+                break;
+            case TAG_Float:
+                dis.readFloat();
+                break;
+            case TAG_Double:
+                dis.readDouble();
+                break;
+            case TAG_Byte_Array:
+                int length = dis.readInt();
+                if (dis.skipBytes(length) != length) {
+                    throw new EOFException();
+                }
+                break;
+            case TAG_String:
+                dis.skipUTF();
+                break;
+            case TAG_List:
+                byte listType = dis.readByte();
+                int size = dis.readInt();
+                for (int i = 0; i < size; i++) {
+                    skip(listType, dis);
+                }
+                break;
+            case TAG_Compound:
+                byte entryType;
+                while ((entryType = dis.readByte()) != TAG_End) {
+                    dis.skipUTF();
+                    skip(entryType, dis);
+                }
+                break;
+            case TAG_Int_Array:
+                int count = dis.readInt();
+                for (int i = 0; i < count; i++) {
+                    dis.readInt();
+                }
+                break;
+            default:
+                throw new IOException("Unknown tag type " + type);
+        }
+    }
+
     public static void writeNamedTag(Tag tag, NBTOutputStream dos) throws IOException {
         writeNamedTag(tag, tag.getName(), dos);
     }
@@ -40,6 +40,8 @@ public class Network {
 
     private Class<? extends DataPacket>[] packetPool = new Class[256];
 
+    private final PacketHandlerRegistry packetHandlers = new PacketHandlerRegistry();
+
     private final Server server;
 
     private final Set<SourceInterface> interfaces = new HashSet<>();
@@ -75,6 +77,10 @@ public class Network {
         this.download = 0;
     }
 
+    public PacketHandlerRegistry getPacketHandlers() {
+        return packetHandlers;
+    }
+
     public Set<SourceInterface> getInterfaces() {
         return interfaces;
     }
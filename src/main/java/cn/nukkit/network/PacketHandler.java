@@ -0,0 +1,15 @@
+package cn.nukkit.network;
+
+import cn.nukkit.Player;
+import cn.nukkit.network.protocol.DataPacket;
+
+/**
+ * Handles an inbound packet of one type for a player
+ *
+ * @see PacketHandlerRegistry
+ */
+@FunctionalInterface
+public interface PacketHandler {
+
+    void handle(Player player, DataPacket packet);
+}
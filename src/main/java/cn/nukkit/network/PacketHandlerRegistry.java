@@ -0,0 +1,243 @@
+package cn.nukkit.network;
+
+import cn.nukkit.Player;
+import cn.nukkit.network.protocol.DataPacket;
+import cn.nukkit.network.protocol.ProtocolInfo;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inbound packet handlers and rate limits, indexed by packet id.
+ * <p>
+ * {@link Player#handleDataPacket(DataPacket)} dispatches every packet to the handler registered for its id. The
+ * handlers of the server itself are registered by {@link Player} at startup, plugins can replace them or register
+ * handlers for clients from a minimum protocol on, in which case the handler with the highest minimum protocol the
+ * client supports is used. Every packet id has a token bucket rate limit that is applied to each player and counts
+ * the received and dropped packets.
+ */
+public class PacketHandlerRegistry {
+
+    public static final int DEFAULT_RATE = 100;
+    public static final int DEFAULT_BURST = 300;
+
+    /**
+     * Movement and inventory limits allow a burst of this many seconds worth of packets, which clients send at once
+     * after a lag spike or when shift-clicking and crafting many items
+     */
+    public static final int BURST_SECONDS = 5;
+
+    public static final int DEFAULT_MOVEMENT_RATE = 40;
+    public static final int DEFAULT_INVENTORY_RATE = 100;
+    public static final int DEFAULT_ABUSE_THRESHOLD = 500;
+
+    private final Entry[] entries = new Entry[256];
+
+    private volatile int abuseThreshold = DEFAULT_ABUSE_THRESHOLD;
+
+    public PacketHandlerRegistry() {
+        for (int i = 0; i < this.entries.length; i++) {
+            this.entries[i] = new Entry();
+        }
+
+        this.setRateLimit(ProtocolInfo.TEXT_PACKET, 10, 20);
+        this.setRateLimit(ProtocolInfo.COMMAND_REQUEST_PACKET, 10, 20);
+        this.setRateLimit(ProtocolInfo.MAP_INFO_REQUEST_PACKET, 5, 20);
+        this.setRateLimit(ProtocolInfo.BOOK_EDIT_PACKET, 5, 20);
+        this.setRateLimit(ProtocolInfo.FILTER_TEXT_PACKET, 10, 40);
+        this.setMovementRateLimit(DEFAULT_MOVEMENT_RATE);
+        this.setInventoryRateLimit(DEFAULT_INVENTORY_RATE);
+    }
+
+    /**
+     * Register a handler for all protocols
+     *
+     * @param pid     packet id
+     * @param handler handler
+     */
+    public void register(byte pid, PacketHandler handler) {
+        this.register(pid, 0, handler);
+    }
+
+    /**
+     * Register a handler for clients using the given protocol or newer
+     *
+     * @param pid         packet id
+     * @param minProtocol lowest protocol the handler is used for
+     * @param handler     handler
+     */
+    public void register(byte pid, int minProtocol, PacketHandler handler) {
+        Entry entry = this.entries[pid & 0xff];
+        synchronized (entry) {
+            Handlers old = entry.handlers;
+            int index = Arrays.binarySearch(old.minProtocols, minProtocol);
+            if (index >= 0) {
+                PacketHandler[] handlers = old.handlers.clone();
+                handlers[index] = handler;
+                entry.handlers = new Handlers(old.minProtocols, handlers);
+                return;
+            }
+
+            index = -index - 1;
+            int[] minProtocols = new int[old.minProtocols.length + 1];
+            PacketHandler[] handlers = new PacketHandler[minProtocols.length];
+            System.arraycopy(old.minProtocols, 0, minProtocols, 0, index);
+            System.arraycopy(old.handlers, 0, handlers, 0, index);
+            minProtocols[index] = minProtocol;
+            handlers[index] = handler;
+            System.arraycopy(old.minProtocols, index, minProtocols, index + 1, old.minProtocols.length - index);
+            System.arraycopy(old.handlers, index, handlers, index + 1, old.handlers.length - index);
+            entry.handlers = new Handlers(minProtocols, handlers);
+        }
+    }
+
+    public void unregister(byte pid) {
+        Entry entry = this.entries[pid & 0xff];
+        synchronized (entry) {
+            entry.handlers = Handlers.EMPTY;
+        }
+    }
+
+    public void unregister(byte pid, int minProtocol) {
+        Entry entry = this.entries[pid & 0xff];
+        synchronized (entry) {
+            Handlers old = entry.handlers;
+            int index = Arrays.binarySearch(old.minProtocols, minProtocol);
+            if (index < 0) {
+                return;
+            }
+            int[] minProtocols = new int[old.minProtocols.length - 1];
+            PacketHandler[] handlers = new PacketHandler[minProtocols.length];
+            System.arraycopy(old.minProtocols, 0, minProtocols, 0, index);
+            System.arraycopy(old.handlers, 0, handlers, 0, index);
+            System.arraycopy(old.minProtocols, index + 1, minProtocols, index, minProtocols.length - index);
+            System.arraycopy(old.handlers, index + 1, handlers, index, handlers.length - index);
+            entry.handlers = new Handlers(minProtocols, handlers);
+        }
+    }
+
+    /**
+     * Get the handler for a packet
+     *
+     * @param pid      packet id
+     * @param protocol client protocol
+     * @return handler or null if the packet is ignored
+     */
+    public PacketHandler getHandler(byte pid, int protocol) {
+        Handlers handlers = this.entries[pid & 0xff].handlers;
+        for (int i = handlers.minProtocols.length - 1; i >= 0; i--) {
+            if (handlers.minProtocols[i] <= protocol) {
+                return handlers.handlers[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set how many packets of a type a player may send
+     *
+     * @param pid       packet id
+     * @param perSecond packets per second on average
+     * @param burst     packets that may be sent at once
+     */
+    public void setRateLimit(byte pid, int perSecond, int burst) {
+        if (perSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate limit must be positive");
+        }
+        Entry entry = this.entries[pid & 0xff];
+        entry.rate = perSecond;
+        entry.burst = burst;
+    }
+
+    /**
+     * Set how many movement packets a player may send. Clients send one per tick while moving.
+     *
+     * @param perSecond packets per second on average
+     */
+    public void setMovementRateLimit(int perSecond) {
+        this.setRateLimit(ProtocolInfo.MOVE_PLAYER_PACKET, perSecond, perSecond * BURST_SECONDS);
+        this.setRateLimit(ProtocolInfo.PLAYER_INPUT_PACKET, perSecond, perSecond * BURST_SECONDS);
+    }
+
+    /**
+     * Set how many inventory transactions a player may send. Clients send one for every slot change, item use and
+     * attack.
+     *
+     * @param perSecond packets per second on average
+     */
+    public void setInventoryRateLimit(int perSecond) {
+        this.setRateLimit(ProtocolInfo.INVENTORY_TRANSACTION_PACKET, perSecond, perSecond * BURST_SECONDS);
+    }
+
+    /**
+     * Set how many packets a player may have dropped within a second before being disconnected
+     *
+     * @param abuseThreshold dropped packets per second
+     */
+    public void setAbuseThreshold(int abuseThreshold) {
+        if (abuseThreshold <= 0) {
+            throw new IllegalArgumentException("Abuse threshold must be positive");
+        }
+        this.abuseThreshold = abuseThreshold;
+    }
+
+    public int getAbuseThreshold() {
+        return this.abuseThreshold;
+    }
+
+    public int getRate(byte pid) {
+        return this.entries[pid & 0xff].rate;
+    }
+
+    public int getBurst(byte pid) {
+        return this.entries[pid & 0xff].burst;
+    }
+
+    public void countReceived(byte pid) {
+        this.entries[pid & 0xff].received.increment();
+    }
+
+    public void countDropped(byte pid) {
+        this.entries[pid & 0xff].dropped.increment();
+    }
+
+    /**
+     * Get the number of packets of a type received from all players
+     */
+    public long getReceived(byte pid) {
+        return this.entries[pid & 0xff].received.sum();
+    }
+
+    /**
+     * Get the number of packets of a type dropped because players exceeded the rate limit
+     */
+    public long getDropped(byte pid) {
+        return this.entries[pid & 0xff].dropped.sum();
+    }
+
+    private static class Entry {
+
+        private volatile Handlers handlers = Handlers.EMPTY;
+        private volatile int rate = DEFAULT_RATE;
+        private volatile int burst = DEFAULT_BURST;
+
+        private final LongAdder received = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+    }
+
+    /**
+     * Handlers of a packet id sorted by minimum protocol, replaced as a whole when a handler is registered
+     */
+    private static class Handlers {
+
+        private static final Handlers EMPTY = new Handlers(new int[0], new PacketHandler[0]);
+
+        private final int[] minProtocols;
+        private final PacketHandler[] handlers;
+
+        private Handlers(int[] minProtocols, PacketHandler[] handlers) {
+            this.minProtocols = minProtocols;
+            this.handlers = handlers;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package cn.nukkit.network;
+
+import cn.nukkit.network.protocol.DataPacket;
+
+/**
+ * Token buckets for the packets received from one player.
+ * <p>
+ * Each packet type has its own bucket that refills at the rate set in the {@link PacketHandlerRegistry}. Packets
+ * arriving while the bucket is empty are dropped. A player dropping more than
+ * {@link PacketHandlerRegistry#getAbuseThreshold()} packets within a second is considered abusive and should be
+ * disconnected.
+ */
+public class PacketRateLimiter {
+
+    private final PacketHandlerRegistry registry;
+
+    private final float[] tokens = new float[256];
+    private final long[] lastRefill = new long[256];
+
+    private long dropSecond;
+    private int drops;
+
+    public PacketRateLimiter(PacketHandlerRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Take a token for a packet
+     *
+     * @param packet packet
+     * @return false if the packet should be dropped
+     */
+    public synchronized boolean tryAcquire(DataPacket packet) {
+        byte pid = packet.pid();
+        int index = pid & 0xff;
+        int burst = this.registry.getBurst(pid);
+        long now = System.nanoTime();
+
+        float available;
+        if (this.lastRefill[index] == 0) {
+            available = burst;
+        } else {
+            available = Math.min(burst, this.tokens[index] + (now - this.lastRefill[index]) * this.registry.getRate(pid) / 1e9f);
+        }
+        this.lastRefill[index] = now;
+
+        if (available >= 1) {
+            this.tokens[index] = available - 1;
+            this.registry.countReceived(pid);
+            return true;
+        }
+
+        this.tokens[index] = available;
+        this.registry.countDropped(pid);
+        long second = now / 1000000000L;
+        if (second != this.dropSecond) {
+            this.dropSecond = second;
+            this.drops = 0;
+        }
+        this.drops++;
+        return false;
+    }
+
+    /**
+     * Check whether the player dropped too many packets within the last second
+     */
+    public synchronized boolean isAbusive() {
+        return this.drops > this.registry.getAbuseThreshold() && this.dropSecond == System.nanoTime() / 1000000000L;
+    }
+}
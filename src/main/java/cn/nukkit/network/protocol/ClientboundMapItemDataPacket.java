@@ -120,7 +120,7 @@ public class ClientboundMapItemDataPacket extends DataPacket {
                 image.flush();
             } else if (colors.length > 0) {
                 for (int color : colors) {
-                    putUnsignedVarInt(color);
+                    putUnsignedVarInt(color & 0xffffffffL);
                 }
             }
         }
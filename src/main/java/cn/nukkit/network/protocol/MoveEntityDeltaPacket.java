@@ -11,6 +11,9 @@ public class MoveEntityDeltaPacket extends DataPacket {
     public static final int FLAG_HAS_YAW = 0b1000;
     public static final int FLAG_HAS_HEAD_YAW = 0b10000;
     public static final int FLAG_HAS_PITCH = 0b100000;
+    public static final int FLAG_ON_GROUND = 0b1000000;
+    public static final int FLAG_TELEPORT = 0b10000000;
+    public static final int FLAG_FORCE_MOVE_LOCAL_ENTITY = 0b100000000;
 
     public long eid;
     public int flags = 0;
@@ -28,8 +31,12 @@ public class MoveEntityDeltaPacket extends DataPacket {
 
     @Override
     public void decode() {
-        this.getEntityRuntimeId();
-        this.flags = this.getByte();
+        this.eid = this.getEntityRuntimeId();
+        if (protocol >= ProtocolInfo.v1_16_100) {
+            this.flags = this.getLShort();
+        } else {
+            this.flags = this.getByte();
+        }
         this.x = getCoordinate(FLAG_HAS_X);
         this.y = getCoordinate(FLAG_HAS_Y);
         this.z = getCoordinate(FLAG_HAS_Z);
@@ -42,7 +49,11 @@ public class MoveEntityDeltaPacket extends DataPacket {
     public void encode() {
         this.reset();
         this.putEntityRuntimeId(this.eid);
-        this.putByte((byte) flags);
+        if (protocol >= ProtocolInfo.v1_16_100) {
+            this.putLShort(flags);
+        } else {
+            this.putByte((byte) flags);
+        }
         putCoordinate(FLAG_HAS_X, this.x);
         putCoordinate(FLAG_HAS_Y, this.y);
         putCoordinate(FLAG_HAS_Z, this.z);
@@ -115,6 +115,7 @@ public abstract class DefaultPermissions {
         registerPermission(new Permission("nukkit.command.world", "Allows the user to switch world", Permission.DEFAULT_TRUE), commands);
         registerPermission(new Permission("nukkit.command.world.others", "Allows the user to switch world for other players", Permission.DEFAULT_OP), commands);
         registerPermission(new Permission("nukkit.command.generateworld", "Allows the user to generate new world", Permission.DEFAULT_OP), commands);
+        registerPermission(new Permission("nukkit.command.pregen", "Allows the user to pregenerate worlds", Permission.DEFAULT_OP), commands);
         registerPermission(new Permission("nukkit.command.seed", "Allows the user to see world's seed", Permission.DEFAULT_OP), commands);
         registerPermission(new Permission("nukkit.command.playsound", "Allows the user to play sounds", Permission.DEFAULT_OP), commands);
         registerPermission(new Permission("nukkit.command.debug.perform", "Allows the user to create debug paste", Permission.DEFAULT_OP), commands);
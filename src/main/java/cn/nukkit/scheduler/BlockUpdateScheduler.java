@@ -5,62 +5,104 @@ import cn.nukkit.level.Level;
 import cn.nukkit.math.AxisAlignedBB;
 import cn.nukkit.math.Vector3;
 import cn.nukkit.utils.BlockUpdateEntry;
-import com.google.common.collect.Maps;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Set;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
+import java.util.*;
+
+/**
+ * Scheduled block updates are kept in a hierarchical timing wheel: one bucket per tick for the current
+ * {@value #WHEEL_SIZE} tick window, one bucket per window for the next {@value #OUTER_SIZE} windows and a sorted
+ * overflow map for anything further away. A second index by chunk and chunk-local position is used for
+ * deduplication, cancelling and for fetching the pending updates of a chunk when it is saved.
+ * <p>
+ * Cancelled entries are not removed from the wheel, they are skipped when their tick comes.
+ */
 public class BlockUpdateScheduler {
 
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int OUTER_SIZE = 64;
+
     private final Level level;
     private long lastTick;
-    private Map<Long, LinkedHashSet<BlockUpdateEntry>> queuedUpdates;
+
+    @SuppressWarnings("unchecked")
+    private final ObjectArrayList<BlockUpdateEntry>[] wheel = (ObjectArrayList<BlockUpdateEntry>[]) new ObjectArrayList<?>[WHEEL_SIZE];
+    @SuppressWarnings("unchecked")
+    private final ObjectArrayList<BlockUpdateEntry>[] outerWheel = (ObjectArrayList<BlockUpdateEntry>[]) new ObjectArrayList<?>[OUTER_SIZE];
+    private final TreeMap<Long, ObjectArrayList<BlockUpdateEntry>> overflow = new TreeMap<>();
+
+    /**
+     * Chunk hash -> (chunk-local position and block id) -> queued entry
+     */
+    private final Long2ObjectOpenHashMap<Int2ObjectMap<BlockUpdateEntry>> chunkIndex = new Long2ObjectOpenHashMap<>();
+    private int size;
 
     private Set<BlockUpdateEntry> pendingUpdates;
 
     public BlockUpdateScheduler(Level level, long currentTick) {
-        queuedUpdates = Maps.newHashMap(); // Change to ConcurrentHashMap if this needs to be concurrent
         lastTick = currentTick;
         this.level = level;
     }
 
+    private static int localKey(int x, int y, int z, int blockId) {
+        return ((x & 0xf) << 28) | ((z & 0xf) << 24) | ((y & 0xff) << 16) | (blockId & 0xffff);
+    }
+
     public synchronized void tick(long currentTick) {
         // Should only perform once, unless ticks were skipped
-        if (currentTick - lastTick < Short.MAX_VALUE) {// Arbitrary
+        if (currentTick - lastTick < (long) WHEEL_SIZE * OUTER_SIZE) {
             for (long tick = lastTick + 1; tick <= currentTick; tick++) {
                 perform(tick);
             }
         } else {
-            ArrayList<Long> times = new ArrayList<>(queuedUpdates.keySet());
-            Collections.sort(times);
-            for (long tick : times) {
-                if (tick <= currentTick) {
-                    perform(tick);
-                } else {
-                    break;
-                }
-            }
+            performAllUntil(currentTick);
         }
         lastTick = currentTick;
     }
 
     private void perform(long tick) {
+        lastTick = tick;
+        if ((tick & WHEEL_MASK) == 0) {
+            cascade(tick >> WHEEL_BITS);
+        }
+
+        int slot = (int) (tick & WHEEL_MASK);
+        ObjectArrayList<BlockUpdateEntry> bucket = wheel[slot];
+        if (bucket == null || bucket.isEmpty()) {
+            return;
+        }
+        wheel[slot] = null;
+
+        Set<BlockUpdateEntry> updates = new LinkedHashSet<>();
+        for (BlockUpdateEntry entry : bucket) {
+            if (unindex(entry)) {
+                updates.add(entry);
+            }
+        }
+        run(updates);
+    }
+
+    private void run(Set<BlockUpdateEntry> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
         try {
-            lastTick = tick;
-            Set<BlockUpdateEntry> updates = pendingUpdates = queuedUpdates.remove(tick);
-            if (updates != null) {
-                for (BlockUpdateEntry entry : updates) {
-                    if (level.isAreaLoaded(new AxisAlignedBB(entry.pos, entry.pos))) {
-                        Block block = level.getBlock(entry.pos);
-
-                        if (Block.equals(block, entry.block, false)) {
-                            block.onUpdate(Level.BLOCK_UPDATE_SCHEDULED);
-                        }
-                    } else {
-                        level.scheduleUpdate(entry.block, entry.pos, 0);
+            pendingUpdates = updates;
+            for (BlockUpdateEntry entry : updates) {
+                if (level.isAreaLoaded(new AxisAlignedBB(entry.pos, entry.pos))) {
+                    Block block = level.getBlock(entry.pos);
+
+                    if (Block.equals(block, entry.block, false)) {
+                        block.onUpdate(Level.BLOCK_UPDATE_SCHEDULED);
                     }
+                } else {
+                    level.scheduleUpdate(entry.block, entry.pos, 0);
                 }
             }
         } finally {
@@ -68,20 +110,135 @@ public class BlockUpdateScheduler {
         }
     }
 
+    /**
+     * Move the entries of the given tick window from the outer wheel into the tick wheel
+     */
+    private void cascade(long window) {
+        // Pull the windows that now fit into the outer wheel out of the overflow map
+        if (!overflow.isEmpty()) {
+            SortedMap<Long, ObjectArrayList<BlockUpdateEntry>> head = overflow.headMap(window + OUTER_SIZE);
+            for (ObjectArrayList<BlockUpdateEntry> entries : head.values()) {
+                for (BlockUpdateEntry entry : entries) {
+                    place(entry, window << WHEEL_BITS);
+                }
+            }
+            head.clear();
+        }
+
+        int outerSlot = (int) (window % OUTER_SIZE);
+        ObjectArrayList<BlockUpdateEntry> entries = outerWheel[outerSlot];
+        if (entries != null) {
+            outerWheel[outerSlot] = null;
+            for (BlockUpdateEntry entry : entries) {
+                place(entry, window << WHEEL_BITS);
+            }
+        }
+    }
+
+    /**
+     * Skipping a large number of ticks, run everything that is due and requeue the rest
+     */
+    private void performAllUntil(long currentTick) {
+        List<BlockUpdateEntry> all = new ArrayList<>(size);
+        for (Int2ObjectMap<BlockUpdateEntry> entries : chunkIndex.values()) {
+            all.addAll(entries.values());
+        }
+        chunkIndex.clear();
+        size = 0;
+        Arrays.fill(wheel, null);
+        Arrays.fill(outerWheel, null);
+        overflow.clear();
+
+        all.sort(Comparator.comparingLong(entry -> entry.delay));
+        lastTick = currentTick;
+
+        Set<BlockUpdateEntry> due = new LinkedHashSet<>();
+        for (BlockUpdateEntry entry : all) {
+            if (entry.delay <= currentTick) {
+                due.add(entry);
+            } else {
+                add(entry);
+            }
+        }
+        run(due);
+    }
+
+    private void place(BlockUpdateEntry entry, long currentTick) {
+        long time = getMinTime(entry);
+        long window = time >> WHEEL_BITS;
+        long currentWindow = currentTick >> WHEEL_BITS;
+
+        ObjectArrayList<BlockUpdateEntry> bucket;
+        if (window == currentWindow) {
+            int slot = (int) (time & WHEEL_MASK);
+            if ((bucket = wheel[slot]) == null) {
+                wheel[slot] = bucket = new ObjectArrayList<>();
+            }
+        } else if (window - currentWindow < OUTER_SIZE) {
+            int slot = (int) (window % OUTER_SIZE);
+            if ((bucket = outerWheel[slot]) == null) {
+                outerWheel[slot] = bucket = new ObjectArrayList<>();
+            }
+        } else {
+            bucket = overflow.computeIfAbsent(window, w -> new ObjectArrayList<>());
+        }
+        bucket.add(entry);
+    }
+
+    private boolean unindex(BlockUpdateEntry entry) {
+        Vector3 pos = entry.pos;
+        long chunkHash = Level.chunkHash(pos.getFloorX() >> 4, pos.getFloorZ() >> 4);
+        Int2ObjectMap<BlockUpdateEntry> entries = chunkIndex.get(chunkHash);
+        if (entries == null) {
+            return false;
+        }
+
+        int key = localKey(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), entry.block.getId());
+        if (entries.get(key) != entry) {
+            return false;
+        }
+
+        entries.remove(key);
+        if (entries.isEmpty()) {
+            chunkIndex.remove(chunkHash);
+        }
+        size--;
+        return true;
+    }
+
+    private BlockUpdateEntry find(Vector3 pos, Block block) {
+        Int2ObjectMap<BlockUpdateEntry> entries = chunkIndex.get(Level.chunkHash(pos.getFloorX() >> 4, pos.getFloorZ() >> 4));
+        if (entries == null) {
+            return null;
+        }
+        return entries.get(localKey(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), block.getId()));
+    }
+
     public Set<BlockUpdateEntry> getPendingBlockUpdates(AxisAlignedBB boundingBox) {
         Set<BlockUpdateEntry> set = null;
 
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickEntries : this.queuedUpdates.entrySet()) {
-            LinkedHashSet<BlockUpdateEntry> tickSet = tickEntries.getValue();
-            for (BlockUpdateEntry update : tickSet) {
-                Vector3 pos = update.pos;
+        int minChunkX = ((int) Math.floor(boundingBox.getMinX())) >> 4;
+        int maxChunkX = ((int) Math.ceil(boundingBox.getMaxX()) - 1) >> 4;
+        int minChunkZ = ((int) Math.floor(boundingBox.getMinZ())) >> 4;
+        int maxChunkZ = ((int) Math.ceil(boundingBox.getMaxZ()) - 1) >> 4;
 
-                if (pos.getX() >= boundingBox.minX && pos.getX() < boundingBox.maxX && pos.getZ() >= boundingBox.minZ && pos.getZ() < boundingBox.maxZ) {
-                    if (set == null) {
-                        set = new LinkedHashSet<>();
-                    }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                Int2ObjectMap<BlockUpdateEntry> entries = chunkIndex.get(Level.chunkHash(chunkX, chunkZ));
+                if (entries == null) {
+                    continue;
+                }
 
-                    set.add(update);
+                for (BlockUpdateEntry update : entries.values()) {
+                    Vector3 pos = update.pos;
+
+                    if (pos.getX() >= boundingBox.getMinX() && pos.getX() < boundingBox.getMaxX() && pos.getZ() >= boundingBox.getMinZ() && pos.getZ() < boundingBox.getMaxZ()) {
+                        if (set == null) {
+                            set = new LinkedHashSet<>();
+                        }
+
+                        set.add(update);
+                    }
                 }
             }
         }
@@ -99,37 +256,53 @@ public class BlockUpdateScheduler {
         return Math.max(entry.delay, lastTick + 1);
     }
 
+    /**
+     * Get the number of queued block updates
+     *
+     * @return queued block updates
+     */
+    public int size() {
+        return size;
+    }
+
     public void add(BlockUpdateEntry entry) {
-        long time = getMinTime(entry);
-        LinkedHashSet<BlockUpdateEntry> updateSet = queuedUpdates.get(time);
-        if (updateSet == null) {
-            LinkedHashSet<BlockUpdateEntry> tmp = queuedUpdates.putIfAbsent(time, updateSet = new LinkedHashSet<>());
-            if (tmp != null) updateSet = tmp;
+        Vector3 pos = entry.pos;
+        Int2ObjectMap<BlockUpdateEntry> entries = chunkIndex.computeIfAbsent(Level.chunkHash(pos.getFloorX() >> 4, pos.getFloorZ() >> 4), k -> new Int2ObjectOpenHashMap<>());
+        int key = localKey(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), entry.block.getId());
+        if (entries.containsKey(key)) {
+            return;
         }
-        updateSet.add(entry);
+
+        entries.put(key, entry);
+        size++;
+        place(entry, lastTick + 1);
     }
 
     public boolean contains(BlockUpdateEntry entry) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().contains(entry)) {
-                return true;
-            }
-        }
-        return false;
+        return find(entry.pos, entry.block) != null;
     }
 
     public boolean remove(BlockUpdateEntry entry) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().remove(entry)) {
-                return true;
-            }
-        }
-        return false;
+        BlockUpdateEntry queued = find(entry.pos, entry.block);
+        return queued != null && unindex(queued);
     }
 
     public boolean remove(Vector3 pos) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().remove(pos)) {
+        long chunkHash = Level.chunkHash(pos.getFloorX() >> 4, pos.getFloorZ() >> 4);
+        Int2ObjectMap<BlockUpdateEntry> entries = chunkIndex.get(chunkHash);
+        if (entries == null) {
+            return false;
+        }
+
+        int positionKey = localKey(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ(), 0);
+        ObjectIterator<Int2ObjectMap.Entry<BlockUpdateEntry>> iterator = entries.int2ObjectEntrySet().iterator();
+        while (iterator.hasNext()) {
+            if ((iterator.next().getIntKey() & 0xffff0000) == positionKey) {
+                iterator.remove();
+                if (entries.isEmpty()) {
+                    chunkIndex.remove(chunkHash);
+                }
+                size--;
                 return true;
             }
         }
@@ -0,0 +1,90 @@
+package cn.nukkit.scheduler;
+
+import cn.nukkit.InterruptibleThread;
+import cn.nukkit.Server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Reads and decodes chunks from disk off the main thread.
+ * <p>
+ * Requests are run in priority order, lower priority values first. Levels use the squared chunk distance to the
+ * closest player as priority, so the chunks players are standing next to are loaded before the ones far away.
+ */
+public class ChunkLoadPool extends ThreadPoolExecutor {
+
+    private final Server server;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public ChunkLoadPool(Server server, int size) {
+        super(size, size, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.setThreadFactory(runnable -> new Worker(runnable, "Nukkit Chunk Loader #" + threadCount.incrementAndGet()));
+        this.server = server;
+    }
+
+    /**
+     * Run a chunk loading task
+     *
+     * @param task     task
+     * @param priority priority, lower values run first
+     * @param <T>      result type
+     * @return future completed on the loader thread
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task, double priority) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.execute(new Task<>(task, future, priority, this.sequence.getAndIncrement()));
+        return future;
+    }
+
+    @Override
+    protected void afterExecute(Runnable runnable, Throwable throwable) {
+        if (throwable != null) {
+            server.getLogger().critical("Exception in chunk loader", throwable);
+        }
+    }
+
+    private static class Task<T> implements Runnable, Comparable<Task<?>> {
+
+        private final Supplier<T> task;
+        private final CompletableFuture<T> future;
+        private final double priority;
+        private final long sequence;
+
+        private Task(Supplier<T> task, CompletableFuture<T> future, double priority, long sequence) {
+            this.task = task;
+            this.future = future;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.future.complete(this.task.get());
+            } catch (Throwable t) {
+                this.future.completeExceptionally(t);
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int result = Double.compare(this.priority, other.priority);
+            return result != 0 ? result : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private static class Worker extends Thread implements InterruptibleThread {
+
+        private Worker(Runnable runnable, String name) {
+            super(runnable, name);
+            this.setDaemon(true);
+        }
+    }
+}
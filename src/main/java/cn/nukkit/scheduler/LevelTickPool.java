@@ -0,0 +1,123 @@
+package cn.nukkit.scheduler;
+
+import cn.nukkit.InterruptibleThread;
+import cn.nukkit.Server;
+import cn.nukkit.level.Level;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Ticks independent levels concurrently on a fixed pool of worker threads.
+ * <p>
+ * The main thread waits for every level to finish before the tick continues. Operations that touch more than
+ * one level (for example teleporting an entity to another level) are queued with {@link #runAfterTick(Runnable)}
+ * and run on the main thread once all levels have been ticked.
+ * <p>
+ * Event listeners expect to be called on the main thread, so the server only ticks levels with this pool while no
+ * event listeners are registered. Such deferred operations therefore can't be cancelled by an event afterwards.
+ */
+public class LevelTickPool {
+
+    private final Server server;
+    private final ExecutorService executor;
+    private final Queue<Runnable> deferredTasks = new ConcurrentLinkedQueue<>();
+
+    public LevelTickPool(Server server, int size) {
+        this.server = server;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(size, runnable -> {
+            Worker worker = new Worker(runnable);
+            worker.setName("Nukkit Level Tick Worker #" + threadCount.incrementAndGet());
+            return worker;
+        });
+    }
+
+    /**
+     * Check whether the current thread is ticking a level in parallel with other levels
+     *
+     * @return current thread is a level tick worker
+     */
+    public static boolean isLevelTickThread() {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    /**
+     * Tick the given levels and wait until all of them are done
+     *
+     * @param levels levels to tick
+     * @param ticker level tick function
+     */
+    public void tick(Level[] levels, Consumer<Level> ticker) {
+        if (levels.length == 1) {
+            ticker.accept(levels[0]);
+        } else if (levels.length > 1) {
+            Future<?>[] futures = new Future<?>[levels.length];
+            long[] tickNanos = new long[levels.length];
+            for (int i = 0; i < levels.length; i++) {
+                Level level = levels[i];
+                int index = i;
+                futures[i] = this.executor.submit(() -> {
+                    long start = System.nanoTime();
+                    ticker.accept(level);
+                    tickNanos[index] = System.nanoTime() - start;
+                });
+            }
+
+            for (int i = 0; i < futures.length; i++) {
+                try {
+                    futures[i].get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    this.server.getLogger().critical("Exception while ticking level " + levels[i].getName(), e.getCause());
+                }
+
+                // Timings can't be recorded on the worker threads, so the whole level tick is recorded here
+                if (levels[i].timings.doTick != null) levels[i].timings.doTick.recordTime(tickNanos[i]);
+            }
+        }
+
+        this.runDeferredTasks();
+    }
+
+    /**
+     * Run a task on the main thread after all levels have finished ticking.
+     * If no level is being ticked in parallel right now, the task is run immediately.
+     *
+     * @param task task
+     */
+    public void runAfterTick(Runnable task) {
+        if (isLevelTickThread()) {
+            this.deferredTasks.offer(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private void runDeferredTasks() {
+        Runnable task;
+        while ((task = this.deferredTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                this.server.getLogger().critical("Exception in deferred level task", e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private static class Worker extends Thread implements InterruptibleThread {
+
+        private Worker(Runnable runnable) {
+            super(runnable);
+            this.setDaemon(true);
+        }
+    }
+}
@@ -261,6 +261,18 @@ public class BinaryStream {
     }
 
     public void putSkin(int protocol, Skin skin) {
+        // Skins are encoded once per protocol and reused for every packet they are sent in
+        byte[] encoded = skin.getEncoded(protocol);
+        if (encoded == null) {
+            BinaryStream stream = new BinaryStream();
+            stream.writeSkin(protocol, skin);
+            encoded = stream.getBuffer();
+            skin.setEncoded(protocol, encoded);
+        }
+        this.put(encoded);
+    }
+
+    private void writeSkin(int protocol, Skin skin) {
         this.putString(skin.getSkinId());
 
         if (protocol < ProtocolInfo.v1_13_0) {
@@ -17,6 +17,7 @@ public class LevelTimings {
 
     public final Timing tickChunks;
     public final Timing entityTick;
+    public final Timing entityActivationCheck;
     public final Timing blockEntityTick;
 
     public final Timing syncChunkSendTimer;
@@ -36,6 +37,7 @@ public class LevelTimings {
 
         this.tickChunks = TimingsManager.getTiming(name + "tickChunks");
         this.entityTick = TimingsManager.getTiming(name + "entityTick");
+        this.entityActivationCheck = TimingsManager.getTiming(name + "entityTick - Activation Check");
         this.blockEntityTick = TimingsManager.getTiming(name + "blockEntityTick");
 
         this.syncChunkSendTimer = TimingsManager.getTiming(name + "syncChunkSend");
@@ -23,6 +23,8 @@
  */
 package co.aikar.timings;
 
+import cn.nukkit.scheduler.LevelTickPool;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -80,7 +82,7 @@ public class Timing implements AutoCloseable {
     }
 
     public Timing startTiming() {
-        if (!this.enabled) {
+        if (!this.enabled || LevelTickPool.isLevelTickThread()) {
             return this;
         }
 
@@ -94,7 +96,7 @@ public class Timing implements AutoCloseable {
     }
 
     public void stopTiming() {
-        if (!this.enabled) {
+        if (!this.enabled || LevelTickPool.isLevelTickThread()) {
             return;
         }
 
@@ -104,6 +106,17 @@ public class Timing implements AutoCloseable {
         }
     }
 
+    /**
+     * Record a duration that was measured outside of this timing, e.g. on a level tick worker thread
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void recordTime(long nanos) {
+        if (this.enabled && nanos > 0) {
+            this.addDiff(nanos);
+        }
+    }
+
     public void abort() {
         if (this.enabled && this.timingDepth > 0) {
             this.start = 0;
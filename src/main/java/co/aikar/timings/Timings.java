@@ -36,6 +36,7 @@ import cn.nukkit.plugin.Plugin;
 import cn.nukkit.scheduler.PluginTask;
 import cn.nukkit.scheduler.TaskHandler;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
@@ -85,6 +86,7 @@ public final class Timings {
     public static Timing permissionDefaultTimer;
 
     private static final String empty = "?";
+    private static final Timing[] receivePacketTimings = new Timing[256];
 
     static {
         setTimingsEnabled(Server.getInstance().getPropertyBoolean("enable-timings", false));
@@ -144,6 +146,7 @@ public final class Timings {
         if (enabled) {
             init();
         }
+        Arrays.fill(receivePacketTimings, null);
         TimingsManager.reset();
     }
 
@@ -244,7 +247,13 @@ public final class Timings {
     }
 
     public static Timing getReceiveDataPacketTiming(DataPacket pk) {
-        return TimingsManager.getTiming(DEFAULT_GROUP.name, "## Receive Packet: " + (timingsEnabled ? pk.getClass().getSimpleName() : empty), playerNetworkReceiveTimer);
+        int index = pk.pid() & 0xff;
+        Timing timing = receivePacketTimings[index];
+        if (timing == null) {
+            timing = TimingsManager.getTiming(DEFAULT_GROUP.name, "## Receive Packet: " + (timingsEnabled ? pk.getClass().getSimpleName() : empty), playerNetworkReceiveTimer);
+            receivePacketTimings[index] = timing;
+        }
+        return timing;
     }
 
     public static Timing getSendDataPacketTiming(DataPacket pk) {